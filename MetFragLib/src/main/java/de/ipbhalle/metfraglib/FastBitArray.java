@@ -6,399 +6,564 @@ public class FastBitArray {
 
 	/**
 	 * array to store bits
+	 * bit i is stored in word i / 64 at position i % 64
 	 */
-	private BitSet bitArray;
+	private long[] words;
+
+	private int size;
 
-	private short size;
-	
 	/**
-	 * 
+	 *
 	 */
 	public FastBitArray() {
-		this.bitArray = new BitSet();
+		this.words = new long[0];
 		this.size = 0;
 	}
-	
+
 	/**
-	 * 
+	 *
 	 */
 	public FastBitArray(FastBitArray bitArray) {
-		FastBitArray copy = bitArray.clone();
-		this.bitArray = copy.getArray();
-		this.size = copy.getSize();
+		this.words = bitArray.words.clone();
+		this.size = bitArray.getSize();
 	}
 	/**
-	 * 
+	 *
 	 */
 	public FastBitArray(BitSet bitArray, int size) {
-		BitSet copy = new BitSet();
-		copy.or(bitArray);
-		this.bitArray = copy;
-		this.size = (short)size;
+		this.words = new long[Math.max(numberWords(size), numberWords(bitArray.length()))];
+		long[] bitArrayWords = bitArray.toLongArray();
+		System.arraycopy(bitArrayWords, 0, this.words, 0, bitArrayWords.length);
+		this.size = size;
 	}
-	
+
 	/**
 	 * initialise BitArray with a given boolean array
-	 * 
+	 *
 	 * @param array
 	 */
 	public FastBitArray(boolean[] array) {
-		this.bitArray = new BitSet();
+		this.words = new long[numberWords(array.length)];
 		for(int i = 0; i < array.length; i++)
-			this.bitArray.set(i, array[i]);
-		this.size = (short)array.length;
+			if(array[i]) this.set(i);
+		this.size = array.length;
 	}
-	
+
 	/**
 	 * initialises BitArray with specified number of bits
-	 * 
+	 *
 	 * @param nbits
 	 */
 	public FastBitArray(int nbits) {
-		this.bitArray = new BitSet();
-		this.size = (short)nbits;
+		this.words = new long[numberWords(nbits)];
+		this.size = nbits;
 	}
 
 	/**
 	 * initialises BitArray with specified number of bits and value at all positions
-	 * 
+	 *
 	 * @param nbits
 	 * @param value
 	 */
 	public FastBitArray(int nbits, boolean value) {
-		this.bitArray = new BitSet();
-		if(value) this.bitArray.flip(0, nbits);
-		this.size = (short)nbits;
+		this.words = new long[numberWords(nbits)];
+		this.size = nbits;
+		if(value) this.setAll(true);
+	}
+
+	/**
+	 * initialises BitArray with 64 bit words as written by copyWords
+	 * bits beyond the given size are ignored
+	 *
+	 * @param words
+	 * @param offset
+	 * @param nbits
+	 */
+	public FastBitArray(long[] words, int offset, int nbits) {
+		this.words = new long[numberWords(nbits)];
+		System.arraycopy(words, offset, this.words, 0, this.words.length);
+		this.size = nbits;
+		if(this.words.length != 0) this.words[this.words.length - 1] &= this.lastWordMask();
 	}
 
 	/**
 	 * initialises BitArray with a bitstring
-	 * 
+	 *
 	 * @param nbits
 	 * @param value
 	 */
 	public FastBitArray(String bitstring) {
-		this.bitArray = new BitSet();
+		this.words = new long[numberWords(bitstring.length())];
 		for(int i = 0; i < bitstring.length(); i++) {
-			this.bitArray.set(i, bitstring.charAt(i) == '0' ? false : true);
+			if(bitstring.charAt(i) != '0') this.set(i);
+		}
+		this.size = bitstring.length();
+	}
+
+	private static int numberWords(int nbits) {
+		return (nbits + 63) >>> 6;
+	}
+
+	/*
+	 * mask of the valid bits of the last word
+	 */
+	private long lastWordMask() {
+		return -1L >>> (-this.size & 63);
+	}
+
+	/*
+	 * returns word i restricted to the bits within the size
+	 */
+	private long getMaskedWord(int i) {
+		int numberWords = numberWords(this.size);
+		if(i >= numberWords || i >= this.words.length) return 0L;
+		if(i == numberWords - 1) return this.words[i] & this.lastWordMask();
+		return this.words[i];
+	}
+
+	/*
+	 * first set bit index >= fromIndex over all stored words or -1
+	 */
+	private int nextSetBitInWords(int fromIndex) {
+		int wordIndex = fromIndex >>> 6;
+		if(wordIndex >= this.words.length) return -1;
+		long word = this.words[wordIndex] & (-1L << fromIndex);
+		while(true) {
+			if(word != 0) return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			if(++wordIndex == this.words.length) return -1;
+			word = this.words[wordIndex];
 		}
-		this.size = (short)bitstring.length();
 	}
-	
+
 	/**
 	 * get next bit index in the BitArray that is set to true after the given index n
 	 * if there is no true bit after position n the function returns -1
-	 * 
+	 *
 	 * @param index
 	 * @return
 	 */
 	public int nextSetBit(int n) {
-		return this.bitArray.nextSetBit(n - 1);
+		if(n - 1 < 0) throw new IndexOutOfBoundsException("fromIndex < 0: " + (n - 1));
+		return this.nextSetBitInWords(n - 1);
 	}
 
 	/**
 	 * get next bit index in the BitArray that is set to false after the given index n
 	 * if there is no false bit after position n the function returns -1
-	 * 
+	 *
 	 * @param index
 	 * @return
 	 */
 	public int nextClearBit(int n) {
-		return this.bitArray.nextClearBit(n - 1);
+		if(n - 1 < 0) throw new IndexOutOfBoundsException("fromIndex < 0: " + (n - 1));
+		int wordIndex = (n - 1) >>> 6;
+		if(wordIndex >= this.words.length) return n - 1;
+		long word = ~this.words[wordIndex] & (-1L << (n - 1));
+		while(true) {
+			if(word != 0) return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			if(++wordIndex == this.words.length) return wordIndex << 6;
+			word = ~this.words[wordIndex];
+		}
+	}
+
+	/**
+	 * returns the first index >= fromIndex that is set to true
+	 * returns -1 if there is no such index within the size of the BitArray
+	 *
+	 * iterate over all set bits without creating objects:
+	 * for(int i = bitArray.nextSetIndex(0); i >= 0; i = bitArray.nextSetIndex(i + 1))
+	 *
+	 * @param fromIndex
+	 * @return
+	 */
+	public int nextSetIndex(int fromIndex) {
+		if(fromIndex < 0) fromIndex = 0;
+		if(fromIndex >= this.size) return -1;
+		int index = this.nextSetBitInWords(fromIndex);
+		return index < this.size ? index : -1;
 	}
-	
+
 	public FastBitArray getDiff(FastBitArray subtrahend) {
 		FastBitArray result = this.clone();
-		for(int i = 0; i < subtrahend.getSize(); i++) {
-			if(subtrahend.get(i)) {
-				result.set(i, false);
-			}
-		}
+		result.andNot(subtrahend);
 		return result;
 	}
-	
+
 	/**
 	 * merge the current BitArray with the given one and return a new one
-	 * the operation is an 'or' merge 
-	 * 
+	 * the operation is an 'or' merge
+	 *
 	 * @param toMergeWith
 	 * @return
 	 */
 	public FastBitArray merge(FastBitArray toMergeWith) {
 		FastBitArray mergedArray = new FastBitArray(toMergeWith.getSize());
-		for(int i = 0; i < this.getSize(); i++) {
-			mergedArray.set(i, this.bitArray.get(i) || toMergeWith.get(i));
-		}
+		int numberWords = Math.min(numberWords(this.size), mergedArray.words.length);
+		for(int i = 0; i < numberWords; i++)
+			mergedArray.words[i] = this.getMaskedWord(i) | toMergeWith.getMaskedWord(i);
 		return mergedArray;
 	}
-	
+
+	/**
+	 * sets all bits to true that are set in the given BitArray
+	 *
+	 * @param bitArray
+	 */
+	public void or(FastBitArray bitArray) {
+		int numberWords = Math.min(this.words.length, numberWords(bitArray.getSize()));
+		for(int i = 0; i < numberWords; i++) this.words[i] |= bitArray.getMaskedWord(i);
+	}
+
+	/**
+	 * sets all bits to false that are not set in the given BitArray
+	 *
+	 * @param bitArray
+	 */
+	public void retain(FastBitArray bitArray) {
+		for(int i = 0; i < this.words.length; i++) this.words[i] &= bitArray.getMaskedWord(i);
+	}
+
+	/**
+	 * sets all bits to false that are set in the given BitArray
+	 *
+	 * @param bitArray
+	 */
+	public void andNot(FastBitArray bitArray) {
+		int numberWords = Math.min(this.words.length, numberWords(bitArray.getSize()));
+		for(int i = 0; i < numberWords; i++) this.words[i] &= ~bitArray.getMaskedWord(i);
+	}
+
+	/**
+	 * returns true if at least one bit is set in both BitArrays
+	 *
+	 * @param bitArray
+	 * @return
+	 */
+	public boolean intersects(FastBitArray bitArray) {
+		int numberWords = Math.min(numberWords(this.size), numberWords(bitArray.getSize()));
+		for(int i = 0; i < numberWords; i++)
+			if((this.getMaskedWord(i) & bitArray.getMaskedWord(i)) != 0) return true;
+		return false;
+	}
+
 	/**
 	 * set bit at position n to true
 	 * Warning: function does not check for IndexOutOfBounds
-	 * 
+	 *
 	 * @param index
 	 */
 	public void set(int n) {
-		this.bitArray.set(n);
+		int wordIndex = n >>> 6;
+		if(wordIndex >= this.words.length) this.words = java.util.Arrays.copyOf(this.words, wordIndex + 1);
+		this.words[wordIndex] |= 1L << n;
 	}
 
 	/**
 	 * set bit at position n to given value val
 	 * Warning: function does not check for IndexOutOfBounds
-	 * 
+	 *
 	 * @param index
 	 */
 	public void set(int n, boolean val) {
-		this.bitArray.set(n, val);
+		if(val) this.set(n);
+		else this.clear(n);
 	}
-	
+
 	/**
 	 * set bit at position n to false
 	 * Warning: function does not check for IndexOutOfBounds
-	 * 
+	 *
 	 * @param index
 	 */
 	public void clear(int n) {
-		this.bitArray.set(n, false);
+		int wordIndex = n >>> 6;
+		if(wordIndex < this.words.length) this.words[wordIndex] &= ~(1L << n);
 	}
-	
+
 	/**
 	 * returns bit at index n
 	 * returns false if n < 0 and n > size of BitArray
-	 * 
+	 *
 	 * @param n
 	 * @return
 	 */
 	public boolean get(int n) {
-		if(n < 0 || n >= this.getSize()) return false;
-		return this.bitArray.get(n);
+		if(n < 0 || n >= this.size) return false;
+		return (this.words[n >>> 6] & (1L << n)) != 0;
 	}
-	
+
 	/**
 	 * returns BitArray number of bits
-	 * 
+	 *
 	 * @return
 	 */
-	public short getSize() {
+	public int getSize() {
 		return this.size;
 	}
-	
+
 	/**
 	 * returns number of bits set to true
-	 * 
+	 *
 	 * @return
 	 */
 	public int cardinality() {
-		return this.bitArray.cardinality();
+		int cardinality = 0;
+		for(int i = 0; i < this.words.length; i++) cardinality += Long.bitCount(this.words[i]);
+		return cardinality;
 	}
-	
+
 	/**
 	 * merged the current BitArray with the given one
-	 * the operation is an 'and' merge 
-	 * 
+	 * the operation is an 'and' merge
+	 *
 	 * @param ar
 	 * @return
 	 */
 	public FastBitArray and(FastBitArray ar) {
-		BitSet copy = new BitSet();
-		copy.or(ar.getArray());
-		copy.and(this.bitArray);
-		return new FastBitArray(copy, this.size);
+		FastBitArray result = new FastBitArray(this.size);
+		int numberWords = Math.min(result.words.length, Math.min(this.words.length, ar.words.length));
+		for(int i = 0; i < numberWords; i++) result.words[i] = this.words[i] & ar.words[i];
+		return result;
 	}
-	
+
 	/**
 	 * get integer array of indeces that are set to true
-	 * 
+	 *
 	 * @return
 	 */
 	public int[] getSetIndeces() {
-		int[] setIndeces = new int[this.cardinality()];
+		int numberWords = numberWords(this.size);
+		int cardinality = 0;
+		for(int i = 0; i < numberWords; i++) cardinality += Long.bitCount(this.getMaskedWord(i));
+		int[] setIndeces = new int[cardinality];
 		int index = 0;
-		for(int i = 0; i < this.getSize(); i++) {
-			if(this.bitArray.get(i)) {
-				setIndeces[index] = i;
-				index++;
+		for(int i = 0; i < numberWords; i++) {
+			long word = this.getMaskedWord(i);
+			while(word != 0) {
+				setIndeces[index++] = (i << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
 			}
 		}
 		return setIndeces;
 	}
-	
+
+	/**
+	 * returns number of 64 bit words needed to store the bits
+	 *
+	 * @return
+	 */
+	public int getNumberWords() {
+		return numberWords(this.size);
+	}
+
+	/**
+	 * writes the bits as 64 bit words into the given array starting at offset
+	 * bit i is stored in word i / 64 at position i % 64
+	 *
+	 * @param words
+	 * @param offset
+	 */
+	public void copyWords(long[] words, int offset) {
+		int numberWords = this.getNumberWords();
+		for(int i = 0; i < numberWords; i++) words[offset + i] = this.getMaskedWord(i);
+	}
+
 	/**
 	 * returns true if the current and the given BitArray are of same length and have exactly the same
-	 * bits set to true 
-	 * 
+	 * bits set to true
+	 *
 	 * @param bitArray
 	 * @return
 	 */
 	public boolean equals(FastBitArray bitArray) {
 		if(this.getSize() != bitArray.getSize()) return false;
-		for(int i = 0; i < this.getSize(); i++) 
-			if(this.bitArray.get(i) != bitArray.get(i)) return false;
+		int numberWords = numberWords(this.size);
+		for(int i = 0; i < numberWords; i++)
+			if(this.getMaskedWord(i) != bitArray.getMaskedWord(i)) return false;
 		return true;
 	}
-	
+
 	public boolean equals(Object object) {
-		FastBitArray bitArray = (FastBitArray)object;
-		if(this.getSize() != bitArray.getSize()) return false;
-		for(int i = 0; i < this.getSize(); i++) 
-			if(this.bitArray.get(i) != bitArray.get(i)) return false;
-		return true;
+		if(!(object instanceof FastBitArray)) return false;
+		return this.equals((FastBitArray)object);
 	}
-	
+
+	/**
+	 * same value as java.util.BitSet.hashCode() of the bits within the size
+	 */
 	public int hashCode() {
-		java.util.BitSet bitset = new java.util.BitSet((int)this.size);
-		for(int i = 0; i < this.getSize(); i++) 
-			if(this.bitArray.get(i)) bitset.set(i);
-		return bitset.hashCode();
+		long hash = 1234;
+		for(int i = numberWords(this.size); --i >= 0; )
+			hash ^= this.getMaskedWord(i) * (i + 1);
+		return (int)((hash >> 32) ^ hash);
 	}
-	
+
 	/**
 	 * returns true if the current and the given BitArray are of same length and have exactly the same
-	 * bits set to true 
-	 * 
+	 * bits set to true
+	 *
 	 * @param bitArray
 	 * @return
 	 */
 	public boolean equals(String bitString) {
 		if(this.getSize() != bitString.length()) return false;
-		for(int i = 0; i < this.getSize(); i++) 
-			if((this.bitArray.get(i) && bitString.charAt(i) == '0') || (!this.bitArray.get(i) && bitString.charAt(i) == '1')) return false;
+		for(int i = 0; i < this.getSize(); i++)
+			if((this.get(i) && bitString.charAt(i) == '0') || (!this.get(i) && bitString.charAt(i) == '1')) return false;
 		return true;
 	}
-	
+
 	/**
 	 * sets all bits of the BitArray to val
-	 * 
+	 *
 	 * @param val
 	 */
 	public void setAll(boolean val) {
-		this.bitArray.set(0, this.getSize(), val);
+		int numberWords = numberWords(this.size);
+		for(int i = 0; i < numberWords; i++)
+			this.words[i] = val ? -1L : 0L;
+		if(val && numberWords != 0) this.words[numberWords - 1] &= this.lastWordMask();
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @param toCheck
 	 * @return
 	 */
 	public boolean isRealSubset(FastBitArray toCheck) {
 		if(toCheck.cardinality() >= this.cardinality()) return false;
-		for(int i = 0; i < this.getSize(); i++) {
-			if(!this.bitArray.get(i) && toCheck.get(i)) return false;
-		}
-		return true;
+		return this.isSubsetWithinSize(toCheck);
 	}
 
 	/**
 	 * checks whether the given is a subset of the current
 	 * checks via 'or'
-	 * 
+	 *
 	 * @param toCheck
 	 * @return
 	 */
 	public boolean isSubset(FastBitArray toCheck) {
 		if(toCheck.getSize() > this.getSize()) return false;
-		for(int i = 0; i < this.getSize(); i++) {
-			if(!this.bitArray.get(i) && toCheck.get(i)) return false;
+		return this.isSubsetWithinSize(toCheck);
+	}
+
+	/*
+	 * checks whether all bits of toCheck within the size of the current BitArray are set in the current BitArray
+	 */
+	private boolean isSubsetWithinSize(FastBitArray toCheck) {
+		int numberWords = numberWords(this.size);
+		for(int i = 0; i < numberWords; i++) {
+			long toCheckWord = toCheck.getMaskedWord(i);
+			if(i == numberWords - 1) toCheckWord &= this.lastWordMask();
+			if((toCheckWord & ~this.getMaskedWord(i)) != 0) return false;
 		}
 		return true;
 	}
-	
+
 	/**
-	 * returns string with with true positions '1' and false positions '0' 
+	 * returns string with with true positions '1' and false positions '0'
 	 */
 	public String toString() {
 		char[] set = new char[this.getSize()];
 		for(int i = 0; i < this.getSize(); i++) {
-			set[i] = this.bitArray.get(i) ? '1' : '0';
+			set[i] = this.get(i) ? '1' : '0';
 		}
 		return String.valueOf(set);
 	}
-	
+
 	/**
-	 * 
+	 *
 	 * @return
 	 */
 	public String toStringIDs() {
-		String val = "";
-		boolean added = false;
-		for(int i = 0; i < this.getSize(); i++) {
-			if(this.bitArray.get(i)) {
-				if(added) val += "-";
-				val += (i + 1);
-				added = true;
-			}
+		StringBuilder val = new StringBuilder();
+		for(int i = this.nextSetIndex(0); i >= 0; i = this.nextSetIndex(i + 1)) {
+			if(val.length() != 0) val.append("-");
+			val.append(i + 1);
 		}
-		return val;
+		return val.toString();
 	}
-	
+
 	/**
 	 * returns first position of BitArray set to true
 	 * returns -1 if there is no bit set to true
-	 * 
+	 *
 	 * @return
 	 */
 	public int getFirstSetBit() {
-		for(int i = 0; i < this.getSize(); i++)
-			if(this.bitArray.get(i)) return i;
-		return -1;
+		return this.nextSetIndex(0);
 	}
-	
+
 	/**
 	 * returns last position of BitArray set to true
 	 * returns -1 if there is no bit set to true
-	 * 
+	 *
 	 */
 	public int getLastSetBit() {
-		for(int i = this.getSize() - 1; i >= 0; i--)
-			if(this.bitArray.get(i)) return i;
+		for(int i = numberWords(this.size) - 1; i >= 0; i--) {
+			long word = this.getMaskedWord(i);
+			if(word != 0) return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+		}
 		return -1;
 	}
 	/**
 	 * sets boolean array to null
 	 */
 	public void nullify() {
-		this.bitArray = null;
+		this.words = null;
 	}
-	
+
 	/**
-	 * sets indeces of BitArray in the given integer array to true 
-	 * 
+	 * sets indeces of BitArray in the given integer array to true
+	 *
 	 * @param bitIndexes
 	 */
 	public void setBits(int[] bitIndexes) {
 		for(int i = 0; i < bitIndexes.length; i++) {
 			if(bitIndexes[i] < this.getSize() && bitIndexes[i] >= 0)
-				this.bitArray.set(bitIndexes[i]);
+				this.set(bitIndexes[i]);
 			else
 				System.err.println("Warning: Could not set bit at position " + bitIndexes[i] + " to true. Out of range!");
 		}
 	}
-	
+
+	/**
+	 * returns a copy of the bits as BitSet
+	 *
+	 * @return
+	 */
 	public BitSet getArray() {
-		return this.bitArray;
+		return BitSet.valueOf(this.words);
 	}
-	
+
 	public int compareTo(FastBitArray array) {
 		int len1 = this.getSize();
 		int len2 = array.getSize();
 		int minLen = Math.min(len1, len2);
-		for(int i = 0; i < minLen; i++) {
-			//check if obj smaller
-			if(!this.get(i) && array.get(i)) return -1;
-			if(this.get(i) && !array.get(i)) return 1;
+		int numberWords = numberWords(minLen);
+		for(int i = 0; i < numberWords; i++) {
+			long word1 = this.getMaskedWord(i);
+			long word2 = array.getMaskedWord(i);
+			if(i == numberWords - 1 && (minLen & 63) != 0) {
+				long mask = -1L >>> (-minLen & 63);
+				word1 &= mask;
+				word2 &= mask;
+			}
+			long difference = word1 ^ word2;
+			if(difference == 0) continue;
+			//check if obj smaller at the first differing position
+			return (word2 & Long.lowestOneBit(difference)) != 0 ? -1 : 1;
 		}
 		if(len1 < len2) return -1;
 		if(len1 > len2) return 1;
 		return 0;
 	}
-	
+
 	/**
-	 * 
+	 *
 	 */
 	public FastBitArray clone() {
 		FastBitArray clone = new FastBitArray(this.getSize());
-		for(int i = 0; i < this.getSize(); i++)
-			if(this.bitArray.get(i)) clone.set(i);
+		for(int i = 0; i < clone.words.length; i++) clone.words[i] = this.getMaskedWord(i);
 		return clone;
 	}
 }
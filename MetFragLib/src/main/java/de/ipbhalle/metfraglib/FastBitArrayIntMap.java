@@ -0,0 +1,193 @@
+package de.ipbhalle.metfraglib;
+
+/**
+ * hash map from FastBitArray to int using open addressing (linear probing)
+ * keys are stored as copies of their 64 bit words in one long array so no objects are created per entry
+ * two keys are equal if they have the same size and the same bits set (like FastBitArray.toString())
+ *
+ * not thread-safe
+ *
+ * @author cruttkie
+ *
+ */
+public class FastBitArrayIntMap {
+
+	/**
+	 * returned if a key is not contained
+	 */
+	public static final int NO_VALUE = Integer.MIN_VALUE;
+
+	private static final float MAXIMUM_LOAD_FACTOR = 0.5f;
+
+	//per slot: stored hash, offset of the key words in keyWords (-1 if empty), size of the key and value
+	private int[] hashes;
+	private int[] keyOffsets;
+	private int[] keySizes;
+	private int[] values;
+	//words of all stored keys
+	private long[] keyWords;
+	private int numberKeyWords;
+	//words and hash of the key currently looked up
+	private long[] lookupWords;
+	private int lookupHash;
+	private int numberElements;
+
+	public FastBitArrayIntMap() {
+		this(64);
+	}
+
+	/**
+	 *
+	 * @param expectedNumberElements
+	 */
+	public FastBitArrayIntMap(int expectedNumberElements) {
+		int capacity = 16;
+		while(capacity * MAXIMUM_LOAD_FACTOR < expectedNumberElements) capacity <<= 1;
+		this.initialiseSlots(capacity);
+		this.keyWords = new long[capacity];
+		this.numberKeyWords = 0;
+		this.lookupWords = new long[1];
+		this.numberElements = 0;
+	}
+
+	/**
+	 * returns the value stored for the given key or NO_VALUE
+	 *
+	 * @param key
+	 * @return
+	 */
+	public int get(FastBitArray key) {
+		int slot = this.findSlot(key);
+		return this.keyOffsets[slot] == -1 ? NO_VALUE : this.values[slot];
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return
+	 */
+	public boolean containsKey(FastBitArray key) {
+		return this.keyOffsets[this.findSlot(key)] != -1;
+	}
+
+	/**
+	 * stores the value for the given key and returns the former value or NO_VALUE
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public int put(FastBitArray key, int value) {
+		int slot = this.findSlot(key);
+		if(this.keyOffsets[slot] != -1) {
+			int formerValue = this.values[slot];
+			this.values[slot] = value;
+			return formerValue;
+		}
+		this.insert(slot, key.getSize(), value);
+		return NO_VALUE;
+	}
+
+	/**
+	 * stores the value only if the key is not contained yet
+	 * returns the value already stored or NO_VALUE if the given value was stored
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public int putIfAbsent(FastBitArray key, int value) {
+		int slot = this.findSlot(key);
+		if(this.keyOffsets[slot] != -1) return this.values[slot];
+		this.insert(slot, key.getSize(), value);
+		return NO_VALUE;
+	}
+
+	public int size() {
+		return this.numberElements;
+	}
+
+	public void clear() {
+		java.util.Arrays.fill(this.keyOffsets, -1);
+		this.numberKeyWords = 0;
+		this.numberElements = 0;
+	}
+
+	/*
+	 * copies the words of the key into lookupWords and returns the slot containing the key
+	 * or the empty slot where it has to be inserted
+	 */
+	private int findSlot(FastBitArray key) {
+		int numberWords = key.getNumberWords();
+		if(this.lookupWords.length < numberWords) this.lookupWords = new long[numberWords];
+		key.copyWords(this.lookupWords, 0);
+		this.lookupHash = hash(this.lookupWords, numberWords, key.getSize());
+		int mask = this.keyOffsets.length - 1;
+		int slot = this.lookupHash & mask;
+		while(this.keyOffsets[slot] != -1) {
+			if(this.hashes[slot] == this.lookupHash && this.keySizes[slot] == key.getSize() && this.equalsLookupWords(this.keyOffsets[slot], numberWords))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private boolean equalsLookupWords(int offset, int numberWords) {
+		for(int i = 0; i < numberWords; i++)
+			if(this.keyWords[offset + i] != this.lookupWords[i]) return false;
+		return true;
+	}
+
+	/*
+	 * inserts the key currently stored in lookupWords
+	 */
+	private void insert(int slot, int keySize, int value) {
+		int numberWords = (keySize + 63) >>> 6;
+		if(this.numberKeyWords + numberWords > this.keyWords.length)
+			this.keyWords = java.util.Arrays.copyOf(this.keyWords, Math.max(this.keyWords.length << 1, this.numberKeyWords + numberWords));
+		System.arraycopy(this.lookupWords, 0, this.keyWords, this.numberKeyWords, numberWords);
+		this.hashes[slot] = this.lookupHash;
+		this.keyOffsets[slot] = this.numberKeyWords;
+		this.keySizes[slot] = keySize;
+		this.values[slot] = value;
+		this.numberKeyWords += numberWords;
+		this.numberElements++;
+		if(this.numberElements > this.keyOffsets.length * MAXIMUM_LOAD_FACTOR) this.rehash(this.keyOffsets.length << 1);
+	}
+
+	private void rehash(int capacity) {
+		int[] oldHashes = this.hashes;
+		int[] oldKeyOffsets = this.keyOffsets;
+		int[] oldKeySizes = this.keySizes;
+		int[] oldValues = this.values;
+		this.initialiseSlots(capacity);
+		int mask = capacity - 1;
+		for(int i = 0; i < oldKeyOffsets.length; i++) {
+			if(oldKeyOffsets[i] == -1) continue;
+			int slot = oldHashes[i] & mask;
+			while(this.keyOffsets[slot] != -1) slot = (slot + 1) & mask;
+			this.hashes[slot] = oldHashes[i];
+			this.keyOffsets[slot] = oldKeyOffsets[i];
+			this.keySizes[slot] = oldKeySizes[i];
+			this.values[slot] = oldValues[i];
+		}
+	}
+
+	private void initialiseSlots(int capacity) {
+		this.hashes = new int[capacity];
+		this.keyOffsets = new int[capacity];
+		this.keySizes = new int[capacity];
+		this.values = new int[capacity];
+		java.util.Arrays.fill(this.keyOffsets, -1);
+	}
+
+	private static int hash(long[] words, int numberWords, int size) {
+		long hash = size;
+		for(int i = 0; i < numberWords; i++) {
+			hash = (hash ^ words[i]) * 0x9E3779B97F4A7C15L;
+			hash ^= hash >>> 32;
+		}
+		return (int)(hash ^ (hash >>> 29));
+	}
+
+}
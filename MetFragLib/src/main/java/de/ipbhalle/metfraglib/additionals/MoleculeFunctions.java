@@ -8,7 +8,6 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.fingerprint.BitSetFingerprint;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
-import org.openscience.cdk.fingerprint.MACCSFingerprinter;
 import org.openscience.cdk.graph.Cycles;
 import org.openscience.cdk.inchi.InChIGenerator;
 import org.openscience.cdk.inchi.InChIGeneratorFactory;
@@ -81,15 +80,7 @@ public class MoleculeFunctions {
 			e.printStackTrace();
 		}
 		
-		MACCSFingerprinter fingerprinter = new MACCSFingerprinter();
-		IBitFingerprint f1 = null;
-		try {
-			f1 = fingerprinter.getBitFingerprint(con);
-		} catch (CDKException e) {
-			f1 = null;
-		}
-		
-		String fpString = MoleculeFunctions.fingerPrintToString(f1);
+		String fpString = MoleculeFunctions.fingerPrintToString(TanimotoSimilarity.calculateFingerPrint(con));
 		
 		return fpString;
 	}
@@ -1,10 +1,18 @@
 package de.ipbhalle.metfraglib.candidate;
 
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
 import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.precursor.MolecularGraph;
 import de.ipbhalle.metfraglib.precursor.TopDownBitArrayPrecursor;
 
 public class TopDownPrecursorCandidate extends PrecursorCandidate {
 
+	//precomputed graph taken from the MolecularGraph property
+	protected MolecularGraph molecularGraph;
+
 	public TopDownPrecursorCandidate(String inchi, String identifier) {
 		super(inchi, identifier);
 	}
@@ -15,8 +23,71 @@ public class TopDownPrecursorCandidate extends PrecursorCandidate {
 
 	@Override
 	public void initialisePrecursorCandidate() throws AtomTypeNotKnownFromInputListException, Exception {
-		this.precursorStructure = new TopDownBitArrayPrecursor(this.getImplicitHydrogenAtomContainer());
-		this.precursorStructure.preprocessPrecursor();
+		MolecularGraph graph = this.getMolecularGraph();
+		//the graph is kept by the candidate and not written to the result files
+		this.removeProperty(VariableNames.MOLECULAR_GRAPH_NAME);
+		if(graph != null) {
+			TopDownBitArrayPrecursor precursor = new TopDownBitArrayPrecursor(graph.toAtomContainer());
+			precursor.preprocessPrecursor(graph);
+			this.precursorStructure = precursor;
+			return;
+		}
+		TopDownBitArrayPrecursor precursor = new TopDownBitArrayPrecursor(this.getImplicitHydrogenAtomContainer());
+		precursor.preprocessPrecursor(this.getInChIKey());
+		this.precursorStructure = precursor;
+	}
+	
+	/**
+	 * the atom container is built from the precomputed graph if available
+	 * hydrogens are explicit like in the atom container read from the InChI
+	 */
+	@Override
+	public IAtomContainer getAtomContainer() throws Exception {
+		MolecularGraph graph = this.getMolecularGraph();
+		if(graph == null) return super.getAtomContainer();
+		IAtomContainer molecule = graph.toAtomContainer();
+		AtomContainerManipulator.convertImplicitToExplicitHydrogens(molecule);
+		return molecule;
+	}
+	
+	/**
+	 * the atom container is built from the precomputed graph if available
+	 */
+	@Override
+	public IAtomContainer getImplicitHydrogenAtomContainer() throws Exception {
+		MolecularGraph graph = this.getMolecularGraph();
+		if(graph != null) return graph.toAtomContainer();
+		return super.getImplicitHydrogenAtomContainer();
+	}
+	
+	/**
+	 * returns the precomputed graph of the MolecularGraph property or null if not defined
+	 * if the property cannot be decoded the structure is read from the InChI
+	 * 
+	 * @return
+	 */
+	public MolecularGraph getMolecularGraph() {
+		if(this.molecularGraph == null && this.hasDefinedProperty(VariableNames.MOLECULAR_GRAPH_NAME)) {
+			Object value = this.getProperty(VariableNames.MOLECULAR_GRAPH_NAME);
+			try {
+				this.molecularGraph = value instanceof MolecularGraph ? (MolecularGraph)value : MolecularGraph.decode(value.toString());
+			} catch (java.io.IOException e) {
+				this.molecularGraph = null;
+			}
+		}
+		return this.molecularGraph;
+	}
+	
+	/**
+	 * returns the full InChIKey of the candidate or null if it is not known
+	 * 
+	 * @return
+	 */
+	public String getInChIKey() {
+		if(this.hasDefinedProperty(VariableNames.INCHI_KEY_NAME)) return (String)this.getProperty(VariableNames.INCHI_KEY_NAME);
+		if(this.hasDefinedProperty(VariableNames.INCHI_KEY_1_NAME) && this.hasDefinedProperty(VariableNames.INCHI_KEY_2_NAME)) 
+			return (String)this.getProperty(VariableNames.INCHI_KEY_1_NAME) + "-" + (String)this.getProperty(VariableNames.INCHI_KEY_2_NAME);
+		return null;
 	}
 	
 	public TopDownPrecursorCandidate clone() {
@@ -26,6 +97,7 @@ public class TopDownPrecursorCandidate extends PrecursorCandidate {
 			String key = keys.nextElement();
 			clone.setProperty(key, this.properties.get(key));
 		}
+		clone.molecularGraph = this.molecularGraph;
 		return clone;
 	}
 }
@@ -1,17 +1,16 @@
 package de.ipbhalle.metfraglib.candidatefilter;
 
-import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
 
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
+import de.ipbhalle.metfraglib.substructure.SmartsQueryToolPool;
 
 public class PreProcessingCandidateSmartsExclusionFilter extends AbstractPreProcessingCandidateFilter {
 	
 	private String[] includedSmarts;
-	private SMARTSQueryTool[] smartsQuerytools;
+	private SmartsQueryToolPool smartsQuerytools;
 	
 	public PreProcessingCandidateSmartsExclusionFilter(Settings settings) {
 		super(settings);
@@ -25,21 +24,18 @@ public class PreProcessingCandidateSmartsExclusionFilter extends AbstractPreProc
 			this.includedSmarts = null;
 		}
 		if(this.includedSmarts != null && this.includedSmarts.length != 0) {
-			this.smartsQuerytools = new SMARTSQueryTool[this.includedSmarts.length];
-			for(int i = 0; i < this.includedSmarts.length; i++) {
-				smartsQuerytools[i] = new SMARTSQueryTool(this.includedSmarts[i], DefaultChemObjectBuilder.getInstance());
-			}
+			this.smartsQuerytools = new SmartsQueryToolPool(this.includedSmarts);
 		}
 		
 	}
 
 	public boolean passesFilter(ICandidate candidate) {
 		if(this.includedSmarts == null) return true;
-		if(this.smartsQuerytools == null || this.smartsQuerytools.length == 0) return true;
+		if(this.smartsQuerytools == null || this.smartsQuerytools.getNumberSmarts() == 0) return true;
 		
-		for(int i = 0; i < this.smartsQuerytools.length; i++)
+		for(int i = 0; i < this.smartsQuerytools.getNumberSmarts(); i++)
 			try {
-				if(this.smartsQuerytools[i].matches(candidate.getAtomContainer())) 
+				if(this.smartsQuerytools.matches(i, candidate.getAtomContainer())) 
 					return false;
 			} catch (CDKException e) {
 				e.printStackTrace();
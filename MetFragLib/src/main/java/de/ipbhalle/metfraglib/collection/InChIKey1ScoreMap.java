@@ -0,0 +1,118 @@
+package de.ipbhalle.metfraglib.collection;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+
+/**
+ * scores of reference compounds indexed by the first part of their InChIKey
+ * created once per query by a score initialiser and shared by all threads scoring candidates
+ *
+ * scores can be given by a reference candidate list or calculated on first request
+ * concurrent requests of the same InChIKey part are calculated once
+ *
+ * @author cruttkie
+ *
+ */
+public class InChIKey1ScoreMap {
+
+	protected java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Double>> scores;
+
+	public InChIKey1ScoreMap() {
+		this.scores = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<Double>>();
+	}
+
+	/**
+	 * maximum score of all candidates with the same first InChIKey part
+	 * candidates without InChIKey or score are skipped
+	 *
+	 * @param candidates
+	 * @param scoreName name of the score property
+	 */
+	public InChIKey1ScoreMap(CandidateList candidates, String scoreName) {
+		this();
+		java.util.HashMap<String, Double> maximumScores = new java.util.HashMap<String, Double>();
+		for(int i = 0; i < candidates.getNumberElements(); i++) {
+			ICandidate candidate = candidates.getElement(i);
+			Object inchikey1 = candidate.getProperty(VariableNames.INCHI_KEY_1_NAME);
+			Object score = candidate.getProperty(scoreName);
+			if(inchikey1 == null || !(score instanceof Number)) continue;
+			double value = ((Number)score).doubleValue();
+			Double maximumScore = maximumScores.get((String)inchikey1);
+			if(maximumScore == null || value > maximumScore) maximumScores.put((String)inchikey1, value);
+		}
+		for(String inchikey1 : maximumScores.keySet())
+			this.scores.put(inchikey1, this.getTask(maximumScores.get(inchikey1)));
+	}
+
+	/**
+	 * score of the given InChIKey part
+	 *
+	 * @param inchikey1
+	 * @return null if no score is known
+	 */
+	public Double getScore(String inchikey1) {
+		if(inchikey1 == null) return null;
+		java.util.concurrent.FutureTask<Double> task = this.scores.get(inchikey1);
+		if(task == null || !task.isDone()) return null;
+		try {
+			return task.get();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * score of the given InChIKey part calculated on first request
+	 * failed calculations are not stored and performed again on the next request
+	 *
+	 * @param inchikey1 must not be null
+	 * @param calculation
+	 * @return
+	 * @throws Exception
+	 */
+	public double getScore(final String inchikey1, final ScoreCalculation calculation) throws Exception {
+		java.util.concurrent.FutureTask<Double> task = new java.util.concurrent.FutureTask<Double>(new java.util.concurrent.Callable<Double>() {
+			public Double call() throws Exception {
+				return calculation.calculate(inchikey1);
+			}
+		});
+		java.util.concurrent.FutureTask<Double> runningTask = this.scores.putIfAbsent(inchikey1, task);
+		if(runningTask == null) {
+			runningTask = task;
+			task.run();
+		}
+		try {
+			return runningTask.get();
+		} catch (java.util.concurrent.ExecutionException e) {
+			this.scores.remove(inchikey1, runningTask);
+			if(e.getCause() instanceof Exception) throw (Exception)e.getCause();
+			throw e;
+		}
+	}
+
+	public int getSize() {
+		return this.scores.size();
+	}
+
+	protected java.util.concurrent.FutureTask<Double> getTask(final double score) {
+		java.util.concurrent.FutureTask<Double> task = new java.util.concurrent.FutureTask<Double>(new java.util.concurrent.Callable<Double>() {
+			public Double call() {
+				return score;
+			}
+		});
+		task.run();
+		return task;
+	}
+
+	/**
+	 * calculation of the score of a single InChIKey part
+	 *
+	 * @author cruttkie
+	 *
+	 */
+	public interface ScoreCalculation {
+		public double calculate(String inchikey1) throws Exception;
+	}
+
+}
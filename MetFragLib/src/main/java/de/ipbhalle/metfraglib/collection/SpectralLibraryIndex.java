@@ -0,0 +1,612 @@
+package de.ipbhalle.metfraglib.collection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.log4j.Logger;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.ipbhalle.metfraglib.additionals.MathTools;
+import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
+import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
+import de.ipbhalle.metfraglib.list.SortedSimilarityTandemMassPeakList;
+import de.ipbhalle.metfraglib.list.SortedTandemMassPeakList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.peak.TandemMassPeak;
+import de.ipbhalle.metfraglib.peaklistreader.MultipleTandemMassPeakListReader;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * memory-mapped spectral library used by SpectralPeakListCollection instead of the parsed peak lists
+ *
+ * the file holds the mass sorted peaks of all library spectra with their relative intensities and the sum of
+ * the squared relative intensities of each spectrum together with an inverted index mapping each m/z bin
+ * of width BIN_WIDTH to the spectra having a peak in this bin
+ * the MACCS fingerprints of the spectra are calculated once when building the index and stored as packed longs
+ * a similarity search only scores spectra sharing a bin with the mass window of a query peak and creates
+ * peak lists only for spectra exceeding the similarity limit, the similarities equal the ones of
+ * SortedTandemMassPeakList.cosineSimilarity
+ *
+ * header: magic number, version, source signature, bin width, number spectra, number bins, number postings, number peaks
+ * followed by the spectrum table, the bins with their posting lists, the peaks, the fingerprints and the spectrum annotations
+ *
+ * indexes of the offline spectral database are built by getIndex and stored in the SpectralLibraryIndexPath directory
+ * an index is built again once the spectral database files change, the new index is written to a new file
+ * as the outdated file may still be mapped
+ *
+ * loaded indexes are kept for the next queries, the maximum number is taken from the system property
+ * metfrag.spectral.index.cache.size (default 2) and can be changed by setMaximumNumberCachedIndexes
+ * least recently used indexes are removed first and unmapped once they are no longer referenced
+ *
+ * @author cruttkie
+ *
+ */
+public class SpectralLibraryIndex {
+
+	public static final double BIN_WIDTH = 0.01;
+
+	private static final int MAGIC_NUMBER = 0x4D465349;
+	private static final int VERSION = 2;
+	//first peak, number peaks, square sum, annotation position, charge, fingerprint flag
+	private static final int SPECTRUM_RECORD_LENGTH = 22;
+	private static final byte NEGATIVE_CHARGE = 0;
+	private static final byte POSITIVE_CHARGE = 1;
+	private static final byte UNKNOWN_CHARGE = 2;
+	private static final String LIBRARY_RESOURCE = "/MoNA-export-LC-MS.mb";
+	private static final String FILE_EXTENSION = ".msi";
+	private static final Logger logger = Logger.getLogger(SpectralLibraryIndex.class);
+
+	public static final String MAXIMUM_NUMBER_CACHED_INDEXES_PROPERTY_NAME = "metfrag.spectral.index.cache.size";
+	public static final int DEFAULT_MAXIMUM_NUMBER_CACHED_INDEXES = 2;
+
+	private static int maximumNumberCachedIndexes = readDefaultMaximumNumberCachedIndexes();
+	/*
+	 * indexes loaded in this process by source, access ordered -> guarded by SpectralLibraryIndex.class
+	 */
+	private static final java.util.LinkedHashMap<String, SpectralLibraryIndex> indexes = new java.util.LinkedHashMap<String, SpectralLibraryIndex>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(java.util.Map.Entry<String, SpectralLibraryIndex> eldest) {
+			return this.size() > maximumNumberCachedIndexes;
+		}
+	};
+
+	private final ByteBuffer buffer;
+	private final String signature;
+	private final double binWidth;
+	private final int numberSpectra;
+	private final int numberBins;
+	private final int spectraPosition;
+	private final int binsPosition;
+	private final int postingOffsetsPosition;
+	private final int postingsPosition;
+	private final int massesPosition;
+	private final int absoluteIntensitiesPosition;
+	private final int relativeIntensitiesPosition;
+	private final int fingerprintsPosition;
+	private final int annotationsPosition;
+
+	private SpectralLibraryIndex(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.getInt(0) != MAGIC_NUMBER || buffer.getInt(4) != VERSION) throw new IOException("Unknown spectral library index format");
+		ByteBuffer header = buffer.duplicate();
+		header.position(8);
+		byte[] signature = new byte[header.getShort()];
+		header.get(signature);
+		this.signature = new String(signature, StandardCharsets.UTF_8);
+		this.binWidth = header.getDouble();
+		this.numberSpectra = header.getInt();
+		this.numberBins = header.getInt();
+		int numberPostings = header.getInt();
+		int numberPeaks = header.getInt();
+		this.spectraPosition = header.position();
+		this.binsPosition = this.spectraPosition + this.numberSpectra * SPECTRUM_RECORD_LENGTH;
+		this.postingOffsetsPosition = this.binsPosition + this.numberBins * 4;
+		this.postingsPosition = this.postingOffsetsPosition + (this.numberBins + 1) * 4;
+		this.massesPosition = this.postingsPosition + numberPostings * 4;
+		this.absoluteIntensitiesPosition = this.massesPosition + numberPeaks * 8;
+		this.relativeIntensitiesPosition = this.absoluteIntensitiesPosition + numberPeaks * 8;
+		this.fingerprintsPosition = this.relativeIntensitiesPosition + numberPeaks * 8;
+		this.annotationsPosition = this.fingerprintsPosition + this.numberSpectra * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH * 8;
+		if(this.annotationsPosition > buffer.limit()) throw new IOException("Truncated spectral library index");
+	}
+
+	/**
+	 * maps the given index file into memory
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static SpectralLibraryIndex open(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) throw new IOException("Spectral library index " + file.getAbsolutePath() + " too large");
+			return new SpectralLibraryIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch(RuntimeException e) {
+			throw new IOException("Corrupt spectral library index " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * builds the index of the given peak lists in memory
+	 *
+	 * @param spectralPeakLists
+	 * @param signature
+	 * @return
+	 * @throws IOException
+	 */
+	public static SpectralLibraryIndex build(SpectralPeakListCollection spectralPeakLists, String signature) throws IOException {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+		write(spectralPeakLists, signature, out);
+		out.flush();
+		return new SpectralLibraryIndex(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * writes the index of the given peak lists to a temporary file moved to the given file
+	 *
+	 * @param spectralPeakLists
+	 * @param signature identifies the library the peak lists were read from
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(SpectralPeakListCollection spectralPeakLists, String signature, File file) throws IOException {
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try(java.io.FileOutputStream fileStream = new java.io.FileOutputStream(tempFile)) {
+			java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(fileStream));
+			write(spectralPeakLists, signature, out);
+			out.flush();
+		} catch(IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void write(SpectralPeakListCollection spectralPeakLists, String signature, java.io.DataOutputStream out) throws IOException {
+		int numberSpectra = spectralPeakLists.getSize();
+		int numberPeaks = 0;
+		java.util.TreeMap<Integer, java.util.ArrayList<Integer>> bins = new java.util.TreeMap<Integer, java.util.ArrayList<Integer>>();
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			for(int k = 0; k < peakList.getNumberElements(); k++) {
+				int bin = (int)Math.floor(peakList.getElement(k).getMass() / BIN_WIDTH);
+				java.util.ArrayList<Integer> postings = bins.get(bin);
+				if(postings == null) {
+					postings = new java.util.ArrayList<Integer>();
+					bins.put(bin, postings);
+				}
+				if(postings.isEmpty() || postings.get(postings.size() - 1) != i) postings.add(i);
+			}
+			numberPeaks += peakList.getNumberElements();
+		}
+		int numberPostings = 0;
+		for(java.util.ArrayList<Integer> postings : bins.values()) numberPostings += postings.size();
+		/*
+		 * fingerprints not given by the library are calculated once for each InChI
+		 */
+		long[][] fingerprints = new long[numberSpectra][];
+		java.util.HashMap<String, long[]> inchiToFingerprint = new java.util.HashMap<String, long[]>();
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			if(peakList.getFingerprint() != null) fingerprints[i] = TanimotoSimilarity.toPackedFingerprint(peakList.getFingerprint());
+			else if(peakList.getInchi() != null) {
+				if(!inchiToFingerprint.containsKey(peakList.getInchi())) {
+					long[] fingerprint = null;
+					try {
+						IAtomContainer con = MoleculeFunctions.getAtomContainerFromInChI(peakList.getInchi());
+						MoleculeFunctions.prepareAtomContainer(con, true);
+						fingerprint = TanimotoSimilarity.toPackedFingerprint(TanimotoSimilarity.calculateFingerPrint(con));
+					} catch(Exception e) {
+						logger.warn("No fingerprint for spectrum " + i + ": " + e.getMessage());
+					}
+					inchiToFingerprint.put(peakList.getInchi(), fingerprint);
+				}
+				fingerprints[i] = inchiToFingerprint.get(peakList.getInchi());
+			}
+		}
+
+		byte[] signatureBytes = signature.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(MAGIC_NUMBER);
+		out.writeInt(VERSION);
+		out.writeShort(signatureBytes.length);
+		out.write(signatureBytes);
+		out.writeDouble(BIN_WIDTH);
+		out.writeInt(numberSpectra);
+		out.writeInt(bins.size());
+		out.writeInt(numberPostings);
+		out.writeInt(numberPeaks);
+		/*
+		 * spectrum table with the annotations written to a separate buffer
+		 */
+		java.io.ByteArrayOutputStream annotationBytes = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream annotations = new java.io.DataOutputStream(annotationBytes);
+		int firstPeak = 0;
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			double squareSum = 0.0;
+			for(int k = 0; k < peakList.getNumberElements(); k++) {
+				double intensity = peakList.getElement(k).getRelativeIntensity();
+				squareSum += intensity * intensity;
+			}
+			out.writeInt(firstPeak);
+			out.writeInt(peakList.getNumberElements());
+			out.writeDouble(squareSum);
+			out.writeInt(annotations.size());
+			out.writeByte(peakList.getIsPositiveCharge() == null ? UNKNOWN_CHARGE : (peakList.getIsPositiveCharge() ? POSITIVE_CHARGE : NEGATIVE_CHARGE));
+			out.writeBoolean(fingerprints[i] != null);
+			firstPeak += peakList.getNumberElements();
+			annotations.writeDouble(peakList.getMeasuredPrecursorMass() == null ? 0.0 : peakList.getMeasuredPrecursorMass());
+			writeString(annotations, peakList.getInchi());
+			writeString(annotations, peakList.getInchikey1());
+			writeString(annotations, peakList.getSampleName());
+		}
+		for(Integer bin : bins.keySet()) out.writeInt(bin);
+		int postingOffset = 0;
+		for(java.util.ArrayList<Integer> postings : bins.values()) {
+			out.writeInt(postingOffset);
+			postingOffset += postings.size();
+		}
+		out.writeInt(postingOffset);
+		for(java.util.ArrayList<Integer> postings : bins.values())
+			for(Integer spectrum : postings) out.writeInt(spectrum);
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			for(int k = 0; k < peakList.getNumberElements(); k++) out.writeDouble(peakList.getElement(k).getMass());
+		}
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			for(int k = 0; k < peakList.getNumberElements(); k++) out.writeDouble(peakList.getElement(k).getAbsoluteIntensity());
+		}
+		for(int i = 0; i < numberSpectra; i++) {
+			SortedSimilarityTandemMassPeakList peakList = spectralPeakLists.getPeakList(i);
+			for(int k = 0; k < peakList.getNumberElements(); k++) out.writeDouble(peakList.getElement(k).getRelativeIntensity());
+		}
+		for(int i = 0; i < numberSpectra; i++)
+			for(int k = 0; k < TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH; k++) out.writeLong(fingerprints[i] == null ? 0l : fingerprints[i][k]);
+		annotations.flush();
+		out.write(annotationBytes.toByteArray());
+		//size saturates at Integer.MAX_VALUE
+		if(out.size() == Integer.MAX_VALUE) throw new IOException("Spectral library too large for an index");
+	}
+
+	private static void writeString(java.io.DataOutputStream out, String value) throws IOException {
+		if(value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private String readString(int position) {
+		int length = this.buffer.getInt(position);
+		if(length == -1) return null;
+		byte[] bytes = new byte[length];
+		ByteBuffer value = this.buffer.duplicate();
+		value.position(position + 4);
+		value.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * loads the index of the offline spectral database given by OfflineSpectralDatabaseFile (a file or a directory
+	 * of .mb files) or of the resource MoNA-export-LC-MS.mb
+	 *
+	 * the index is read from the SpectralLibraryIndexPath directory and only built if missing or outdated
+	 * indexes are shared by all processes of this JVM
+	 *
+	 * @param settings
+	 * @return
+	 * @throws Exception
+	 */
+	public static synchronized SpectralLibraryIndex getIndex(Settings settings) throws Exception {
+		Path offlineSpectralFilePath = null;
+		if(settings.get(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME) != null)
+			offlineSpectralFilePath = Paths.get((String)settings.get(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME));
+		java.util.List<Path> libraryFiles = null;
+		java.net.URL resource = null;
+		String source = null;
+		StringBuilder signature = new StringBuilder();
+		if(offlineSpectralFilePath != null && (Files.isRegularFile(offlineSpectralFilePath) || Files.isDirectory(offlineSpectralFilePath))) {
+			source = offlineSpectralFilePath.toAbsolutePath().normalize().toString();
+			if(Files.isRegularFile(offlineSpectralFilePath)) {
+				libraryFiles = new java.util.ArrayList<Path>();
+				libraryFiles.add(offlineSpectralFilePath);
+			}
+			else {
+				try(java.util.stream.Stream<Path> paths = Files.walk(offlineSpectralFilePath)) {
+					libraryFiles = new java.util.ArrayList<Path>();
+					java.util.Iterator<Path> it = paths.iterator();
+					while(it.hasNext()) {
+						Path path = it.next();
+						if(Files.isRegularFile(path) && path.getFileName().toString().endsWith(".mb")) libraryFiles.add(path);
+					}
+				}
+				java.util.Collections.sort(libraryFiles);
+			}
+			for(Path path : libraryFiles)
+				signature.append(path.toAbsolutePath()).append("|").append(Files.size(path)).append("|").append(Files.getLastModifiedTime(path).toMillis()).append("\n");
+		}
+		else {
+			resource = SpectralLibraryIndex.class.getResource(LIBRARY_RESOURCE);
+			if(resource == null) throw new Exception("Spectral library resource " + LIBRARY_RESOURCE.substring(1) + " not found");
+			source = resource.toString();
+			java.net.URLConnection connection = resource.openConnection();
+			connection.setUseCaches(false);
+			signature.append(source).append("|").append(connection.getContentLengthLong()).append("|").append(connection.getLastModified());
+			connection.getInputStream().close();
+		}
+		String signatureHash = sha1(signature.toString());
+		String sourceHash = sha1(source);
+		SpectralLibraryIndex index = indexes.get(sourceHash);
+		if(index != null && index.signature.equals(signatureHash)) return index;
+
+		//named by source and library version so rebuilt indexes never replace a mapped file
+		File indexFile = null;
+		if(settings.get(VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME) != null)
+			indexFile = new File((String)settings.get(VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME), sourceHash + "_" + signatureHash + FILE_EXTENSION);
+		index = null;
+		if(indexFile != null && indexFile.isFile()) {
+			try {
+				index = open(indexFile);
+				if(index.signature.equals(signatureHash)) logger.info("Load reference data from spectral library index " + indexFile);
+				else index = null;
+			} catch(IOException e) {
+				logger.warn(e.getMessage() + ". Spectral library index is built again.");
+				index = null;
+			}
+		}
+		if(index == null) {
+			MultipleTandemMassPeakListReader multiplePeakListReader = new MultipleTandemMassPeakListReader(settings);
+			SpectralPeakListCollection spectralPeakLists = null;
+			if(resource != null) {
+				logger.info("Load reference data from resource file \"" + LIBRARY_RESOURCE.substring(1) + "\".");
+				try(java.io.InputStream inStream = resource.openStream()) {
+					spectralPeakLists = multiplePeakListReader.readMultiple(inStream);
+				}
+			}
+			else if(Files.isRegularFile(offlineSpectralFilePath)) {
+				logger.info("Load reference data from file: " + offlineSpectralFilePath);
+				try(java.io.InputStream inStream = Files.newInputStream(offlineSpectralFilePath)) {
+					spectralPeakLists = multiplePeakListReader.readMultiple(inStream);
+				}
+			}
+			else {
+				logger.info("Load reference data from directory: " + offlineSpectralFilePath);
+				spectralPeakLists = multiplePeakListReader.readMultiple(libraryFiles);
+			}
+			if(indexFile != null) {
+				try {
+					if(!indexFile.getParentFile().isDirectory() && !indexFile.getParentFile().mkdirs()) throw new IOException("Could not create directory " + indexFile.getParentFile());
+					write(spectralPeakLists, signatureHash, indexFile);
+					index = open(indexFile);
+					logger.info("Stored spectral library index " + indexFile);
+					deleteOutdatedIndexFiles(indexFile.getParentFile(), sourceHash, indexFile);
+				} catch(IOException e) {
+					logger.warn(e.getMessage() + ". Spectral library index is kept in memory.");
+				}
+			}
+			if(index == null) index = build(spectralPeakLists, signatureHash);
+		}
+		indexes.put(sourceHash, index);
+		return index;
+	}
+
+	private static int readDefaultMaximumNumberCachedIndexes() {
+		String value = System.getProperty(MAXIMUM_NUMBER_CACHED_INDEXES_PROPERTY_NAME);
+		if(value != null) {
+			try {
+				int maximumNumber = Integer.parseInt(value.trim());
+				if(maximumNumber >= 0) return maximumNumber;
+			} catch(NumberFormatException e) {}
+			logger.warn("Invalid value for " + MAXIMUM_NUMBER_CACHED_INDEXES_PROPERTY_NAME + ": " + value);
+		}
+		return DEFAULT_MAXIMUM_NUMBER_CACHED_INDEXES;
+	}
+
+	/**
+	 * sets the maximum number of indexes kept by getIndex and removes least recently used indexes if needed
+	 * 0 disables the cache
+	 *
+	 * @param maximumNumber
+	 */
+	public static synchronized void setMaximumNumberCachedIndexes(int maximumNumber) {
+		if(maximumNumber < 0) throw new IllegalArgumentException("Maximum number must not be negative: " + maximumNumber);
+		maximumNumberCachedIndexes = maximumNumber;
+		java.util.Iterator<String> it = indexes.keySet().iterator();
+		while(indexes.size() > maximumNumber && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public static synchronized int getMaximumNumberCachedIndexes() {
+		return maximumNumberCachedIndexes;
+	}
+
+	public static synchronized int getNumberCachedIndexes() {
+		return indexes.size();
+	}
+
+	/*
+	 * removes index files of the given source built from other versions of the library
+	 * files still mapped (e.g. on Windows) are removed by a later call
+	 */
+	private static void deleteOutdatedIndexFiles(File directory, final String sourceHash, final File indexFile) {
+		File[] files = directory.listFiles(new java.io.FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().startsWith(sourceHash + "_") && file.getName().endsWith(FILE_EXTENSION) && !file.equals(indexFile);
+			}
+		});
+		if(files == null) return;
+		for(File file : files) {
+			try {
+				Files.deleteIfExists(file.toPath());
+			} catch(IOException e) {
+				logger.debug("Could not delete outdated spectral library index " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private static String sha1(String value) throws IOException {
+		try {
+			byte[] hash = java.security.MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(byte b : hash) hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch(java.security.NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public String getSignature() {
+		return this.signature;
+	}
+
+	public int getNumberSpectra() {
+		return this.numberSpectra;
+	}
+
+	/**
+	 * returns the charge of the given spectrum, null if not known
+	 *
+	 * @param spectrum
+	 * @return
+	 */
+	public Boolean getIsPositiveCharge(int spectrum) {
+		byte charge = this.buffer.get(this.spectraPosition + spectrum * SPECTRUM_RECORD_LENGTH + 20);
+		if(charge == UNKNOWN_CHARGE) return null;
+		return charge == POSITIVE_CHARGE;
+	}
+
+	/**
+	 * returns the spectra having a peak in a bin overlapping the mass window of one of the query peaks
+	 * all other spectra have a cosine similarity of 0
+	 *
+	 * @param peakList
+	 * @param mzppm
+	 * @param mzabs
+	 * @return
+	 */
+	public java.util.BitSet getCandidateSpectra(SortedTandemMassPeakList peakList, double mzppm, double mzabs) {
+		java.util.BitSet spectra = new java.util.BitSet(this.numberSpectra);
+		for(int i = 0; i < peakList.getNumberElements(); i++) {
+			double mass = peakList.getElement(i).getMass();
+			double dev = MathTools.calculateAbsoluteDeviation(mass, mzppm) + mzabs;
+			//one more bin on each side for rounded window limits
+			int lowerBin = (int)Math.floor((mass - dev) / this.binWidth) - 1;
+			int upperBin = (int)Math.floor((mass + dev) / this.binWidth) + 1;
+			for(int k = this.getFirstBinIndex(lowerBin); k < this.numberBins && this.buffer.getInt(this.binsPosition + k * 4) <= upperBin; k++) {
+				int last = this.buffer.getInt(this.postingOffsetsPosition + (k + 1) * 4);
+				for(int l = this.buffer.getInt(this.postingOffsetsPosition + k * 4); l < last; l++)
+					spectra.set(this.buffer.getInt(this.postingsPosition + l * 4));
+			}
+		}
+		return spectra;
+	}
+
+	private int getFirstBinIndex(int bin) {
+		int low = 0;
+		int high = this.numberBins - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(this.buffer.getInt(this.binsPosition + mid * 4) < bin) low = mid + 1;
+			else high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * cosine similarity of the given spectrum and the query peak list calculated like SortedTandemMassPeakList.cosineSimilarity
+	 * the matching library peak of a query peak is found by binary search
+	 *
+	 * @param spectrum
+	 * @param peakList
+	 * @param mzppm
+	 * @param mzabs
+	 * @return
+	 */
+	public double cosineSimilarity(int spectrum, SortedTandemMassPeakList peakList, double mzppm, double mzabs) {
+		int record = this.spectraPosition + spectrum * SPECTRUM_RECORD_LENGTH;
+		int firstPeak = this.buffer.getInt(record);
+		int numberPeaks = this.buffer.getInt(record + 4);
+		double bsquare = this.buffer.getDouble(record + 8);
+		double numerator = 0.0;
+		double asquare = 0.0;
+		for(int i = 0; i < peakList.getNumberElements(); i++) {
+			double mass = peakList.getElement(i).getMass();
+			double intensity1 = peakList.getElement(i).getRelativeIntensity();
+			asquare += intensity1 * intensity1;
+			double dev = MathTools.calculateAbsoluteDeviation(mass, mzppm);
+			dev += mzabs;
+			//first peak not too light for the query peak
+			int low = firstPeak;
+			int high = firstPeak + numberPeaks - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				if(mass <= this.buffer.getDouble(this.massesPosition + mid * 8) + dev) high = mid - 1;
+				else low = mid + 1;
+			}
+			if(low < firstPeak + numberPeaks && this.buffer.getDouble(this.massesPosition + low * 8) - dev <= mass)
+				numerator += intensity1 * this.buffer.getDouble(this.relativeIntensitiesPosition + low * 8);
+		}
+		if(asquare == 0.0 || bsquare == 0.0) return 0.0;
+		return MathTools.round(numerator / Math.sqrt(asquare * bsquare));
+	}
+
+	/**
+	 * returns the packed fingerprint of the given spectrum, null if it could not be calculated
+	 * 
+	 * @param spectrum
+	 * @return
+	 */
+	public long[] getFingerprint(int spectrum) {
+		if(this.buffer.get(this.spectraPosition + spectrum * SPECTRUM_RECORD_LENGTH + 21) == 0) return null;
+		long[] fingerprint = new long[TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH];
+		for(int k = 0; k < fingerprint.length; k++)
+			fingerprint[k] = this.buffer.getLong(this.fingerprintsPosition + (spectrum * fingerprint.length + k) * 8);
+		return fingerprint;
+	}
+
+	/**
+	 * creates the peak list of the given spectrum together with its fingerprint
+	 * peak lists are not kept by the index, each query creates the ones of its similar spectra
+	 *
+	 * @param spectrum
+	 * @return
+	 */
+	public SortedSimilarityTandemMassPeakList getPeakList(int spectrum) {
+		int record = this.spectraPosition + spectrum * SPECTRUM_RECORD_LENGTH;
+		int firstPeak = this.buffer.getInt(record);
+		int numberPeaks = this.buffer.getInt(record + 4);
+		int annotation = this.annotationsPosition + this.buffer.getInt(record + 16);
+		SortedSimilarityTandemMassPeakList peakList = new SortedSimilarityTandemMassPeakList(this.buffer.getDouble(annotation));
+		//added from the heaviest peak to keep the order of equal masses
+		for(int i = firstPeak + numberPeaks - 1; i >= firstPeak; i--)
+			peakList.addElement(new TandemMassPeak(this.buffer.getDouble(this.massesPosition + i * 8), this.buffer.getDouble(this.absoluteIntensitiesPosition + i * 8), this.buffer.getDouble(this.relativeIntensitiesPosition + i * 8)));
+		peakList.setIsPositiveCharge(this.getIsPositiveCharge(spectrum));
+		annotation += 8;
+		String[] values = new String[3];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = this.readString(annotation);
+			annotation += 4 + Math.max(0, this.buffer.getInt(annotation));
+		}
+		peakList.setInchi(values[0]);
+		peakList.setInchikey1(values[1]);
+		peakList.setSampleName(values[2]);
+		long[] fingerprint = this.getFingerprint(spectrum);
+		if(fingerprint != null) peakList.setFingerprint(TanimotoSimilarity.fromPackedFingerprint(fingerprint));
+		return peakList;
+	}
+
+}
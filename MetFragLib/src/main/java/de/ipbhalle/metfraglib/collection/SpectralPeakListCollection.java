@@ -1,9 +1,9 @@
 package de.ipbhalle.metfraglib.collection;
 
-import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
+import de.ipbhalle.metfraglib.fingerprint.PackedFingerprintMatrix;
 import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
 import de.ipbhalle.metfraglib.list.SortedSimilarityTandemMassPeakList;
 import de.ipbhalle.metfraglib.list.SortedTandemMassPeakList;
@@ -17,6 +17,13 @@ public class SpectralPeakListCollection {
 	protected double mzabs;
 	protected double mzppm;
 	protected double minimum_cosine_similarity_limit = 0.0;
+	//library spectra read from a spectral library index instead of peaklists
+	protected SpectralLibraryIndex index;
+	/*
+	 * packed fingerprints of the best spectrum of each InChIKey group and the similarity scores of the groups
+	 * in the order of inchikey1ToPeakList, created on first use
+	 */
+	protected volatile PackedFingerprintMatrix referenceFingerprints;
 	
 	public SpectralPeakListCollection(boolean isPositiveCharge, double mzabs, double mzppm) {
 		this.peaklists = new java.util.ArrayList<SortedSimilarityTandemMassPeakList>();
@@ -33,14 +40,31 @@ public class SpectralPeakListCollection {
 		this.minimum_cosine_similarity_limit = minimum_cosine_similarity_limit;
 	}
 	
+	/**
+	 * collection of the spectra of the given index
+	 * 
+	 * @param index
+	 * @param isPositiveCharge
+	 * @param mzabs
+	 * @param mzppm
+	 * @param minimum_cosine_similarity_limit
+	 */
+	public SpectralPeakListCollection(SpectralLibraryIndex index, boolean isPositiveCharge, double mzabs, double mzppm, double minimum_cosine_similarity_limit) {
+		this(isPositiveCharge, mzabs, mzppm, minimum_cosine_similarity_limit);
+		this.index = index;
+	}
+	
 	public void nullify() {
 		if(this.peaklists != null)
 			for(int i = 0; i < peaklists.size(); i++) {
 				if(this.peaklists.get(i) != null) this.peaklists.get(i).nullify();
 			}
 		this.peaklists = null;
+		//the index is shared
+		this.index = null;
 		this.inchikey1ToPeakList = null;
 		this.inchikey1ToSimScore = null;
+		this.referenceFingerprints = null;
 	}
 	
 	/**
@@ -55,49 +79,111 @@ public class SpectralPeakListCollection {
 	public void calculateSimilarities(SortedTandemMassPeakList peakList) {
 		this.inchikey1ToPeakList = new java.util.Hashtable<String, java.util.ArrayList<SortedSimilarityTandemMassPeakList>>();
 		this.inchikey1ToSimScore = new java.util.Hashtable<String, Double>();
+		this.referenceFingerprints = null;
+		if(this.index != null) {
+			//spectra without a peak close to the query peaks have a similarity of 0
+			java.util.BitSet spectra = this.index.getCandidateSpectra(peakList, this.mzppm, this.mzabs);
+			if(this.minimum_cosine_similarity_limit < 0.0) spectra.set(0, this.index.getNumberSpectra());
+			for(int i = spectra.nextSetBit(0); i >= 0; i = spectra.nextSetBit(i + 1)) {
+				Boolean isPositiveCharge = this.index.getIsPositiveCharge(i);
+				if(isPositiveCharge == null || isPositiveCharge != this.isPositiveCharge) continue;
+				double value = this.index.cosineSimilarity(i, peakList, this.mzppm, this.mzabs);
+				if(value > this.minimum_cosine_similarity_limit) this.addSimilarity(i, this.index.getPeakList(i), value);
+			}
+			return;
+		}
 		for(int i = 0; i < this.peaklists.size(); i++) {
 			if(this.peaklists.get(i).getIsPositiveCharge() == this.isPositiveCharge) {
 				double value = this.peaklists.get(i).cosineSimilarity(peakList, this.mzppm, this.mzabs);
 				if(value > this.minimum_cosine_similarity_limit) {
-					IBitFingerprint fp = null;
-					try {
-						if(this.peaklists.get(i).getFingerprint() == null) {
-							IAtomContainer con = MoleculeFunctions.getAtomContainerFromInChI(this.peaklists.get(i).getInchi());
-							MoleculeFunctions.prepareAtomContainer(con, true);
-							fp = TanimotoSimilarity.calculateFingerPrint(con);
-							this.peaklists.get(i).setFingerprint(fp);
-						}
-					} catch (Exception e) {
-						System.err.println("Spectrum " + i + " excluded during fingerprint calculation.");
-						e.printStackTrace();
-						continue;
-					}
-					if(this.inchikey1ToPeakList.containsKey(this.peaklists.get(i).getInchikey1())) {
-						if(this.inchikey1ToSimScore.get(this.peaklists.get(i).getInchikey1()) < value) {
-							this.inchikey1ToPeakList.get(this.peaklists.get(i).getInchikey1()).add(0, this.peaklists.get(i));
-							this.inchikey1ToSimScore.put(this.peaklists.get(i).getInchikey1(), value);
-						}
-						else {
-							this.inchikey1ToPeakList.get(this.peaklists.get(i).getInchikey1()).add(this.peaklists.get(i));
-						}
-					}
-					else {
-						java.util.ArrayList<SortedSimilarityTandemMassPeakList> newPeakListArrayList = new java.util.ArrayList<SortedSimilarityTandemMassPeakList>();
-						newPeakListArrayList.add(this.peaklists.get(i));
-						this.inchikey1ToPeakList.put(this.peaklists.get(i).getInchikey1(), newPeakListArrayList);
-						this.inchikey1ToSimScore.put(this.peaklists.get(i).getInchikey1(), value);
-					}
+					this.calculateMissingFingerprint(i, this.peaklists.get(i));
+					this.addSimilarity(i, this.peaklists.get(i), value);
 				}
 			}
 		}
 	}
 	
+	/*
+	 * fingerprints of the own peak lists not given by the library file are calculated from the InChI on first use
+	 * spectra of the index come with the fingerprint calculated when building the index
+	 */
+	protected void calculateMissingFingerprint(int i, SortedSimilarityTandemMassPeakList spectrum) {
+		if(spectrum.getFingerprint() != null) return;
+		try {
+			IAtomContainer con = MoleculeFunctions.getAtomContainerFromInChI(spectrum.getInchi());
+			MoleculeFunctions.prepareAtomContainer(con, true);
+			spectrum.setFingerprint(TanimotoSimilarity.calculateFingerPrint(con));
+		} catch (Exception e) {
+			System.err.println("Spectrum " + i + " excluded during fingerprint calculation.");
+			e.printStackTrace();
+		}
+	}
+	
+	/*
+	 * spectra without fingerprint are excluded
+	 */
+	protected void addSimilarity(int i, SortedSimilarityTandemMassPeakList spectrum, double value) {
+		if(spectrum.getFingerprint() == null) return;
+		if(this.inchikey1ToPeakList.containsKey(spectrum.getInchikey1())) {
+			if(this.inchikey1ToSimScore.get(spectrum.getInchikey1()) < value) {
+				this.inchikey1ToPeakList.get(spectrum.getInchikey1()).add(0, spectrum);
+				this.inchikey1ToSimScore.put(spectrum.getInchikey1(), value);
+			}
+			else {
+				this.inchikey1ToPeakList.get(spectrum.getInchikey1()).add(spectrum);
+			}
+		}
+		else {
+			java.util.ArrayList<SortedSimilarityTandemMassPeakList> newPeakListArrayList = new java.util.ArrayList<SortedSimilarityTandemMassPeakList>();
+			newPeakListArrayList.add(spectrum);
+			this.inchikey1ToPeakList.put(spectrum.getInchikey1(), newPeakListArrayList);
+			this.inchikey1ToSimScore.put(spectrum.getInchikey1(), value);
+		}
+	}
+	
+	/**
+	 * Tanimoto similarities of the given packed fingerprint to the best spectrum of each InChIKey group
+	 * in the order of getReferenceSimilarityScores
+	 * 
+	 * @param fingerprint packed by TanimotoSimilarity.toPackedFingerprint
+	 * @return
+	 */
+	public double[] calculateReferenceSimilarities(long[] fingerprint) {
+		return this.getReferenceFingerprints().calculateSimilarities(fingerprint);
+	}
+	
+	/**
+	 * similarity scores of all InChIKey groups
+	 * 
+	 * @return
+	 */
+	public double[] getReferenceSimilarityScores() {
+		return this.getReferenceFingerprints().getScores();
+	}
+	
+	protected PackedFingerprintMatrix getReferenceFingerprints() {
+		PackedFingerprintMatrix referenceFingerprints = this.referenceFingerprints;
+		if(referenceFingerprints != null) return referenceFingerprints;
+		synchronized(this) {
+			if(this.referenceFingerprints != null) return this.referenceFingerprints;
+			referenceFingerprints = new PackedFingerprintMatrix(this.inchikey1ToPeakList.size());
+			java.util.Enumeration<String> it = this.inchikey1ToPeakList.keys();
+			for(int i = 0; it.hasMoreElements(); i++) {
+				String inchikey1 = it.nextElement();
+				referenceFingerprints.setRow(i, this.inchikey1ToPeakList.get(inchikey1).get(0).getFingerprint(), this.inchikey1ToSimScore.get(inchikey1));
+			}
+			this.referenceFingerprints = referenceFingerprints;
+			return referenceFingerprints;
+		}
+	}
+	
 	public java.util.Hashtable<String, java.util.ArrayList<SortedSimilarityTandemMassPeakList>> getInchikey1ToPeakList() {
 		return inchikey1ToPeakList;
 	}
 
 	public void setInchikey1ToPeakList(java.util.Hashtable<String, java.util.ArrayList<SortedSimilarityTandemMassPeakList>> inchikey1ToPeakList) {
 		this.inchikey1ToPeakList = inchikey1ToPeakList;
+		this.referenceFingerprints = null;
 	}
 
 	public java.util.Hashtable<String, Double> getInchikey1ToSimScore() {
@@ -106,6 +192,7 @@ public class SpectralPeakListCollection {
 
 	public void setInchikey1ToSimScore(java.util.Hashtable<String, Double> inchikey1ToSimScore) {
 		this.inchikey1ToSimScore = inchikey1ToSimScore;
+		this.referenceFingerprints = null;
 	}
 
 	public void addPeakList(SortedSimilarityTandemMassPeakList peakList) {
@@ -113,10 +200,12 @@ public class SpectralPeakListCollection {
 	}
 	
 	public SortedSimilarityTandemMassPeakList getPeakList(int index) {
+		if(this.index != null) return this.index.getPeakList(index);
 		return this.peaklists.get(index);
 	}
 	
 	public int getSize() {
+		if(this.index != null) return this.index.getNumberSpectra();
 		if(this.peaklists == null) return 0;
 		return this.peaklists.size();
 	}
@@ -8,6 +8,7 @@ import de.ipbhalle.metfraglib.exceptions.MultipleHeadersFoundInInputDatabaseExce
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.molecularformula.ByteMolecularFormula;
+import de.ipbhalle.metfraglib.molecularformula.MolecularFormulaKey;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
 
@@ -35,6 +36,9 @@ public abstract class AbstractFileDatabase extends AbstractDatabase {
 	protected boolean formulaSearch = false;
 	
 	protected ByteMolecularFormula formula;
+	protected MolecularFormulaKey formulaKey;
+	//formula search results of already seen candidate formulas -> each distinct formula is parsed once
+	protected java.util.HashMap<String, Boolean> formulaMatches;
 	protected String[] searchIdentifiers;
 	protected Double monoisotopicMass;
 	protected Double relativeMassDeviation;
@@ -44,6 +48,7 @@ public abstract class AbstractFileDatabase extends AbstractDatabase {
 	
 	protected java.util.ArrayList<ICandidate> candidates;
 	protected java.util.ArrayList<String> identifiers;
+	protected CandidateIdentifierIndex identifierIndex = new CandidateIdentifierIndex();
 	
 	public AbstractFileDatabase(Settings settings) {
 		super(settings);
@@ -64,6 +69,8 @@ public abstract class AbstractFileDatabase extends AbstractDatabase {
 		if (this.settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME) != null) {
 			this.formulaSearch = true;
 			this.formula = new ByteMolecularFormula((String) settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME));
+			this.formulaKey = MolecularFormulaKey.parse((String) settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME));
+			this.formulaMatches = new java.util.HashMap<String, Boolean>();
 			return this.getCandidateIdentifiers((String) settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME));
 		}
 		if (this.settings.get(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME) != null) {
@@ -90,14 +97,14 @@ public abstract class AbstractFileDatabase extends AbstractDatabase {
 			}
 			return false;
 		} else if(this.formulaSearch) {
-			ByteMolecularFormula currentFormula = null;
-			try {
-				currentFormula = new ByteMolecularFormula((String)precursorCandidate.getProperty(VariableNames.MOLECULAR_FORMULA_NAME));
-			} catch (Exception e) {
-				e.printStackTrace();
+			String currentFormula = (String)precursorCandidate.getProperty(VariableNames.MOLECULAR_FORMULA_NAME);
+			if(currentFormula == null) return false;
+			Boolean matches = this.formulaMatches.get(currentFormula);
+			if(matches == null) {
+				matches = this.formulaKey.equals(MolecularFormulaKey.parseOrNull(currentFormula));
+				this.formulaMatches.put(currentFormula, matches);
 			}
-			if (this.formula.compareTo(currentFormula)) return true;
-			return false;
+			return matches;
 		} else if(this.massSearch) {
 			double currentMonoisotopicMass = (Double) precursorCandidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME);
 			if (this.lowerLimit <= currentMonoisotopicMass && currentMonoisotopicMass <= this.upperLimit)
@@ -162,11 +169,7 @@ public abstract class AbstractFileDatabase extends AbstractDatabase {
 	 * @return
 	 */
 	protected int indexOfIdentifier(String identifier) {
-		for (int i = 0; i < this.candidates.size(); i++) {
-			if (this.candidates.get(i).getIdentifier().equals(identifier))
-				return i;
-		}
-		return -1;
+		return this.identifierIndex.indexOf(this.candidates, identifier);
 	}
 	
 }
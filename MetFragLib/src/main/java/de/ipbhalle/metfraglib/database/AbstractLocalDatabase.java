@@ -1,17 +1,36 @@
 package de.ipbhalle.metfraglib.database;
 
+import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
+import de.ipbhalle.metfraglib.additionals.MathTools;
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.exceptions.DatabaseIdentifierNotFoundException;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidateCursor;
+import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.process.ProcessingStatus;
 import de.ipbhalle.metfraglib.settings.Settings;
 
 public abstract class AbstractLocalDatabase extends AbstractDatabase {
 
+	/*
+	 * maximum number of identifiers bound to one IN (...) query
+	 */
+	protected static final int MAXIMUM_IDENTIFIERS_PER_QUERY = 1024;
+
 	protected java.sql.Driver driver;
 	protected java.sql.Connection databaseConnection;
 	protected java.sql.Statement statement;
-	
+
 	protected String DATABASE_NAME;
 	protected String TABLE_NAME;
 	protected String PORT;
@@ -25,13 +44,13 @@ public abstract class AbstractLocalDatabase extends AbstractDatabase {
 	protected String CID_COLUMN_NAME;
 	protected String SMILES_COLUMN_NAME;
 	protected String COMPOUND_NAME_COLUMN_NAME;
-	
+
 	protected String db_user;
 	protected String db_password;
 
 	public AbstractLocalDatabase(Settings settings) {
 		super(settings);
-		this.DATABASE_NAME 			= 	(String) settings.get( 	VariableNames.LOCAL_DATABASE_NAME					); 
+		this.DATABASE_NAME 			= 	(String) settings.get( 	VariableNames.LOCAL_DATABASE_NAME					);
 		this.TABLE_NAME				=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_COMPOUND_TABLE_NAME	);
 		this.PORT					=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_PORT_NUMBER_NAME		);
 		this.SERVER					=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_SERVER_IP_NAME			);
@@ -43,11 +62,324 @@ public abstract class AbstractLocalDatabase extends AbstractDatabase {
 		this.CID_COLUMN_NAME		=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_CID_COLUMN_NAME		);
 		this.SMILES_COLUMN_NAME		=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_SMILES_COLUMN_NAME		);
 		this.COMPOUND_NAME_COLUMN_NAME		=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_COMPOUND_NAME_COLUMN_NAME		);
-		
+
 		this.db_user				=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_USER_NAME				);
 		this.db_password			=	(String) settings.get( 	VariableNames.LOCAL_DATABASE_PASSWORD_NAME			);
 	}
 
+	/**
+	 * jdbc url of the database, used as key of the shared connection pool
+	 *
+	 * @return
+	 */
+	protected String getJdbcUrl() {
+		return null;
+	}
+
+	/**
+	 * the pool of the jdbc url given by the settings or by getJdbcUrl()
+	 *
+	 * @return
+	 */
+	protected JdbcConnectionPool getConnectionPool() {
+		String jdbcUrl = (String)this.settings.get(VariableNames.LOCAL_DATABASE_JDBC_URL_NAME);
+		if(jdbcUrl == null) jdbcUrl = this.getJdbcUrl();
+		return JdbcConnectionPool.getPool(jdbcUrl, this.db_user, this.db_password,
+				(Integer)this.settings.get(VariableNames.LOCAL_DATABASE_MAXIMUM_CONNECTIONS_NAME));
+	}
+
+	/**
+	 * reads the rows of a query result one by one
+	 */
+	protected interface ResultSetReader {
+		public void read(ResultSet resultSet) throws SQLException;
+	}
+
+	/**
+	 * runs the prepared query with the given parameters on a pooled connection
+	 * and passes each result row to the reader
+	 *
+	 * @param query
+	 * @param parameters
+	 * @param reader
+	 * @throws SQLException
+	 */
+	protected void executeQuery(String query, Object[] parameters, ResultSetReader reader) throws SQLException {
+		logger.trace(query);
+		JdbcConnectionPool pool = this.getConnectionPool();
+		Connection connection = pool.getConnection();
+		try {
+			PreparedStatement statement = connection.prepareStatement(query);
+			try {
+				for(int i = 0; i < parameters.length; i++) statement.setObject(i + 1, parameters[i]);
+				ResultSet resultSet = statement.executeQuery();
+				try {
+					while(resultSet.next()) reader.read(resultSet);
+				} finally {
+					resultSet.close();
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			pool.invalidateConnection(connection);
+			throw e;
+		} catch (RuntimeException e) {
+			pool.invalidateConnection(connection);
+			throw e;
+		}
+		pool.releaseConnection(connection);
+	}
+
+	/**
+	 * runs the query on a pooled connection and passes each result row to the reader
+	 * used by databases building their queries themselves
+	 *
+	 * @param query
+	 * @param reader
+	 * @return false if the query failed
+	 */
+	protected boolean submitQuery(String query, ResultSetReader reader) {
+		try {
+			this.executeQuery(query, new Object[0], reader);
+			return true;
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @param condition
+	 * @param parameters
+	 * @return values of the identifier column of the rows matching the condition
+	 */
+	protected ArrayList<String> queryIdentifiersWhere(String condition, Object... parameters) {
+		final ArrayList<String> identifiers = new ArrayList<String>();
+		try {
+			this.executeQuery("SELECT " + this.CID_COLUMN_NAME + " FROM " + this.TABLE_NAME + " WHERE " + condition, parameters, new ResultSetReader() {
+				public void read(ResultSet resultSet) throws SQLException {
+					identifiers.add(resultSet.getString(CID_COLUMN_NAME));
+				}
+			});
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return identifiers;
+	}
+
+	/**
+	 *
+	 * @param query
+	 * @param parameters
+	 * @return candidates created from the result rows in the order of the result
+	 */
+	protected CandidateList queryCandidates(String query, Object... parameters) {
+		final CandidateList candidates = new CandidateList();
+		try {
+			this.executeQuery(query, parameters, new ResultSetReader() {
+				public void read(ResultSet resultSet) throws SQLException {
+					candidates.addElement(getCandidateFromRow(resultSet));
+				}
+			});
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return candidates;
+	}
+
+	/**
+	 * columns read by getCandidateFromRow
+	 *
+	 * @return
+	 */
+	protected String getCandidateFields() {
+		String fields = this.CID_COLUMN_NAME + "," + this.INCHI_COLUMN_NAME + "," + this.INCHIKEY1_COLUMN_NAME
+				+ "," + this.INCHIKEY2_COLUMN_NAME + "," + this.SMILES_COLUMN_NAME + "," + this.MASS_COLUMN_NAME;
+		if(this.hasCompoundNameColumn()) fields += "," + this.COMPOUND_NAME_COLUMN_NAME;
+		return fields;
+	}
+
+	/**
+	 * creates the candidate of the current result row
+	 *
+	 * @param resultSet
+	 * @return
+	 * @throws SQLException
+	 */
+	protected ICandidate getCandidateFromRow(ResultSet resultSet) throws SQLException {
+		String inchi = resultSet.getString(this.INCHI_COLUMN_NAME);
+		ICandidate candidate = new TopDownPrecursorCandidate(inchi, resultSet.getString(this.CID_COLUMN_NAME));
+		candidate.setProperty(VariableNames.INCHI_KEY_1_NAME, resultSet.getString(this.INCHIKEY1_COLUMN_NAME));
+		candidate.setProperty(VariableNames.INCHI_KEY_2_NAME, resultSet.getString(this.INCHIKEY2_COLUMN_NAME));
+		candidate.setProperty(VariableNames.MOLECULAR_FORMULA_NAME, inchi.split("/")[1]);
+		candidate.setProperty(VariableNames.MONOISOTOPIC_MASS_NAME, resultSet.getDouble(this.MASS_COLUMN_NAME));
+		candidate.setProperty(VariableNames.SMILES_NAME, resultSet.getString(this.SMILES_COLUMN_NAME));
+		String name = this.hasCompoundNameColumn() ? resultSet.getString(this.COMPOUND_NAME_COLUMN_NAME) : null;
+		candidate.setProperty(VariableNames.COMPOUND_NAME_NAME, name != null ? name : "NA");
+		return candidate;
+	}
+
+	protected boolean hasCompoundNameColumn() {
+		return this.COMPOUND_NAME_COLUMN_NAME != null && this.COMPOUND_NAME_COLUMN_NAME.length() != 0;
+	}
+
+	/**
+	 * fetches all candidates within the mass window in a single query
+	 *
+	 * @param monoisotopicMass
+	 * @param relativeMassDeviation
+	 * @return
+	 */
+	public CandidateList getCandidatesInMassWindow(double monoisotopicMass, double relativeMassDeviation) {
+		double error = MathTools.calculateAbsoluteDeviation(monoisotopicMass, relativeMassDeviation);
+		return this.queryCandidates("SELECT " + this.getCandidateFields() + " FROM " + this.TABLE_NAME
+				+ " WHERE " + this.MASS_COLUMN_NAME + " BETWEEN ? AND ?", monoisotopicMass - error, monoisotopicMass + error);
+	}
+
+	/**
+	 * fetches the candidates with the given molecular formula in a single query
+	 *
+	 * @param molecularFormula
+	 * @return
+	 */
+	public CandidateList getCandidatesByFormula(String molecularFormula) {
+		return this.queryCandidates("SELECT " + this.getCandidateFields() + " FROM " + this.TABLE_NAME
+				+ " WHERE " + this.FORMULA_COLUMN_NAME + " = ?", molecularFormula);
+	}
+
+	/**
+	 * fetches the candidates with the given identifiers in chunks of bound IN (...) lists
+	 *
+	 * @param identifiers
+	 * @return candidates in the database order of each chunk
+	 */
+	protected CandidateList queryCandidatesByIdentifiers(List<String> identifiers) {
+		CandidateList candidates = new CandidateList();
+		for(int i = 0; i < identifiers.size(); i += MAXIMUM_IDENTIFIERS_PER_QUERY) {
+			Object[] parameters = this.getIdentifierParameters(identifiers.subList(i, Math.min(i + MAXIMUM_IDENTIFIERS_PER_QUERY, identifiers.size())));
+			CandidateList chunk = this.queryCandidates("SELECT " + this.getCandidateFields() + " FROM " + this.TABLE_NAME
+					+ " WHERE " + this.CID_COLUMN_NAME + " IN (" + getPlaceholders(parameters.length) + ")", parameters);
+			for(int j = 0; j < chunk.getNumberElements(); j++) candidates.addElement(chunk.getElement(j));
+		}
+		return candidates;
+	}
+
+	/**
+	 * the number of parameters is rounded up to the next power of two by repeating the last identifier
+	 * so that the database sees only a few distinct statements
+	 *
+	 * @param identifiers
+	 * @return
+	 */
+	protected Object[] getIdentifierParameters(List<String> identifiers) {
+		int numberParameters = 1;
+		while(numberParameters < identifiers.size()) numberParameters <<= 1;
+		Object[] parameters = new Object[numberParameters];
+		for(int i = 0; i < numberParameters; i++)
+			parameters[i] = identifiers.get(Math.min(i, identifiers.size() - 1));
+		return parameters;
+	}
+
+	protected static String getPlaceholders(int number) {
+		StringBuilder placeholders = new StringBuilder(number * 2);
+		for(int i = 0; i < number; i++) {
+			if(i != 0) placeholders.append(",");
+			placeholders.append("?");
+		}
+		return placeholders.toString();
+	}
+
+	/**
+	 * opens a cursor over the candidates of the search defined in the settings
+	 * precedence of identifiers, formula and mass is the same as for getCandidateIdentifiers()
+	 * rows are fetched in batches of the stream buffer size while the cursor is read
+	 *
+	 * @return
+	 */
+	public ICandidateCursor getCandidateCursor() {
+		if(this.settings.containsKey(VariableNames.PROCESS_STATUS_OBJECT_NAME) && this.settings.get(VariableNames.PROCESS_STATUS_OBJECT_NAME) != null)
+			((ProcessingStatus)this.settings.get(VariableNames.PROCESS_STATUS_OBJECT_NAME)).setRetrievingStatusString("Retrieving Candidates");
+		String select = "SELECT " + this.getCandidateFields() + " FROM " + this.TABLE_NAME + " WHERE ";
+		ArrayList<String> queries = new ArrayList<String>();
+		ArrayList<Object[]> parameters = new ArrayList<Object[]>();
+		if(this.settings.get(VariableNames.PRECURSOR_DATABASE_IDS_NAME) != null) {
+			List<String> identifiers = Arrays.asList((String[])this.settings.get(VariableNames.PRECURSOR_DATABASE_IDS_NAME));
+			for(int i = 0; i < identifiers.size(); i += MAXIMUM_IDENTIFIERS_PER_QUERY) {
+				Object[] chunk = this.getIdentifierParameters(identifiers.subList(i, Math.min(i + MAXIMUM_IDENTIFIERS_PER_QUERY, identifiers.size())));
+				queries.add(select + this.CID_COLUMN_NAME + " IN (" + getPlaceholders(chunk.length) + ")");
+				parameters.add(chunk);
+			}
+		}
+		else if(this.settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME) != null) {
+			queries.add(select + this.FORMULA_COLUMN_NAME + " = ?");
+			parameters.add(new Object[] {this.settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME)});
+		}
+		else if(this.settings.get(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME) != null) {
+			double monoisotopicMass = (Double)this.settings.get(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME);
+			double error = MathTools.calculateAbsoluteDeviation(monoisotopicMass, (Double)this.settings.get(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME));
+			queries.add(select + this.MASS_COLUMN_NAME + " BETWEEN ? AND ?");
+			parameters.add(new Object[] {monoisotopicMass - error, monoisotopicMass + error});
+		}
+		return new SQLCandidateCursor(this, queries.toArray(new String[queries.size()]), parameters.toArray(new Object[parameters.size()][]),
+				(Integer)this.settings.get(VariableNames.STREAM_CANDIDATES_BUFFER_SIZE_NAME));
+	}
+
+	/**
+	 * returns the candidates in the order of the given identifiers
+	 *
+	 * @param identifiers
+	 * @return
+	 */
+	protected CandidateList getCandidatesByIdentifiers(ArrayList<String> identifiers) {
+		CandidateList queriedCandidates = this.queryCandidatesByIdentifiers(identifiers);
+		HashMap<String, ICandidate> identifierToCandidate = new HashMap<String, ICandidate>();
+		for(int i = 0; i < queriedCandidates.getNumberElements(); i++)
+			identifierToCandidate.put(queriedCandidates.getElement(i).getIdentifier(), queriedCandidates.getElement(i));
+		CandidateList candidates = new CandidateList();
+		for(String identifier : identifiers) {
+			ICandidate candidate = identifierToCandidate.get(identifier);
+			if(candidate != null) candidates.addElement(candidate);
+			else logger.warn("Candidate identifier " + identifier + " not found.");
+		}
+		return candidates;
+	}
+
+	/**
+	 * only identifiers are fetched, candidates are created by getCandidateByIdentifier
+	 * so that streamed processes fetch them batch-wise
+	 */
+	public ArrayList<String> getCandidateIdentifiers(double monoisotopicMass, double relativeMassDeviation) {
+		double error = MathTools.calculateAbsoluteDeviation(monoisotopicMass, relativeMassDeviation);
+		return this.queryIdentifiersWhere(this.MASS_COLUMN_NAME + " BETWEEN ? AND ?", monoisotopicMass - error, monoisotopicMass + error);
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(String molecularFormula) {
+		return this.queryIdentifiersWhere(this.FORMULA_COLUMN_NAME + " = ?", molecularFormula);
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(ArrayList<String> identifiers) {
+		ArrayList<String> foundIdentifiers = new ArrayList<String>();
+		for(int i = 0; i < identifiers.size(); i += MAXIMUM_IDENTIFIERS_PER_QUERY) {
+			Object[] parameters = this.getIdentifierParameters(identifiers.subList(i, Math.min(i + MAXIMUM_IDENTIFIERS_PER_QUERY, identifiers.size())));
+			foundIdentifiers.addAll(this.queryIdentifiersWhere(this.CID_COLUMN_NAME + " IN (" + getPlaceholders(parameters.length) + ")", parameters));
+		}
+		return foundIdentifiers;
+	}
+
+	public ICandidate getCandidateByIdentifier(String identifier) throws DatabaseIdentifierNotFoundException {
+		ArrayList<String> identifiers = new ArrayList<String>();
+		identifiers.add(identifier);
+		CandidateList candidates = this.getCandidatesByIdentifiers(identifiers);
+		if(candidates.getNumberElements() == 0) throw new DatabaseIdentifierNotFoundException(identifier);
+		return candidates.getElement(0);
+	}
+
+	public CandidateList getCandidateByIdentifier(ArrayList<String> identifiers) {
+		if(identifiers.size() == 0) return new CandidateList();
+		return this.getCandidatesByIdentifiers(identifiers);
+	}
 
 	public void nullify() {
 		try {
@@ -61,5 +393,5 @@ public abstract class AbstractLocalDatabase extends AbstractDatabase {
 			e.printStackTrace();
 		}
 	}
-	
+
 }
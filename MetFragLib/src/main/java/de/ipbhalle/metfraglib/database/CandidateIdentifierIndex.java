@@ -0,0 +1,53 @@
+package de.ipbhalle.metfraglib.database;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+
+/**
+ * hash index from candidate identifier to the position in a candidate list
+ * 
+ * the index is built on the first lookup after the candidate list was (re)loaded
+ * so that fetching n candidates by identifier runs in linear time
+ * if an identifier occurs more than once the first position is returned
+ * 
+ * @author cruttkie
+ *
+ */
+public class CandidateIdentifierIndex {
+
+	private java.util.List<? extends ICandidate> candidates;
+	private int numberCandidates;
+	private java.util.HashMap<String, Integer> identifierToIndex;
+	
+	/**
+	 * 
+	 * @param candidates
+	 * @param identifier
+	 * @return position of the candidate with the given identifier or -1 if not found
+	 */
+	public int indexOf(java.util.List<? extends ICandidate> candidates, String identifier) {
+		if(candidates == null) return -1;
+		if(this.candidates != candidates || this.numberCandidates != candidates.size()) 
+			this.build(candidates);
+		Integer index = this.identifierToIndex.get(identifier);
+		if(index == null) return -1;
+		return index;
+	}
+	
+	private void build(java.util.List<? extends ICandidate> candidates) {
+		this.identifierToIndex = new java.util.HashMap<String, Integer>((int)(candidates.size() / 0.75) + 1);
+		for(int i = 0; i < candidates.size(); i++) {
+			String identifier = candidates.get(i).getIdentifier();
+			if(!this.identifierToIndex.containsKey(identifier))
+				this.identifierToIndex.put(identifier, i);
+		}
+		this.candidates = candidates;
+		this.numberCandidates = candidates.size();
+	}
+	
+	public void clear() {
+		this.candidates = null;
+		this.numberCandidates = 0;
+		this.identifierToIndex = null;
+	}
+	
+}
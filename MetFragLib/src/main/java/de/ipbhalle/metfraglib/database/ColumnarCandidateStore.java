@@ -0,0 +1,625 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.molecularformula.MolecularFormulaKey;
+import de.ipbhalle.metfraglib.parameter.ClassNames;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.precursor.MolecularGraph;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * columnar candidate file read by LocalColumnarDatabase
+ *
+ * candidates are sorted by monoisotopic mass and split into blocks of a fixed number of rows
+ * each column of a block is deflated separately and the block directory at the end of the file
+ * holds the minimum and maximum mass of each block together with the position of its columns
+ *
+ * opening the file only reads the header and the block directory, a mass query inflates the mass column
+ * of the blocks overlapping the mass window and the remaining columns only of blocks containing hits
+ * formula and identifier queries inflate their column of all blocks
+ *
+ * of the remaining columns only the structure columns (identifier, InChI, SMILES, molecular formula, mass
+ * and molecular graph) are inflated by default, other property columns only if requested by setPropertyColumns
+ *
+ * header: magic number, version, number candidates, block size, columns (name and type)
+ * followed by the column data of all blocks, the block directory and the position of the directory (long)
+ *
+ * any LocalPSV, LocalCSV, LocalSDF or zipped PSV database can be converted by
+ * java de.ipbhalle.metfraglib.database.ColumnarCandidateStore LocalZippedPSV input.psv.zip output.mfc
+ * the optional last argument true adds the precomputed molecular graph (MolecularGraph column) of each candidate
+ *
+ * @author cruttkie
+ *
+ */
+public class ColumnarCandidateStore {
+
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	private static final int MAGIC_NUMBER = 0x4D464343;
+	private static final int VERSION = 1;
+	private static final byte STRING_COLUMN = 0;
+	private static final byte DOUBLE_COLUMN = 1;
+	private static final byte INTEGER_COLUMN = 2;
+	/*
+	 * index of each candidate in the converted input file used to return candidates in the input order
+	 */
+	private static final String INPUT_INDEX_COLUMN = "#InputIndex";
+	/*
+	 * columns always read for candidates as they are needed to create and process them
+	 */
+	private static final String[] STRUCTURE_COLUMNS = {VariableNames.IDENTIFIER_NAME, VariableNames.INCHI_NAME, VariableNames.SMILES_NAME,
+		VariableNames.MOLECULAR_FORMULA_NAME, VariableNames.MONOISOTOPIC_MASS_NAME, VariableNames.MOLECULAR_GRAPH_NAME};
+
+	private final FileChannel channel;
+	private final int numberCandidates;
+	private final int blockSize;
+	private final String[] columnNames;
+	private final byte[] columnTypes;
+	private final int[] numberBlockRows;
+	private final double[] minimumMasses;
+	private final double[] maximumMasses;
+	//position, compressed and uncompressed length of each column of each block
+	private final long[][] columnPositions;
+	private final int[][] compressedLengths;
+	private final int[][] uncompressedLengths;
+	private final int massColumn;
+	private final int formulaColumn;
+	private final int identifierColumn;
+	private final int inputIndexColumn;
+	//columns inflated for blocks with hits
+	private final boolean[] readColumns;
+	private final java.util.concurrent.atomic.AtomicInteger numberInflatedColumns = new java.util.concurrent.atomic.AtomicInteger();
+
+	private ColumnarCandidateStore(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = this.read(0, (int)Math.min(channel.size(), 1 << 16));
+		if(header.getInt() != MAGIC_NUMBER || header.getInt() != VERSION) throw new IOException("Unknown columnar candidate format");
+		this.numberCandidates = header.getInt();
+		this.blockSize = header.getInt();
+		int numberColumns = header.getInt();
+		this.columnNames = new String[numberColumns];
+		this.columnTypes = new byte[numberColumns];
+		for(int i = 0; i < numberColumns; i++) {
+			byte[] name = new byte[header.getShort()];
+			header.get(name);
+			this.columnNames[i] = new String(name, StandardCharsets.UTF_8);
+			this.columnTypes[i] = header.get();
+		}
+		this.massColumn = this.getColumnIndex(VariableNames.MONOISOTOPIC_MASS_NAME);
+		this.formulaColumn = this.getColumnIndex(VariableNames.MOLECULAR_FORMULA_NAME);
+		this.identifierColumn = this.getColumnIndex(VariableNames.IDENTIFIER_NAME);
+		this.inputIndexColumn = this.getColumnIndex(INPUT_INDEX_COLUMN);
+		if(this.massColumn == -1 || this.identifierColumn == -1 || this.inputIndexColumn == -1) throw new IOException("Corrupt columnar candidate file");
+		this.readColumns = new boolean[numberColumns];
+		this.setPropertyColumns(new String[0]);
+
+		long directoryPosition = this.read(channel.size() - 8, 8).getLong();
+		ByteBuffer directory = this.read(directoryPosition, (int)(channel.size() - 8 - directoryPosition));
+		int numberBlocks = directory.getInt();
+		this.numberBlockRows = new int[numberBlocks];
+		this.minimumMasses = new double[numberBlocks];
+		this.maximumMasses = new double[numberBlocks];
+		this.columnPositions = new long[numberBlocks][numberColumns];
+		this.compressedLengths = new int[numberBlocks][numberColumns];
+		this.uncompressedLengths = new int[numberBlocks][numberColumns];
+		for(int i = 0; i < numberBlocks; i++) {
+			this.numberBlockRows[i] = directory.getInt();
+			this.minimumMasses[i] = directory.getDouble();
+			this.maximumMasses[i] = directory.getDouble();
+			for(int k = 0; k < numberColumns; k++) {
+				this.columnPositions[i][k] = directory.getLong();
+				this.compressedLengths[i][k] = directory.getInt();
+				this.uncompressedLengths[i][k] = directory.getInt();
+			}
+		}
+	}
+
+	/**
+	 * opens the given file reading only the header and the block directory
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static ColumnarCandidateStore open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.READ);
+		try {
+			return new ColumnarCandidateStore(channel);
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		} catch(RuntimeException e) {
+			channel.close();
+			throw new IOException("Corrupt columnar candidate file " + file.getAbsolutePath(), e);
+		}
+	}
+
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	public int getNumberCandidates() {
+		return this.numberCandidates;
+	}
+
+	public int getNumberBlocks() {
+		return this.numberBlockRows.length;
+	}
+
+	/**
+	 * names of the stored columns including the internal input index column
+	 *
+	 * @return
+	 */
+	public String[] getColumnNames() {
+		return this.columnNames.clone();
+	}
+
+	public int getBlockSize() {
+		return this.blockSize;
+	}
+
+	public double getMinimumMass(int block) {
+		return this.minimumMasses[block];
+	}
+
+	public double getMaximumMass(int block) {
+		return this.maximumMasses[block];
+	}
+
+	/**
+	 * sets the property columns read besides the structure columns
+	 * unknown names are ignored
+	 *
+	 * @param names
+	 */
+	public void setPropertyColumns(String[] names) {
+		java.util.HashSet<String> readNames = new java.util.HashSet<String>(java.util.Arrays.asList(STRUCTURE_COLUMNS));
+		readNames.add(INPUT_INDEX_COLUMN);
+		readNames.addAll(java.util.Arrays.asList(names));
+		for(int k = 0; k < this.columnNames.length; k++) this.readColumns[k] = readNames.contains(this.columnNames[k]);
+	}
+
+	/**
+	 * reads all property columns
+	 */
+	public void setAllPropertyColumns() {
+		java.util.Arrays.fill(this.readColumns, true);
+	}
+
+	/**
+	 * number of block columns inflated since the file was opened
+	 *
+	 * @return
+	 */
+	public int getNumberInflatedColumns() {
+		return this.numberInflatedColumns.get();
+	}
+
+	/**
+	 * candidates with lowerLimit <= mass <= upperLimit in the order of the input file
+	 * only blocks overlapping the mass window are read
+	 *
+	 * @param lowerLimit
+	 * @param upperLimit
+	 * @return
+	 * @throws IOException
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByMass(double lowerLimit, double upperLimit) throws IOException {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(int block = 0; block < this.getNumberBlocks(); block++) {
+			if(this.maximumMasses[block] < lowerLimit || this.minimumMasses[block] > upperLimit) continue;
+			Object[] columns = new Object[this.columnNames.length];
+			double[] masses = (double[])(columns[this.massColumn] = this.readColumn(block, this.massColumn));
+			boolean[] hits = new boolean[masses.length];
+			for(int i = 0; i < masses.length; i++) hits[i] = lowerLimit <= masses[i] && masses[i] <= upperLimit;
+			this.addCandidates(block, hits, columns, candidates);
+		}
+		return this.sortByInputIndex(candidates);
+	}
+
+	/**
+	 * candidates with the given molecular formula in the order of the input file
+	 *
+	 * @param formula
+	 * @return
+	 * @throws IOException
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByFormula(MolecularFormulaKey formula) throws IOException {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		if(this.formulaColumn == -1) return candidates;
+		//formulas repeat a lot so each distinct formula is only parsed once
+		java.util.HashMap<String, Boolean> matchingFormulas = new java.util.HashMap<String, Boolean>();
+		for(int block = 0; block < this.getNumberBlocks(); block++) {
+			Object[] columns = new Object[this.columnNames.length];
+			String[] formulas = (String[])(columns[this.formulaColumn] = this.readColumn(block, this.formulaColumn));
+			boolean[] hits = new boolean[formulas.length];
+			for(int i = 0; i < formulas.length; i++) {
+				if(formulas[i] == null) continue;
+				Boolean matches = matchingFormulas.get(formulas[i]);
+				if(matches == null) {
+					matches = formula.equals(MolecularFormulaKey.parseOrNull(formulas[i]));
+					matchingFormulas.put(formulas[i], matches);
+				}
+				hits[i] = matches;
+			}
+			this.addCandidates(block, hits, columns, candidates);
+		}
+		return this.sortByInputIndex(candidates);
+	}
+
+	/**
+	 * candidates with one of the given identifiers in the order of the input file
+	 * like for the other file databases identifiers of the form identifier|index match the identifier
+	 *
+	 * @param identifiers
+	 * @return
+	 * @throws IOException
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByIdentifiers(String[] identifiers) throws IOException {
+		java.util.HashSet<String> searchIdentifiers = new java.util.HashSet<String>(java.util.Arrays.asList(identifiers));
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(int block = 0; block < this.getNumberBlocks(); block++) {
+			Object[] columns = new Object[this.columnNames.length];
+			String[] blockIdentifiers = (String[])(columns[this.identifierColumn] = this.readColumn(block, this.identifierColumn));
+			boolean[] hits = new boolean[blockIdentifiers.length];
+			for(int i = 0; i < blockIdentifiers.length; i++) {
+				int separator = blockIdentifiers[i].lastIndexOf('|');
+				hits[i] = searchIdentifiers.contains(blockIdentifiers[i]) || (separator != -1 && searchIdentifiers.contains(blockIdentifiers[i].substring(0, separator)));
+			}
+			this.addCandidates(block, hits, columns, candidates);
+		}
+		return this.sortByInputIndex(candidates);
+	}
+
+	/**
+	 * all candidates in the order of the input file
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public java.util.ArrayList<ICandidate> getAllCandidates() throws IOException {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(int block = 0; block < this.getNumberBlocks(); block++) {
+			boolean[] hits = new boolean[this.numberBlockRows[block]];
+			java.util.Arrays.fill(hits, true);
+			this.addCandidates(block, hits, new Object[this.columnNames.length], candidates);
+		}
+		return this.sortByInputIndex(candidates);
+	}
+
+	/*
+	 * creates the candidates of the block rows marked as hit
+	 * the columns to read which are not yet read are only inflated if there is any hit
+	 */
+	private void addCandidates(int block, boolean[] hits, Object[] columns, java.util.ArrayList<ICandidate> candidates) throws IOException {
+		boolean anyHit = false;
+		for(int i = 0; i < hits.length && !anyHit; i++) anyHit = hits[i];
+		if(!anyHit) return;
+		for(int k = 0; k < columns.length; k++)
+			if(columns[k] == null && this.readColumns[k]) columns[k] = this.readColumn(block, k);
+		String[] identifiers = (String[])columns[this.identifierColumn];
+		int inchiColumn = this.getColumnIndex(VariableNames.INCHI_NAME);
+		for(int i = 0; i < hits.length; i++) {
+			if(!hits[i]) continue;
+			ICandidate candidate = new TopDownPrecursorCandidate(inchiColumn != -1 ? ((String[])columns[inchiColumn])[i] : null, identifiers[i]);
+			for(int k = 0; k < columns.length; k++) {
+				if(k == this.identifierColumn || k == inchiColumn || columns[k] == null) continue;
+				if(this.columnTypes[k] == INTEGER_COLUMN) continue;
+				if(this.columnTypes[k] == DOUBLE_COLUMN) {
+					double value = ((double[])columns[k])[i];
+					if(!Double.isNaN(value)) candidate.setProperty(this.columnNames[k], value);
+				}
+				else {
+					String value = ((String[])columns[k])[i];
+					if(value != null) candidate.setProperty(this.columnNames[k], value);
+				}
+			}
+			candidate.setProperty(INPUT_INDEX_COLUMN, ((int[])columns[this.inputIndexColumn])[i]);
+			candidates.add(candidate);
+		}
+	}
+
+	private java.util.ArrayList<ICandidate> sortByInputIndex(java.util.ArrayList<ICandidate> candidates) {
+		java.util.Collections.sort(candidates, new java.util.Comparator<ICandidate>() {
+			public int compare(ICandidate first, ICandidate second) {
+				return Integer.compare((Integer)first.getProperty(INPUT_INDEX_COLUMN), (Integer)second.getProperty(INPUT_INDEX_COLUMN));
+			}
+		});
+		for(ICandidate candidate : candidates) candidate.getProperties().remove(INPUT_INDEX_COLUMN);
+		return candidates;
+	}
+
+	private int getColumnIndex(String name) {
+		for(int i = 0; i < this.columnNames.length; i++)
+			if(this.columnNames[i].equals(name)) return i;
+		return -1;
+	}
+
+	/*
+	 * inflates one column of a block
+	 */
+	private Object readColumn(int block, int column) throws IOException {
+		ByteBuffer compressed = this.read(this.columnPositions[block][column], this.compressedLengths[block][column]);
+		byte[] data = new byte[this.uncompressedLengths[block][column]];
+		java.util.zip.Inflater inflater = new java.util.zip.Inflater();
+		try {
+			inflater.setInput(compressed.array(), 0, compressed.limit());
+			int length = 0;
+			while(length < data.length && !inflater.finished()) {
+				int inflated = inflater.inflate(data, length, data.length - length);
+				if(inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				length += inflated;
+			}
+			if(length != data.length) throw new IOException("Corrupt column " + this.columnNames[column] + " in block " + block);
+		} catch (java.util.zip.DataFormatException e) {
+			throw new IOException("Corrupt column " + this.columnNames[column] + " in block " + block, e);
+		} finally {
+			inflater.end();
+		}
+		this.numberInflatedColumns.incrementAndGet();
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int numberRows = this.numberBlockRows[block];
+		if(this.columnTypes[column] == DOUBLE_COLUMN) {
+			double[] values = new double[numberRows];
+			for(int i = 0; i < numberRows; i++) values[i] = buffer.getDouble();
+			return values;
+		}
+		if(this.columnTypes[column] == INTEGER_COLUMN) {
+			int[] values = new int[numberRows];
+			for(int i = 0; i < numberRows; i++) values[i] = buffer.getInt();
+			return values;
+		}
+		String[] values = new String[numberRows];
+		for(int i = 0; i < numberRows; i++) {
+			int length = buffer.getInt();
+			if(length == -1) continue;
+			values[i] = new String(data, buffer.position(), length, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		}
+		return values;
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining()) {
+			if(this.channel.read(buffer, position + buffer.position()) == -1) throw new IOException("Unexpected end of columnar candidate file");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * writes the given candidates to a new columnar file
+	 *
+	 * @param candidates candidates with MonoisotopicMass (Double), Identifier and InChI defined
+	 * @param file
+	 * @param blockSize number of candidates per block
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a candidate has no MonoisotopicMass
+	 */
+	public static void write(java.util.List<ICandidate> candidates, File file, int blockSize) throws IOException {
+		if(blockSize < 1) throw new IllegalArgumentException("Block size must be positive");
+		for(ICandidate candidate : candidates) {
+			if(!hasMass(candidate)) throw new IllegalArgumentException("Candidate " + candidate.getIdentifier() + " has no " + VariableNames.MONOISOTOPIC_MASS_NAME);
+		}
+		/*
+		 * a column is stored as double if all its values are doubles
+		 */
+		java.util.LinkedHashMap<String, Byte> columns = new java.util.LinkedHashMap<String, Byte>();
+		columns.put(VariableNames.IDENTIFIER_NAME, STRING_COLUMN);
+		columns.put(VariableNames.MONOISOTOPIC_MASS_NAME, DOUBLE_COLUMN);
+		columns.put(INPUT_INDEX_COLUMN, INTEGER_COLUMN);
+		java.util.TreeSet<String> propertyNames = new java.util.TreeSet<String>();
+		for(ICandidate candidate : candidates) {
+			java.util.Hashtable<String, Object> properties = candidate.getProperties();
+			for(String name : properties.keySet()) {
+				if(properties.get(name) == null || columns.containsKey(name)) continue;
+				propertyNames.add(name);
+			}
+		}
+		for(String name : propertyNames) {
+			byte type = DOUBLE_COLUMN;
+			for(ICandidate candidate : candidates) {
+				Object value = candidate.getProperty(name);
+				if(value != null && !(value instanceof Double)) {
+					type = STRING_COLUMN;
+					break;
+				}
+			}
+			columns.put(name, type);
+		}
+		String[] columnNames = columns.keySet().toArray(new String[columns.size()]);
+		byte[] columnTypes = new byte[columnNames.length];
+		for(int k = 0; k < columnNames.length; k++) columnTypes[k] = columns.get(columnNames[k]);
+		/*
+		 * sort by mass keeping the input order for equal masses
+		 */
+		final double[] masses = new double[candidates.size()];
+		for(int i = 0; i < masses.length; i++) masses[i] = (Double)candidates.get(i).getProperty(VariableNames.MONOISOTOPIC_MASS_NAME);
+		Integer[] massOrder = new Integer[candidates.size()];
+		for(int i = 0; i < massOrder.length; i++) massOrder[i] = i;
+		java.util.Arrays.sort(massOrder, new java.util.Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return Double.compare(masses[first], masses[second]);
+			}
+		});
+
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try(java.io.FileOutputStream fileStream = new java.io.FileOutputStream(tempFile)) {
+			java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(fileStream));
+			out.writeInt(MAGIC_NUMBER);
+			out.writeInt(VERSION);
+			out.writeInt(candidates.size());
+			out.writeInt(blockSize);
+			out.writeInt(columnNames.length);
+			for(int k = 0; k < columnNames.length; k++) {
+				byte[] name = columnNames[k].getBytes(StandardCharsets.UTF_8);
+				out.writeShort(name.length);
+				out.write(name);
+				out.writeByte(columnTypes[k]);
+			}
+			if(out.size() > 1 << 16) throw new IOException("Too many candidate properties");
+			java.io.ByteArrayOutputStream directoryBytes = new java.io.ByteArrayOutputStream();
+			java.io.DataOutputStream directory = new java.io.DataOutputStream(directoryBytes);
+			int numberBlocks = (candidates.size() + blockSize - 1) / blockSize;
+			directory.writeInt(numberBlocks);
+			long position = out.size();
+			java.util.zip.Deflater deflater = new java.util.zip.Deflater();
+			try {
+				for(int block = 0; block < numberBlocks; block++) {
+					int first = block * blockSize;
+					int last = Math.min(first + blockSize, candidates.size());
+					directory.writeInt(last - first);
+					directory.writeDouble(masses[massOrder[first]]);
+					directory.writeDouble(masses[massOrder[last - 1]]);
+					for(int k = 0; k < columnNames.length; k++) {
+						byte[] data = encodeColumn(candidates, massOrder, first, last, columnNames[k], columnTypes[k]);
+						byte[] compressed = deflate(deflater, data);
+						out.write(compressed);
+						directory.writeLong(position);
+						directory.writeInt(compressed.length);
+						directory.writeInt(data.length);
+						position += compressed.length;
+					}
+				}
+			} finally {
+				deflater.end();
+			}
+			directory.flush();
+			out.write(directoryBytes.toByteArray());
+			out.writeLong(position);
+			out.flush();
+		} catch(IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		java.nio.file.Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static boolean hasMass(ICandidate candidate) {
+		Object mass = candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME);
+		return mass instanceof Double && !((Double)mass).isNaN();
+	}
+
+	private static byte[] encodeColumn(java.util.List<ICandidate> candidates, Integer[] massOrder, int first, int last, String name, byte type) throws IOException {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+		for(int i = first; i < last; i++) {
+			if(type == INTEGER_COLUMN) {
+				out.writeInt(massOrder[i]);
+				continue;
+			}
+			ICandidate candidate = candidates.get(massOrder[i]);
+			Object value = name.equals(VariableNames.IDENTIFIER_NAME) ? candidate.getIdentifier() : candidate.getProperty(name);
+			if(type == DOUBLE_COLUMN) out.writeDouble(value != null ? (Double)value : Double.NaN);
+			else if(value == null) out.writeInt(-1);
+			else {
+				byte[] valueBytes = value.toString().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(valueBytes.length);
+				out.write(valueBytes);
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] deflate(java.util.zip.Deflater deflater, byte[] data) {
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		java.io.ByteArrayOutputStream compressed = new java.io.ByteArrayOutputStream(Math.max(64, data.length / 4));
+		byte[] buffer = new byte[8192];
+		while(!deflater.finished()) {
+			int length = deflater.deflate(buffer);
+			compressed.write(buffer, 0, length);
+		}
+		return compressed.toByteArray();
+	}
+
+	/**
+	 * reads all candidates of the given database file and writes them to the columnar file
+	 *
+	 * @param databaseType LocalPSV, LocalCSV, LocalSDF or LocalZippedPSV
+	 * @param inputPath
+	 * @param outputPath
+	 * @param blockSize
+	 * @return number of written candidates
+	 * @throws Exception
+	 */
+	public static int convert(String databaseType, String inputPath, String outputPath, int blockSize) throws Exception {
+		return convert(databaseType, inputPath, outputPath, blockSize, false);
+	}
+
+	/**
+	 * reads all candidates of the given database file and writes them to the columnar file
+	 * candidates without monoisotopic mass are skipped
+	 * 
+	 * @param databaseType LocalPSV, LocalCSV, LocalSDF or LocalZippedPSV
+	 * @param inputPath
+	 * @param outputPath
+	 * @param blockSize
+	 * @param addMolecularGraphs adds the MolecularGraph column so that candidates are initialised without InChI parsing
+	 * @return number of written candidates
+	 * @throws Exception
+	 */
+	@SuppressWarnings("deprecation")
+	public static int convert(String databaseType, String inputPath, String outputPath, int blockSize, boolean addMolecularGraphs) throws Exception {
+		//no search parameters so all candidates are read
+		Settings settings = new Settings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, inputPath);
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		if(databaseType.equals("LocalZippedPSV")) {
+			LocalZippedPSVDatabase database = new LocalZippedPSVDatabase(settings);
+			CandidateList candidateList = database.getCandidateByIdentifier(database.getCandidateIdentifiers());
+			for(int i = 0; i < candidateList.getNumberElements(); i++) candidates.add(candidateList.getElement(i));
+		}
+		else {
+			String className = ClassNames.getClassNameOfDatabase(databaseType);
+			if(className == null) throw new IllegalArgumentException("Unknown database type " + databaseType);
+			IDatabase database = (IDatabase)Class.forName(className).getConstructor(Settings.class).newInstance(settings);
+			if(!(database instanceof AbstractFileDatabase) || database instanceof LocalIndexedDatabase || database instanceof LocalColumnarDatabase)
+				throw new IllegalArgumentException("Database type " + databaseType + " cannot be converted");
+			database.getCandidateIdentifiers();
+			candidates = ((AbstractFileDatabase)database).candidates;
+		}
+		java.util.ArrayList<ICandidate> candidatesWithMass = new java.util.ArrayList<ICandidate>();
+		for(ICandidate candidate : candidates) {
+			if(hasMass(candidate)) candidatesWithMass.add(candidate);
+			else System.err.println("Skipped " + candidate.getIdentifier() + " without " + VariableNames.MONOISOTOPIC_MASS_NAME);
+		}
+		candidates = candidatesWithMass;
+		if(addMolecularGraphs) {
+			for(ICandidate candidate : candidates) {
+				try {
+					candidate.setProperty(VariableNames.MOLECULAR_GRAPH_NAME, MolecularGraph.fromCandidate(candidate).encode());
+				} catch (Exception e) {
+					//candidate is read from its InChI when processed
+					System.err.println("Could not generate molecular graph of " + candidate.getIdentifier() + ": " + e.getMessage());
+				}
+			}
+		}
+		write(candidates, new File(outputPath), blockSize);
+		return candidates.size();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3 || args.length > 5) {
+			System.err.println("usage: ColumnarCandidateStore LocalPSV|LocalCSV|LocalSDF|LocalZippedPSV input_file output_file [block_size [add_molecular_graphs]]");
+			System.exit(1);
+		}
+		int blockSize = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_BLOCK_SIZE;
+		boolean addMolecularGraphs = args.length == 5 && Boolean.parseBoolean(args[4]);
+		int numberCandidates = convert(args[0], args[1], args[2], blockSize, addMolecularGraphs);
+		System.out.println("Wrote " + numberCandidates + " candidates to " + args[2]);
+	}
+}
@@ -0,0 +1,97 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.interfaces.IResponseCache;
+
+/**
+ * persistent response cache storing one file per response in a directory
+ *
+ * the file name is the SHA-1 hash of the key, the file contains the key, the time the response
+ * was stored and the response itself, responses older than the time to live are removed on access
+ * files are written to a temporary file first and then moved so that several processes can share a directory
+ *
+ * @author cruttkie
+ *
+ */
+public class FileResponseCache implements IResponseCache {
+
+	private Logger logger = Logger.getLogger(FileResponseCache.class);
+
+	private final File directory;
+	private final long timeToLive;
+
+	/**
+	 *
+	 * @param directory created if not existing
+	 * @param timeToLive milliseconds a response is used
+	 * @throws IOException
+	 */
+	public FileResponseCache(File directory, long timeToLive) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create cache directory " + directory);
+		this.directory = directory;
+		this.timeToLive = timeToLive;
+	}
+
+	public byte[] get(String key) {
+		File file = this.getFile(key);
+		if(!file.isFile()) return null;
+		try(java.io.DataInputStream in = new java.io.DataInputStream(new java.io.BufferedInputStream(new java.io.FileInputStream(file)))) {
+			byte[] storedKey = new byte[in.readInt()];
+			in.readFully(storedKey);
+			//different key with the same hash
+			if(!key.equals(new String(storedKey, StandardCharsets.UTF_8))) return null;
+			long time = in.readLong();
+			if(System.currentTimeMillis() - time > this.timeToLive) {
+				in.close();
+				file.delete();
+				return null;
+			}
+			byte[] response = new byte[in.readInt()];
+			in.readFully(response);
+			return response;
+		} catch(IOException e) {
+			this.logger.warn("Could not read cached response " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	public void put(String key, byte[] response) {
+		File file = this.getFile(key);
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile(file.getName(), ".tmp", this.directory);
+			try(java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(tempFile)))) {
+				byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(keyBytes.length);
+				out.write(keyBytes);
+				out.writeLong(System.currentTimeMillis());
+				out.writeInt(response.length);
+				out.write(response);
+			}
+			java.nio.file.Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			this.logger.warn("Could not store response in " + this.directory + ": " + e.getMessage());
+			if(tempFile != null) tempFile.delete();
+		}
+	}
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	private File getFile(String key) {
+		try {
+			byte[] hash = java.security.MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder();
+			for(byte b : hash) name.append(String.format("%02x", b));
+			return new File(this.directory, name.append(".response").toString());
+		} catch (java.security.NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * bounded pool of jdbc connections shared by all local databases using the same jdbc url and user
+ *
+ * at most maximumConnections connections are handed out at the same time, further requests block
+ * until a connection is released, idle connections are kept open to be reused by the next query
+ *
+ * @author cruttkie
+ *
+ */
+public class JdbcConnectionPool {
+
+	private static final java.util.HashMap<String, JdbcConnectionPool> pools = new java.util.HashMap<String, JdbcConnectionPool>();
+
+	private Logger logger = Logger.getLogger(JdbcConnectionPool.class);
+
+	private final String jdbcUrl;
+	private final String user;
+	private final String password;
+	private final java.util.concurrent.Semaphore permits;
+	private final java.util.concurrent.LinkedBlockingDeque<Connection> idleConnections;
+	private final int maximumConnections;
+
+	private JdbcConnectionPool(String jdbcUrl, String user, String password, int maximumConnections) {
+		this.jdbcUrl = jdbcUrl;
+		this.user = user;
+		this.password = password;
+		this.maximumConnections = maximumConnections;
+		this.permits = new java.util.concurrent.Semaphore(maximumConnections, true);
+		this.idleConnections = new java.util.concurrent.LinkedBlockingDeque<Connection>();
+	}
+
+	/**
+	 * returns the pool of the given jdbc url and user and creates it if not present
+	 * the maximum number of connections is defined by the first request of the pool
+	 *
+	 * @param jdbcUrl
+	 * @param user
+	 * @param password
+	 * @param maximumConnections
+	 * @return
+	 */
+	public static synchronized JdbcConnectionPool getPool(String jdbcUrl, String user, String password, int maximumConnections) {
+		String key = jdbcUrl + "|" + user;
+		JdbcConnectionPool pool = pools.get(key);
+		if(pool == null) {
+			pool = new JdbcConnectionPool(jdbcUrl, user, password, Math.max(1, maximumConnections));
+			pools.put(key, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * closes the idle connections of all pools and removes the pools
+	 */
+	public static synchronized void closeAll() {
+		for(JdbcConnectionPool pool : pools.values())
+			pool.closeIdleConnections();
+		pools.clear();
+	}
+
+	/**
+	 * takes an idle connection or opens a new one, blocks while all connections are in use
+	 *
+	 * @return
+	 * @throws SQLException
+	 */
+	public Connection getConnection() throws SQLException {
+		try {
+			this.permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection to " + this.jdbcUrl);
+		}
+		try {
+			Connection connection = null;
+			while((connection = this.idleConnections.pollFirst()) != null) {
+				if(!connection.isClosed()) return connection;
+			}
+			this.logger.debug("Opening connection to " + this.jdbcUrl);
+			return DriverManager.getConnection(this.jdbcUrl, this.user, this.password);
+		} catch (SQLException e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * hands a connection back to the pool to be reused
+	 *
+	 * @param connection
+	 */
+	public void releaseConnection(Connection connection) {
+		if(connection == null) return;
+		try {
+			if(!connection.isClosed()) {
+				if(!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				this.idleConnections.offerFirst(connection);
+			}
+		} catch (SQLException e) {
+			this.logger.warn("Discarding connection to " + this.jdbcUrl + ": " + e.getMessage());
+			this.closeConnection(connection);
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	/**
+	 * closes a connection that failed instead of handing it back to the pool
+	 *
+	 * @param connection
+	 */
+	public void invalidateConnection(Connection connection) {
+		if(connection == null) return;
+		this.closeConnection(connection);
+		this.permits.release();
+	}
+
+	public int getMaximumConnections() {
+		return this.maximumConnections;
+	}
+
+	public int getNumberIdleConnections() {
+		return this.idleConnections.size();
+	}
+
+	private void closeIdleConnections() {
+		Connection connection = null;
+		while((connection = this.idleConnections.pollFirst()) != null)
+			this.closeConnection(connection);
+	}
+
+	private void closeConnection(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			this.logger.warn("Could not close connection to " + this.jdbcUrl + ": " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package de.ipbhalle.metfraglib.database;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ *
+ * local database read from a columnar candidate file written by ColumnarCandidateStore
+ * replaces LocalZippedPSVDatabase for large distributed databases as only the blocks
+ * and columns needed for the search are inflated
+ *
+ * besides the structure columns only the InChIKey columns, the columns of candidate property scores
+ * and the columns listed in LocalDatabasePropertyColumns are read
+ *
+ * @author cruttkie
+ *
+ */
+public class LocalColumnarDatabase extends AbstractFileDatabase {
+
+	public LocalColumnarDatabase(Settings settings) {
+		super(settings);
+	}
+
+	/**
+	 * @throws Exception
+	 *
+	 */
+	protected void readCandidatesFromFile() throws Exception {
+		this.candidates = new java.util.ArrayList<ICandidate>();
+		this.identifiers = new java.util.ArrayList<String>();
+		ColumnarCandidateStore store = ColumnarCandidateStore.open(new java.io.File((String) this.settings.get(VariableNames.LOCAL_DATABASE_PATH_NAME)));
+		try {
+			store.setPropertyColumns(this.getPropertyColumns());
+			java.util.ArrayList<ICandidate> candidates = null;
+			if(this.identifierSearch) candidates = store.getCandidatesByIdentifiers(this.searchIdentifiers);
+			else if(this.massSearch) candidates = store.getCandidatesByMass(this.lowerLimit, this.upperLimit);
+			else if(this.formulaSearch) candidates = store.getCandidatesByFormula(this.formulaKey);
+			else candidates = store.getAllCandidates();
+			for(ICandidate precursorCandidate : candidates) {
+				this.identifiers.add(precursorCandidate.getIdentifier());
+				this.candidates.add(precursorCandidate);
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	/*
+	 * InChIKey columns are used by the candidate filters and scores, candidate property scores read their column
+	 */
+	private String[] getPropertyColumns() {
+		java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+		names.add(VariableNames.INCHI_KEY_1_NAME);
+		names.add(VariableNames.INCHI_KEY_2_NAME);
+		names.add(VariableNames.INCHI_KEY_3_NAME);
+		names.add(VariableNames.INCHI_KEY_NAME);
+		String[] scoreTypes = (String[])this.settings.get(VariableNames.METFRAG_SCORE_TYPES_NAME);
+		if(scoreTypes != null) names.addAll(java.util.Arrays.asList(scoreTypes));
+		String[] propertyColumns = (String[])this.settings.get(VariableNames.LOCAL_DATABASE_PROPERTY_COLUMNS_NAME);
+		if(propertyColumns != null) names.addAll(java.util.Arrays.asList(propertyColumns));
+		return names.toArray(new String[names.size()]);
+	}
+
+}
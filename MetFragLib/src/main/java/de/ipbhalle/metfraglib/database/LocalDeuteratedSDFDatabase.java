@@ -24,6 +24,7 @@ import de.ipbhalle.metfraglib.settings.Settings;
 public class LocalDeuteratedSDFDatabase extends AbstractDatabase {
 
 	private java.util.ArrayList<ICandidate> candidates;
+	private CandidateIdentifierIndex identifierIndex = new CandidateIdentifierIndex();
 	
 	public LocalDeuteratedSDFDatabase(Settings settings) {
 		super(settings);
@@ -169,8 +170,6 @@ public class LocalDeuteratedSDFDatabase extends AbstractDatabase {
 	 * @return
 	 */
 	private int indexOfIdentifier(String identifier) {
-		for(int i = 0; i < this.candidates.size(); i++)
-			if(this.candidates.get(i).getIdentifier().equals(identifier)) return i;
-		return -1;
+		return this.identifierIndex.indexOf(this.candidates, identifier);
 	}
 }
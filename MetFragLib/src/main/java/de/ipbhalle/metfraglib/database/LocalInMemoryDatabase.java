@@ -2,7 +2,6 @@ package de.ipbhalle.metfraglib.database;
 
 import java.util.ArrayList;
 
-import org.openscience.cdk.ChemObject;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
@@ -13,12 +12,19 @@ import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
 import de.ipbhalle.metfraglib.exceptions.DatabaseIdentifierNotFoundException;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.molecularformula.MolecularFormulaKey;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
 
 public class LocalInMemoryDatabase extends AbstractDatabase {
 
 	private java.util.ArrayList<TopDownPrecursorCandidate> candidates;
+	private CandidateIdentifierIndex identifierIndex = new CandidateIdentifierIndex();
+	//monoisotopic masses in ascending order and the candidate index of each mass
+	private double[] sortedMasses;
+	private int[] massOrder;
+	//candidate indeces by molecular formula
+	private java.util.HashMap<MolecularFormulaKey, java.util.ArrayList<Integer>> formulaToIndexes;
 	
 	public LocalInMemoryDatabase(Settings settings) {
 		super(settings);
@@ -50,38 +56,36 @@ public class LocalInMemoryDatabase extends AbstractDatabase {
 	
 	public ArrayList<String> getCandidateIdentifiers(double monoisotopicMass, double relativeMassDeviation) {
 		if(this.candidates == null) this.initialiseCandidatesFromMemory();
-		ArrayList<String> identifiers = new ArrayList<String>();
 		double mzabs = MathTools.calculateAbsoluteDeviation(monoisotopicMass, relativeMassDeviation);
 		double lowerLimit = monoisotopicMass - mzabs;
 		double upperLimit = monoisotopicMass + mzabs;
-		for(int i = 0; i < this.candidates.size(); i++) {
-			double currentMonoisotopicMass = 0.0;
-			try {
-				IAtomContainer con = this.candidates.get(i).getAtomContainer();
-				MoleculeFunctions.prepareAtomContainer(con, false);
-				currentMonoisotopicMass = MoleculeFunctions.calculateMonoIsotopicMassImplicitHydrogens(this.candidates.get(i).getAtomContainer());
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			if(lowerLimit >= currentMonoisotopicMass && currentMonoisotopicMass <= upperLimit)
-				identifiers.add(this.candidates.get(i).getIdentifier());
+		//binary search for the first mass within the limits
+		int low = 0;
+		int high = this.sortedMasses.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(this.sortedMasses[middle] < lowerLimit) low = middle + 1;
+			else high = middle;
 		}
+		int last = low;
+		while(last < this.sortedMasses.length && this.sortedMasses[last] <= upperLimit) last++;
+		//return the candidates in the order they were given
+		int[] candidateIndexes = java.util.Arrays.copyOfRange(this.massOrder, low, last);
+		java.util.Arrays.sort(candidateIndexes);
+		ArrayList<String> identifiers = new ArrayList<String>();
+		for(int i = 0; i < candidateIndexes.length; i++)
+			identifiers.add(this.candidates.get(candidateIndexes[i]).getIdentifier());
 		return identifiers;
 	}
 
 	public ArrayList<String> getCandidateIdentifiers(String molecularFormula) {
 		if(this.candidates == null) this.initialiseCandidatesFromMemory();
 		ArrayList<String> identifiers = new ArrayList<String>();
-		org.openscience.cdk.interfaces.IMolecularFormula queryFormula = MolecularFormulaManipulator.getMolecularFormula(molecularFormula, new ChemObject().getBuilder());
-		for(int i = 0; i < this.candidates.size(); i++) {
-			org.openscience.cdk.interfaces.IMolecularFormula currentFormula = null;
-			try {
-				currentFormula = MolecularFormulaManipulator.getMolecularFormula(MoleculeFunctions.convertExplicitToImplicitHydrogens(this.candidates.get(i).getAtomContainer()));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			if(queryFormula.equals(currentFormula)) identifiers.add(this.candidates.get(i).getIdentifier());
-		}
+		MolecularFormulaKey queryFormula = MolecularFormulaKey.parseOrNull(molecularFormula);
+		java.util.ArrayList<Integer> candidateIndexes = queryFormula == null ? null : this.formulaToIndexes.get(queryFormula);
+		if(candidateIndexes == null) return identifiers;
+		for(Integer index : candidateIndexes)
+			identifiers.add(this.candidates.get(index).getIdentifier());
 		return identifiers;
 	}
 
@@ -156,12 +160,50 @@ public class LocalInMemoryDatabase extends AbstractDatabase {
 			
 			this.candidates.add(precursorCandidate);
 		}
+		this.initialiseMassesAndFormulas();
 		return;
 	}
 	
+	/**
+	 * calculates monoisotopic masses and molecular formulas once after the candidates are loaded
+	 * candidates whose mass cannot be calculated are not found by mass searches
+	 */
+	private void initialiseMassesAndFormulas() {
+		final double[] masses = new double[this.candidates.size()];
+		this.formulaToIndexes = new java.util.HashMap<MolecularFormulaKey, java.util.ArrayList<Integer>>();
+		Integer[] order = new Integer[this.candidates.size()];
+		for(int i = 0; i < this.candidates.size(); i++) {
+			order[i] = i;
+			masses[i] = Double.NaN;
+			try {
+				IAtomContainer con = this.candidates.get(i).getAtomContainer();
+				MoleculeFunctions.prepareAtomContainer(con, false);
+				masses[i] = MoleculeFunctions.calculateMonoIsotopicMassImplicitHydrogens(con);
+				MolecularFormulaKey formula = MolecularFormulaKey.parse(MolecularFormulaManipulator.getString(MolecularFormulaManipulator.getMolecularFormula(con)));
+				java.util.ArrayList<Integer> candidateIndexes = this.formulaToIndexes.get(formula);
+				if(candidateIndexes == null) {
+					candidateIndexes = new java.util.ArrayList<Integer>(1);
+					this.formulaToIndexes.put(formula, candidateIndexes);
+				}
+				candidateIndexes.add(i);
+			} catch (Exception e) {
+				logger.warn("Could not calculate mass of candidate " + this.candidates.get(i).getIdentifier());
+			}
+		}
+		java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return Double.compare(masses[first], masses[second]);
+			}
+		});
+		this.sortedMasses = new double[order.length];
+		this.massOrder = new int[order.length];
+		for(int i = 0; i < order.length; i++) {
+			this.massOrder[i] = order[i];
+			this.sortedMasses[i] = masses[order[i]];
+		}
+	}
+	
 	private int indexOfIdentifier(String identifier) {
-		for(int i = 0; i < this.candidates.size(); i++)
-			if(this.candidates.get(i).getIdentifier().equals(identifier)) return i;
-		return -1;
+		return this.identifierIndex.indexOf(this.candidates, identifier);
 	}
 }
@@ -0,0 +1,53 @@
+package de.ipbhalle.metfraglib.database;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ *
+ * local database read from a candidate index file written by MassSortedCandidateIndex
+ * mass and formula searches only decode the candidates found by binary search on the mapped index
+ *
+ * @author cruttkie
+ *
+ */
+public class LocalIndexedDatabase extends AbstractFileDatabase {
+
+	protected MassSortedCandidateIndex index;
+
+	public LocalIndexedDatabase(Settings settings) {
+		super(settings);
+	}
+
+	protected MassSortedCandidateIndex getIndex() throws java.io.IOException {
+		if(this.index == null)
+			this.index = MassSortedCandidateIndex.open(new java.io.File((String) this.settings.get(VariableNames.LOCAL_DATABASE_PATH_NAME)));
+		return this.index;
+	}
+
+	/**
+	 * @throws Exception
+	 *
+	 */
+	protected void readCandidatesFromFile() throws Exception {
+		this.candidates = new java.util.ArrayList<ICandidate>();
+		MassSortedCandidateIndex index = this.getIndex();
+		int[] records = null;
+		if(this.massSearch) records = index.getRecordsByMass(this.lowerLimit, this.upperLimit);
+		else if(this.formulaSearch) records = index.getRecordsByFormula(this.formula.toString());
+		else records = index.getAllRecords();
+		for(int i = 0; i < records.length; i++) {
+			ICandidate precursorCandidate = index.getCandidate(records[i]);
+			if(this.checkFilter(precursorCandidate)) {
+				this.identifiers.add(precursorCandidate.getIdentifier());
+				this.candidates.add(precursorCandidate);
+			}
+		}
+	}
+
+	public void nullify() {
+		this.index = null;
+	}
+
+}
@@ -1,9 +1,7 @@
 package de.ipbhalle.metfraglib.database;
 
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.SQLWarning;
 import java.util.ArrayList;
 
 import de.ipbhalle.metfraglib.additionals.MathTools;
@@ -42,16 +40,12 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 				+ TABLE_NAME + " where " + MASS_COLUMN_NAME 
 				+ " between " + (monoisotopicMass - error) + " and " + (monoisotopicMass + error) + ";";
 		logger.trace(query);
-		ResultSet rs = this.submitQuery(query);
-		ArrayList<String> cids = new ArrayList<String>();
-		if(rs == null) return cids;
-		try {
-			while(rs.next()) cids.add(rs.getString(this.CID_COLUMN_NAME));
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		final ArrayList<String> cids = new ArrayList<String>();
+		this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
+				cids.add(rs.getString(CID_COLUMN_NAME));
+			}
+		});
 		return cids;
 	}
 
@@ -59,16 +53,12 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 		String query = "SELECT " + CID_COLUMN_NAME + " from " + TABLE_NAME 
 				+ " where " + FORMULA_COLUMN_NAME + " = \"" + molecularFormula + "\";";
 		logger.trace(query);
-		ResultSet rs = this.submitQuery(query);
-		ArrayList<String> cids = new ArrayList<String>();
-		if(rs == null) return cids;
-		try {
-			while(rs.next()) cids.add(rs.getString(CID_COLUMN_NAME));
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		final ArrayList<String> cids = new ArrayList<String>();
+		this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
+				cids.add(rs.getString(CID_COLUMN_NAME));
+			}
+		});
 		return cids;
 	}
 
@@ -80,16 +70,12 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 			query += "or " + CID_COLUMN_NAME + " =\"" + identifiers.get(i) + "\"";
 		query += ";";
 		logger.trace(query);
-		ResultSet rs = this.submitQuery(query);
-		ArrayList<String> cids = new ArrayList<String>();
-		if(rs == null) return cids;
-		try {
-			while(rs.next()) cids.add(rs.getString(CID_COLUMN_NAME));
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		final ArrayList<String> cids = new ArrayList<String>();
+		this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
+				cids.add(rs.getString(CID_COLUMN_NAME));
+			}
+		});
 		return cids;
 	}
 
@@ -98,16 +84,13 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 				+ "," + INCHIKEY2_COLUMN_NAME + "," + FORMULA_COLUMN_NAME + "," + MASS_COLUMN_NAME + " from " + TABLE_NAME + " where " 
 				+ CID_COLUMN_NAME + " =\"" + identifier + "\";";;
 		logger.trace(query);
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) return null;
-		ArrayList<String> inChIKeys1 = new ArrayList<String>();
-		ArrayList<String> inChIKeys2 = new ArrayList<String>();
-		ArrayList<String> formulas = new ArrayList<String>();
-		ArrayList<String> inchis = new ArrayList<String>();
-		ArrayList<Double> masses = new ArrayList<Double>();
-		
-		try {
-			while(rs.next()) {
+		final ArrayList<String> inChIKeys1 = new ArrayList<String>();
+		final ArrayList<String> inChIKeys2 = new ArrayList<String>();
+		final ArrayList<String> formulas = new ArrayList<String>();
+		final ArrayList<String> inchis = new ArrayList<String>();
+		final ArrayList<Double> masses = new ArrayList<Double>();
+		boolean queried = this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
 				inchis.add(rs.getString(INCHI_COLUMN_NAME));
 				inChIKeys1.add(rs.getString(INCHIKEY1_COLUMN_NAME));
 				inChIKeys2.add(rs.getString(INCHIKEY2_COLUMN_NAME));
@@ -120,16 +103,13 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 					}
 					catch(Exception e1) {
 						e1.printStackTrace();
-						return null;
+						masses.add(null);
 					}
 				}
 				formulas.add(rs.getString(FORMULA_COLUMN_NAME));
 			}
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		});
+		if(!queried || masses.size() == 0 || masses.get(0) == null) return null;
 
 		ICandidate candidate = new TopDownPrecursorCandidate(inchis.get(0), identifier);
 
@@ -151,11 +131,9 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 			query += " or " + CID_COLUMN_NAME + " = \"" + cid + "\"";
 		query += ";";
 		logger.trace(query);
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) return new CandidateList();
-		CandidateList candidates = new CandidateList();
-		try {
-			while(rs.next()) {
+		final CandidateList candidates = new CandidateList();
+		this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
 				String inchi = rs.getString(INCHI_COLUMN_NAME);
 				ICandidate candidate = new TopDownPrecursorCandidate(inchi, rs.getString(CID_COLUMN_NAME));
 				
@@ -170,39 +148,18 @@ public class LocalLipidMapsDatabase extends AbstractLocalDatabase {
 						candidate.setProperty(VariableNames.MONOISOTOPIC_MASS_NAME, Double.parseDouble((String)rs.getString(MASS_COLUMN_NAME)));
 					}
 					catch(Exception e1) {
-						continue;
+						return;
 					}
 				}
 				
 				candidates.addElement(candidate);
 			}
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		});
 		return candidates;
 	}
 	
-	/**
-	 * 
-	 * @param query
-	 * @return
-	 */
-	private ResultSet submitQuery(String query) {
-		ResultSet rs = null; 
-		try {
-			this.driver = new com.mysql.jdbc.Driver();
-			DriverManager.registerDriver (this.driver);
-			this.databaseConnection = DriverManager.getConnection("jdbc:mysql://" + SERVER + ":" + PORT + "/" + DATABASE_NAME, this.db_user, this.db_password);
-			this.statement = this.databaseConnection.createStatement();
-			rs = this.statement.executeQuery(query);
-		    SQLWarning warning = rs.getWarnings();
-		    if(warning != null) logger.error("error code: " + warning.getErrorCode());
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		return rs;
+	protected String getJdbcUrl() {
+		return "jdbc:mysql://" + SERVER + ":" + PORT + "/" + DATABASE_NAME;
 	}
 
 }
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import de.ipbhalle.metfraglib.additionals.MathTools;
 import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidateCursor;
 import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
@@ -41,46 +42,48 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 		
 	}
 	
-	protected void fillCandidateArrayLists(ResultSet rs) {
+	/**
+	 * creates the candidates of the query result and their substance identifiers
+	 * 
+	 * @param query
+	 * @return false if the query failed
+	 */
+	protected boolean fillCandidateArrayLists(String query) {
 		this.tempCandidates = new CandidateList();
 		this.tempSubstanceIDs = new ArrayList<String>();
-		try {
-			while(rs.next()) {
-				ICandidate candidate = new TopDownPrecursorCandidate(rs.getString(this.INCHI_COLUMN_NAME), rs.getString(this.CID_COLUMN_NAME));
-				candidate.setProperty(VariableNames.INCHI_KEY_1_NAME, rs.getString(this.INCHIKEY1_COLUMN_NAME));
-				candidate.setProperty(VariableNames.INCHI_KEY_2_NAME, rs.getString(this.INCHIKEY2_COLUMN_NAME));
-				candidate.setProperty(VariableNames.INCHI_KEY_3_NAME, rs.getString(this.INCHIKEY3_COLUMN_NAME));
-				candidate.setProperty(VariableNames.MOLECULAR_FORMULA_NAME, rs.getString(this.FORMULA_COLUMN_NAME).replaceAll("[\\+\\-][0-9]*", ""));
-				candidate.setProperty(VariableNames.MONOISOTOPIC_MASS_NAME, rs.getDouble(this.MASS_COLUMN_NAME));
-				candidate.setProperty(VariableNames.SMILES_NAME, rs.getString(this.SMILES_COLUMN_NAME));
+		return this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet rs) throws SQLException {
+				ICandidate candidate = new TopDownPrecursorCandidate(rs.getString(INCHI_COLUMN_NAME), rs.getString(CID_COLUMN_NAME));
+				candidate.setProperty(VariableNames.INCHI_KEY_1_NAME, rs.getString(INCHIKEY1_COLUMN_NAME));
+				candidate.setProperty(VariableNames.INCHI_KEY_2_NAME, rs.getString(INCHIKEY2_COLUMN_NAME));
+				candidate.setProperty(VariableNames.INCHI_KEY_3_NAME, rs.getString(INCHIKEY3_COLUMN_NAME));
+				candidate.setProperty(VariableNames.MOLECULAR_FORMULA_NAME, rs.getString(FORMULA_COLUMN_NAME).replaceAll("[\\+\\-][0-9]*", ""));
+				candidate.setProperty(VariableNames.MONOISOTOPIC_MASS_NAME, rs.getDouble(MASS_COLUMN_NAME));
+				candidate.setProperty(VariableNames.SMILES_NAME, rs.getString(SMILES_COLUMN_NAME));
 				candidate.setProperty(VariableNames.COMPOUND_NAME_NAME, "NA");
 				candidate.setProperty("XlogP3", "NA");
 				try {
 					candidate.setProperty("XlogP3", rs.getDouble("xlogp3_aa"));
 				}
-				catch(org.postgresql.util.PSQLException e) {}
+				catch(SQLException e) {}
 				try {
 					candidate.setProperty("XlogP3", rs.getDouble("xlogp3"));
 				}
-				catch(org.postgresql.util.PSQLException e) {}
+				catch(SQLException e) {}
 				try {
-					candidate.setProperty(VariableNames.COMPOUND_NAME_NAME, rs.getString(this.COMPOUND_NAME_COLUMN_NAME));
+					candidate.setProperty(VariableNames.COMPOUND_NAME_NAME, rs.getString(COMPOUND_NAME_COLUMN_NAME));
 				}
-				catch(org.postgresql.util.PSQLException e) {
+				catch(SQLException e) {
 					
 				}
 				catch(java.lang.NullPointerException e) {
 					
 				}
 				
-				this.tempSubstanceIDs.add(rs.getString("substance_id"));
-				this.tempCandidates.addElement(candidate);
+				tempSubstanceIDs.add(rs.getString("substance_id"));
+				tempCandidates.addElement(candidate);
 			}
-			rs.close();
-			this.statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		});
 	}
 	
 	public ArrayList<String> getCandidateIdentifiers(double monoisotopicMass, double relativeMassDeviation) {
@@ -96,9 +99,7 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 				+	"left join substance s on s.compound_id = comp.compound_id "
 				+	"left join name n on s.substance_id = n.substance_id where s.library_id='" + library_id + "';";
 		
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) return new ArrayList<String>();
-		this.fillCandidateArrayLists(rs);
+		if(!this.fillCandidateArrayLists(query)) return new ArrayList<String>();
 		return this.tempSubstanceIDs;
 	}
 	
@@ -115,9 +116,7 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
                                 + 		") as comp "
                                 +       "left join substance s on s.compound_id = comp.compound_id "
                                 +       "left join name n on s.substance_id = n.substance_id where s.library_id='" + library_id + "';";
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) return new ArrayList<String>();
-		this.fillCandidateArrayLists(rs);
+		if(!this.fillCandidateArrayLists(query)) return new ArrayList<String>();
 		return this.tempSubstanceIDs;
 	}
 
@@ -143,9 +142,7 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 				"where s." + this.CID_COLUMN_NAME + " in (" + identifierString + ") " +
 				"and s.library_id='" + library_id + "';";
 
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) return new ArrayList<String>();
-		this.fillCandidateArrayLists(rs);
+		if(!this.fillCandidateArrayLists(query)) return new ArrayList<String>();
 		return this.tempSubstanceIDs;
 	}
 
@@ -190,13 +187,11 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 				"inner join name n on n.substance_id = s.substance_id " +
 				"where " + whereString +
 				" and s.library_id='" + library_id + "';";
-		ResultSet rs = this.submitQuery(query);
-		if(rs == null) {
+		if(!this.fillCandidateArrayLists(query)) {
 			System.err.println("Erro for query:");
 			System.err.println(query);
 			return null;
 		}
-		this.fillCandidateArrayLists(rs);
 		return this.tempCandidates;
 	}
 	
@@ -223,6 +218,14 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 		return candidates;
 	}
 
+	/**
+	 * candidates are spread over the compound, substance and name tables
+	 * and are fetched by getCandidateIdentifiers instead
+	 */
+	public ICandidateCursor getCandidateCursor() {
+		return null;
+	}
+
 	/**
 	 * get library id of this.library
 	 * if not available return -1
@@ -231,19 +234,14 @@ public class LocalMetChemDatabase extends LocalPostgresDatabase {
 	 */
 	protected int getLibraryIdentifier() {
 		String query = "select library_id from library where library_name=\'" + this.library + "\';";
-		ResultSet resultSet = this.submitQuery(query);
-		int library_id = -1;
-		if(resultSet == null) return -1;
-		try {
-			while(resultSet.next()) {
-				library_id = resultSet.getInt("library_id");
-				break;
+		final int[] library_id = {-1};
+		boolean queried = this.submitQuery(query, new ResultSetReader() {
+			public void read(ResultSet resultSet) throws SQLException {
+				if(library_id[0] == -1) library_id[0] = resultSet.getInt("library_id");
 			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return -1;
-		}
-		return library_id;
+		});
+		if(!queried) return -1;
+		return library_id[0];
 	}
 	
 }
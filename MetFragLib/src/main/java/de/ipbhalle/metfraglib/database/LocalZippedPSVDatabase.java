@@ -27,12 +27,17 @@ import de.ipbhalle.metfraglib.settings.Settings;
  * |InChI=1S/C12H17NO/c1-4-13(5-2)12(14)11-8-6-7-10(3)9-11/h6-9H,4-5H2,1-
  * 3H3|C12H17NO|191.131014|MMOXZBCLCQITDF|UHFFFAOYSA
  * 
+ * @deprecated the whole file is inflated and parsed for each new database object,
+ * convert it by ColumnarCandidateStore and use LocalColumnarDatabase instead
+ * 
  * @author chrisr
  * 
  */
+@Deprecated
 public class LocalZippedPSVDatabase extends AbstractDatabase {
 
 	private java.util.ArrayList<ICandidate> candidates;
+	private CandidateIdentifierIndex identifierIndex = new CandidateIdentifierIndex();
 
 	public LocalZippedPSVDatabase(Settings settings) {
 		super(settings);
@@ -231,10 +236,7 @@ public class LocalZippedPSVDatabase extends AbstractDatabase {
 	 * @return
 	 */
 	private int indexOfIdentifier(String identifier) {
-		for (int i = 0; i < this.candidates.size(); i++)
-			if (this.candidates.get(i).getIdentifier().equals(identifier))
-				return i;
-		return -1;
+		return this.identifierIndex.indexOf(this.candidates, identifier);
 	}
 	
 	public static void main(String[] args) {
@@ -0,0 +1,405 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.molecularformula.ByteMolecularFormula;
+import de.ipbhalle.metfraglib.parameter.ClassNames;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * compiled binary candidate file read by LocalIndexedDatabase
+ *
+ * the file contains fixed-width records sorted by monoisotopic mass followed by the record indeces sorted by
+ * molecular formula and a heap with the candidate properties
+ *
+ * record: mass (double), index in the input file (int), offset and length of the candidate properties (int, int),
+ * offset and length of the molecular formula (int, int), offsets relative to the heap start
+ *
+ * the file is mapped read-only so mass and formula queries are binary searches on the mapped records
+ * and only the candidates within the result are decoded
+ * as a single mapping is used the file size is limited to 2 GB
+ *
+ * any LocalPSV, LocalCSV or LocalSDF database can be converted by
+ * java de.ipbhalle.metfraglib.database.MassSortedCandidateIndex LocalPSV input.psv output.mfi
+ *
+ * @author cruttkie
+ *
+ */
+public class MassSortedCandidateIndex {
+
+	private static final int MAGIC_NUMBER = 0x4D464349;
+	private static final int VERSION = 1;
+	private static final int RECORD_SIZE = 8 + 4 + 4 + 4 + 4 + 4;
+	private static final byte STRING_VALUE = 0;
+	private static final byte DOUBLE_VALUE = 1;
+
+	private final ByteBuffer buffer;
+	private final int numberRecords;
+	private final String[] propertyNames;
+	private final int recordsStart;
+	private final int formulaIndexStart;
+	private final int heapStart;
+
+	private MassSortedCandidateIndex(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if(buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != VERSION) throw new IOException("Unknown candidate index format");
+		this.numberRecords = buffer.getInt();
+		this.propertyNames = new String[buffer.getInt()];
+		for(int i = 0; i < this.propertyNames.length; i++) {
+			byte[] name = new byte[buffer.getInt()];
+			buffer.get(name);
+			this.propertyNames[i] = new String(name, StandardCharsets.UTF_8);
+		}
+		this.recordsStart = buffer.position();
+		this.formulaIndexStart = this.recordsStart + this.numberRecords * RECORD_SIZE;
+		this.heapStart = this.formulaIndexStart + this.numberRecords * 4;
+		if(this.heapStart > buffer.limit()) throw new IOException("Corrupt candidate index file");
+	}
+
+	/**
+	 * maps the given index file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static MassSortedCandidateIndex open(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) throw new IOException("Candidate index file " + file.getAbsolutePath() + " is too large");
+			return new MassSortedCandidateIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public int getNumberRecords() {
+		return this.numberRecords;
+	}
+
+	public double getMass(int record) {
+		return this.buffer.getDouble(this.recordsStart + record * RECORD_SIZE);
+	}
+
+	/**
+	 * index of the candidate in the converted input file
+	 *
+	 * @param record
+	 * @return
+	 */
+	public int getFileIndex(int record) {
+		return this.buffer.getInt(this.recordsStart + record * RECORD_SIZE + 8);
+	}
+
+	/**
+	 * the molecular formula of the candidate as written by ByteMolecularFormula
+	 *
+	 * @param record
+	 * @return
+	 */
+	public String getFormula(int record) {
+		int position = this.recordsStart + record * RECORD_SIZE + 16;
+		return this.readString(this.heapStart + this.buffer.getInt(position + 4), this.buffer.getInt(position + 8));
+	}
+
+	/**
+	 * first record with a mass not smaller than the given mass
+	 *
+	 * @param mass
+	 * @return
+	 */
+	public int getFirstRecordByMass(double mass) {
+		int low = 0;
+		int high = this.numberRecords;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(this.getMass(middle) < mass) low = middle + 1;
+			else high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * records with lowerLimit <= mass <= upperLimit in the order of the input file
+	 *
+	 * @param lowerLimit
+	 * @param upperLimit
+	 * @return
+	 */
+	public int[] getRecordsByMass(double lowerLimit, double upperLimit) {
+		int first = this.getFirstRecordByMass(lowerLimit);
+		int last = first;
+		while(last < this.numberRecords && this.getMass(last) <= upperLimit) last++;
+		int[] records = new int[last - first];
+		for(int i = 0; i < records.length; i++) records[i] = first + i;
+		return this.sortByFileIndex(records);
+	}
+
+	/**
+	 * records with the given molecular formula in the order of the input file
+	 *
+	 * @param formula formula as written by ByteMolecularFormula
+	 * @return
+	 */
+	public int[] getRecordsByFormula(String formula) {
+		byte[] formulaBytes = formula.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = this.numberRecords;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(this.compareFormula(this.getRecordOfFormulaIndex(middle), formulaBytes) < 0) low = middle + 1;
+			else high = middle;
+		}
+		int last = low;
+		while(last < this.numberRecords && this.compareFormula(this.getRecordOfFormulaIndex(last), formulaBytes) == 0) last++;
+		int[] records = new int[last - low];
+		for(int i = 0; i < records.length; i++) records[i] = this.getRecordOfFormulaIndex(low + i);
+		return this.sortByFileIndex(records);
+	}
+
+	/**
+	 * all records in the order of the input file
+	 *
+	 * @return
+	 */
+	public int[] getAllRecords() {
+		int[] records = new int[this.numberRecords];
+		for(int i = 0; i < records.length; i++) records[i] = i;
+		return this.sortByFileIndex(records);
+	}
+
+	/**
+	 * decodes the candidate of the given record
+	 *
+	 * @param record
+	 * @return
+	 */
+	public ICandidate getCandidate(int record) {
+		int position = this.heapStart + this.buffer.getInt(this.recordsStart + record * RECORD_SIZE + 12);
+		int numberProperties = this.buffer.getShort(position);
+		position += 2;
+		java.util.HashMap<String, Object> properties = new java.util.HashMap<String, Object>();
+		for(int i = 0; i < numberProperties; i++) {
+			String name = this.propertyNames[this.buffer.getShort(position)];
+			byte type = this.buffer.get(position + 2);
+			position += 3;
+			if(type == DOUBLE_VALUE) {
+				properties.put(name, this.buffer.getDouble(position));
+				position += 8;
+			}
+			else {
+				int length = this.buffer.getInt(position);
+				properties.put(name, this.readString(position + 4, length));
+				position += 4 + length;
+			}
+		}
+		ICandidate candidate = new TopDownPrecursorCandidate((String)properties.get(VariableNames.INCHI_NAME), (String)properties.get(VariableNames.IDENTIFIER_NAME));
+		java.util.Iterator<String> names = properties.keySet().iterator();
+		while(names.hasNext()) {
+			String name = names.next();
+			candidate.setProperty(name, properties.get(name));
+		}
+		return candidate;
+	}
+
+	private int getRecordOfFormulaIndex(int formulaIndex) {
+		return this.buffer.getInt(this.formulaIndexStart + formulaIndex * 4);
+	}
+
+	/*
+	 * compares the formula bytes of the given record with the given bytes
+	 */
+	private int compareFormula(int record, byte[] formulaBytes) {
+		int position = this.recordsStart + record * RECORD_SIZE + 20;
+		int offset = this.heapStart + this.buffer.getInt(position);
+		int length = this.buffer.getInt(position + 4);
+		for(int i = 0; i < Math.min(length, formulaBytes.length); i++) {
+			int difference = (this.buffer.get(offset + i) & 0xff) - (formulaBytes[i] & 0xff);
+			if(difference != 0) return difference;
+		}
+		return length - formulaBytes.length;
+	}
+
+	private String readString(int position, int length) {
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++) bytes[i] = this.buffer.get(position + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int[] sortByFileIndex(int[] records) {
+		long[] keys = new long[records.length];
+		for(int i = 0; i < records.length; i++) keys[i] = ((long)this.getFileIndex(records[i]) << 32) | records[i];
+		java.util.Arrays.sort(keys);
+		for(int i = 0; i < records.length; i++) records[i] = (int)keys[i];
+		return records;
+	}
+
+	/**
+	 * molecular formula string used for the formula index
+	 *
+	 * @param formula
+	 * @return
+	 */
+	public static String getIndexFormula(String formula) {
+		if(formula == null) return "";
+		try {
+			return new ByteMolecularFormula(formula).toString();
+		} catch (Exception e) {
+			return formula;
+		}
+	}
+
+	/**
+	 * writes the given candidates to a new index file
+	 *
+	 * @param candidates candidates with MonoisotopicMass (Double), Identifier and InChI defined
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(java.util.List<ICandidate> candidates, File file) throws IOException {
+		java.util.LinkedHashMap<String, Integer> propertyNameToIndex = new java.util.LinkedHashMap<String, Integer>();
+		byte[][] candidateData = new byte[candidates.size()][];
+		byte[][] formulas = new byte[candidates.size()][];
+		double[] masses = new double[candidates.size()];
+		for(int i = 0; i < candidates.size(); i++) {
+			ICandidate candidate = candidates.get(i);
+			masses[i] = (Double)candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME);
+			formulas[i] = getIndexFormula((String)candidate.getProperty(VariableNames.MOLECULAR_FORMULA_NAME)).getBytes(StandardCharsets.UTF_8);
+			candidateData[i] = encodeCandidate(candidate, propertyNameToIndex);
+		}
+		/*
+		 * sort by mass and molecular formula keeping the input order for equal values
+		 */
+		Integer[] massOrder = new Integer[candidates.size()];
+		Integer[] formulaOrder = new Integer[candidates.size()];
+		for(int i = 0; i < massOrder.length; i++) massOrder[i] = formulaOrder[i] = i;
+		java.util.Arrays.sort(massOrder, new java.util.Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return Double.compare(masses[first], masses[second]);
+			}
+		});
+		java.util.Arrays.sort(formulaOrder, new java.util.Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return compareBytes(formulas[first], formulas[second]);
+			}
+		});
+		int[] candidateToRecord = new int[candidates.size()];
+		for(int i = 0; i < massOrder.length; i++) candidateToRecord[massOrder[i]] = i;
+
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try(java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC_NUMBER);
+			out.writeInt(VERSION);
+			out.writeInt(candidates.size());
+			out.writeInt(propertyNameToIndex.size());
+			for(String propertyName : propertyNameToIndex.keySet()) {
+				byte[] name = propertyName.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(name.length);
+				out.write(name);
+			}
+			/*
+			 * heap contains the candidate properties followed by the formula of each candidate in the record order
+			 */
+			long heapOffset = 0;
+			for(int i = 0; i < massOrder.length; i++) {
+				int candidateIndex = massOrder[i];
+				out.writeDouble(masses[candidateIndex]);
+				out.writeInt(candidateIndex);
+				out.writeInt((int)heapOffset);
+				out.writeInt(candidateData[candidateIndex].length);
+				out.writeInt((int)(heapOffset + candidateData[candidateIndex].length));
+				out.writeInt(formulas[candidateIndex].length);
+				heapOffset += candidateData[candidateIndex].length + formulas[candidateIndex].length;
+				if(heapOffset > Integer.MAX_VALUE - out.size()) throw new IOException("Too many candidates for a single index file");
+			}
+			for(int i = 0; i < formulaOrder.length; i++) out.writeInt(candidateToRecord[formulaOrder[i]]);
+			for(int i = 0; i < massOrder.length; i++) {
+				out.write(candidateData[massOrder[i]]);
+				out.write(formulas[massOrder[i]]);
+			}
+		} catch(IOException e) {
+			tempFile.delete();
+			throw e;
+		}
+		java.nio.file.Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static byte[] encodeCandidate(ICandidate candidate, java.util.Map<String, Integer> propertyNameToIndex) throws IOException {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+		java.util.Hashtable<String, Object> properties = candidate.getProperties();
+		java.util.ArrayList<String> names = new java.util.ArrayList<String>();
+		for(String name : properties.keySet())
+			if(properties.get(name) != null) names.add(name);
+		java.util.Collections.sort(names);
+		out.writeShort(names.size());
+		for(String name : names) {
+			Integer nameIndex = propertyNameToIndex.get(name);
+			if(nameIndex == null) {
+				nameIndex = propertyNameToIndex.size();
+				if(nameIndex > Short.MAX_VALUE) throw new IOException("Too many different candidate properties");
+				propertyNameToIndex.put(name, nameIndex);
+			}
+			out.writeShort(nameIndex);
+			Object value = properties.get(name);
+			if(value instanceof Double) {
+				out.writeByte(DOUBLE_VALUE);
+				out.writeDouble((Double)value);
+			}
+			else {
+				byte[] valueBytes = value.toString().getBytes(StandardCharsets.UTF_8);
+				out.writeByte(STRING_VALUE);
+				out.writeInt(valueBytes.length);
+				out.write(valueBytes);
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static int compareBytes(byte[] first, byte[] second) {
+		for(int i = 0; i < Math.min(first.length, second.length); i++) {
+			int difference = (first[i] & 0xff) - (second[i] & 0xff);
+			if(difference != 0) return difference;
+		}
+		return first.length - second.length;
+	}
+
+	/**
+	 * reads all candidates of the given file database and writes them to the index file
+	 *
+	 * @param databaseType LocalPSV, LocalCSV or LocalSDF
+	 * @param inputPath
+	 * @param outputPath
+	 * @return number of written candidates
+	 * @throws Exception
+	 */
+	public static int convert(String databaseType, String inputPath, String outputPath) throws Exception {
+		String className = ClassNames.getClassNameOfDatabase(databaseType);
+		if(className == null) throw new IllegalArgumentException("Unknown database type " + databaseType);
+		//no search parameters so all candidates are read
+		Settings settings = new Settings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, inputPath);
+		IDatabase database = (IDatabase)Class.forName(className).getConstructor(Settings.class).newInstance(settings);
+		if(!(database instanceof AbstractFileDatabase) || database instanceof LocalIndexedDatabase)
+			throw new IllegalArgumentException("Database type " + databaseType + " cannot be converted");
+		database.getCandidateIdentifiers();
+		java.util.ArrayList<ICandidate> candidates = ((AbstractFileDatabase)database).candidates;
+		write(candidates, new File(outputPath));
+		return candidates.size();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length != 3) {
+			System.err.println("usage: MassSortedCandidateIndex LocalPSV|LocalCSV|LocalSDF input_file index_file");
+			System.exit(1);
+		}
+		int numberCandidates = convert(args[0], args[1], args[2]);
+		System.out.println("Wrote " + numberCandidates + " candidates to " + args[2]);
+	}
+}
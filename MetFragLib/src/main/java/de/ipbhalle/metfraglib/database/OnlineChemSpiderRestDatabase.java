@@ -32,10 +32,12 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 	private int errors;
 	private String apikey;
 	private final int MAX_TRIALS = 10;
+	private OnlineDatabaseFetcher fetcher;
 	
 	public OnlineChemSpiderRestDatabase(Settings settings) {
 		super(settings);
 		this.errors = 0;
+		this.fetcher = OnlineDatabaseFetcher.getInstance(settings);
 		this.apikey = (String)settings.get(VariableNames.CHEMSPIDER_REST_TOKEN_NAME);
 		logger.info("Fetching candidates from ChemSpider (REST API)");
 	}
@@ -47,40 +49,18 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 		this.errors = 0;
 		double mzabs = MathTools.calculateAbsoluteDeviation(monoisotopicMass, relativeMassDeviation);
 		
-		HttpPost httpPost = new HttpPost("https://api.rsc.org/compounds/v1/filter/mass/");
-		
-		httpPost.addHeader("apikey", this.apikey);
-		
 		String json = "{\"mass\":" + monoisotopicMass + ", \"range\": " + mzabs + "}";
-	    
-		StringEntity entity = new StringEntity(json);
-	    entity.setContentType("application/json");
-	    
-	    httpPost.setEntity(entity);
 
-		ArrayList<String> identifiers = this.getIdentifieresByQueryID(this.getResults(httpPost));
-	    
-		return identifiers;
+		return this.getIdentifiersByFilter("https://api.rsc.org/compounds/v1/filter/mass/", json);
 	}
 
 	@Override
 	public ArrayList<String> getCandidateIdentifiers(String molecularFormula) throws Exception {
 
 		this.errors = 0;
-		HttpPost httpPost = new HttpPost("https://api.rsc.org/compounds/v1/filter/formula/");
-		
-		httpPost.addHeader("apikey", this.apikey);
-		
 		String json = "{\"formula\": \"" + molecularFormula + "\"}";
-		
-		StringEntity entity = new StringEntity(json);
-	    entity.setContentType("application/json");
-	    
-	    httpPost.setEntity(entity);
-	    
-		ArrayList<String> identifiers = this.getIdentifieresByQueryID(this.getResults(httpPost));
-		
-		return identifiers;
+
+		return this.getIdentifiersByFilter("https://api.rsc.org/compounds/v1/filter/formula/", json);
 	}
 
 	@Override
@@ -118,6 +98,7 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 	}
 
 	/**
+	 * records are cached per identifier, only identifiers not cached are requested in batches of 100
 	 * 
 	 * @param identifiers
 	 * @param candidateList
@@ -127,28 +108,17 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 	 */
 	protected void addToCandidateList(List<String> identifiers, CandidateList candidateList) throws ClientProtocolException, IOException, ParseException {
 		if(identifiers.size() == 0) return;
-		String recordIds = identifiers.get(0);
-		for(int i = 1; i < Math.min(identifiers.size(), 100); i++)
-			recordIds += "," + identifiers.get(i);
-		
-		HttpPost httpPost = new HttpPost("https://api.rsc.org/compounds/v1/records/batch");
-		
-		String json = "{\"recordIds\": [" + recordIds + "], \"fields\": [\"SMILES\",\"MonoisotopicMass\",\"Formula\",\"CommonName\",\"ReferenceCount\",\"DataSourceCount\",\"PubMedCount\",\"RSCCount\"] }";
-
-		StringEntity entity = new StringEntity(json);
-		entity.setContentType("application/json");
-	
-		httpPost.setEntity(entity);
-		    
-		JSONObject jsonObject = this.getResults(httpPost);
-
-		if(!jsonObject.containsKey("records")) return;
-		
-		JSONArray records = (JSONArray)jsonObject.get("records");
-
-		for(Object obj : records) {
+		java.util.HashMap<String, String> idToRecord = this.fetcher.getBatch("https://api.rsc.org/compounds/v1/records/batch", identifiers, 100, new OnlineDatabaseFetcher.BatchRequest() {
+			public java.util.Map<String, String> run(List<String> recordIds) throws IOException {
+				return fetchRecords(recordIds);
+			}
+		});
+		JSONParser parser = new JSONParser();
+		for(String identifier : new java.util.LinkedHashSet<String>(identifiers)) {
+			String record = idToRecord.get(identifier);
+			if(record == null) continue;
 			try {
-				ICandidate candidate = this.generateCandidate((JSONObject)obj);
+				ICandidate candidate = this.generateCandidate((JSONObject)parser.parse(record));
 				if(candidate != null) candidateList.addElement(candidate);
 				else this.errors++;
 			} catch (Exception e) {
@@ -157,9 +127,39 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 				continue;
 			}
 		}
+	}
+
+	/**
+	 * 
+	 * @param recordIds at most 100 identifiers
+	 * @return json record by identifier
+	 * @throws IOException
+	 */
+	protected java.util.Map<String, String> fetchRecords(List<String> recordIds) throws IOException {
+		java.util.HashMap<String, String> idToRecord = new java.util.HashMap<String, String>();
+		HttpPost httpPost = new HttpPost(this.fetcher.resolve("https://api.rsc.org/compounds/v1/records/batch"));
+		
+		String json = "{\"recordIds\": [" + String.join(",", recordIds) + "], \"fields\": [\"SMILES\",\"MonoisotopicMass\",\"Formula\",\"CommonName\",\"ReferenceCount\",\"DataSourceCount\",\"PubMedCount\",\"RSCCount\"] }";
+
+		StringEntity entity = new StringEntity(json);
+		entity.setContentType("application/json");
+	
+		httpPost.setEntity(entity);
+		    
+		JSONObject jsonObject = null;
+		try {
+			jsonObject = this.getResults(httpPost);
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+
+		if(!jsonObject.containsKey("records")) return idToRecord;
 		
-		// continue recursion
-		this.addToCandidateList(identifiers.subList(Math.min(identifiers.size(), 100), identifiers.size()), candidateList);
+		for(Object obj : (JSONArray)jsonObject.get("records")) {
+			Object id = ((JSONObject)obj).get("id");
+			if(id != null) idToRecord.put(String.valueOf(id), ((JSONObject)obj).toJSONString());
+		}
+		return idToRecord;
 	}
 	
 	protected ICandidate generateCandidate(JSONObject jsonObject) {
@@ -209,6 +209,43 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 		return preFormula;
 	}
 	
+	/**
+	 * the query id of a filter request is only valid for a short time, so the resulting identifiers
+	 * are cached for the filter
+	 * 
+	 * @param endpoint
+	 * @param json filter
+	 * @return
+	 * @throws Exception
+	 */
+	protected ArrayList<String> getIdentifiersByFilter(final String endpoint, final String json) throws Exception {
+		byte[] response = this.fetcher.getCached(endpoint + "|" + json, new OnlineDatabaseFetcher.Request() {
+			public byte[] run() throws IOException {
+				HttpPost httpPost = new HttpPost(fetcher.resolve(endpoint));
+				
+				httpPost.addHeader("apikey", apikey);
+				
+				StringEntity entity = new StringEntity(json);
+			    entity.setContentType("application/json");
+			    
+			    httpPost.setEntity(entity);
+			    
+			    try {
+			    	return String.join("\n", getIdentifieresByQueryID(getResults(httpPost))).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+			    } catch (IOException e) {
+			    	throw e;
+			    } catch (Exception e) {
+			    	throw new IOException(e);
+			    }
+			}
+		});
+		ArrayList<String> identifiers = new ArrayList<String>();
+		if(response == null) return identifiers;
+		for(String identifier : new String(response, java.nio.charset.StandardCharsets.UTF_8).split("\n"))
+			if(identifier.length() != 0) identifiers.add(identifier);
+		return identifiers;
+	}
+	
 	protected ArrayList<String> getIdentifieresByQueryID(JSONObject jsonObject) throws Exception {
 		if(!jsonObject.containsKey("queryId")) return new ArrayList<String>();
 		String queryid = (String)jsonObject.get("queryId");
@@ -225,7 +262,7 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 			if(trials >= MAX_TRIALS) throw new Exception();
 		}
 		
-		HttpGet httpGet = new HttpGet("https://api.rsc.org/compounds/v1/filter/" + queryid + "/results");
+		HttpGet httpGet = new HttpGet(this.fetcher.resolve("https://api.rsc.org/compounds/v1/filter/" + queryid + "/results"));
 
 		JSONObject jsonObject1 = this.getResults(httpGet);
 		
@@ -241,7 +278,7 @@ public class OnlineChemSpiderRestDatabase extends AbstractDatabase {
 	}
 	
 	protected boolean checkStatus(String queryID) throws ClientProtocolException, IOException, ParseException {
-		HttpGet httpGet = new HttpGet("https://api.rsc.org/compounds/v1/filter/" + queryID + "/status");
+		HttpGet httpGet = new HttpGet(this.fetcher.resolve("https://api.rsc.org/compounds/v1/filter/" + queryID + "/status"));
 
 		JSONObject jsonObject = this.getResults(httpGet);
 		
@@ -0,0 +1,322 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.interfaces.IResponseCache;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * fetches responses of online databases through a response cache
+ *
+ * responses are cached by endpoint and normalized query (host in lower case, sorted query parameters)
+ * concurrent requests of the same query wait for a single request
+ * batch requests (e.g. compound records by identifier) are cached per identifier, only identifiers
+ * neither cached nor requested by another thread are fetched in batches of the given size
+ *
+ * if a stand-in url is set, scheme, host and port of all requested urls are replaced by it
+ * so that the databases can be run against a local server
+ *
+ * without cache path responses are only shared between concurrent requests
+ *
+ * @author cruttkie
+ *
+ */
+public class OnlineDatabaseFetcher {
+
+	private static final java.util.HashMap<String, OnlineDatabaseFetcher> fetchers = new java.util.HashMap<String, OnlineDatabaseFetcher>();
+	private static final int CONNECTION_TIMEOUT = 30000;
+	//first byte of a cached response
+	private static final byte NOT_FOUND = 0;
+	private static final byte FOUND = 1;
+
+	private Logger logger = Logger.getLogger(OnlineDatabaseFetcher.class);
+
+	private final IResponseCache cache;
+	private final String standInUrl;
+	private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<byte[]>> runningRequests = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.FutureTask<byte[]>>();
+	private final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.CompletableFuture<String>> runningBatchIdentifiers = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.CompletableFuture<String>>();
+	private final java.util.concurrent.atomic.AtomicLong numberRequests = new java.util.concurrent.atomic.AtomicLong();
+
+	/**
+	 *
+	 * @param cache cache for the responses, null to only share concurrent requests
+	 * @param standInUrl url replacing scheme, host and port of requested urls, e.g. http://localhost:8080, or null
+	 */
+	public OnlineDatabaseFetcher(IResponseCache cache, String standInUrl) {
+		this.cache = cache;
+		this.standInUrl = standInUrl == null ? null : standInUrl.replaceAll("/+$", "");
+	}
+
+	/**
+	 * returns the fetcher for the cache path, time to live and stand-in url of the given settings
+	 *
+	 * if the cache directory cannot be created responses are not cached
+	 *
+	 * @param settings
+	 * @return
+	 */
+	public static synchronized OnlineDatabaseFetcher getInstance(Settings settings) {
+		String cachePath = (String)settings.get(VariableNames.ONLINE_DATABASE_CACHE_PATH_NAME);
+		Integer timeToLive = (Integer)settings.get(VariableNames.ONLINE_DATABASE_CACHE_TIME_TO_LIVE_NAME);
+		String standInUrl = (String)settings.get(VariableNames.ONLINE_DATABASE_STAND_IN_URL_NAME);
+		String key = cachePath + "|" + timeToLive + "|" + standInUrl;
+		OnlineDatabaseFetcher fetcher = fetchers.get(key);
+		if(fetcher == null) {
+			IResponseCache cache = null;
+			if(cachePath != null) {
+				try {
+					cache = new FileResponseCache(new java.io.File(cachePath), timeToLive * 1000L);
+				} catch (IOException e) {
+					Logger.getLogger(OnlineDatabaseFetcher.class).warn(e.getMessage() + ". Online database responses are not cached.");
+				}
+			}
+			fetcher = new OnlineDatabaseFetcher(cache, standInUrl);
+			fetchers.put(key, fetcher);
+		}
+		return fetcher;
+	}
+
+	/**
+	 * cached http get request
+	 *
+	 * @param url
+	 * @param proxy proxy or null
+	 * @return response body or null if not found (404)
+	 * @throws IOException
+	 */
+	public byte[] get(final String url, final Proxy proxy) throws IOException {
+		return this.getCached(normalizeUrl(url), new Request() {
+			public byte[] run() throws IOException {
+				return fetch(url, proxy);
+			}
+		});
+	}
+
+	/**
+	 * cached response of an arbitrary request, e.g. a post request or a query needing several requests
+	 *
+	 * @param key endpoint and normalized query
+	 * @param request
+	 * @return response or null if not found
+	 * @throws IOException
+	 */
+	public byte[] getCached(final String key, final Request request) throws IOException {
+		byte[] cached = this.getFromCache(key);
+		if(cached != null) return decode(cached);
+		java.util.concurrent.FutureTask<byte[]> task = new java.util.concurrent.FutureTask<byte[]>(new java.util.concurrent.Callable<byte[]>() {
+			public byte[] call() throws Exception {
+				//stored by a request finished in the meantime
+				byte[] cached = getFromCache(key);
+				if(cached != null) return cached;
+				byte[] response = encode(request.run());
+				if(cache != null) cache.put(key, response);
+				return response;
+			}
+		});
+		java.util.concurrent.FutureTask<byte[]> runningTask = this.runningRequests.putIfAbsent(key, task);
+		if(runningTask == null) {
+			runningTask = task;
+			try {
+				task.run();
+			} finally {
+				this.runningRequests.remove(key, task);
+			}
+		}
+		try {
+			return decode(runningTask.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new java.io.InterruptedIOException("Interrupted while waiting for " + key);
+		} catch (java.util.concurrent.ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * values of the given identifiers cached per identifier
+	 * identifiers not cached are requested in batches of at most batchSize identifiers
+	 * identifiers currently requested by another thread are not requested again
+	 *
+	 * @param endpoint used as part of the cache key
+	 * @param identifiers
+	 * @param batchSize
+	 * @param request
+	 * @return values of the found identifiers
+	 * @throws IOException
+	 */
+	public java.util.HashMap<String, String> getBatch(String endpoint, java.util.Collection<String> identifiers, int batchSize, BatchRequest request) throws IOException {
+		java.util.HashMap<String, String> values = new java.util.HashMap<String, String>();
+		java.util.ArrayList<String> claimedIdentifiers = new java.util.ArrayList<String>();
+		java.util.LinkedHashMap<String, java.util.concurrent.CompletableFuture<String>> waitingIdentifiers = new java.util.LinkedHashMap<String, java.util.concurrent.CompletableFuture<String>>();
+		for(String identifier : new java.util.LinkedHashSet<String>(identifiers)) {
+			String key = endpoint + "|" + identifier;
+			byte[] cached = this.getFromCache(key);
+			if(cached != null) {
+				byte[] value = decode(cached);
+				if(value != null) values.put(identifier, new String(value, StandardCharsets.UTF_8));
+				continue;
+			}
+			java.util.concurrent.CompletableFuture<String> future = new java.util.concurrent.CompletableFuture<String>();
+			java.util.concurrent.CompletableFuture<String> runningFuture = this.runningBatchIdentifiers.putIfAbsent(key, future);
+			if(runningFuture != null) {
+				waitingIdentifiers.put(identifier, runningFuture);
+				continue;
+			}
+			//stored by a request finished in the meantime
+			cached = this.getFromCache(key);
+			if(cached == null) {
+				claimedIdentifiers.add(identifier);
+				continue;
+			}
+			byte[] value = decode(cached);
+			String cachedValue = value == null ? null : new String(value, StandardCharsets.UTF_8);
+			if(cachedValue != null) values.put(identifier, cachedValue);
+			this.runningBatchIdentifiers.remove(key, future);
+			future.complete(cachedValue);
+		}
+		try {
+			for(int start = 0; start < claimedIdentifiers.size(); start += batchSize) {
+				java.util.List<String> batch = claimedIdentifiers.subList(start, Math.min(claimedIdentifiers.size(), start + batchSize));
+				this.numberRequests.incrementAndGet();
+				java.util.Map<String, String> batchValues = request.run(batch);
+				for(String identifier : batch) {
+					String key = endpoint + "|" + identifier;
+					String value = batchValues.get(identifier);
+					byte[] response = encode(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+					if(this.cache != null) this.cache.put(key, response);
+					if(value != null) values.put(identifier, value);
+					this.runningBatchIdentifiers.remove(key).complete(value);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			for(String identifier : claimedIdentifiers) {
+				java.util.concurrent.CompletableFuture<String> future = this.runningBatchIdentifiers.remove(endpoint + "|" + identifier);
+				if(future != null) future.completeExceptionally(e);
+			}
+			throw e;
+		}
+		for(java.util.Map.Entry<String, java.util.concurrent.CompletableFuture<String>> entry : waitingIdentifiers.entrySet()) {
+			try {
+				String value = entry.getValue().get();
+				if(value != null) values.put(entry.getKey(), value);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new java.io.InterruptedIOException("Interrupted while waiting for " + entry.getKey());
+			} catch (java.util.concurrent.ExecutionException e) {
+				if(e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new IOException(e.getCause());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * uncached http get request, used for responses that change, e.g. pending PubChem list keys
+	 *
+	 * @param url
+	 * @param proxy proxy or null
+	 * @return response body or null if not found (404)
+	 * @throws IOException
+	 */
+	public byte[] fetch(String url, Proxy proxy) throws IOException {
+		java.net.URL resolvedUrl = new java.net.URL(this.resolve(url));
+		this.numberRequests.incrementAndGet();
+		this.logger.trace(resolvedUrl);
+		HttpURLConnection connection = (HttpURLConnection)(proxy == null ? resolvedUrl.openConnection() : resolvedUrl.openConnection(proxy));
+		try {
+			connection.setConnectTimeout(CONNECTION_TIMEOUT);
+			connection.setReadTimeout(CONNECTION_TIMEOUT);
+			int responseCode = connection.getResponseCode();
+			if(responseCode == 404) return null;
+			if(responseCode != 200 && responseCode != 202) throw new IOException(responseCode + " " + connection.getResponseMessage() + " (" + url + ")");
+			try(java.io.InputStream stream = connection.getInputStream()) {
+				return stream.readAllBytes();
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * replaces scheme, host and port by the stand-in url if set
+	 *
+	 * @param url
+	 * @return
+	 */
+	public String resolve(String url) {
+		if(this.standInUrl == null) return url;
+		return this.standInUrl + url.replaceFirst("^[a-zA-Z]+://[^/]*", "");
+	}
+
+	/**
+	 *
+	 * @return number of http and batch requests sent
+	 */
+	public long getNumberRequests() {
+		return this.numberRequests.get();
+	}
+
+	/**
+	 * url with scheme and host in lower case and sorted query parameters
+	 *
+	 * @param url
+	 * @return
+	 */
+	public static String normalizeUrl(String url) {
+		int queryStart = url.indexOf('?');
+		String address = queryStart == -1 ? url : url.substring(0, queryStart);
+		int pathStart = address.indexOf('/', address.indexOf("://") + 3);
+		if(address.contains("://")) address = (pathStart == -1 ? address.toLowerCase() : address.substring(0, pathStart).toLowerCase() + address.substring(pathStart));
+		if(queryStart == -1) return address;
+		String[] parameters = url.substring(queryStart + 1).split("&");
+		java.util.Arrays.sort(parameters);
+		return address + "?" + String.join("&", parameters);
+	}
+
+	private byte[] getFromCache(String key) {
+		return this.cache == null ? null : this.cache.get(key);
+	}
+
+	private static byte[] encode(byte[] response) {
+		if(response == null) return new byte[] {NOT_FOUND};
+		byte[] encoded = new byte[response.length + 1];
+		encoded[0] = FOUND;
+		System.arraycopy(response, 0, encoded, 1, response.length);
+		return encoded;
+	}
+
+	private static byte[] decode(byte[] encoded) {
+		if(encoded.length == 0 || encoded[0] == NOT_FOUND) return null;
+		return java.util.Arrays.copyOfRange(encoded, 1, encoded.length);
+	}
+
+	/**
+	 * request whose response is cached
+	 */
+	public interface Request {
+		/**
+		 * @return response or null if not found
+		 * @throws IOException
+		 */
+		public byte[] run() throws IOException;
+	}
+
+	/**
+	 * request of the values of several identifiers
+	 */
+	public interface BatchRequest {
+		/**
+		 * @param identifiers
+		 * @return value per found identifier
+		 * @throws IOException
+		 */
+		public java.util.Map<String, String> run(java.util.List<String> identifiers) throws IOException;
+	}
+}
@@ -2,11 +2,9 @@ package de.ipbhalle.metfraglib.database;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
-import java.net.URL;
 
 import org.openscience.cdk.ChemFile;
 import org.openscience.cdk.ChemObject;
@@ -24,10 +22,11 @@ import de.ipbhalle.metfraglib.settings.Settings;
 
 public class OnlineKeggDatabase extends AbstractDatabase {
 	
-	private java.net.HttpURLConnection connection;
+	private OnlineDatabaseFetcher fetcher;
 	
 	public OnlineKeggDatabase(Settings settings) {
 		super(settings);
+		this.fetcher = OnlineDatabaseFetcher.getInstance(settings);
 	}
 	
 	/**
@@ -60,8 +59,6 @@ public class OnlineKeggDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open result stream when using KEGG REST mass search!");
 			throw new Exception();
 		}
-        this.connection.disconnect();
-        this.connection = null;
 		return cids;
 	}
 
@@ -93,8 +90,6 @@ public class OnlineKeggDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open result stream when using KEGG REST sum formula search!");
 			throw new Exception();
 		}
-        this.connection.disconnect();
-        this.connection = null;
 		return cids;
 	}
 
@@ -139,8 +134,6 @@ public class OnlineKeggDatabase extends AbstractDatabase {
         	return null;
         }
         containersList = ChemFileManipulator.getAllAtomContainers(chemFile);
-        this.connection.disconnect();
-        this.connection = null;
         
         MoleculeFunctions.prepareAtomContainer(containersList.get(0), true);
         
@@ -218,39 +211,26 @@ public class OnlineKeggDatabase extends AbstractDatabase {
 	}
 
 	private InputStream getInputStreamFromURL(String urlname) throws Exception {
-		InputStream stream = null;
-		
+		byte[] response = null;
 		try {
-			URL url = new URL(urlname);
-			
 			Proxy proxy = null;
 			if(this.settings.containsKey(VariableNames.KEGG_PROXY_SERVER) && this.settings.containsKey(VariableNames.KEGG_PROXY_PORT)
 					&& this.settings.get(VariableNames.KEGG_PROXY_SERVER) != null && this.settings.get(VariableNames.KEGG_PROXY_PORT) != null) {
 				proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress((String)this.settings.get(VariableNames.KEGG_PROXY_SERVER), (Integer)this.settings.get(VariableNames.KEGG_PROXY_PORT)));
 			}
-
-			if(proxy == null) this.connection = (HttpURLConnection) url.openConnection();
-			else this.connection = (HttpURLConnection) url.openConnection(proxy);
-			
-			this.connection.setConnectTimeout(10000);
-			this.connection.setReadTimeout(10000);
-			/*
-			if (this.connection.getResponseCode() != 200) {
-				System.out.println("throwing exception");
-				throw new IOException(connection.getResponseMessage());
-			}
-			*/
-			stream = connection.getInputStream();
+			response = this.fetcher.get(urlname, proxy);
 		} catch(MalformedURLException mue) {
 			logger.error("Error: Could not create URL object! " + urlname);
 			throw new Exception();
 		} catch (IOException e) {
 			logger.error("Error: Could not open URL connection! " + urlname);
-			e.printStackTrace();
 			throw new Exception();
 		}
-		
-		return stream;
+		if(response == null) {
+			logger.error("Error: Could not open URL connection! " + urlname);
+			throw new Exception();
+		}
+		return new java.io.ByteArrayInputStream(response);
 	}
 	
 }
@@ -2,11 +2,9 @@ package de.ipbhalle.metfraglib.database;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
-import java.net.URL;
 
 import org.dom4j.Document;
 import org.dom4j.Element;
@@ -25,10 +23,11 @@ import de.ipbhalle.metfraglib.settings.Settings;
 
 public class OnlineMetaCycDatabase extends AbstractDatabase {
 	
-	private java.net.HttpURLConnection connection;
+	private OnlineDatabaseFetcher fetcher;
 	
 	public OnlineMetaCycDatabase(Settings settings) {
 		super(settings);
+		this.fetcher = OnlineDatabaseFetcher.getInstance(settings);
 	}
 	
 	/**
@@ -59,8 +58,6 @@ public class OnlineMetaCycDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open result stream when using BioCyc mass search!");
 			throw new Exception();
 		}
-        this.connection.disconnect();
-        this.connection = null;
 		return cids;
 	}
 
@@ -91,8 +88,6 @@ public class OnlineMetaCycDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open result stream when using BioCyc sum formula search!");
 			throw new Exception();
 		}
-        this.connection.disconnect();
-        this.connection = null;
 		return cids;
 	}
 
@@ -109,7 +104,7 @@ public class OnlineMetaCycDatabase extends AbstractDatabase {
 		if(stream == null) return null;
     	
     	SAXReader reader = new SAXReader();
-    	Document doc = reader.read(new URL(urlname));
+    	Document doc = reader.read(stream);
     	Node rootNode = null;
     	try {
     		rootNode = (Node)doc.selectNodes("/ptools-xml/Compound").get(0);
@@ -238,36 +233,14 @@ public class OnlineMetaCycDatabase extends AbstractDatabase {
 	}
 
 	private InputStream getInputStreamFromURL(String urlname) throws Exception {
-		InputStream stream = null;
-		
+		byte[] response = null;
 		try {
-			URL url = new URL(urlname);
 			Proxy proxy = null;
 			if(this.settings.containsKey(VariableNames.METACYC_PROXY_SERVER) && this.settings.containsKey(VariableNames.METACYC_PROXY_PORT)
 					&& this.settings.get(VariableNames.METACYC_PROXY_SERVER) != null && this.settings.get(VariableNames.METACYC_PROXY_PORT) != null) {
-				proxy = new Proxy(Proxy.Type.HTTP, 
-							new InetSocketAddress(
-									(String)this.settings.get(VariableNames.METACYC_PROXY_SERVER), 
-									(Integer)this.settings.get(VariableNames.METACYC_PROXY_PORT))
-							);
-			}
-
-			if(proxy == null) {
-				this.connection = (HttpURLConnection) url.openConnection();
-			}
-			else {
-				this.connection = (HttpURLConnection) url.openConnection(proxy);
+				proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress((String)this.settings.get(VariableNames.METACYC_PROXY_SERVER), (Integer)this.settings.get(VariableNames.METACYC_PROXY_PORT)));
 			}
-			
-			this.connection.setConnectTimeout(30000);
-			this.connection.setReadTimeout(30000);
-			/*
-			if (this.connection.getResponseCode() != 200) {
-				System.out.println("throwing exception");
-				throw new IOException(connection.getResponseMessage());
-			}
-			*/
-			stream = this.connection.getInputStream();
+			response = this.fetcher.get(urlname, proxy);
 		} catch(MalformedURLException mue) {
 			logger.error("Error: Could create URL object! " + urlname);
 			throw new Exception();
@@ -275,8 +248,11 @@ public class OnlineMetaCycDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open URL connection! " + urlname);
 			throw new Exception();
 		}
-		
-		return stream;
+		if(response == null) {
+			logger.error("Error: Could not open URL connection! " + urlname);
+			throw new Exception();
+		}
+		return new java.io.ByteArrayInputStream(response);
 	}
 	
 	
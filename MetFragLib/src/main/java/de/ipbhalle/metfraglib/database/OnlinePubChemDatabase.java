@@ -1,7 +1,6 @@
 package de.ipbhalle.metfraglib.database;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.util.ArrayList;
@@ -16,7 +15,6 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.ipbhalle.metfraglib.additionals.MathTools;
 import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
-import de.ipbhalle.metfraglib.functions.HelperFunctions;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.parameter.Constants;
@@ -26,6 +24,8 @@ import de.ipbhalle.metfraglib.settings.Settings;
 
 public class OnlinePubChemDatabase extends AbstractDatabase {
 
+	private static final String PROPERTIES = "inchi,XLogP,InChIKey,MolecularFormula,IsotopeAtomCount,IsomericSMILES,MonoisotopicMass,IUPACName";
+
 	protected java.util.HashMap<String, String> cidToInChIs = null;
 	protected java.util.HashMap<String, String> cidToInChIKeys = null;
 	protected java.util.HashMap<String, String> cidToMolecularFormulas = null;
@@ -35,10 +35,12 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 	protected java.util.HashMap<String, String> cidToIUPACNames = null;
 	protected java.util.HashMap<String, String> cidToTitleNames = null;
 	protected boolean formulaSearch;
+	protected OnlineDatabaseFetcher fetcher;
 
 	public OnlinePubChemDatabase(Settings settings) {
 		super(settings);
 		this.formulaSearch = false;
+		this.fetcher = OnlineDatabaseFetcher.getInstance(settings);
 		this.cidToInChIs = new java.util.HashMap<String, String>();
 		this.cidToInChIKeys = new java.util.HashMap<String, String>();
 		this.cidToMolecularFormulas = new java.util.HashMap<String, String>();
@@ -80,11 +82,10 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 		double maxMass = monoisotopicMass + mzabs;
 
 		String urlname = "https://eutils.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?db=pccompound&term=" + minMass + "[MIMass]:" + maxMass + "[MIMass]&retmode=json&retmax=100000";
-		java.io.InputStream stream = HelperFunctions.getInputStreamFromURL(urlname);
-		if(stream == null) return new ArrayList<String>();
+		byte[] response = this.fetcher.get(urlname, null);
+		if(response == null) return new ArrayList<String>();
 		JSONParser parser = new JSONParser();
-		JSONObject jsonObject = (JSONObject)parser.parse(new java.io.InputStreamReader(stream));
-		stream.close();
+		JSONObject jsonObject = (JSONObject)parser.parse(new java.io.InputStreamReader(new java.io.ByteArrayInputStream(response)));
 
 		if(jsonObject == null) {
 			logger.error("Error: Could not create JSON object for fetching candidates by mass.");
@@ -106,70 +107,75 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 	 * get cids based on molecular formula
 	 * query is performed via PUB REST API
 	 */
-	public java.util.ArrayList<String> getCandidateIdentifiers(String molecularFormula) throws Exception {
+	public java.util.ArrayList<String> getCandidateIdentifiers(final String molecularFormula) throws Exception {
 		this.formulaSearch = true;
+		/*
+		 * the list key changes with every query, so the resulting cids are cached for the formula
+		 */
+		byte[] response = this.fetcher.getCached("https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/formula/" + molecularFormula + "/cids", new OnlineDatabaseFetcher.Request() {
+			public byte[] run() throws IOException {
+				return fetchCidsByFormula(molecularFormula);
+			}
+		});
+		java.util.ArrayList<String> cids = new ArrayList<String>();
+		if(response == null) return cids;
+		for(String cid : new String(response, java.nio.charset.StandardCharsets.UTF_8).split("\n"))
+			if(cid.length() != 0) cids.add(cid);
+		//ArrayList<String> retrievedHits = savingRetrievedHits(cids);
+		//if(retrievedHits == null) throw new Exception();
+		//return retrievedHits;
+		return cids;
+	}
+
+	/**
+	 * query cids via listkey, one cid per line
+	 * 
+	 * @param molecularFormula
+	 * @return
+	 * @throws IOException
+	 */
+	protected byte[] fetchCidsByFormula(String molecularFormula) throws IOException {
 		String urlname = "https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/formula/" + molecularFormula + "/TXT";
+		logger.trace(urlname);
 		/*
-		 * get stream to retrieve listkey
+		 * get response to retrieve listkey
 		 */
-		java.io.InputStream stream = HelperFunctions.getInputStreamFromURL(urlname);
-		if(stream == null) return new ArrayList<String>();
-		java.io.BufferedReader breader = new java.io.BufferedReader(new java.io.InputStreamReader(stream));
+		byte[] response = this.fetcher.fetch(urlname, null);
+		if(response == null) return null;
+		String[] lines = new String(response, java.nio.charset.StandardCharsets.UTF_8).split("\n");
 		String listKey = "";
-		logger.trace(urlname);
-		breader.readLine();
-		String line = breader.readLine();
-		if(line.contains("ListKey:")) {
-			String[] tmp = line.trim().split("\\s++");
+		if(lines.length > 1 && lines[1].contains("ListKey:")) {
+			String[] tmp = lines[1].trim().split("\\s++");
 			if(tmp.length == 2) listKey = tmp[1];
 		}
-	
-		stream.close();
-		if(listKey.length() == 0) return new ArrayList<String>();
+		if(listKey.length() == 0) return new byte[0];
 		/*
 		 * build url to get cids
 		 */
 		urlname = "https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/listkey/" + listKey + "/cids/TXT";
 		logger.trace(urlname);
-		stream = HelperFunctions.getInputStreamFromURL(urlname);
-		java.util.ArrayList<String> cids = new ArrayList<String>();
-		if(stream == null) {
-			return cids;
-		}
+		response = this.fetcher.fetch(urlname, this.getProxy());
+		if(response == null) return null;
 		/*
-		 * parse cids
+		 * check whether the query has finished, if not fetch the url again
 		 */
-		line = "";
-		breader = new java.io.BufferedReader(new java.io.InputStreamReader(stream));
-		
-		while((line = breader.readLine()) != null) {
-			/*
-			 * check whether the query has finished
-			 */
-			if(line.startsWith("Your")) {
-				/*
-				 * if not fetch the url stream again
-				 */
-				stream = HelperFunctions.getInputStreamFromURL(urlname, this.settings.get(VariableNames.PUBCHEM_PROXY_SERVER), this.settings.get(VariableNames.PUBCHEM_PROXY_PORT));
-				breader = new java.io.BufferedReader(new java.io.InputStreamReader(stream));
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+		while(new String(response, java.nio.charset.StandardCharsets.UTF_8).startsWith("Your")) {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new java.io.InterruptedIOException();
 			}
-			else
-				/*
-				 * in case the query has finished store the cids
-				 */
-				cids.add(0, line.trim());
+			response = this.fetcher.fetch(urlname, this.getProxy());
+			if(response == null) return null;
 		}
-		stream.close();
-		breader.close();
-		//ArrayList<String> retrievedHits = savingRetrievedHits(cids);
-		//if(retrievedHits == null) throw new Exception();
-		//return retrievedHits;
-		return cids;
+		/*
+		 * in case the query has finished store the cids
+		 */
+		java.util.LinkedList<String> cids = new java.util.LinkedList<String>();
+		for(String line : new String(response, java.nio.charset.StandardCharsets.UTF_8).split("\n"))
+			if(line.trim().length() != 0) cids.addFirst(line.trim());
+		return String.join("\n", cids).getBytes(java.nio.charset.StandardCharsets.UTF_8);
 	}
 
 	/**
@@ -270,68 +276,82 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 	 * @return
 	 */
 	private ArrayList<String> savingRetrievedHits(String[] cidsVec) throws Exception {
-		String idString = "";
 		if(cidsVec == null || cidsVec.length == 0)
 			return new ArrayList<String>(); 
 
+		java.util.ArrayList<String> requestedCids = new ArrayList<String>();
+		for(int i = 0; i < cidsVec.length; i++) requestedCids.add(cidsVec[i].trim());
+		/*
+		 * csv lines are cached per cid, only cids not cached are requested in batches of 100
+		 */
+		java.util.HashMap<String, String> cidToLine = null;
+		try {
+			cidToLine = this.fetcher.getBatch("https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/cid/property/" + PROPERTIES + "/CSV", requestedCids, 100, new OnlineDatabaseFetcher.BatchRequest() {
+				public java.util.Map<String, String> run(java.util.List<String> cids) throws IOException {
+					return fetchPropertyLines(cids);
+				}
+			});
+		} catch (java.io.IOException e) {
+			logger.error("Error: Could not open result stream when using Pubchem HTTP request!");
+			throw new Exception();
+		}
 		java.util.ArrayList<String> retrievedCandidates = new ArrayList<String>();
-		for(int i = 0; i < cidsVec.length; i++) {
-			idString += "," + cidsVec[i];
-			if((i % 100 == 0 && i != 0) || (i == cidsVec.length - 1)) {
-				idString = idString.substring(1, idString.length());
-				String urlname = "https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/cid/" + idString + "/property/inchi,XLogP,InChIKey,MolecularFormula,IsotopeAtomCount,IsomericSMILES,MonoisotopicMass,IUPACName/CSV";
-				logger.trace(urlname);
-				java.io.InputStream stream = HelperFunctions.getInputStreamFromURL(urlname);
-				if(stream == null) return new ArrayList<String>();
-				java.io.BufferedReader breader = new java.io.BufferedReader(new java.io.InputStreamReader(stream));
+		for(String cid : new java.util.LinkedHashSet<String>(requestedCids)) {
+			String line = cidToLine.get(cid);
+			if(line == null) continue;
+			String[] tmp = line.split("\\|");
+			/*
+			 * in case formula was used remove all isotopically labelled compounds
+			 */
+			/*
+			if(this.formulaSearch) {
 				try {
-					String line = "";
-					breader = new java.io.BufferedReader(new java.io.InputStreamReader(stream));
-					breader.readLine();
-					while((line = breader.readLine()) != null) {
-						line = line.replaceAll("\",\"", "|").replace("\",", "|").replace(",\"", "|").replaceAll("\"", "");
-						String[] tmp = line.trim().split("\\|");
-						/*
-						 * in case formula was used remove all isotopically labelled compounds
-						 */
-						/*
-						if(this.formulaSearch) {
-							try {
-								int isotopeAtomCount = Integer.parseInt(tmp[5].trim());
-								if(isotopeAtomCount > 0) continue;
-							}
-							catch(Exception e) {
-								//just go on and discard current candidate
-								continue;
-							}
-						}
-						*/
-						this.cidToInChIs.put(tmp[0].trim(), tmp[1].trim());
-						this.cidToInChIKeys.put(tmp[0].trim(), tmp[3].trim());
-						this.cidToMolecularFormulas.put(tmp[0].trim(), tmp[4].trim());
-						this.cidToMonoisotopicMass.put(tmp[0].trim(), Double.parseDouble(tmp[7].trim()));
-						this.cidToSmiles.put(tmp[0].trim(), tmp[6].trim());
-						this.cidToXlogP.put(tmp[0].trim(), tmp[2].trim().length() != 0 ? Double.parseDouble(tmp[2].trim()) : null);
-						this.cidToIUPACNames.put(tmp[0].trim(), tmp.length > 8 ? tmp[8].trim() : "NA");
-						
-						retrievedCandidates.add(tmp[0].trim());
-					}
-					stream.close();
-					breader.close();
-					idString = "";
-				} catch (java.io.IOException e) {
-					logger.error("Error: Could not open result stream when using Pubchem HTTP request!");
-					throw new Exception();
+					int isotopeAtomCount = Integer.parseInt(tmp[5].trim());
+					if(isotopeAtomCount > 0) continue;
 				}
-				finally {
-					stream.close();
-					breader.close();
+				catch(Exception e) {
+					//just go on and discard current candidate
+					continue;
 				}
 			}
+			*/
+			this.cidToInChIs.put(tmp[0].trim(), tmp[1].trim());
+			this.cidToInChIKeys.put(tmp[0].trim(), tmp[3].trim());
+			this.cidToMolecularFormulas.put(tmp[0].trim(), tmp[4].trim());
+			this.cidToMonoisotopicMass.put(tmp[0].trim(), Double.parseDouble(tmp[7].trim()));
+			this.cidToSmiles.put(tmp[0].trim(), tmp[6].trim());
+			this.cidToXlogP.put(tmp[0].trim(), tmp[2].trim().length() != 0 ? Double.parseDouble(tmp[2].trim()) : null);
+			this.cidToIUPACNames.put(tmp[0].trim(), tmp.length > 8 ? tmp[8].trim() : "NA");
+			
+			retrievedCandidates.add(tmp[0].trim());
 		}
 	//	this.assignTitleNames(retrievedCandidates);
 		return retrievedCandidates;
 	}
+
+	/**
+	 * requests the properties of the given cids
+	 * 
+	 * @param cids
+	 * @return '|' separated property line by cid
+	 * @throws IOException
+	 */
+	protected java.util.Map<String, String> fetchPropertyLines(java.util.List<String> cids) throws IOException {
+		java.util.HashMap<String, String> cidToLine = new java.util.HashMap<String, String>();
+		String urlname = "https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/cid/" + String.join(",", cids) + "/property/" + PROPERTIES + "/CSV";
+		logger.trace(urlname);
+		byte[] response = this.fetcher.fetch(urlname, null);
+		if(response == null) return cidToLine;
+		java.io.BufferedReader breader = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.ByteArrayInputStream(response), java.nio.charset.StandardCharsets.UTF_8));
+		String line = "";
+		breader.readLine();
+		while((line = breader.readLine()) != null) {
+			line = line.replaceAll("\",\"", "|").replace("\",", "|").replace(",\"", "|").replaceAll("\"", "").trim();
+			if(line.length() == 0) continue;
+			cidToLine.put(line.split("\\|")[0].trim(), line);
+		}
+		return cidToLine;
+	}
 	
 	/**
 	 * 
@@ -422,28 +442,10 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 	 * @return
 	 */
 	protected java.io.InputStream getStreamForPubChemInfo(String urlname) throws Exception {		
-		java.net.HttpURLConnection connection = null;
-		java.io.InputStream stream = null;
-		int responseCode = 403;
 		try {
-			java.net.URL url = new java.net.URL(urlname);
-
-			Proxy proxy = null;
-			if(this.settings.containsKey(VariableNames.PUBCHEM_PROXY_SERVER) && this.settings.containsKey(VariableNames.PUBCHEM_PROXY_PORT)
-					&& this.settings.get(VariableNames.PUBCHEM_PROXY_SERVER) != null && this.settings.get(VariableNames.PUBCHEM_PROXY_PORT) != null) {
-				proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress((String)this.settings.get(VariableNames.PUBCHEM_PROXY_SERVER), (Integer)this.settings.get(VariableNames.PUBCHEM_PROXY_PORT)));
-			}
-
-			if(proxy == null) connection = (HttpURLConnection) url.openConnection();
-			else connection = (HttpURLConnection) url.openConnection(proxy);
-			
-			responseCode = connection.getResponseCode();
-			if(responseCode == 404) return null;
-			
-			if (responseCode != 200) {
-				throw new IOException(connection.getResponseMessage());
-			}
-			stream = connection.getInputStream();
+			byte[] response = this.fetcher.get(urlname, this.getProxy());
+			if(response == null) return null;
+			return new java.io.ByteArrayInputStream(response);
 		} catch(java.net.MalformedURLException mue) {
 			logger.error("Error: Could create URL object!");
 			return null;
@@ -451,11 +453,18 @@ public class OnlinePubChemDatabase extends AbstractDatabase {
 			logger.error("Error: Could not open URL connection!");
 			return null;
 		}
-		finally {
-		//	if(connection != null) connection.disconnect();
+	}
+
+	/**
+	 * 
+	 * @return proxy set in the settings or null
+	 */
+	protected Proxy getProxy() {
+		if(this.settings.containsKey(VariableNames.PUBCHEM_PROXY_SERVER) && this.settings.containsKey(VariableNames.PUBCHEM_PROXY_PORT)
+				&& this.settings.get(VariableNames.PUBCHEM_PROXY_SERVER) != null && this.settings.get(VariableNames.PUBCHEM_PROXY_PORT) != null) {
+			return new Proxy(Proxy.Type.HTTP, new InetSocketAddress((String)this.settings.get(VariableNames.PUBCHEM_PROXY_SERVER), (Integer)this.settings.get(VariableNames.PUBCHEM_PROXY_PORT)));
 		}
-		return stream;
-	
+		return null;
 	}
 
 }
@@ -0,0 +1,147 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidateCursor;
+
+/**
+ * cursor over the rows of one or more candidate queries of a local sql database
+ *
+ * the queries run one after the other on a single pooled connection with a fetch size set
+ * so the driver only holds the next rows in memory instead of the complete result
+ * the connection is handed back to the pool once the last row was read or the cursor is closed
+ *
+ * @author cruttkie
+ *
+ */
+public class SQLCandidateCursor implements ICandidateCursor {
+
+	private Logger logger = Logger.getLogger(SQLCandidateCursor.class);
+
+	private AbstractLocalDatabase database;
+	private String[] queries;
+	private Object[][] parameters;
+	private int fetchSize;
+
+	private JdbcConnectionPool pool;
+	private Connection connection;
+	private PreparedStatement statement;
+	private ResultSet resultSet;
+	//index of the query currently read
+	private int queryIndex = -1;
+	//candidate read ahead by hasNext
+	private ICandidate nextCandidate;
+	private boolean closed = false;
+
+	/**
+	 *
+	 * @param database database creating the candidates from the result rows
+	 * @param queries queries read one after the other
+	 * @param parameters parameters bound to each of the queries
+	 * @param fetchSize number of rows fetched from the database at once
+	 */
+	protected SQLCandidateCursor(AbstractLocalDatabase database, String[] queries, Object[][] parameters, int fetchSize) {
+		this.database = database;
+		this.queries = queries;
+		this.parameters = parameters;
+		this.fetchSize = Math.max(1, fetchSize);
+		if(queries.length == 0) this.closed = true;
+	}
+
+	public boolean hasNext() {
+		if(this.nextCandidate != null) return true;
+		if(this.closed) return false;
+		try {
+			while(this.resultSet == null || !this.resultSet.next()) {
+				if(!this.openNextQuery()) {
+					this.close();
+					return false;
+				}
+			}
+			this.nextCandidate = this.database.getCandidateFromRow(this.resultSet);
+			return true;
+		} catch (SQLException e) {
+			this.closeFailed();
+			throw new IllegalStateException("Could not read candidates: " + e.getMessage(), e);
+		} catch (RuntimeException e) {
+			this.closeFailed();
+			throw e;
+		}
+	}
+
+	public ICandidate next() {
+		if(!this.hasNext()) throw new java.util.NoSuchElementException();
+		ICandidate candidate = this.nextCandidate;
+		this.nextCandidate = null;
+		return candidate;
+	}
+
+	public void close() {
+		if(this.closed) return;
+		this.closed = true;
+		try {
+			this.closeStatement();
+		} catch (SQLException e) {
+			this.logger.warn("Could not close candidate cursor: " + e.getMessage());
+			this.pool.invalidateConnection(this.connection);
+			this.connection = null;
+			return;
+		}
+		if(this.connection != null) this.pool.releaseConnection(this.connection);
+		this.connection = null;
+	}
+
+	/**
+	 * runs the next query on the connection of this cursor
+	 *
+	 * @return false if all queries have been read
+	 * @throws SQLException
+	 */
+	private boolean openNextQuery() throws SQLException {
+		this.closeStatement();
+		this.queryIndex++;
+		if(this.queryIndex >= this.queries.length) return false;
+		if(this.connection == null) {
+			this.pool = this.database.getConnectionPool();
+			this.connection = this.pool.getConnection();
+			//postgres only fetches rows batch-wise within a transaction
+			this.connection.setAutoCommit(false);
+		}
+		this.logger.trace(this.queries[this.queryIndex]);
+		this.statement = this.connection.prepareStatement(this.queries[this.queryIndex], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		this.statement.setFetchSize(this.fetchSize);
+		for(int i = 0; i < this.parameters[this.queryIndex].length; i++)
+			this.statement.setObject(i + 1, this.parameters[this.queryIndex][i]);
+		this.resultSet = this.statement.executeQuery();
+		return true;
+	}
+
+	private void closeStatement() throws SQLException {
+		try {
+			if(this.resultSet != null) this.resultSet.close();
+		} finally {
+			this.resultSet = null;
+			if(this.statement != null) this.statement.close();
+			this.statement = null;
+		}
+	}
+
+	/**
+	 * discards the connection after an error
+	 */
+	private void closeFailed() {
+		this.closed = true;
+		try {
+			this.closeStatement();
+		} catch (SQLException e) {}
+		if(this.connection != null) this.pool.invalidateConnection(this.connection);
+		this.connection = null;
+	}
+
+}
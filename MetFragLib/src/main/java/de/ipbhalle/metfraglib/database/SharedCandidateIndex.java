@@ -0,0 +1,199 @@
+package de.ipbhalle.metfraglib.database;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.molecularformula.MolecularFormulaKey;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+
+/**
+ * immutable in-memory index over all candidates of a local file database
+ *
+ * built once by SharedDatabaseRegistry and queried concurrently by several processes
+ * the stored candidates are never handed out, queries return clones so that scores and
+ * precursor molecules set during processing stay within the querying process
+ *
+ * mass queries are binary searches on the sorted masses, formula and identifier queries use hash maps
+ * results are returned in the order of the database file like the file databases do
+ *
+ * @author cruttkie
+ *
+ */
+public class SharedCandidateIndex {
+
+	private final ICandidate[] candidates;
+	//monoisotopic masses in ascending order and the candidate index of each mass
+	private final double[] sortedMasses;
+	private final int[] massOrder;
+	//candidate indeces by molecular formula
+	private final java.util.HashMap<MolecularFormulaKey, int[]> formulaToIndexes;
+	//candidate indeces by identifier and by identifier without the |index suffix of psv and csv files
+	private final java.util.HashMap<String, Integer> identifierToIndex;
+	private final java.util.HashMap<String, int[]> searchIdentifierToIndexes;
+	private final long estimatedSize;
+
+	/**
+	 *
+	 * @param candidates all candidates of the database in file order
+	 */
+	public SharedCandidateIndex(java.util.List<ICandidate> candidates) {
+		this.candidates = candidates.toArray(new ICandidate[candidates.size()]);
+		final double[] masses = new double[this.candidates.length];
+		Integer[] order = new Integer[this.candidates.length];
+		java.util.HashMap<MolecularFormulaKey, java.util.ArrayList<Integer>> formulaToIndexes = new java.util.HashMap<MolecularFormulaKey, java.util.ArrayList<Integer>>();
+		java.util.HashMap<String, java.util.ArrayList<Integer>> searchIdentifierToIndexes = new java.util.HashMap<String, java.util.ArrayList<Integer>>();
+		this.identifierToIndex = new java.util.HashMap<String, Integer>((int)(this.candidates.length / 0.75) + 1);
+		long estimatedSize = 0;
+		for(int i = 0; i < this.candidates.length; i++) {
+			ICandidate candidate = this.candidates[i];
+			order[i] = i;
+			Object mass = candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME);
+			masses[i] = mass instanceof Double ? (Double)mass : Double.NaN;
+			Object formula = candidate.getProperty(VariableNames.MOLECULAR_FORMULA_NAME);
+			MolecularFormulaKey formulaKey = formula == null ? null : MolecularFormulaKey.parseOrNull(formula.toString());
+			if(formulaKey != null) addIndex(formulaToIndexes, formulaKey, i);
+			String identifier = candidate.getIdentifier();
+			if(!this.identifierToIndex.containsKey(identifier)) this.identifierToIndex.put(identifier, i);
+			addIndex(searchIdentifierToIndexes, identifier, i);
+			int separator = identifier.lastIndexOf('|');
+			if(separator != -1) addIndex(searchIdentifierToIndexes, identifier.substring(0, separator), i);
+			estimatedSize += estimateSize(candidate);
+		}
+		java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer first, Integer second) {
+				return Double.compare(masses[first], masses[second]);
+			}
+		});
+		this.sortedMasses = new double[order.length];
+		this.massOrder = new int[order.length];
+		for(int i = 0; i < order.length; i++) {
+			this.massOrder[i] = order[i];
+			this.sortedMasses[i] = masses[order[i]];
+		}
+		this.formulaToIndexes = toArrays(formulaToIndexes);
+		this.searchIdentifierToIndexes = toArrays(searchIdentifierToIndexes);
+		//masses, order, hash map entries
+		this.estimatedSize = estimatedSize + this.candidates.length * (8L + 4L + 3L * 48L);
+	}
+
+	/**
+	 * candidates with a monoisotopic mass within the given limits
+	 *
+	 * @param lowerLimit
+	 * @param upperLimit
+	 * @return
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByMass(double lowerLimit, double upperLimit) {
+		int low = 0;
+		int high = this.sortedMasses.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(this.sortedMasses[middle] < lowerLimit) low = middle + 1;
+			else high = middle;
+		}
+		int last = low;
+		while(last < this.sortedMasses.length && this.sortedMasses[last] <= upperLimit) last++;
+		int[] candidateIndexes = java.util.Arrays.copyOfRange(this.massOrder, low, last);
+		java.util.Arrays.sort(candidateIndexes);
+		return this.getCandidates(candidateIndexes);
+	}
+
+	/**
+	 * candidates with the given molecular formula
+	 *
+	 * @param molecularFormula
+	 * @return
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByFormula(String molecularFormula) {
+		MolecularFormulaKey formulaKey = MolecularFormulaKey.parseOrNull(molecularFormula);
+		if(formulaKey == null) return new java.util.ArrayList<ICandidate>();
+		return this.getCandidates(this.formulaToIndexes.get(formulaKey));
+	}
+
+	/**
+	 * candidates with one of the given identifiers
+	 * like for the file databases identifiers of the form identifier|index match the identifier
+	 *
+	 * @param identifiers
+	 * @return
+	 */
+	public java.util.ArrayList<ICandidate> getCandidatesByIdentifiers(String[] identifiers) {
+		java.util.TreeSet<Integer> candidateIndexes = new java.util.TreeSet<Integer>();
+		for(String identifier : identifiers) {
+			int[] indexes = this.searchIdentifierToIndexes.get(identifier);
+			if(indexes == null) continue;
+			for(int index : indexes) candidateIndexes.add(index);
+		}
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(Integer index : candidateIndexes) candidates.add(this.candidates[index].clone());
+		return candidates;
+	}
+
+	public java.util.ArrayList<ICandidate> getAllCandidates() {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>(this.candidates.length);
+		for(ICandidate candidate : this.candidates) candidates.add(candidate.clone());
+		return candidates;
+	}
+
+	/**
+	 *
+	 * @param identifier
+	 * @return clone of the candidate with the given identifier or null if not found
+	 */
+	public ICandidate getCandidateByIdentifier(String identifier) {
+		Integer index = this.identifierToIndex.get(identifier);
+		if(index == null) return null;
+		return this.candidates[index].clone();
+	}
+
+	public int getNumberCandidates() {
+		return this.candidates.length;
+	}
+
+	/**
+	 *
+	 * @return rough number of bytes held by this index
+	 */
+	public long getEstimatedSize() {
+		return this.estimatedSize;
+	}
+
+	private java.util.ArrayList<ICandidate> getCandidates(int[] candidateIndexes) {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		if(candidateIndexes == null) return candidates;
+		for(int index : candidateIndexes) candidates.add(this.candidates[index].clone());
+		return candidates;
+	}
+
+	private static <K> void addIndex(java.util.HashMap<K, java.util.ArrayList<Integer>> map, K key, int index) {
+		java.util.ArrayList<Integer> indexes = map.get(key);
+		if(indexes == null) {
+			indexes = new java.util.ArrayList<Integer>(1);
+			map.put(key, indexes);
+		}
+		//identifiers without suffix can equal the full identifier
+		if(indexes.isEmpty() || indexes.get(indexes.size() - 1) != index) indexes.add(index);
+	}
+
+	private static <K> java.util.HashMap<K, int[]> toArrays(java.util.HashMap<K, java.util.ArrayList<Integer>> map) {
+		java.util.HashMap<K, int[]> arrays = new java.util.HashMap<K, int[]>((int)(map.size() / 0.75) + 1);
+		for(java.util.Map.Entry<K, java.util.ArrayList<Integer>> entry : map.entrySet()) {
+			int[] indexes = new int[entry.getValue().size()];
+			for(int i = 0; i < indexes.length; i++) indexes[i] = entry.getValue().get(i);
+			arrays.put(entry.getKey(), indexes);
+		}
+		return arrays;
+	}
+
+	/*
+	 * object headers and property table entries plus two bytes per character of string values
+	 */
+	private static long estimateSize(ICandidate candidate) {
+		long size = 128;
+		java.util.Hashtable<String, Object> properties = candidate.getProperties();
+		for(java.util.Map.Entry<String, Object> entry : properties.entrySet()) {
+			size += 64 + 2L * entry.getKey().length();
+			if(entry.getValue() instanceof String) size += 48 + 2L * ((String)entry.getValue()).length();
+			else size += 24;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,231 @@
+package de.ipbhalle.metfraglib.database;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.ClassNames;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * process-wide registry of loaded local file databases
+ *
+ * each database file is read once into a SharedCandidateIndex which is then used by all
+ * processes querying the same database, e.g. the queries of the rest service
+ * entries are keyed by database type, path, modification time and size so that a changed file is read again
+ *
+ * acquired indeces are reference counted and have to be released after the query
+ * unused entries are kept until the estimated size of all entries exceeds the memory budget,
+ * then least recently used unused entries are removed first
+ * the budget in megabytes is taken from the system property metfrag.database.registry.budget
+ * (default a quarter of the maximum heap size) and can be changed by setMemoryBudget
+ *
+ * @author cruttkie
+ *
+ */
+public class SharedDatabaseRegistry {
+
+	public static final String MEMORY_BUDGET_PROPERTY_NAME = "metfrag.database.registry.budget";
+
+	private static SharedDatabaseRegistry instance;
+
+	private Logger logger = Logger.getLogger(SharedDatabaseRegistry.class);
+
+	private long memoryBudget;
+	//access ordered map -> guarded by this
+	private final java.util.LinkedHashMap<String, Entry> entries = new java.util.LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long numberLoads;
+
+	private SharedDatabaseRegistry(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * returns the shared registry and creates it on first use
+	 *
+	 * @return
+	 */
+	public static synchronized SharedDatabaseRegistry getInstance() {
+		if(instance == null) instance = new SharedDatabaseRegistry(readDefaultMemoryBudget());
+		return instance;
+	}
+
+	private static long readDefaultMemoryBudget() {
+		String value = System.getProperty(MEMORY_BUDGET_PROPERTY_NAME);
+		if(value != null) {
+			try {
+				long budget = Long.parseLong(value.trim());
+				if(budget >= 0) return budget * 1024L * 1024L;
+			} catch(NumberFormatException e) {}
+			Logger.getLogger(SharedDatabaseRegistry.class).warn("Invalid value for " + MEMORY_BUDGET_PROPERTY_NAME + ": " + value);
+		}
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * returns the index of the given local database and reads the database if it is not loaded yet
+	 * concurrent requests of the same database wait for a single read
+	 * the index needs to be given back by release
+	 *
+	 * @param databaseType database type as used for MetFragDatabaseType, e.g. LocalPSV
+	 * @param databasePath
+	 * @return
+	 * @throws Exception if the database could not be read
+	 */
+	public SharedCandidateIndex acquire(String databaseType, String databasePath) throws Exception {
+		java.io.File file = new java.io.File(databasePath);
+		if(!file.isFile()) throw new java.io.FileNotFoundException(databasePath);
+		String key = databaseType + "|" + file.getCanonicalPath() + "|" + file.lastModified() + "|" + file.length();
+		Entry entry = null;
+		synchronized(this) {
+			entry = this.entries.get(key);
+			if(entry == null) {
+				entry = new Entry(key, databaseType, databasePath);
+				this.entries.put(key, entry);
+			}
+			entry.references++;
+		}
+		try {
+			SharedCandidateIndex index = entry.getIndex();
+			synchronized(this) {
+				this.evict();
+			}
+			return index;
+		} catch(Exception e) {
+			synchronized(this) {
+				entry.references--;
+				if(this.entries.get(key) == entry && entry.references == 0) this.entries.remove(key);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * gives back an index returned by acquire
+	 *
+	 * @param index
+	 */
+	public synchronized void release(SharedCandidateIndex index) {
+		for(Entry entry : this.entries.values()) {
+			if(entry.index == index && entry.references > 0) {
+				entry.references--;
+				break;
+			}
+		}
+		this.evict();
+	}
+
+	/**
+	 * sets the budget in bytes and removes unused entries if needed
+	 *
+	 * @param memoryBudget
+	 */
+	public synchronized void setMemoryBudget(long memoryBudget) {
+		if(memoryBudget < 0) throw new IllegalArgumentException("Memory budget must not be negative: " + memoryBudget);
+		this.memoryBudget = memoryBudget;
+		this.evict();
+	}
+
+	public synchronized long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 *
+	 * @return estimated number of bytes of all loaded entries
+	 */
+	public synchronized long getSize() {
+		long size = 0;
+		for(Entry entry : this.entries.values())
+			if(entry.index != null) size += entry.index.getEstimatedSize();
+		return size;
+	}
+
+	public synchronized int getNumberEntries() {
+		return this.entries.size();
+	}
+
+	/**
+	 *
+	 * @return number of database reads since creation or the last clear
+	 */
+	public synchronized long getNumberLoads() {
+		return this.numberLoads;
+	}
+
+	/**
+	 * removes all unused entries and resets the number of loads
+	 */
+	public synchronized void clear() {
+		java.util.Iterator<Entry> it = this.entries.values().iterator();
+		while(it.hasNext()) {
+			if(it.next().references == 0) it.remove();
+		}
+		this.numberLoads = 0;
+	}
+
+	public synchronized String toString() {
+		return "SharedDatabaseRegistry: " + this.entries.size() + " entries, " + this.getSize() + "/" + this.memoryBudget + " bytes, " + this.numberLoads + " loads";
+	}
+
+	/*
+	 * removes least recently used entries without references while the budget is exceeded
+	 */
+	private void evict() {
+		long size = this.getSize();
+		java.util.Iterator<Entry> it = this.entries.values().iterator();
+		while(size > this.memoryBudget && it.hasNext()) {
+			Entry entry = it.next();
+			if(entry.references != 0 || entry.index == null) continue;
+			size -= entry.index.getEstimatedSize();
+			it.remove();
+			this.logger.debug("Removed " + entry.key + " from shared databases");
+		}
+	}
+
+	private synchronized void loaded() {
+		this.numberLoads++;
+	}
+
+	/**
+	 * reads all candidates of the database without any search restriction
+	 */
+	private SharedCandidateIndex load(String databaseType, String databasePath) throws Exception {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, databasePath);
+		IDatabase database = (IDatabase) Class.forName(ClassNames.getClassNameOfDatabase(databaseType)).getConstructor(Settings.class).newInstance(settings);
+		CandidateList candidateList = database.getCandidateByIdentifier(database.getCandidateIdentifiers());
+		database.nullify();
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>(candidateList.getNumberElements());
+		for(int i = 0; i < candidateList.getNumberElements(); i++) candidates.add(candidateList.getElement(i));
+		SharedCandidateIndex index = new SharedCandidateIndex(candidates);
+		this.loaded();
+		this.logger.info("Loaded " + index.getNumberCandidates() + " candidate(s) of " + databasePath + " into shared databases");
+		return index;
+	}
+
+	private class Entry {
+
+		private final String key;
+		private final String databaseType;
+		private final String databasePath;
+		//guarded by SharedDatabaseRegistry.this
+		private int references = 0;
+		//written once under the entry lock
+		private volatile SharedCandidateIndex index;
+
+		private Entry(String key, String databaseType, String databasePath) {
+			this.key = key;
+			this.databaseType = databaseType;
+			this.databasePath = databasePath;
+		}
+
+		private synchronized SharedCandidateIndex getIndex() throws Exception {
+			if(this.index == null) this.index = load(this.databaseType, this.databasePath);
+			return this.index;
+		}
+	}
+}
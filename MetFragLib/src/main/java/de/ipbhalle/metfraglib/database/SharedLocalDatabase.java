@@ -0,0 +1,128 @@
+package de.ipbhalle.metfraglib.database;
+
+import java.util.ArrayList;
+
+import de.ipbhalle.metfraglib.additionals.MathTools;
+import de.ipbhalle.metfraglib.exceptions.DatabaseIdentifierNotFoundException;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * local file database of type MetFragDatabaseType queried through the SharedDatabaseRegistry
+ *
+ * used by CombinedMetFragProcess instead of the file database itself if ShareLocalDatabase is set
+ * and the database type is shareable
+ * the database file is read only once for all processes, each query works on clones of the shared candidates
+ * searches behave like the ones of AbstractFileDatabase
+ *
+ * @author cruttkie
+ *
+ */
+public class SharedLocalDatabase extends AbstractDatabase {
+
+	private java.util.ArrayList<ICandidate> candidates;
+	private CandidateIdentifierIndex identifierIndex = new CandidateIdentifierIndex();
+
+	public SharedLocalDatabase(Settings settings) {
+		super(settings);
+	}
+
+	/**
+	 * file databases read completely into memory can be shared
+	 * the memory-mapped LocalIndexed and block-compressed LocalColumnar databases read only the searched candidates
+	 * and are queried directly
+	 *
+	 * @param databaseClass
+	 * @return
+	 */
+	public static boolean isShareable(Class<?> databaseClass) {
+		return AbstractFileDatabase.class.isAssignableFrom(databaseClass)
+				&& !LocalIndexedDatabase.class.isAssignableFrom(databaseClass) && !LocalColumnarDatabase.class.isAssignableFrom(databaseClass);
+	}
+
+	public ArrayList<String> getCandidateIdentifiers() throws Exception {
+		if(this.settings.get(VariableNames.PRECURSOR_DATABASE_IDS_NAME) != null)
+			return this.getCandidateIdentifiers((String[])this.settings.get(VariableNames.PRECURSOR_DATABASE_IDS_NAME));
+		if(this.settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME) != null)
+			return this.getCandidateIdentifiers((String)this.settings.get(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME));
+		if(this.settings.get(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME) != null)
+			return this.getCandidateIdentifiers((Double)this.settings.get(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME), (Double)this.settings.get(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME));
+		SharedCandidateIndex index = this.acquireIndex();
+		try {
+			return this.setCandidates(index.getAllCandidates());
+		} finally {
+			SharedDatabaseRegistry.getInstance().release(index);
+		}
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(double monoisotopicMass, double relativeMassDeviation) throws Exception {
+		double mzabs = MathTools.calculateAbsoluteDeviation(monoisotopicMass, relativeMassDeviation);
+		SharedCandidateIndex index = this.acquireIndex();
+		try {
+			return this.setCandidates(index.getCandidatesByMass(monoisotopicMass - mzabs, monoisotopicMass + mzabs));
+		} finally {
+			SharedDatabaseRegistry.getInstance().release(index);
+		}
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(String molecularFormula) throws Exception {
+		SharedCandidateIndex index = this.acquireIndex();
+		try {
+			return this.setCandidates(index.getCandidatesByFormula(molecularFormula));
+		} finally {
+			SharedDatabaseRegistry.getInstance().release(index);
+		}
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(String[] identifiers) throws Exception {
+		SharedCandidateIndex index = this.acquireIndex();
+		try {
+			return this.setCandidates(index.getCandidatesByIdentifiers(identifiers));
+		} finally {
+			SharedDatabaseRegistry.getInstance().release(index);
+		}
+	}
+
+	public ArrayList<String> getCandidateIdentifiers(ArrayList<String> identifiers) throws Exception {
+		return this.getCandidateIdentifiers(identifiers.toArray(new String[identifiers.size()]));
+	}
+
+	public ICandidate getCandidateByIdentifier(String identifier) throws DatabaseIdentifierNotFoundException {
+		int index = this.identifierIndex.indexOf(this.candidates, identifier);
+		if(index == -1)
+			throw new DatabaseIdentifierNotFoundException(identifier);
+		return this.candidates.get(index);
+	}
+
+	public CandidateList getCandidateByIdentifier(ArrayList<String> identifiers) {
+		CandidateList candidateList = new CandidateList();
+		for(int i = 0; i < identifiers.size(); i++) {
+			ICandidate candidate = null;
+			try {
+				candidate = this.getCandidateByIdentifier(identifiers.get(i));
+			} catch (DatabaseIdentifierNotFoundException e) {
+				logger.warn("Candidate identifier " + identifiers.get(i) + " not found.");
+			}
+			if(candidate != null) candidateList.addElement(candidate);
+		}
+		return candidateList;
+	}
+
+	public void nullify() {
+		this.candidates = null;
+		this.identifierIndex.clear();
+	}
+
+	private SharedCandidateIndex acquireIndex() throws Exception {
+		return SharedDatabaseRegistry.getInstance().acquire((String)this.settings.get(VariableNames.METFRAG_DATABASE_TYPE_NAME), (String)this.settings.get(VariableNames.LOCAL_DATABASE_PATH_NAME));
+	}
+
+	private ArrayList<String> setCandidates(java.util.ArrayList<ICandidate> candidates) {
+		this.candidates = candidates;
+		ArrayList<String> identifiers = new ArrayList<String>(candidates.size());
+		for(ICandidate candidate : candidates) identifiers.add(candidate.getIdentifier());
+		return identifiers;
+	}
+}
@@ -0,0 +1,62 @@
+package de.ipbhalle.metfraglib.fingerprint;
+
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+/**
+ * reference fingerprints packed row by row into one long array together with a score for each row
+ * filled once and then shared read-only by all threads scoring candidates against the references
+ *
+ * rows without fingerprint have a Tanimoto similarity of 0 like in TanimotoSimilarity.calculateSimilarity
+ *
+ * @author cruttkie
+ *
+ */
+public class PackedFingerprintMatrix {
+
+	protected final long[] fingerprints;
+	protected final int[] cardinalities;
+	protected final double[] scores;
+
+	public PackedFingerprintMatrix(int numberRows) {
+		this.fingerprints = new long[numberRows * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH];
+		this.cardinalities = new int[numberRows];
+		this.scores = new double[numberRows];
+	}
+
+	public void setRow(int row, IBitFingerprint fingerprint, double score) {
+		this.setRow(row, TanimotoSimilarity.toPackedFingerprint(fingerprint), score);
+	}
+
+	public void setRow(int row, long[] fingerprint, double score) {
+		if(fingerprint == null) {
+			java.util.Arrays.fill(this.fingerprints, row * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH, (row + 1) * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH, 0l);
+			this.cardinalities[row] = -1;
+		}
+		else {
+			System.arraycopy(fingerprint, 0, this.fingerprints, row * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH, TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH);
+			this.cardinalities[row] = TanimotoSimilarity.getCardinality(fingerprint);
+		}
+		this.scores[row] = score;
+	}
+
+	/**
+	 * Tanimoto similarities of the given packed fingerprint to all rows
+	 *
+	 * @param fingerprint packed by TanimotoSimilarity.toPackedFingerprint
+	 * @return
+	 */
+	public double[] calculateSimilarities(long[] fingerprint) {
+		double[] similarities = new double[this.scores.length];
+		TanimotoSimilarity.calculateSimilarities(fingerprint, this.fingerprints, this.cardinalities, similarities);
+		return similarities;
+	}
+
+	public double[] getScores() {
+		return this.scores;
+	}
+
+	public int getNumberRows() {
+		return this.scores.length;
+	}
+
+}
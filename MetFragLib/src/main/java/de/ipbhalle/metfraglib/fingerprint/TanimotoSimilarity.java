@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.Hashtable;
 
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.fingerprint.MACCSFingerprinter;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -20,14 +21,22 @@ import de.ipbhalle.metfraglib.parameter.VariableNames;
 
 public class TanimotoSimilarity {
 
-	protected static final MACCSFingerprinter fingerprinter = new MACCSFingerprinter();
+	//MACCSFingerprinter is not safe to share between threads, each worker thread uses its own
+	protected static final ThreadLocal<MACCSFingerprinter> fingerprinter = new ThreadLocal<MACCSFingerprinter>() {
+		@Override
+		protected MACCSFingerprinter initialValue() {
+			return new MACCSFingerprinter();
+		}
+	};
+	//longs of a packed MACCS fingerprint
+	public static final int PACKED_FINGERPRINT_LENGTH = 3;
 	
 	protected IBitFingerprint[] fingerprints;
 	
 	public TanimotoSimilarity(IAtomContainer con) {
 		this.fingerprints = new IBitFingerprint[1];
 		try {
-			this.fingerprints[0] = fingerprinter.getBitFingerprint(con);
+			this.fingerprints[0] = fingerprinter.get().getBitFingerprint(con);
 		} catch (CDKException e) {
 			this.fingerprints[0] = null;
 		}
@@ -38,7 +47,7 @@ public class TanimotoSimilarity {
 		for(int i = 0; i < this.fingerprints.length; i++) 
 		{
 			try {
-				this.fingerprints[i] = fingerprinter.getBitFingerprint(cons[i]);
+				this.fingerprints[i] = fingerprinter.get().getBitFingerprint(cons[i]);
 			} catch (CDKException e) {
 				this.fingerprints[i] = null;
 			}
@@ -52,7 +61,7 @@ public class TanimotoSimilarity {
 	public double[] calculateSimilarities(IAtomContainer con) {
 		IBitFingerprint fingerprint = null;
 		try {
-			fingerprint = fingerprinter.getBitFingerprint(con);
+			fingerprint = fingerprinter.get().getBitFingerprint(con);
 		} catch (CDKException e) {
 			e.printStackTrace();
 		}
@@ -71,13 +80,63 @@ public class TanimotoSimilarity {
 	public static IBitFingerprint calculateFingerPrint(IAtomContainer s1) {
 		IBitFingerprint f1 = null;
 		try {
-			f1 = fingerprinter.getBitFingerprint(s1);
+			f1 = fingerprinter.get().getBitFingerprint(s1);
 		} catch (CDKException e) {
 			f1 = null;
 		}
 		return f1;
 	}
 	
+	/**
+	 * packs the given fingerprint into PACKED_FINGERPRINT_LENGTH longs
+	 * returns null if no fingerprint is given
+	 * 
+	 * @param fingerprint
+	 * @return
+	 */
+	public static long[] toPackedFingerprint(IBitFingerprint fingerprint) {
+		if(fingerprint == null) return null;
+		return java.util.Arrays.copyOf(fingerprint.asBitSet().toLongArray(), PACKED_FINGERPRINT_LENGTH);
+	}
+	
+	public static IBitFingerprint fromPackedFingerprint(long[] fingerprint) {
+		return new BitSetFingerprint(java.util.BitSet.valueOf(fingerprint));
+	}
+	
+	public static int getCardinality(long[] fingerprint) {
+		int cardinality = 0;
+		for(int i = 0; i < fingerprint.length; i++) cardinality += Long.bitCount(fingerprint[i]);
+		return cardinality;
+	}
+	
+	/**
+	 * Tanimoto similarities of the given packed fingerprint to all rows of a packed fingerprint matrix
+	 * each row holds PACKED_FINGERPRINT_LENGTH longs, the values equal the ones of calculateSimilarity
+	 * all similarities are 0 if no fingerprint is given, rows with a negative cardinality have no fingerprint
+	 * 
+	 * @param fingerprint
+	 * @param fingerprints matrix stored row by row
+	 * @param cardinalities number of bits set in each row
+	 * @param similarities filled with one value per row
+	 */
+	public static void calculateSimilarities(long[] fingerprint, long[] fingerprints, int[] cardinalities, double[] similarities) {
+		if(fingerprint == null) {
+			java.util.Arrays.fill(similarities, 0.0);
+			return;
+		}
+		int cardinality = getCardinality(fingerprint);
+		for(int i = 0, offset = 0; i < similarities.length; i++, offset += PACKED_FINGERPRINT_LENGTH) {
+			if(cardinalities[i] < 0) {
+				similarities[i] = 0.0;
+				continue;
+			}
+			int common = 0;
+			for(int k = 0; k < PACKED_FINGERPRINT_LENGTH; k++) common += Long.bitCount(fingerprint[k] & fingerprints[offset + k]);
+			double commonCardinality = common;
+			similarities[i] = commonCardinality / (cardinality + cardinalities[i] - commonCardinality);
+		}
+	}
+	
 	public static double calculateSimilarity(IBitFingerprint f1, IBitFingerprint f2) {
 		if(f1 == null || f2 == null) return 0.0;
 		return Tanimoto.calculate(f1, f2);
@@ -87,8 +146,8 @@ public class TanimotoSimilarity {
 		IBitFingerprint f1 = null;
 		IBitFingerprint f2 = null;
 		try {
-			f1 = fingerprinter.getBitFingerprint(s1);
-			f2 = fingerprinter.getBitFingerprint(s2);
+			f1 = fingerprinter.get().getBitFingerprint(s1);
+			f2 = fingerprinter.get().getBitFingerprint(s2);
 		} catch (CDKException e) {
 			return 0.0;
 		}
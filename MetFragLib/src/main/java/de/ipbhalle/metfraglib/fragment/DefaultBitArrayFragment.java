@@ -37,6 +37,11 @@ import de.ipbhalle.metfraglib.precursor.DefaultPrecursor;
 public class DefaultBitArrayFragment extends AbstractFragment {
 
 	protected short numberHydrogens;
+	/**
+	 * monoisotopic mass of the fragment atoms including their hydrogens
+	 * NaN as long as it is not calculated
+	 */
+	protected double monoisotopicMass = Double.NaN;
 
 	/**
 	 * atoms represented as FastBitArray object 
@@ -100,24 +105,31 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 
 	protected void initialiseNumberHydrogens(BitArrayPrecursor precursorMolecule) {
 		this.numberHydrogens = 0;
-		for(int i = 0; i < this.atomsFastBitArray.getSize(); i++) {
-			if(this.atomsFastBitArray.get(i)) {
-				this.numberHydrogens += precursorMolecule.getNumberHydrogensConnectedToAtomIndex(i);
-			}
+		for(int i = this.atomsFastBitArray.nextSetIndex(0); i >= 0; i = this.atomsFastBitArray.nextSetIndex(i + 1)) {
+			this.numberHydrogens += precursorMolecule.getNumberHydrogensConnectedToAtomIndex(i);
 		}
 	}
 	
 	public double getMonoisotopicMass(IMolecularStructure precursorMolecule) {
 		//return this.molecularFormula.getMonoisotopicMass();
+		if(!Double.isNaN(this.monoisotopicMass)) return this.monoisotopicMass;
 		double mass = 0.0;
-		for(int i = 0; i < this.atomsFastBitArray.getSize(); i++) {
-			if(this.atomsFastBitArray.get(i)) {
-				mass += precursorMolecule.getMassOfAtom(i);
-			}
+		for(int i = this.atomsFastBitArray.nextSetIndex(0); i >= 0; i = this.atomsFastBitArray.nextSetIndex(i + 1)) {
+			mass += precursorMolecule.getMassOfAtom(i);
 		}
+		this.monoisotopicMass = mass;
 		return mass;
 	}
 	
+	/**
+	 * sets the mass of the fragment atoms if it is already known (e.g. summed up while traversing the precursor)
+	 * 
+	 * @param monoisotopicMass
+	 */
+	public void setMonoisotopicMass(double monoisotopicMass) {
+		this.monoisotopicMass = monoisotopicMass;
+	}
+	
 	/*
 	public void initialiseMolecularFormula(IMolecularStructure precursorMolecule) throws AtomTypeNotKnownFromInputListException {
 		this.molecularFormula = new BitArrayFragmentMolecularFormula((BitArrayPrecursor)precursorMolecule, this.atomsFastBitArray);
@@ -137,12 +149,13 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 		boolean matched = false;
 		
 		short numberHydrogens = this.getNumberHydrogens();
+		double monoisotopicMass = this.getMonoisotopicMass(precursorMolecule);
 		
 		for(int i = 0; i < ionisationTypeMassCorrection.length; i++) {
 			int substractHydrogenFromCharge = 0;
 			if(i == 0 && precursorIonTypeIndex == 1) substractHydrogenFromCharge = 1;
 			boolean[] toCheckHydrogenShiftType = {true, true};
-			double currentFragmentMass = this.getMonoisotopicMass(precursorMolecule) + ionisationTypeMassCorrection[i];
+			double currentFragmentMass = monoisotopicMass + ionisationTypeMassCorrection[i];
 			byte compareResult = ((TandemMassPeak)peak).matchesToMass(currentFragmentMass);
 			if(compareResult == 0 && substractHydrogenFromCharge <= numberHydrogens) {
 				/*
@@ -229,6 +242,21 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 		return -1;
 	}	
 
+	/**
+	 * returns the largest mass compared by matchToPeak (adduct corrected mass plus maximal hydrogen shift)
+	 * peaks with a lower mass limit above this mass cannot be matched by the fragment
+	 * 
+	 * @param precursorMolecule
+	 * @param precursorIonTypeIndex
+	 * @param isPositive
+	 * @return
+	 */
+	public double getMaximumMatchingMass(IMolecularStructure precursorMolecule, int precursorIonTypeIndex, boolean isPositive) {
+		double ionisationTypeMassCorrection = Math.max(Constants.getIonisationTypeMassCorrection(precursorIonTypeIndex, isPositive), 
+				Constants.getIonisationTypeMassCorrection(0, isPositive));
+		return this.getMonoisotopicMass(precursorMolecule) + ionisationTypeMassCorrection + this.getTreeDepth() * Constants.HYDROGEN_MASS;
+	}
+
 	/**
 	 * 
 	 * @param atomIndex
@@ -245,6 +273,7 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 	 */
 	public void setAtomBit(int atomIndex, boolean value) {
 		this.atomsFastBitArray.set(atomIndex, value);
+		this.monoisotopicMass = Double.NaN;
 	}
 
 	public de.ipbhalle.metfraglib.FastBitArray getAtomsFastBitArray() {
@@ -253,6 +282,7 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 
 	public void setAtomsFastBitArray(de.ipbhalle.metfraglib.FastBitArray atomsFastBitArray) {
 		this.atomsFastBitArray = atomsFastBitArray;
+		this.monoisotopicMass = Double.NaN;
 	}
 
 	public de.ipbhalle.metfraglib.FastBitArray getBondsFastBitArray() {
@@ -445,6 +475,7 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 		DefaultBitArrayFragment clone = new DefaultBitArrayFragment((BitArrayPrecursor)precursorMolecule, this.atomsFastBitArray.clone(), this.bondsFastBitArray.clone(), this.brokenBondsFastBitArray.clone());
 	//	clone.setID(this.ID);
 		clone.setNumberHydrogens(this.getNumberHydrogens());
+		clone.setMonoisotopicMass(this.monoisotopicMass);
 		clone.setTreeDepth(this.treeDepth);
 		return clone;
 	}
@@ -462,28 +493,13 @@ public class DefaultBitArrayFragment extends AbstractFragment {
 	public boolean isRealSubStructure(IFragment molecularStructure) {
 		FastBitArray currentAtomsFastBitArray = ((DefaultBitArrayFragment)molecularStructure).getAtomsFastBitArray();
 		if(currentAtomsFastBitArray.getSize() != this.atomsFastBitArray.getSize()) return false; 
-		int currentAtomsFastBitArrayCardinality = 0;
-		int thisAtomsFastBitArrayCardinality = 0;
-		for(int i = 0; i < this.atomsFastBitArray.getSize(); i++) {
-			boolean currentAtomsFastBitArrayValue = currentAtomsFastBitArray.get(i);
-			boolean thisAtomsFastBitArrayValue = this.atomsFastBitArray.get(i);
-			if(thisAtomsFastBitArrayValue) thisAtomsFastBitArrayCardinality++;
-			if(currentAtomsFastBitArrayValue) currentAtomsFastBitArrayCardinality++;
-			if(!thisAtomsFastBitArrayValue && currentAtomsFastBitArrayValue) return false;
-		}
-		if(thisAtomsFastBitArrayCardinality == currentAtomsFastBitArrayCardinality) return false;
-		return true;
+		return this.atomsFastBitArray.isRealSubset(currentAtomsFastBitArray);
 	}
 
 	public boolean isSubStructure(IFragment molecularStructure) {
 		FastBitArray currentAtomsFastBitArray = ((DefaultBitArrayFragment)molecularStructure).getAtomsFastBitArray();
 		if(currentAtomsFastBitArray.getSize() != this.atomsFastBitArray.getSize()) return false; 
-		for(int i = 0; i < this.atomsFastBitArray.getSize(); i++) {
-			boolean currentAtomsFastBitArrayValue = currentAtomsFastBitArray.get(i);
-			boolean thisAtomsFastBitArrayValue = this.atomsFastBitArray.get(i);
-			if(!thisAtomsFastBitArrayValue && currentAtomsFastBitArrayValue) return false;
-		}
-		return true;
+		return this.atomsFastBitArray.isSubset(currentAtomsFastBitArray);
 	}
 	
 	public int[] getUniqueBrokenBondIndeces(IFragment molecularStructure) {
@@ -35,6 +35,7 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 		clone.setTreeDepth(this.treeDepth);
 		if(clone.hasMatched) clone.setHasMatched();
 		clone.setNumberHydrogens(this.getNumberHydrogens());
+		clone.setMonoisotopicMass(this.monoisotopicMass);
 		return clone;
 	}
 	
@@ -82,17 +83,19 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 		de.ipbhalle.metfraglib.FastBitArray bondArrayOfNewFragment_1 = new de.ipbhalle.metfraglib.FastBitArray(precursorMolecule.getNonHydrogenBondCount());
 		de.ipbhalle.metfraglib.FastBitArray brokenBondArrayOfNewFragment_1 = this.getBrokenBondsFastBitArray().clone();
 		int[] numberHydrogensOfNewFragment = new int[1];
+		double[] massOfNewFragment = new double[1];
 		
 		/*
 		 * traverse to first direction from atomIndex connected by broken bond
 		 */
 		boolean stillOneFragment = this.traverseSingleDirection(precursorMolecule, indecesOfBondConnectedAtoms[0], indecesOfBondConnectedAtoms[1], bondIndexToRemove, 
-				atomArrayOfNewFragment_1, bondArrayOfNewFragment_1, brokenBondArrayOfNewFragment_1, numberHydrogensOfNewFragment);
+				atomArrayOfNewFragment_1, bondArrayOfNewFragment_1, brokenBondArrayOfNewFragment_1, numberHydrogensOfNewFragment, massOfNewFragment);
 		
 		TopDownBitArrayFragment firstNewGeneratedFragment = null;
 		try {
 			firstNewGeneratedFragment = new TopDownBitArrayFragment((TopDownBitArrayPrecursor)precursorMolecule, atomArrayOfNewFragment_1, bondArrayOfNewFragment_1, 
 				brokenBondArrayOfNewFragment_1, numberHydrogensOfNewFragment[0]);
+			firstNewGeneratedFragment.setMonoisotopicMass(massOfNewFragment[0]);
 		} catch (AtomTypeNotKnownFromInputListException e2) {
 			// TODO Auto-generated catch block
 			e2.printStackTrace();
@@ -114,17 +117,19 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 		de.ipbhalle.metfraglib.FastBitArray bondArrayOfNewFragment_2 = new de.ipbhalle.metfraglib.FastBitArray(precursorMolecule.getNonHydrogenBondCount());
 		de.ipbhalle.metfraglib.FastBitArray brokenBondArrayOfNewFragment_2 = this.getBrokenBondsFastBitArray().clone();
 		numberHydrogensOfNewFragment[0] = 0;
+		massOfNewFragment[0] = 0.0;
 
 		/*
 		 * traverse the second direction from atomIndex connected by broken bond
 		 */
 		this.traverseSingleDirection(precursorMolecule, indecesOfBondConnectedAtoms[1], indecesOfBondConnectedAtoms[0], bondIndexToRemove, 
-				atomArrayOfNewFragment_2, bondArrayOfNewFragment_2, brokenBondArrayOfNewFragment_2, numberHydrogensOfNewFragment);
+				atomArrayOfNewFragment_2, bondArrayOfNewFragment_2, brokenBondArrayOfNewFragment_2, numberHydrogensOfNewFragment, massOfNewFragment);
 
 		TopDownBitArrayFragment secondNewGeneratedFragment = null;
 		try {
 			secondNewGeneratedFragment = new TopDownBitArrayFragment((TopDownBitArrayPrecursor)precursorMolecule, atomArrayOfNewFragment_2, 
 				bondArrayOfNewFragment_2, brokenBondArrayOfNewFragment_2, numberHydrogensOfNewFragment[0]);
+			secondNewGeneratedFragment.setMonoisotopicMass(massOfNewFragment[0]);
 		} catch (AtomTypeNotKnownFromInputListException e1) {
 			// TODO Auto-generated catch block
 			e1.printStackTrace();
@@ -150,11 +155,12 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 	 * @param bondArrayOfNewFragment
 	 * @param brokenBondArrayOfNewFragment
 	 * @param numberHydrogensOfNewFragment
+	 * @param massOfNewFragment
 	 * @return
 	 */
 	protected boolean traverseSingleDirection(IMolecularStructure precursorMolecule, short startAtomIndex, short endAtomIndex, short bondIndexToRemove, 
 		de.ipbhalle.metfraglib.FastBitArray atomArrayOfNewFragment, de.ipbhalle.metfraglib.FastBitArray bondArrayOfNewFragment, 
-		de.ipbhalle.metfraglib.FastBitArray brokenBondArrayOfNewFragment, int[] numberHydrogensOfNewFragment) 
+		de.ipbhalle.metfraglib.FastBitArray brokenBondArrayOfNewFragment, int[] numberHydrogensOfNewFragment, double[] massOfNewFragment) 
 	{
 		de.ipbhalle.metfraglib.FastBitArray bondFastBitArrayOfCurrentFragment = this.getBondsFastBitArray();
 		/* when traversing the fragment graph then we want to know if we already
@@ -165,6 +171,7 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 		 */
 		de.ipbhalle.metfraglib.FastBitArray visited = new de.ipbhalle.metfraglib.FastBitArray(precursorMolecule.getNonHydrogenAtomCount());
 		numberHydrogensOfNewFragment[0] = 0;
+		massOfNewFragment[0] = 0.0;
 
 		/*
 		 *  traverse molecule in the first direction
@@ -181,6 +188,7 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 		 */
 		atomArrayOfNewFragment.set(startAtomIndex);
 		numberHydrogensOfNewFragment[0] += ((BitArrayPrecursor)precursorMolecule).getNumberHydrogensConnectedToAtomIndex(startAtomIndex);
+		massOfNewFragment[0] += precursorMolecule.getMassOfAtom(startAtomIndex);
 		while (!toProcessConnectedAtoms.isEmpty()) {
 			short[] nextAtoms = toProcessConnectedAtoms.pop();
 			short midAtom = toProcessAtom.pop();
@@ -212,9 +220,10 @@ public class TopDownBitArrayFragment extends de.ipbhalle.metfraglib.fragment.Abs
 				visited.set(nextAtoms[i]);
 				atomArrayOfNewFragment.set(nextAtoms[i]);
 				/*
-				 * add number of hydrogens of current atom
+				 * add number of hydrogens and mass of current atom
 				 */
 				numberHydrogensOfNewFragment[0] += ((BitArrayPrecursor)precursorMolecule).getNumberHydrogensConnectedToAtomIndex(nextAtoms[i]);
+				massOfNewFragment[0] += precursorMolecule.getMassOfAtom(nextAtoms[i]);
 				bondArrayOfNewFragment.set(((BitArrayPrecursor)precursorMolecule).getBondIndexFromAtomAdjacencyList(midAtom, nextAtoms[i]) - 1);
 				toProcessConnectedAtoms.push(((BitArrayPrecursor)precursorMolecule).getConnectedAtomIndecesOfAtomIndex(nextAtoms[i]));
 				toProcessAtom.push(nextAtoms[i]);
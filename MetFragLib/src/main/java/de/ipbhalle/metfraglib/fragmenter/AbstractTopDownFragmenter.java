@@ -8,7 +8,7 @@ import de.ipbhalle.metfraglib.list.FragmentList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
 
-public abstract class AbstractTopDownFragmenter implements IFragmenter {
+public abstract class AbstractTopDownFragmenter implements IFragmenter, Cloneable {
 
 	protected Settings settings;
 	protected ICandidate scoredCandidate;
@@ -37,6 +37,26 @@ public abstract class AbstractTopDownFragmenter implements IFragmenter {
 
 	public abstract java.util.ArrayList<AbstractTopDownBitArrayFragment> getFragmentsOfNextTreeDepth(AbstractTopDownBitArrayFragment precursorFragment);
 	
+	public abstract int getNumberOfGeneratedFragments();
+	
+	public abstract void setNumberOfGeneratedFragments(int numberOfGeneratedFragments);
+	
+	/**
+	 * creates a shallow copy of the fragmenter to generate fragments in a separate thread
+	 * the copy shares the precursor related data and counts the fragment IDs from zero
+	 * 
+	 * @return
+	 */
+	public AbstractTopDownFragmenter createWorkerCopy() {
+		try {
+			AbstractTopDownFragmenter copy = (AbstractTopDownFragmenter)super.clone();
+			copy.setNumberOfGeneratedFragments(0);
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
 	public void nullify() {
 		this.maximumTreeDepth = null;
 		this.minimumFragmentMassLimit = null;
@@ -0,0 +1,363 @@
+package de.ipbhalle.metfraglib.fragmenter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.FastBitArray;
+import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+import de.ipbhalle.metfraglib.fragment.AbstractTopDownBitArrayFragment;
+import de.ipbhalle.metfraglib.fragment.TopDownBitArrayFragment;
+import de.ipbhalle.metfraglib.precursor.BitArrayPrecursor;
+import de.ipbhalle.metfraglib.precursor.TopDownBitArrayPrecursor;
+
+/**
+ * on-disk store of generated fragment trees
+ *
+ * one file per candidate structure and fragmenter parameters containing for each fragmented precursor fragment
+ * the generated child fragments (atom, bond and broken bond bits, hydrogens, mass and generation flags)
+ * a stored tree is read by a memory mapped buffer and replayed by StoredFragmentTreeFragmenter
+ * so that the same candidate can be processed against several spectra without generating its fragments again
+ *
+ * fragment IDs are stored relative to the fragment counter of the fragmenter when the precursor fragment was processed
+ * so replayed fragments get the same IDs as generated ones
+ *
+ * the atoms and bonds of the precursor are stored in the file and compared to the current precursor
+ * as different structure inputs with the same InChIKey can lead to different atom orders
+ *
+ * @author cruttkie
+ *
+ */
+public class FragmentTreeStore {
+
+	private static final int MAGIC_NUMBER = 0x4D465454;
+	private static final int VERSION = 1;
+	private static final String FILE_EXTENSION = ".mft";
+
+	protected Logger logger = Logger.getLogger(FragmentTreeStore.class);
+	protected final File directory;
+
+	public FragmentTreeStore(String directory) {
+		this.directory = new File(directory);
+	}
+
+	/**
+	 * fragment trees can be stored for the top down fragmenters as their fragments are described completely
+	 * by the stored values
+	 *
+	 * @param fragmenter
+	 * @return
+	 */
+	public static boolean isSupported(AbstractTopDownFragmenter fragmenter) {
+		return fragmenter instanceof TopDownFragmenter;
+	}
+
+	/**
+	 * parameters that influence the generated fragment tree
+	 * the minimum fragment mass limit needs to be corrected by the adduct mass before
+	 *
+	 * @param fragmenter
+	 * @param maximumTreeDepth
+	 * @return
+	 */
+	public static String getParameters(TopDownFragmenter fragmenter, byte maximumTreeDepth) {
+		return fragmenter.getClass().getName() + ";" + maximumTreeDepth + ";" + fragmenter.getMinimumFragmentMassLimit() + ";"
+				+ fragmenter.minimumMassDeviationForFragmentGeneration + ";" + fragmenter.maximumNumberOfAFragmentAddedToQueue;
+	}
+
+	/*
+	 * the file name contains a digest of the parameters so different parameters never share a file
+	 */
+	protected File getFile(String inchiKey, String parameters) {
+		return new File(this.directory, inchiKey.replaceAll("[^A-Za-z0-9-]", "_") + "_" + sha1(parameters) + FILE_EXTENSION);
+	}
+
+	private static String sha1(String value) {
+		try {
+			byte[] hash = java.security.MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for(byte b : hash) hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch(java.security.NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * returns the stored fragment tree or null if no tree fitting the parameters and the precursor is stored
+	 *
+	 * @param inchiKey
+	 * @param parameters
+	 * @param precursor
+	 * @return
+	 */
+	public StoredFragmentTree read(String inchiKey, String parameters, BitArrayPrecursor precursor) {
+		File file = this.getFile(inchiKey, parameters);
+		if(!file.isFile()) return null;
+		try(FileChannel channel = FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != VERSION) {
+				this.logger.warn("Skipping fragment tree file " + file.getAbsolutePath() + " of unknown format");
+				return null;
+			}
+			byte[] storedParameters = new byte[buffer.getInt()];
+			buffer.get(storedParameters);
+			if(!parameters.equals(new String(storedParameters, StandardCharsets.UTF_8)) || !this.readPrecursorFits(buffer, precursor)) {
+				this.logger.debug("Stored fragment tree " + file.getName() + " does not fit candidate " + inchiKey);
+				return null;
+			}
+			return new StoredFragmentTree(buffer, precursor.getNonHydrogenAtomCount(), precursor.getNonHydrogenBondCount());
+		} catch (IOException | RuntimeException e) {
+			this.logger.warn("Could not read fragment tree file " + file.getAbsolutePath() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private boolean readPrecursorFits(ByteBuffer buffer, BitArrayPrecursor precursor) {
+		int numberAtoms = buffer.getInt();
+		int numberBonds = buffer.getInt();
+		if(numberAtoms != precursor.getNonHydrogenAtomCount() || numberBonds != precursor.getNonHydrogenBondCount()) return false;
+		boolean fits = true;
+		for(int i = 0; i < numberAtoms; i++) {
+			if(buffer.getDouble() != precursor.getMassOfAtom(i)) fits = false;
+			if(buffer.getShort() != precursor.getNumberHydrogensConnectedToAtomIndex(i)) fits = false;
+		}
+		for(short i = 0; i < numberBonds; i++) {
+			short[] atomIndeces = precursor.getConnectedAtomIndecesOfBondIndex(i);
+			if(buffer.getShort() != atomIndeces[0]) fits = false;
+			if(buffer.getShort() != atomIndeces[1]) fits = false;
+		}
+		return fits;
+	}
+
+	/**
+	 * writes the recorded fragment tree
+	 * the file is written to a temporary file first and then moved so concurrent readers never see a partial file
+	 *
+	 * @param inchiKey
+	 * @param parameters
+	 * @param precursor
+	 * @param recorder
+	 */
+	public void write(String inchiKey, String parameters, BitArrayPrecursor precursor, FragmentTreeRecorder recorder) {
+		File file = this.getFile(inchiKey, parameters);
+		File tempFile = null;
+		try {
+			if(!this.directory.isDirectory() && !this.directory.mkdirs() && !this.directory.isDirectory())
+				throw new IOException("Could not create directory " + this.directory.getAbsolutePath());
+			tempFile = File.createTempFile(file.getName(), ".tmp", this.directory);
+			try(java.io.DataOutputStream out = new java.io.DataOutputStream(new java.io.BufferedOutputStream(new java.io.FileOutputStream(tempFile)))) {
+				out.writeInt(MAGIC_NUMBER);
+				out.writeInt(VERSION);
+				byte[] parameterBytes = parameters.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(parameterBytes.length);
+				out.write(parameterBytes);
+				out.writeInt(precursor.getNonHydrogenAtomCount());
+				out.writeInt(precursor.getNonHydrogenBondCount());
+				for(int i = 0; i < precursor.getNonHydrogenAtomCount(); i++) {
+					out.writeDouble(precursor.getMassOfAtom(i));
+					out.writeShort(precursor.getNumberHydrogensConnectedToAtomIndex(i));
+				}
+				for(short i = 0; i < precursor.getNonHydrogenBondCount(); i++) {
+					short[] atomIndeces = precursor.getConnectedAtomIndecesOfBondIndex(i);
+					out.writeShort(atomIndeces[0]);
+					out.writeShort(atomIndeces[1]);
+				}
+				recorder.write(out);
+			}
+			try {
+				java.nio.file.Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			} catch(java.nio.file.AtomicMoveNotSupportedException e) {
+				java.nio.file.Files.move(tempFile.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			this.logger.warn("Could not write fragment tree file " + file.getAbsolutePath() + ": " + e.getMessage());
+			if(tempFile != null) tempFile.delete();
+		}
+	}
+
+	/*
+	 * size of a single stored fragment
+	 * relative ID, tree depth, flags, queue counts, last skipped bond, hydrogens, mass, atom, bond and broken bond words
+	 */
+	private static int getFragmentRecordSize(int numberAtomWords, int numberBondWords) {
+		return 4 + 1 + 1 + 1 + 2 + 2 + 8 + 8 * (numberAtomWords + 2 * numberBondWords);
+	}
+
+	private static int numberWords(int nbits) {
+		return (nbits + 63) >>> 6;
+	}
+
+	/**
+	 * collects the fragments generated for each precursor fragment
+	 * fragments are encoded when they are recorded so later changes during the assignment are not stored
+	 *
+	 * @author cruttkie
+	 *
+	 */
+	public static class FragmentTreeRecorder {
+
+		private final java.util.concurrent.ConcurrentHashMap<Integer, byte[]> precursorFragmentIDToFragments = new java.util.concurrent.ConcurrentHashMap<Integer, byte[]>();
+
+		/**
+		 *
+		 * @param precursorFragmentID
+		 * @param firstFragmentID fragment counter of the fragmenter before the fragments were generated
+		 * @param numberOfGeneratedFragments number of fragment IDs used while generating the fragments
+		 * @param fragments
+		 * @param precursor
+		 */
+		public void record(int precursorFragmentID, int firstFragmentID, int numberOfGeneratedFragments, ArrayList<AbstractTopDownBitArrayFragment> fragments, BitArrayPrecursor precursor) {
+			int numberAtoms = 0, numberBonds = 0;
+			if(fragments.size() != 0) {
+				numberAtoms = fragments.get(0).getAtomsFastBitArray().getSize();
+				numberBonds = fragments.get(0).getBondsFastBitArray().getSize();
+			}
+			long[] words = new long[numberWords(numberAtoms) + 2 * numberWords(numberBonds)];
+			ByteBuffer buffer = ByteBuffer.allocate(12 + fragments.size() * getFragmentRecordSize(numberWords(numberAtoms), numberWords(numberBonds)));
+			buffer.putInt(precursorFragmentID);
+			buffer.putInt(numberOfGeneratedFragments);
+			buffer.putInt(fragments.size());
+			for(AbstractTopDownBitArrayFragment fragment : fragments) {
+				buffer.putInt(fragment.getID() - firstFragmentID);
+				buffer.put(fragment.getTreeDepth());
+				buffer.put((byte)((fragment.isValidFragment() ? 1 : 0) | (fragment.isDiscardedForFragmentation() ? 2 : 0) | (fragment.isWasRingCleavedFragment() ? 4 : 0)));
+				buffer.put(fragment.getAddedToQueueCounts());
+				buffer.putShort(fragment.getLastSkippedBond());
+				buffer.putShort(fragment.getNumberHydrogens());
+				buffer.putDouble(fragment.getMonoisotopicMass(precursor));
+				fragment.getAtomsFastBitArray().copyWords(words, 0);
+				fragment.getBondsFastBitArray().copyWords(words, numberWords(numberAtoms));
+				fragment.getBrokenBondsFastBitArray().copyWords(words, numberWords(numberAtoms) + numberWords(numberBonds));
+				for(int i = 0; i < words.length; i++) buffer.putLong(words[i]);
+			}
+			this.precursorFragmentIDToFragments.put(precursorFragmentID, buffer.array());
+		}
+
+		public int getNumberRecordedPrecursorFragments() {
+			return this.precursorFragmentIDToFragments.size();
+		}
+
+		protected void write(java.io.DataOutputStream out) throws IOException {
+			Integer[] precursorFragmentIDs = this.precursorFragmentIDToFragments.keySet().toArray(new Integer[0]);
+			java.util.Arrays.sort(precursorFragmentIDs);
+			out.writeInt(precursorFragmentIDs.length);
+			for(Integer precursorFragmentID : precursorFragmentIDs)
+				out.write(this.precursorFragmentIDToFragments.get(precursorFragmentID));
+		}
+	}
+
+	/**
+	 * fragment tree read from a stored file
+	 * the fragments are decoded from the mapped buffer when they are requested
+	 *
+	 * @author cruttkie
+	 *
+	 */
+	public static class StoredFragmentTree {
+
+		private final ByteBuffer buffer;
+		private final java.util.HashMap<Integer, Integer> precursorFragmentIDToOffset;
+		private final int numberAtoms;
+		private final int numberBonds;
+
+		/*
+		 * reads the index of the precursor fragments starting at the current buffer position
+		 */
+		protected StoredFragmentTree(ByteBuffer buffer, int numberAtoms, int numberBonds) {
+			this.buffer = buffer;
+			this.numberAtoms = numberAtoms;
+			this.numberBonds = numberBonds;
+			int fragmentRecordSize = getFragmentRecordSize(numberWords(numberAtoms), numberWords(numberBonds));
+			int numberPrecursorFragments = buffer.getInt();
+			this.precursorFragmentIDToOffset = new java.util.HashMap<Integer, Integer>(numberPrecursorFragments * 2);
+			int offset = buffer.position();
+			for(int i = 0; i < numberPrecursorFragments; i++) {
+				this.precursorFragmentIDToOffset.put(buffer.getInt(offset), offset);
+				offset += 12 + buffer.getInt(offset + 8) * fragmentRecordSize;
+			}
+			if(offset != buffer.limit()) throw new IllegalStateException("Corrupt fragment tree file");
+		}
+
+		private StoredFragmentTree(StoredFragmentTree storedFragmentTree) {
+			this.buffer = storedFragmentTree.buffer.duplicate();
+			this.precursorFragmentIDToOffset = storedFragmentTree.precursorFragmentIDToOffset;
+			this.numberAtoms = storedFragmentTree.numberAtoms;
+			this.numberBonds = storedFragmentTree.numberBonds;
+		}
+
+		/**
+		 * creates a copy sharing the stored data to be used in a separate thread
+		 *
+		 * @return
+		 */
+		public StoredFragmentTree createWorkerCopy() {
+			return new StoredFragmentTree(this);
+		}
+
+		public boolean containsFragmentsOf(int precursorFragmentID) {
+			return this.precursorFragmentIDToOffset.containsKey(precursorFragmentID);
+		}
+
+		public int getNumberPrecursorFragments() {
+			return this.precursorFragmentIDToOffset.size();
+		}
+
+		/**
+		 * number of fragment IDs used while generating the fragments of the given precursor fragment
+		 *
+		 * @param precursorFragmentID
+		 * @return
+		 */
+		public int getNumberOfGeneratedFragments(int precursorFragmentID) {
+			return this.buffer.getInt(this.precursorFragmentIDToOffset.get(precursorFragmentID) + 4);
+		}
+
+		/**
+		 * returns the stored fragments of the given precursor fragment
+		 *
+		 * @param precursorFragmentID
+		 * @param firstFragmentID fragment counter of the fragmenter the fragment IDs are relative to
+		 * @param precursor
+		 * @return
+		 * @throws AtomTypeNotKnownFromInputListException if a stored fragment does not fit the precursor
+		 */
+		public ArrayList<AbstractTopDownBitArrayFragment> getFragmentsOf(int precursorFragmentID, int firstFragmentID, TopDownBitArrayPrecursor precursor) throws AtomTypeNotKnownFromInputListException {
+			int offset = this.precursorFragmentIDToOffset.get(precursorFragmentID);
+			int numberFragments = this.buffer.getInt(offset + 8);
+			offset += 12;
+			int numberAtomWords = numberWords(this.numberAtoms);
+			int numberBondWords = numberWords(this.numberBonds);
+			long[] words = new long[numberAtomWords + 2 * numberBondWords];
+			ArrayList<AbstractTopDownBitArrayFragment> fragments = new ArrayList<AbstractTopDownBitArrayFragment>(numberFragments);
+			for(int k = 0; k < numberFragments; k++) {
+				int fragmentID = firstFragmentID + this.buffer.getInt(offset);
+				byte treeDepth = this.buffer.get(offset + 4);
+				byte flags = this.buffer.get(offset + 5);
+				byte addedToQueueCounts = this.buffer.get(offset + 6);
+				short lastSkippedBond = this.buffer.getShort(offset + 7);
+				short numberHydrogens = this.buffer.getShort(offset + 9);
+				double monoisotopicMass = this.buffer.getDouble(offset + 11);
+				offset += 19;
+				for(int i = 0; i < words.length; i++, offset += 8) words[i] = this.buffer.getLong(offset);
+				TopDownBitArrayFragment fragment = new TopDownBitArrayFragment(precursor, new FastBitArray(words, 0, this.numberAtoms),
+						new FastBitArray(words, numberAtomWords, this.numberBonds), new FastBitArray(words, numberAtomWords + numberBondWords, this.numberBonds), numberHydrogens);
+				fragment.setID(fragmentID);
+				fragment.setTreeDepth(treeDepth);
+				if((flags & 1) != 0) fragment.setAsValidFragment();
+				if((flags & 2) != 0) fragment.setAsDiscardedForFragmentation();
+				fragment.setWasRingCleavedFragment((flags & 4) != 0);
+				fragment.setAddedToQueueCounts(addedToQueueCounts);
+				fragment.setLastSkippedBond(lastSkippedBond);
+				fragment.setMonoisotopicMass(monoisotopicMass);
+				fragments.add(fragment);
+			}
+			return fragments;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package de.ipbhalle.metfraglib.fragmenter;
+
+import java.util.ArrayList;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+import de.ipbhalle.metfraglib.fragment.AbstractTopDownBitArrayFragment;
+import de.ipbhalle.metfraglib.list.FragmentList;
+import de.ipbhalle.metfraglib.precursor.BitArrayPrecursor;
+import de.ipbhalle.metfraglib.precursor.TopDownBitArrayPrecursor;
+
+/**
+ * fragmenter wrapping a top down fragmenter to reuse fragment trees of the FragmentTreeStore
+ *
+ * if a stored fragment tree is given the fragments of the next tree depth are taken from the stored tree
+ * otherwise the fragments are generated by the wrapped fragmenter and recorded to be stored afterwards
+ * the fragment IDs are counted by the wrapped fragmenter in both cases
+ *
+ * @author cruttkie
+ *
+ */
+public class StoredFragmentTreeFragmenter extends AbstractTopDownFragmenter {
+
+	protected Logger logger = Logger.getLogger(StoredFragmentTreeFragmenter.class);
+	protected AbstractTopDownFragmenter fragmenter;
+	protected FragmentTreeStore.StoredFragmentTree storedFragmentTree;
+	protected FragmentTreeStore.FragmentTreeRecorder recorder;
+
+	/**
+	 *
+	 * @param fragmenter
+	 * @param storedFragmentTree stored tree to replay or null to record the generated tree
+	 */
+	public StoredFragmentTreeFragmenter(AbstractTopDownFragmenter fragmenter, FragmentTreeStore.StoredFragmentTree storedFragmentTree) {
+		super(fragmenter.settings);
+		this.fragmenter = fragmenter;
+		this.maximumTreeDepth = fragmenter.getMaximumTreeDepth();
+		this.storedFragmentTree = storedFragmentTree;
+		if(storedFragmentTree == null) this.recorder = new FragmentTreeStore.FragmentTreeRecorder();
+	}
+
+	@Override
+	public FragmentList generateFragments() {
+		return this.fragmenter.generateFragments();
+	}
+
+	@Override
+	public ArrayList<AbstractTopDownBitArrayFragment> getFragmentsOfNextTreeDepth(AbstractTopDownBitArrayFragment precursorFragment) {
+		int precursorFragmentID = precursorFragment.getID();
+		int firstFragmentID = this.fragmenter.getNumberOfGeneratedFragments();
+		if(this.storedFragmentTree != null) {
+			if(this.storedFragmentTree.containsFragmentsOf(precursorFragmentID)) {
+				try {
+					ArrayList<AbstractTopDownBitArrayFragment> fragments = this.storedFragmentTree.getFragmentsOf(precursorFragmentID, firstFragmentID, (TopDownBitArrayPrecursor)this.getPrecursorMolecule());
+					this.fragmenter.setNumberOfGeneratedFragments(firstFragmentID + this.storedFragmentTree.getNumberOfGeneratedFragments(precursorFragmentID));
+					return fragments;
+				} catch (AtomTypeNotKnownFromInputListException e) {
+					//the stored tree does not fit the candidate, the remaining fragments are generated
+					this.logger.warn("Discarding stored fragment tree: " + e.getMessage());
+					this.storedFragmentTree = null;
+				}
+			}
+			else this.logger.warn("Fragment " + precursorFragmentID + " not found in stored fragment tree");
+			return this.fragmenter.getFragmentsOfNextTreeDepth(precursorFragment);
+		}
+		ArrayList<AbstractTopDownBitArrayFragment> fragments = this.fragmenter.getFragmentsOfNextTreeDepth(precursorFragment);
+		this.recorder.record(precursorFragmentID, firstFragmentID, this.fragmenter.getNumberOfGeneratedFragments() - firstFragmentID, fragments, (BitArrayPrecursor)this.getPrecursorMolecule());
+		return fragments;
+	}
+
+	/**
+	 * true if fragments are generated and recorded instead of being taken from a stored fragment tree
+	 *
+	 * @return
+	 */
+	public boolean isRecording() {
+		return this.recorder != null;
+	}
+
+	public FragmentTreeStore.FragmentTreeRecorder getRecorder() {
+		return this.recorder;
+	}
+
+	public AbstractTopDownFragmenter getFragmenter() {
+		return this.fragmenter;
+	}
+
+	@Override
+	public int getNumberOfGeneratedFragments() {
+		return this.fragmenter.getNumberOfGeneratedFragments();
+	}
+
+	@Override
+	public void setNumberOfGeneratedFragments(int numberOfGeneratedFragments) {
+		this.fragmenter.setNumberOfGeneratedFragments(numberOfGeneratedFragments);
+	}
+
+	@Override
+	public Double getMinimumFragmentMassLimit() {
+		return this.fragmenter.getMinimumFragmentMassLimit();
+	}
+
+	@Override
+	public void setMinimumFragmentMassLimit(Double minimumFragmentMassLimit) {
+		this.fragmenter.setMinimumFragmentMassLimit(minimumFragmentMassLimit);
+	}
+
+	/**
+	 * the copy wraps a copy of the fragmenter and records into the same recorder
+	 */
+	@Override
+	public AbstractTopDownFragmenter createWorkerCopy() {
+		try {
+			StoredFragmentTreeFragmenter copy = (StoredFragmentTreeFragmenter)super.clone();
+			copy.fragmenter = this.fragmenter.createWorkerCopy();
+			if(this.storedFragmentTree != null) copy.storedFragmentTree = this.storedFragmentTree.createWorkerCopy();
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void nullify() {
+		super.nullify();
+		this.fragmenter.nullify();
+		this.storedFragmentTree = null;
+		this.recorder = null;
+	}
+
+}
@@ -147,6 +147,14 @@ public class TopDownFragmenter extends AbstractTopDownFragmenter {
 			newGeneratedTopDownFragments[0].setID(++this.numberOfGeneratedFragments);
 	}
 	
+	public int getNumberOfGeneratedFragments() {
+		return this.numberOfGeneratedFragments;
+	}
+	
+	public void setNumberOfGeneratedFragments(int numberOfGeneratedFragments) {
+		this.numberOfGeneratedFragments = numberOfGeneratedFragments;
+	}
+	
 	/**
 	 * generates all fragments of the given precursor fragment to reach the new tree depth
 	 */
@@ -169,8 +177,8 @@ public class TopDownFragmenter extends AbstractTopDownFragmenter {
 		/*
 		 * start from the last broken bond index
 		 */
-		for(short i = nextBrokenIndexBondIndexToRemove; i < precursorFragment.getBondsFastBitArray().getSize(); i++) {		
-			if(!precursorFragment.getBondsFastBitArray().get(i)) continue;
+		FastBitArray bondsFastBitArray = precursorFragment.getBondsFastBitArray();
+		for(short i = (short)bondsFastBitArray.nextSetIndex(nextBrokenIndexBondIndexToRemove); i >= 0; i = (short)bondsFastBitArray.nextSetIndex(i + 1)) {
 			short[] indecesOfBondConnectedAtoms = ((BitArrayPrecursor)this.scoredCandidate.getPrecursorMolecule()).getConnectedAtomIndecesOfBondIndex(i);
 			/*
 			 * try to generate at most two fragments by the removal of the given bond
@@ -249,9 +257,8 @@ public class TopDownFragmenter extends AbstractTopDownFragmenter {
 			/*
 			 * 
 			 */ 
-			for(short currentBond = nextRingBondToCut; currentBond < ringBondFastBitArray.getSize(); currentBond++) 
+			for(short currentBond = (short)ringBondFastBitArray.nextSetIndex(nextRingBondToCut); currentBond >= 0; currentBond = (short)ringBondFastBitArray.nextSetIndex(currentBond + 1)) 
 			{
-			 	if(!ringBondFastBitArray.get(currentBond)) continue;
 				if(currentFragment.getBrokenBondsFastBitArray().get(currentBond)) continue;
 				AbstractTopDownBitArrayFragment[] newFragments = {currentFragment}; 
 				short[] connectedAtomIndeces = ((BitArrayPrecursor)this.scoredCandidate.getPrecursorMolecule()).getConnectedAtomIndecesOfBondIndex((short)currentBond);
@@ -309,9 +316,8 @@ public class TopDownFragmenter extends AbstractTopDownFragmenter {
 		short lastSkippedBonds = precursorFragment.getLastSkippedBond();
 		if(lastSkippedBonds == -1 || precursorFragment.getNonHydrogenBondCount() <= lastSkippedBonds) return;
 		
-		for(short currentBond = lastSkippedBonds; currentBond < ringBondFastBitArray.getSize(); currentBond++) 
+		for(short currentBond = (short)this.ringBondFastBitArray.nextSetIndex(lastSkippedBonds); currentBond >= 0; currentBond = (short)this.ringBondFastBitArray.nextSetIndex(currentBond + 1)) 
 		{
-		 	if(!this.ringBondFastBitArray.get(currentBond)) continue;
 		 	if(!precursorFragment.getBondsFastBitArray().get(currentBond)) continue;
 			short[] connectedAtomIndeces = ((BitArrayPrecursor)this.scoredCandidate.getPrecursorMolecule()).getConnectedAtomIndecesOfBondIndex((short)currentBond);
 			AbstractTopDownBitArrayFragment[] newFragments = precursorFragment.traverseMolecule(this.scoredCandidate.getPrecursorMolecule(), (short)currentBond, connectedAtomIndeces);
@@ -244,9 +244,8 @@ public class TopDownNeutralLossFragmenter extends TopDownFragmenter {
 		/*
 		 * start from the last broken bond index
 		 */
-		for (short i = nextBrokenIndexBondIndexToRemove; i < precursorFragment.getBondsFastBitArray().getSize(); i++) {
-			if (!precursorFragment.getBondsFastBitArray().get(i))
-				continue;
+		FastBitArray bondsFastBitArray = precursorFragment.getBondsFastBitArray();
+		for (short i = (short) bondsFastBitArray.nextSetIndex(nextBrokenIndexBondIndexToRemove); i >= 0; i = (short) bondsFastBitArray.nextSetIndex(i + 1)) {
 			short[] indecesOfBondConnectedAtoms = ((BitArrayPrecursor) this.scoredCandidate.getPrecursorMolecule())
 					.getConnectedAtomIndecesOfBondIndex(i);
 			/*
@@ -1,5 +1,7 @@
 package de.ipbhalle.metfraglib.fragmenterassignerscorer;
 
+import de.ipbhalle.metfraglib.FastBitArrayIntMap;
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
 import de.ipbhalle.metfraglib.interfaces.IMolecularStructure;
@@ -17,6 +19,8 @@ import de.ipbhalle.metfraglib.precursor.AbstractTopDownBitArrayPrecursor;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 
@@ -24,6 +28,10 @@ import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
 import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
 import de.ipbhalle.metfraglib.fragment.AbstractTopDownBitArrayFragment;
 import de.ipbhalle.metfraglib.fragment.AbstractTopDownBitArrayFragmentWrapper;
+import de.ipbhalle.metfraglib.fragmenter.AbstractTopDownFragmenter;
+import de.ipbhalle.metfraglib.fragmenter.FragmentTreeStore;
+import de.ipbhalle.metfraglib.fragmenter.StoredFragmentTreeFragmenter;
+import de.ipbhalle.metfraglib.fragmenter.TopDownFragmenter;
 
 public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerScorer {
 
@@ -31,11 +39,11 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 	/*
 	 * workaround
 	 */
-	protected java.util.Hashtable<String, Integer> bitArrayToFragment;
+	protected FastBitArrayIntMap bitArrayToFragment;
 	
 	public TopDownFragmenterAssignerScorer(Settings settings, ICandidate candidate) {
 		super(settings, candidate);
-		this.bitArrayToFragment = new java.util.Hashtable<String, Integer>();
+		this.bitArrayToFragment = new FastBitArrayIntMap();
 		this.uniqueFragmentMatches = (Boolean)this.settings.get(VariableNames.METFRAG_UNIQUE_FRAGMENT_MATCHES);
 	}
 
@@ -44,6 +52,8 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 		AbstractTopDownBitArrayPrecursor candidatePrecursor = (AbstractTopDownBitArrayPrecursor)(this.candidates[0]).getPrecursorMolecule();
 		//generate root fragment to start fragmentation
 		AbstractTopDownBitArrayFragment root = candidatePrecursor.toFragment();
+		//generated fragments are counted from 1
+		root.setID(0);
 		Byte maximumTreeDepth = (Byte)settings.get(VariableNames.MAXIMUM_TREE_DEPTH_NAME);
 		if(maximumTreeDepth == 0) {
 			maximumTreeDepth = candidatePrecursor.getNumNodeDegreeOne() >= 4 ? (byte)3 : (byte)2;
@@ -56,6 +66,24 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 		Boolean positiveMode = (Boolean)this.settings.get(VariableNames.IS_POSITIVE_ION_MODE_NAME);
 		int precursorIonTypeIndex = Constants.ADDUCT_NOMINAL_MASSES.indexOf(precursorIonType);
 		this.fragmenter.setMinimumFragmentMassLimit(this.fragmenter.getMinimumFragmentMassLimit() - Constants.ADDUCT_MASSES.get(precursorIonTypeIndex));
+		/*
+		 * replay the fragment tree of the candidate if it was stored before or record it to store it afterwards
+		 * the wrapping fragmenter is only used for this candidate
+		 */
+		AbstractTopDownFragmenter fragmenter = this.fragmenter;
+		FragmentTreeStore fragmentTreeStore = null;
+		String fragmentTreeParameters = null;
+		StoredFragmentTreeFragmenter storedFragmentTreeFragmenter = null;
+		if(this.settings.containsKey(VariableNames.FRAGMENT_TREE_STORE_PATH_NAME) && this.settings.get(VariableNames.FRAGMENT_TREE_STORE_PATH_NAME) != null
+				&& FragmentTreeStore.isSupported(this.fragmenter) && this.candidates[0] instanceof TopDownPrecursorCandidate
+				&& ((TopDownPrecursorCandidate)this.candidates[0]).getInChIKey() != null && tandemMassPeakList.getNumberElements() != 0) 
+		{
+			fragmentTreeStore = new FragmentTreeStore((String)this.settings.get(VariableNames.FRAGMENT_TREE_STORE_PATH_NAME));
+			fragmentTreeParameters = FragmentTreeStore.getParameters((TopDownFragmenter)this.fragmenter, maximumTreeDepth);
+			storedFragmentTreeFragmenter = new StoredFragmentTreeFragmenter(this.fragmenter, 
+					fragmentTreeStore.read(((TopDownPrecursorCandidate)this.candidates[0]).getInChIKey(), fragmentTreeParameters, candidatePrecursor));
+			fragmenter = storedFragmentTreeFragmenter;
+		}
 		
 		/*
 		 * prepare the processing
@@ -69,11 +97,22 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 		java.util.HashMap<Integer, MatchFragmentList> peakIndexToPeakMatch = new java.util.HashMap<Integer, MatchFragmentList>();
 		java.util.HashMap<Integer, MatchPeakList> fragmentIndexToPeakMatch = new java.util.HashMap<Integer, MatchPeakList>();
 		
+		boolean parallelFragmentation = (Boolean)this.settings.get(VariableNames.PARALLEL_FRAGMENTATION_NAME);
+		
 		/*
 		 * iterate over the maximal allowed tree depth
 		 */
 		for(int k = 1; k <= maximumTreeDepth; k++) {
 			java.util.Queue<AbstractTopDownBitArrayFragmentWrapper> newToProcessFragments = new java.util.LinkedList<AbstractTopDownBitArrayFragmentWrapper>();
+			/*
+			 * the first tree depth initialises the ring bonds of the fragmenter and is always processed sequentially
+			 */
+			if(parallelFragmentation && k > 1 && toProcessFragments.size() >= Constants.PARALLEL_FRAGMENTATION_MINIMUM_FRONTIER_SIZE) {
+				this.processTreeDepthInParallel(fragmenter, toProcessFragments, newToProcessFragments, peakIndexToPeakMatch, fragmentIndexToPeakMatch, 
+						candidatePrecursor, tandemMassPeakList, precursorIonTypeIndex, positiveMode, maximumTreeDepth);
+				toProcessFragments = newToProcessFragments;
+				continue;
+			}
 			/*
 			 * use each fragment that is marked as to be processed
 			 */
@@ -92,7 +131,7 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 				/*
 				 * generate fragments of next tree depth
 				 */
-				java.util.ArrayList<AbstractTopDownBitArrayFragment> fragmentsOfCurrentTreeDepth = this.fragmenter.getFragmentsOfNextTreeDepth(wrappedPrecursorFragment.getWrappedFragment());
+				java.util.ArrayList<AbstractTopDownBitArrayFragment> fragmentsOfCurrentTreeDepth = fragmenter.getFragmentsOfNextTreeDepth(wrappedPrecursorFragment.getWrappedFragment());
 				
 				/*
 				 * get peak pointer of current precursor fragment
@@ -120,92 +159,24 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 						continue;
 					}
 
-					byte matched = -1;
-					int tempPeakPointer = currentPeakPointer;
-					while(matched != 1 && tempPeakPointer >= 0) {
-						IMatch[] match = new IMatch[1];
-						/*
-						 * calculate match
-						 */
-						matched = currentFragment.matchToPeak(candidatePrecursor, tandemMassPeakList.getElement(tempPeakPointer), precursorIonTypeIndex, positiveMode, match);
-						/*
-						 * check whether match has occurred
-						 */
-						if(matched == 0) {
-							currentFragment.setPrecursorFragments(true);
-							Double[][] currentScores = this.scoreCollection.calculateSingleMatch(match[0]);
-							/*
-							 * insert fragment into peak's fragment list 
-							 */
-							/*
-							 * first generate the new fragment node and set the score values
-							 */
-							MatchFragmentNode newNode = new MatchFragmentNode(match[0]);
-							newNode.setScore(currentScores[0][0]);
-							newNode.setFragmentScores(currentScores[0]);
-							newNode.setOptimalValues(currentScores[1]);
-							/*
-							 * find correct location in the fragment list
-							 */
-							boolean similarFragmentFound = false;
-							if(peakIndexToPeakMatch.containsKey(tempPeakPointer)) {
-								Double[] values = peakIndexToPeakMatch.get(tempPeakPointer).containsByFingerprint(currentFragment.getAtomsFastBitArray());
-								if(values == null) {
-									peakIndexToPeakMatch.get(tempPeakPointer).insert(newNode);
-								}
-								else {
-									if(values[0] < currentScores[0][0]) {
-										peakIndexToPeakMatch.get(tempPeakPointer).removeElementByID((int)Math.floor(values[1]));
-										fragmentIndexToPeakMatch.get((int)Math.floor(values[1])).removeElementByID(tempPeakPointer);
-										if(fragmentIndexToPeakMatch.get((int)Math.floor(values[1])).getRootNode() == null) {
-											fragmentIndexToPeakMatch.remove((int)Math.floor(values[1]));
-										}
-										peakIndexToPeakMatch.get(tempPeakPointer).insert(newNode);
-									}
-									else similarFragmentFound = true;
-								}
-							}
-							else {
-								MatchFragmentList newFragmentList = new MatchFragmentList(newNode);
-								peakIndexToPeakMatch.put(tempPeakPointer, newFragmentList);
-							}
-							/*
-							 * insert peak into fragment's peak list 
-							 */
-							if(!similarFragmentFound) {
-								if(fragmentIndexToPeakMatch.containsKey(currentFragment.getID())) {
-									fragmentIndexToPeakMatch.get(currentFragment.getID()).insert(tandemMassPeakList.getElement(tempPeakPointer), currentScores[0][0], tempPeakPointer);
-								}
-								else {
-									MatchPeakList newPeakList = new MatchPeakList(tandemMassPeakList.getElement(tempPeakPointer), currentScores[0][0], tempPeakPointer);
-									fragmentIndexToPeakMatch.put(currentFragment.getID(), newPeakList);
-								}
-							}
-						}
-						/*
-						 * if the mass of the current fragment was greater than the peak mass then assign the current peak ID to the peak IDs of the
-						 * child fragments as they have smaller masses 
-						 */
-						if(matched == 1 || tempPeakPointer == 0) {
-							/*
-							 * mark current fragment for further fragmentation
-							 */
-							if(currentFragment.getTreeDepth() < maximumTreeDepth) newToProcessFragments.add(new AbstractTopDownBitArrayFragmentWrapper(currentFragment, tempPeakPointer));
-						}
-						/*
-						 * if the current fragment has matched to the current peak then set the current peak index to the next peak as the current fragment can 
-						 * also match to the next peak
-						 * if the current fragment mass was smaller than that of the current peak then set the current peak index to the next peak (reduce the index) 
-						 * as the next peak mass is smaller and could match the current smaller fragment mass 
-						 */
-						if(matched == 0 || matched == -1) tempPeakPointer--;
-					}
+					FragmentPeakMatches fragmentPeakMatches = this.matchFragmentToPeaks(currentFragment, currentPeakPointer, candidatePrecursor, tandemMassPeakList, precursorIonTypeIndex, positiveMode);
+					this.addFragmentPeakMatches(fragmentPeakMatches, currentFragment, peakIndexToPeakMatch, fragmentIndexToPeakMatch, tandemMassPeakList);
+					/*
+					 * mark current fragment for further fragmentation
+					 */
+					if(fragmentPeakMatches.nextPeakPointer != -1 && currentFragment.getTreeDepth() < maximumTreeDepth) 
+						newToProcessFragments.add(new AbstractTopDownBitArrayFragmentWrapper(currentFragment, fragmentPeakMatches.nextPeakPointer));
 				}
 			}
 			toProcessFragments = newToProcessFragments;
 		}
 		
 		toProcessFragments.clear();
+		/*
+		 * the tree is complete as all fragments were processed with a non-empty peak list
+		 */
+		if(storedFragmentTreeFragmenter != null && storedFragmentTreeFragmenter.isRecording()) 
+			fragmentTreeStore.write(((TopDownPrecursorCandidate)this.candidates[0]).getInChIKey(), fragmentTreeParameters, candidatePrecursor, storedFragmentTreeFragmenter.getRecorder());
 		this.matchList = new MatchList();
 		
 		/*
@@ -282,6 +253,227 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 		}
 	}
 	
+	/**
+	 * tries to assign the given fragment to the peaks starting at the given peak pointer
+	 * found matches are not yet added to the match maps (see addFragmentPeakMatches) so this can be called from several threads
+	 * 
+	 * @param currentFragment
+	 * @param currentPeakPointer
+	 * @param candidatePrecursor
+	 * @param tandemMassPeakList
+	 * @param precursorIonTypeIndex
+	 * @param positiveMode
+	 * @return
+	 */
+	protected FragmentPeakMatches matchFragmentToPeaks(AbstractTopDownBitArrayFragment currentFragment, int currentPeakPointer, AbstractTopDownBitArrayPrecursor candidatePrecursor, 
+			SortedTandemMassPeakList tandemMassPeakList, int precursorIonTypeIndex, boolean positiveMode) 
+	{
+		FragmentPeakMatches fragmentPeakMatches = new FragmentPeakMatches();
+		byte matched = -1;
+		int tempPeakPointer = currentPeakPointer;
+		if(tempPeakPointer > 0) {
+			/*
+			 * skip all peaks that are too heavy to be matched by the current fragment
+			 */
+			tempPeakPointer = tandemMassPeakList.getLastIndexOfPeakByLowerMassLimit(currentFragment.getMaximumMatchingMass(candidatePrecursor, precursorIonTypeIndex, positiveMode), currentPeakPointer);
+			if(tempPeakPointer == -1) {
+				fragmentPeakMatches.nextPeakPointer = 0;
+				return fragmentPeakMatches;
+			}
+		}
+		while(matched != 1 && tempPeakPointer >= 0) {
+			IMatch[] match = new IMatch[1];
+			/*
+			 * calculate match
+			 */
+			matched = currentFragment.matchToPeak(candidatePrecursor, tandemMassPeakList.getElement(tempPeakPointer), precursorIonTypeIndex, positiveMode, match);
+			/*
+			 * check whether match has occurred
+			 */
+			if(matched == 0) {
+				currentFragment.setPrecursorFragments(true);
+				fragmentPeakMatches.add(tempPeakPointer, match[0], this.scoreCollection.calculateSingleMatch(match[0]));
+			}
+			/*
+			 * if the mass of the current fragment was greater than the peak mass then assign the current peak ID to the peak IDs of the
+			 * child fragments as they have smaller masses 
+			 */
+			if(matched == 1 || tempPeakPointer == 0) {
+				fragmentPeakMatches.nextPeakPointer = tempPeakPointer;
+			}
+			/*
+			 * if the current fragment has matched to the current peak then set the current peak index to the next peak as the current fragment can 
+			 * also match to the next peak
+			 * if the current fragment mass was smaller than that of the current peak then set the current peak index to the next peak (reduce the index) 
+			 * as the next peak mass is smaller and could match the current smaller fragment mass 
+			 */
+			if(matched == 0 || matched == -1) tempPeakPointer--;
+		}
+		return fragmentPeakMatches;
+	}
+	
+	/**
+	 * inserts the matches of the given fragment into the peak and fragment match maps
+	 * 
+	 * @param fragmentPeakMatches
+	 * @param currentFragment
+	 * @param peakIndexToPeakMatch
+	 * @param fragmentIndexToPeakMatch
+	 * @param tandemMassPeakList
+	 */
+	protected void addFragmentPeakMatches(FragmentPeakMatches fragmentPeakMatches, AbstractTopDownBitArrayFragment currentFragment, java.util.HashMap<Integer, MatchFragmentList> peakIndexToPeakMatch, 
+			java.util.HashMap<Integer, MatchPeakList> fragmentIndexToPeakMatch, SortedTandemMassPeakList tandemMassPeakList) 
+	{
+		for(int i = 0; i < fragmentPeakMatches.peakPointers.size(); i++) {
+			int tempPeakPointer = fragmentPeakMatches.peakPointers.get(i);
+			Double[][] currentScores = fragmentPeakMatches.scores.get(i);
+			/*
+			 * insert fragment into peak's fragment list 
+			 */
+			/*
+			 * first generate the new fragment node and set the score values
+			 */
+			MatchFragmentNode newNode = new MatchFragmentNode(fragmentPeakMatches.matches.get(i));
+			newNode.setScore(currentScores[0][0]);
+			newNode.setFragmentScores(currentScores[0]);
+			newNode.setOptimalValues(currentScores[1]);
+			/*
+			 * find correct location in the fragment list
+			 */
+			boolean similarFragmentFound = false;
+			if(peakIndexToPeakMatch.containsKey(tempPeakPointer)) {
+				Double[] values = peakIndexToPeakMatch.get(tempPeakPointer).containsByFingerprint(currentFragment.getAtomsFastBitArray());
+				if(values == null) {
+					peakIndexToPeakMatch.get(tempPeakPointer).insert(newNode);
+				}
+				else {
+					if(values[0] < currentScores[0][0]) {
+						peakIndexToPeakMatch.get(tempPeakPointer).removeElementByID((int)Math.floor(values[1]));
+						fragmentIndexToPeakMatch.get((int)Math.floor(values[1])).removeElementByID(tempPeakPointer);
+						if(fragmentIndexToPeakMatch.get((int)Math.floor(values[1])).getRootNode() == null) {
+							fragmentIndexToPeakMatch.remove((int)Math.floor(values[1]));
+						}
+						peakIndexToPeakMatch.get(tempPeakPointer).insert(newNode);
+					}
+					else similarFragmentFound = true;
+				}
+			}
+			else {
+				MatchFragmentList newFragmentList = new MatchFragmentList(newNode);
+				peakIndexToPeakMatch.put(tempPeakPointer, newFragmentList);
+			}
+			/*
+			 * insert peak into fragment's peak list 
+			 */
+			if(!similarFragmentFound) {
+				if(fragmentIndexToPeakMatch.containsKey(currentFragment.getID())) {
+					fragmentIndexToPeakMatch.get(currentFragment.getID()).insert(tandemMassPeakList.getElement(tempPeakPointer), currentScores[0][0], tempPeakPointer);
+				}
+				else {
+					MatchPeakList newPeakList = new MatchPeakList(tandemMassPeakList.getElement(tempPeakPointer), currentScores[0][0], tempPeakPointer);
+					fragmentIndexToPeakMatch.put(currentFragment.getID(), newPeakList);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * processes one tree depth with the fork/join pool
+	 * 
+	 * 1. fragments of the next tree depth are generated in parallel by copies of the fragmenter
+	 * 2. fragment IDs are renumbered and duplicates are detected in the order of the sequential processing
+	 * 3. the generated fragments are matched to the peaks in parallel
+	 * 4. the matches are added to the match maps in the order of the sequential processing
+	 * 
+	 * the result is the same as processing the fragments sequentially
+	 */
+	@SuppressWarnings("unchecked")
+	protected void processTreeDepthInParallel(AbstractTopDownFragmenter fragmenter, java.util.Queue<AbstractTopDownBitArrayFragmentWrapper> toProcessFragments, java.util.Queue<AbstractTopDownBitArrayFragmentWrapper> newToProcessFragments,
+			java.util.HashMap<Integer, MatchFragmentList> peakIndexToPeakMatch, java.util.HashMap<Integer, MatchPeakList> fragmentIndexToPeakMatch, 
+			final AbstractTopDownBitArrayPrecursor candidatePrecursor, final SortedTandemMassPeakList tandemMassPeakList, final int precursorIonTypeIndex, final boolean positiveMode, byte maximumTreeDepth) 
+	{
+		final AbstractTopDownBitArrayFragmentWrapper[] wrappedPrecursorFragments = toProcessFragments.toArray(new AbstractTopDownBitArrayFragmentWrapper[toProcessFragments.size()]);
+		toProcessFragments.clear();
+		final AbstractTopDownBitArrayFragment[] clonedFragments = new AbstractTopDownBitArrayFragment[wrappedPrecursorFragments.length];
+		final java.util.ArrayList<AbstractTopDownBitArrayFragment>[] fragmentsOfCurrentTreeDepth = new java.util.ArrayList[wrappedPrecursorFragments.length];
+		//fragment IDs assigned by the fragmenter copy before and while generating the fragments of each precursor fragment
+		final int[] firstLocalFragmentIDs = new int[wrappedPrecursorFragments.length];
+		final int[] numbersOfGeneratedFragments = new int[wrappedPrecursorFragments.length];
+		/*
+		 * generate fragments of next tree depth
+		 */
+		ForkJoinPool.commonPool().invoke(new ParallelTreeDepthTask(fragmenter, new TreeDepthWork() {
+			public void process(int index, AbstractTopDownFragmenter fragmenter) {
+				AbstractTopDownBitArrayFragment precursorFragment = wrappedPrecursorFragments[index].getWrappedFragment();
+				if(precursorFragment.isDiscardedForFragmentation()) {
+					clonedFragments[index] = (AbstractTopDownBitArrayFragment)precursorFragment.clone(candidatePrecursor);
+					clonedFragments[index].setAsDiscardedForFragmentation();
+					return;
+				}
+				firstLocalFragmentIDs[index] = fragmenter.getNumberOfGeneratedFragments();
+				fragmentsOfCurrentTreeDepth[index] = fragmenter.getFragmentsOfNextTreeDepth(precursorFragment);
+				numbersOfGeneratedFragments[index] = fragmenter.getNumberOfGeneratedFragments() - firstLocalFragmentIDs[index];
+			}
+		}, 0, wrappedPrecursorFragments.length));
+		/*
+		 * assign the fragment IDs the sequential processing would have assigned and check for duplicates
+		 */
+		int numberOfGeneratedFragments = fragmenter.getNumberOfGeneratedFragments();
+		final java.util.ArrayList<AbstractTopDownBitArrayFragment> fragmentsToMatch = new java.util.ArrayList<AbstractTopDownBitArrayFragment>();
+		final java.util.ArrayList<Integer> peakPointersToMatch = new java.util.ArrayList<Integer>();
+		for(int i = 0; i < wrappedPrecursorFragments.length; i++) {
+			if(fragmentsOfCurrentTreeDepth[i] == null) continue;
+			for(AbstractTopDownBitArrayFragment currentFragment : fragmentsOfCurrentTreeDepth[i]) 
+				currentFragment.setID(numberOfGeneratedFragments + currentFragment.getID() - firstLocalFragmentIDs[i]);
+			numberOfGeneratedFragments += numbersOfGeneratedFragments[i];
+			for(AbstractTopDownBitArrayFragment currentFragment : fragmentsOfCurrentTreeDepth[i]) {
+				if(!currentFragment.isValidFragment()) continue;
+				/*
+				 * duplicates are kept in the list without peak pointer
+				 */
+				if(this.wasAlreadyGeneratedByHashtable(currentFragment)) {
+					currentFragment.setAsDiscardedForFragmentation();
+					peakPointersToMatch.add(null);
+				}
+				else peakPointersToMatch.add(wrappedPrecursorFragments[i].getCurrentPeakIndexPointer());
+				fragmentsToMatch.add(currentFragment);
+			}
+		}
+		fragmenter.setNumberOfGeneratedFragments(numberOfGeneratedFragments);
+		/*
+		 * match fragments to peaks
+		 */
+		final FragmentPeakMatches[] fragmentPeakMatches = new FragmentPeakMatches[fragmentsToMatch.size()];
+		ForkJoinPool.commonPool().invoke(new ParallelTreeDepthTask(fragmenter, new TreeDepthWork() {
+			public void process(int index, AbstractTopDownFragmenter fragmenter) {
+				if(peakPointersToMatch.get(index) == null) return;
+				fragmentPeakMatches[index] = matchFragmentToPeaks(fragmentsToMatch.get(index), peakPointersToMatch.get(index), candidatePrecursor, tandemMassPeakList, precursorIonTypeIndex, positiveMode);
+			}
+		}, 0, fragmentsToMatch.size()));
+		/*
+		 * merge the matches and collect the fragments of the next tree depth in the sequential order
+		 */
+		int matchIndex = 0;
+		for(int i = 0; i < wrappedPrecursorFragments.length; i++) {
+			int currentPeakPointer = wrappedPrecursorFragments[i].getCurrentPeakIndexPointer();
+			if(clonedFragments[i] != null) {
+				if(clonedFragments[i].getTreeDepth() < maximumTreeDepth) newToProcessFragments.add(new AbstractTopDownBitArrayFragmentWrapper(clonedFragments[i], currentPeakPointer));
+				continue;
+			}
+			for(AbstractTopDownBitArrayFragment currentFragment : fragmentsOfCurrentTreeDepth[i]) {
+				if(!currentFragment.isValidFragment() || fragmentPeakMatches[matchIndex] == null) {
+					if(currentFragment.isValidFragment()) matchIndex++;
+					if(currentFragment.getTreeDepth() < maximumTreeDepth) newToProcessFragments.add(new AbstractTopDownBitArrayFragmentWrapper(currentFragment, currentPeakPointer));
+					continue;
+				}
+				FragmentPeakMatches currentFragmentPeakMatches = fragmentPeakMatches[matchIndex++];
+				this.addFragmentPeakMatches(currentFragmentPeakMatches, currentFragment, peakIndexToPeakMatch, fragmentIndexToPeakMatch, tandemMassPeakList);
+				if(currentFragmentPeakMatches.nextPeakPointer != -1 && currentFragment.getTreeDepth() < maximumTreeDepth) 
+					newToProcessFragments.add(new AbstractTopDownBitArrayFragmentWrapper(currentFragment, currentFragmentPeakMatches.nextPeakPointer));
+			}
+		}
+	}
+	
 	/**
 	 * 
 	 * @param sortedScoredPeaks
@@ -494,10 +686,8 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 	}*/
 
 	protected boolean wasAlreadyGeneratedByHashtable(AbstractTopDownBitArrayFragment currentFragment) {
-		String currentHash = currentFragment.getAtomsFastBitArray().toString();
-		Integer minimalTreeDepth = this.bitArrayToFragment.get(currentHash);
-		if(minimalTreeDepth == null) {
-			this.bitArrayToFragment.put(currentHash, (int)currentFragment.getTreeDepth());
+		int minimalTreeDepth = this.bitArrayToFragment.putIfAbsent(currentFragment.getAtomsFastBitArray(), (int)currentFragment.getTreeDepth());
+		if(minimalTreeDepth == FastBitArrayIntMap.NO_VALUE) {
 			return false;
 		}
 		//if(minimalTreeDepth.equals(currentFragment.getTreeDepth()))
@@ -559,5 +749,68 @@ public class TopDownFragmenterAssignerScorer extends AbstractFragmenterAssignerS
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * matches of one fragment in the order they were found
+	 */
+	protected static class FragmentPeakMatches {
+		
+		protected java.util.ArrayList<Integer> peakPointers = new java.util.ArrayList<Integer>();
+		protected java.util.ArrayList<IMatch> matches = new java.util.ArrayList<IMatch>();
+		protected java.util.ArrayList<Double[][]> scores = new java.util.ArrayList<Double[][]>();
+		//peak pointer for the child fragments, -1 if the fragment is not fragmented further
+		protected int nextPeakPointer = -1;
+		
+		protected void add(int peakPointer, IMatch match, Double[][] currentScores) {
+			this.peakPointers.add(peakPointer);
+			this.matches.add(match);
+			this.scores.add(currentScores);
+		}
+	}
+	
+	/**
+	 * work done for a single index of a ParallelTreeDepthTask
+	 * the given fragmenter is a copy exclusive to the current thread
+	 */
+	protected interface TreeDepthWork {
+		public void process(int index, AbstractTopDownFragmenter fragmenter);
+	}
+	
+	/**
+	 * fork/join task splitting an index range until it is small enough to be processed by a single thread
+	 */
+	protected class ParallelTreeDepthTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		
+		protected AbstractTopDownFragmenter fragmenter;
+		protected TreeDepthWork work;
+		protected int from;
+		protected int to;
+		protected int leafSize;
+
+		public ParallelTreeDepthTask(AbstractTopDownFragmenter fragmenter, TreeDepthWork work, int from, int to) {
+			this(fragmenter, work, from, to, Math.max(1, (to - from) / (4 * ForkJoinPool.getCommonPoolParallelism())));
+		}
+
+		protected ParallelTreeDepthTask(AbstractTopDownFragmenter fragmenter, TreeDepthWork work, int from, int to, int leafSize) {
+			this.fragmenter = fragmenter;
+			this.work = work;
+			this.from = from;
+			this.to = to;
+			this.leafSize = leafSize;
+		}
+		
+		@Override
+		protected void compute() {
+			if(this.to - this.from <= this.leafSize) {
+				AbstractTopDownFragmenter fragmenterCopy = this.fragmenter.createWorkerCopy();
+				for(int i = this.from; i < this.to; i++) this.work.process(i, fragmenterCopy);
+				return;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			invokeAll(new ParallelTreeDepthTask(this.fragmenter, this.work, this.from, middle, this.leafSize), new ParallelTreeDepthTask(this.fragmenter, this.work, middle, this.to, this.leafSize));
+		}
+	}
 	
 }
@@ -0,0 +1,17 @@
+package de.ipbhalle.metfraglib.interfaces;
+
+/**
+ * iterates over candidates while they are read from a database
+ * the cursor has to be closed if not iterated to the end to free the underlying resources
+ * 
+ * @author cruttkie
+ *
+ */
+public interface ICandidateCursor extends java.util.Iterator<ICandidate>, java.io.Closeable {
+
+	/**
+	 * stops reading candidates and frees the underlying resources
+	 */
+	public void close();
+	
+}
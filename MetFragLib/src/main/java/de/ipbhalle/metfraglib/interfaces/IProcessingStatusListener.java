@@ -0,0 +1,15 @@
+package de.ipbhalle.metfraglib.interfaces;
+
+import de.ipbhalle.metfraglib.process.ProcessingStatus;
+
+public interface IProcessingStatusListener {
+
+	/**
+	 * called whenever the processing status has changed
+	 * e.g. after the next ten percent of candidates have been processed
+	 * 
+	 * @param processingStatus
+	 */
+	public void processingStatusChanged(ProcessingStatus processingStatus);
+	
+}
@@ -0,0 +1,26 @@
+package de.ipbhalle.metfraglib.interfaces;
+
+/**
+ * store for responses of online databases used by OnlineDatabaseFetcher
+ * implementations decide how long a response is kept and need to be thread-safe
+ * 
+ * @author cruttkie
+ *
+ */
+public interface IResponseCache {
+
+	/**
+	 * 
+	 * @param key endpoint and normalized query
+	 * @return stored response or null if not present or expired
+	 */
+	public byte[] get(String key);
+	
+	/**
+	 * 
+	 * @param key endpoint and normalized query
+	 * @param response
+	 */
+	public void put(String key, byte[] response);
+	
+}
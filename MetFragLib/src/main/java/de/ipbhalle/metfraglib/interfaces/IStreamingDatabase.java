@@ -0,0 +1,21 @@
+package de.ipbhalle.metfraglib.interfaces;
+
+/**
+ * database able to hand out candidates while they are read
+ * 
+ * @author cruttkie
+ *
+ */
+public interface IStreamingDatabase extends IDatabase {
+
+	/**
+	 * returns a cursor over the candidates matching the parameters set in the settings
+	 * the search is defined the same way as for getCandidateIdentifiers()
+	 * returns null if the current search can not be streamed, candidates are then fetched by their identifiers
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public ICandidateCursor getCandidateCursor() throws Exception;
+	
+}
@@ -14,6 +14,14 @@ import de.ipbhalle.metfraglib.peak.TandemMassPeak;
 public class SortedTandemMassPeakList extends DefaultPeakList {
 	
 	protected Double measuredPrecursorMass;
+	/**
+	 * lower mass limits of the peaks in the order of the list used for binary search
+	 * set by initialiseMassLimits and cleared by all list modifications
+	 */
+	protected volatile double[] lowerMassLimits;
+	protected double relativeMassDeviation;
+	protected double absoluteMassDeviation;
+	protected boolean massDeviationsSet = false;
 	
 	public SortedTandemMassPeakList(Double measuredPrecursorMass) {
 		super();
@@ -33,6 +41,98 @@ public class SortedTandemMassPeakList extends DefaultPeakList {
 		double mass = tandemMassPeak.getMass();
 		while(index < this.list.size() && mass > ((TandemMassPeak)this.list.get(index)).getMass()) index++;
 		this.list.add(index, tandemMassPeak);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void addElement(Object obj) {
+		super.addElement(obj);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void addElement(int index, Object obj) {
+		super.addElement(index, obj);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void removeElement(int index) {
+		super.removeElement(index);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void setElement(int index, Object object) {
+		super.setElement(index, object);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void setList(java.util.ArrayList<Object> list) {
+		super.setList(list);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void removeAll(java.util.ArrayList<Object> list) {
+		super.removeAll(list);
+		this.lowerMassLimits = null;
+	}
+	
+	@Override
+	public void nullify() {
+		super.nullify();
+		this.lowerMassLimits = null;
+	}
+	
+	/**
+	 * sets the mass limits of all peaks and stores their lower mass limits
+	 * the limits are only calculated again if the mass deviations have changed
+	 */
+	@Override
+	public void initialiseMassLimits(double relativeMassDeviation, double absoluteMassDeviation) {
+		if(this.lowerMassLimits != null && this.relativeMassDeviation == relativeMassDeviation && this.absoluteMassDeviation == absoluteMassDeviation) return;
+		synchronized(this) {
+			if(this.lowerMassLimits != null && this.relativeMassDeviation == relativeMassDeviation && this.absoluteMassDeviation == absoluteMassDeviation) return;
+			super.initialiseMassLimits(relativeMassDeviation, absoluteMassDeviation);
+			double[] lowerMassLimits = new double[this.list.size()];
+			for(int i = 0; i < lowerMassLimits.length; i++)
+				lowerMassLimits[i] = this.getElement(i).getLowerMassLimit();
+			this.relativeMassDeviation = relativeMassDeviation;
+			this.absoluteMassDeviation = absoluteMassDeviation;
+			this.massDeviationsSet = true;
+			this.lowerMassLimits = lowerMassLimits;
+		}
+	}
+	
+	/**
+	 * returns the index of the last peak up to maximumIndex whose lower mass limit is not greater than the given mass
+	 * all peaks after this index are too heavy to match the given mass
+	 * returns -1 if there is no such peak
+	 * 
+	 * mass limits need to be initialised by initialiseMassLimits
+	 * after list modifications they are calculated again with the last mass deviations
+	 * 
+	 * @param mass
+	 * @param maximumIndex
+	 * @return
+	 */
+	public int getLastIndexOfPeakByLowerMassLimit(double mass, int maximumIndex) {
+		double[] lowerMassLimits = this.lowerMassLimits;
+		if(lowerMassLimits == null) {
+			if(!this.massDeviationsSet) throw new IllegalStateException("Mass limits not initialised");
+			this.initialiseMassLimits(this.relativeMassDeviation, this.absoluteMassDeviation);
+			lowerMassLimits = this.lowerMassLimits;
+		}
+		int low = 0;
+		int high = maximumIndex;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(lowerMassLimits[mid] > mass) high = mid - 1;
+			else low = mid + 1;
+		}
+		return high;
 	}
 	
 	public String toString() {
@@ -1,5 +1,6 @@
 package de.ipbhalle.metfraglib.model;
 
+import org.apache.log4j.Logger;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
@@ -15,9 +16,28 @@ public class LinearRetentionTimeModel extends AbstractModel {
 
 	protected double slope;
 	protected double coefficient;
-	protected org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor xlogp; 
+	/*
+	 * XLogPDescriptor is not safe to share between threads, each worker thread uses its own
+	 * which is shared by all models so that long-lived worker threads keep only one descriptor
+	 */
+	private static final ThreadLocal<org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor> XLOGP = new ThreadLocal<org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor>() {
+		@Override
+		protected org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor initialValue() {
+			org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor xlogp = new org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor();
+			try {
+				xlogp.setParameters(new Boolean[] {true, true});
+			} catch (CDKException e) {
+				e.printStackTrace();
+			}
+			return xlogp;
+		}
+	};
+	//null if the model has no training data
+	protected ThreadLocal<org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor> xlogp; 
 	protected boolean enableUserLogP;
 	
+	private Logger logger = Logger.getLogger(LinearRetentionTimeModel.class);
+	
 	public LinearRetentionTimeModel(Settings settings) {
 		super(settings);
 		this.enableUserLogP = false;
@@ -60,12 +80,7 @@ public class LinearRetentionTimeModel extends AbstractModel {
 		candidateList = database.getCandidateByIdentifier(identifiers);
 
 		if(candidateList.getNumberElements() == 0) return;
-		this.xlogp = new org.openscience.cdk.qsar.descriptors.molecular.XLogPDescriptor();
-		try {
-			this.xlogp.setParameters(new Boolean[] {true, true});
-		} catch (CDKException e1) {
-			e1.printStackTrace();
-		}
+		this.xlogp = XLOGP;
 		java.util.ArrayList<String> inchis = new java.util.ArrayList<String>();
 		java.util.ArrayList<Double> rt_values = new java.util.ArrayList<Double>();
 		java.util.ArrayList<Double> userLogPs = new java.util.ArrayList<Double>();
@@ -137,16 +152,13 @@ public class LinearRetentionTimeModel extends AbstractModel {
 	 * @return
 	 */
 	public Double calculateLogPValue(ICandidate candidate) {
-		int trials = 0;
-		while(true) { 
-			try {
-				trials++;
-				return Double.parseDouble(this.xlogp.calculate(candidate.getPrecursorMolecule().getStructureAsIAtomContainer()).getValue().toString());
-			}
-			catch(Exception e) {
-				if(trials == 10) return null;
-				continue;
-			}
+		if(this.xlogp == null) return null;
+		try {
+			return Double.parseDouble(this.xlogp.get().calculate(candidate.getPrecursorMolecule().getStructureAsIAtomContainer()).getValue().toString());
+		}
+		catch(Exception e) {
+			logger.warn("Could not calculate logP value of " + candidate.getIdentifier() + ": " + e.getMessage());
+			return null;
 		}
 	}
 	
@@ -162,20 +174,11 @@ public class LinearRetentionTimeModel extends AbstractModel {
 		try {
 			for(int i = 0; i < inchis.size(); i++) {
 				DescriptorValue value = null;
-				boolean calculated = false;
-				int trials = 0;
-				while(!calculated) { 
-					try {
-						trials++;
-						value = this.xlogp.calculate(MoleculeFunctions.getAtomContainerFromInChI(inchis.get(i)));
-					}
-					catch(Exception e) {
-						if(trials == 10) {
-							break;
-						}
-						continue;
-					}
-					calculated = true;
+				try {
+					value = this.xlogp.get().calculate(MoleculeFunctions.getAtomContainerFromInChI(inchis.get(i)));
+				}
+				catch(Exception e) {
+					logger.warn("Could not calculate logP value of " + inchis.get(i) + ": " + e.getMessage());
 				}
 				if(value != null) {
 					IDescriptorResult result = value.getValue();
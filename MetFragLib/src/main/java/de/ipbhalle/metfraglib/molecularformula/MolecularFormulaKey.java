@@ -0,0 +1,134 @@
+package de.ipbhalle.metfraglib.molecularformula;
+
+import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+import de.ipbhalle.metfraglib.parameter.Constants;
+
+/**
+ * canonical hashable representation of the element counts of a molecular formula
+ *
+ * each element with a non-zero count is packed into one int (element index of Constants.ELEMENTS
+ * in the upper 16 bits and the count in the lower 16 bits), the ints are sorted by element index
+ * two keys are equal if the formulas contain the same elements with the same counts regardless of
+ * the order the elements were written in, so formula searches can be done by hash map lookups
+ *
+ * formula strings are parsed like ByteMolecularFormula does (isotopes as [13C], D counted as H)
+ * repeated elements are summed up
+ *
+ * @author cruttkie
+ *
+ */
+public class MolecularFormulaKey {
+
+	private static final java.util.HashMap<String, Integer> elementToIndex = new java.util.HashMap<String, Integer>();
+
+	static {
+		for(int i = 0; i < Constants.ELEMENTS.size(); i++)
+			if(!elementToIndex.containsKey(Constants.ELEMENTS.get(i))) elementToIndex.put(Constants.ELEMENTS.get(i), i);
+		elementToIndex.put("D", Constants.H_INDEX);
+	}
+
+	private final int[] packedElementCounts;
+	private final int hashCode;
+
+	private MolecularFormulaKey(int[] packedElementCounts) {
+		this.packedElementCounts = packedElementCounts;
+		this.hashCode = java.util.Arrays.hashCode(packedElementCounts);
+	}
+
+	/**
+	 * parses a molecular formula string like C6H12O6
+	 *
+	 * @param molecularFormula
+	 * @return
+	 * @throws AtomTypeNotKnownFromInputListException if an element is not known or the string is no formula
+	 */
+	public static MolecularFormulaKey parse(String molecularFormula) throws AtomTypeNotKnownFromInputListException {
+		String formula = molecularFormula.trim();
+		int[] counts = new int[Constants.ELEMENTS.size()];
+		int position = 0;
+		while(position < formula.length()) {
+			int start = position;
+			//symbol like ByteMolecularFormula: optional brackets with mass number, upper case and up to three lower case letters
+			while(position < formula.length() && (formula.charAt(position) == '[' || Character.isDigit(formula.charAt(position)))) position++;
+			if(position == formula.length() || !Character.isUpperCase(formula.charAt(position)))
+				throw new AtomTypeNotKnownFromInputListException("Could not parse " + molecularFormula);
+			position++;
+			for(int i = 0; i < 3 && position < formula.length() && Character.isLowerCase(formula.charAt(position)); i++) position++;
+			while(position < formula.length() && formula.charAt(position) == ']') position++;
+			String element = formula.substring(start, position);
+			Integer index = elementToIndex.get(element);
+			if(index == null) throw new AtomTypeNotKnownFromInputListException(element + " not found (" + molecularFormula + ")");
+			int count = 0;
+			int countStart = position;
+			while(position < formula.length() && Character.isDigit(formula.charAt(position)))
+				count = count * 10 + (formula.charAt(position++) - '0');
+			if(position == countStart) count = 1;
+			counts[index] += count;
+		}
+		return fromCounts(counts);
+	}
+
+	/**
+	 *
+	 * @param molecularFormula
+	 * @return key of the given formula or null if the formula cannot be parsed
+	 */
+	public static MolecularFormulaKey parseOrNull(String molecularFormula) {
+		if(molecularFormula == null) return null;
+		try {
+			return parse(molecularFormula);
+		} catch (AtomTypeNotKnownFromInputListException e) {
+			return null;
+		}
+	}
+
+	public static MolecularFormulaKey valueOf(ByteMolecularFormula molecularFormula) {
+		int[] counts = new int[Constants.ELEMENTS.size()];
+		byte[] atomsAsIndeces = molecularFormula.getAtomsAsIndeces();
+		short[] numberOfAtoms = molecularFormula.getNumberOfAtoms();
+		for(int i = 0; i < atomsAsIndeces.length; i++) counts[atomsAsIndeces[i]] += numberOfAtoms[i];
+		counts[Constants.H_INDEX] += molecularFormula.getNumberHydrogens();
+		return fromCounts(counts);
+	}
+
+	private static MolecularFormulaKey fromCounts(int[] counts) {
+		int numberElements = 0;
+		for(int i = 0; i < counts.length; i++) if(counts[i] != 0) numberElements++;
+		int[] packedElementCounts = new int[numberElements];
+		int index = 0;
+		for(int i = 0; i < counts.length; i++)
+			if(counts[i] != 0) packedElementCounts[index++] = (i << 16) | (counts[i] & 0xFFFF);
+		return new MolecularFormulaKey(packedElementCounts);
+	}
+
+	public int getNumberOfElement(String element) {
+		Integer index = elementToIndex.get(element);
+		if(index == null) return 0;
+		for(int packed : this.packedElementCounts)
+			if((packed >>> 16) == index) return packed & 0xFFFF;
+		return 0;
+	}
+
+	public boolean equals(Object object) {
+		if(this == object) return true;
+		if(!(object instanceof MolecularFormulaKey)) return false;
+		MolecularFormulaKey key = (MolecularFormulaKey)object;
+		return this.hashCode == key.hashCode && java.util.Arrays.equals(this.packedElementCounts, key.packedElementCounts);
+	}
+
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+	/**
+	 * formula with the elements in order of Constants.ELEMENTS
+	 */
+	public String toString() {
+		StringBuilder formula = new StringBuilder();
+		for(int packed : this.packedElementCounts) {
+			formula.append(Constants.ELEMENTS.get(packed >>> 16));
+			if((packed & 0xFFFF) != 1) formula.append(packed & 0xFFFF);
+		}
+		return formula.toString();
+	}
+}
@@ -16,10 +16,12 @@ import de.ipbhalle.metfraglib.candidatefilter.PreProcessingCandidateSuspectListF
 import de.ipbhalle.metfraglib.candidatefilter.PreProcessingCandidateUnconnectedStructureFilter;
 import de.ipbhalle.metfraglib.database.LocalCSVDatabase;
 import de.ipbhalle.metfraglib.database.LocalChEBIDatabase;
+import de.ipbhalle.metfraglib.database.LocalColumnarDatabase;
 import de.ipbhalle.metfraglib.database.LocalDerivatisedKeggDatabase;
 import de.ipbhalle.metfraglib.database.LocalExtendedMetChemDatabase;
 import de.ipbhalle.metfraglib.database.LocalExtendedPubChemDatabase;
 import de.ipbhalle.metfraglib.database.LocalInMemoryDatabase;
+import de.ipbhalle.metfraglib.database.LocalIndexedDatabase;
 import de.ipbhalle.metfraglib.database.LocalMetChemDatabase;
 import de.ipbhalle.metfraglib.database.LocalPSVDatabase;
 import de.ipbhalle.metfraglib.database.LocalKeggDatabase;
@@ -185,6 +187,8 @@ public class ClassNames {
 		databaseNameToClassName.put("LocalProperty", LocalPropertyFileDatabase.class.getName());
 		databaseNameToClassName.put("FOR-IDENT", OnlineForIdentDatabase.class.getName());
 		databaseNameToClassName.put("LocalSDF", LocalSDFDatabase.class.getName());
+		databaseNameToClassName.put("LocalIndexed", LocalIndexedDatabase.class.getName());
+		databaseNameToClassName.put("LocalColumnar", LocalColumnarDatabase.class.getName());
 		databaseNameToClassName.put("LipidMaps", LocalLipidMapsDatabase.class.getName());
 		databaseNameToClassName.put("Postgres", LocalPostgresDatabase.class.getName());
 		databaseNameToClassName.put("MySQL", LocalMySQLDatabase.class.getName());
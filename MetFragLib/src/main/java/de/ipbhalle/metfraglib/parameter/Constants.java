@@ -187,7 +187,10 @@ public class Constants {
 	public static final Integer 			DEFAULT_STRUCTURE_IMAGE_HEIGHT 								= 	200;
 	public static final Double 			DEFAULT_STRUCTURE_STROKE_RATIO 								=	1.0;
 	public static final Boolean 			DEFAULT_POSITIVE_IONISATION_MODE 							= 	true;
-	public static final Byte 				DEFAULT_NUMBER_THREADS 										= 	(byte)1;
+	public static final Integer 			DEFAULT_NUMBER_THREADS 										= 	1;
+	public static final Integer 			DEFAULT_PROCESS_PRIORITY 									= 	1;
+	public static final Boolean 			DEFAULT_STREAM_CANDIDATES 									= 	false;
+	public static final Integer 			DEFAULT_STREAM_CANDIDATES_BUFFER_SIZE 						= 	100;
 
 	public static final String			DEFAULT_METFRAG_PEAK_LIST_READER							= 	FilteredTandemMassPeakListReader.class.getName();
 	public static final String			DEFAULT_METFRAG_ASSIGNER_SCORER								= 	TopDownFragmenterAssignerScorer.class.getName();
@@ -204,6 +207,9 @@ public class Constants {
 	public static final String 			DEFAULT_BOND_ENERGY_FILE_PATH								=	null;
 	public static final Level				DEFAULT_LOG_LEVEL											=	Level.INFO;
 	public static final Boolean			DEFAULT_METFRAG_UNIQUE_FRAGMENT_MATCHES						=	false;
+	public static final Boolean			DEFAULT_PARALLEL_FRAGMENTATION								=	false;
+	//minimum number of fragments of one tree depth to be processed in parallel
+	public static final int				PARALLEL_FRAGMENTATION_MINIMUM_FRONTIER_SIZE				=	16;
 
 	/*
 	 * 
@@ -211,8 +217,12 @@ public class Constants {
 	public static final IDatabase			DEFAULT_DATABASE_OBJECT											=	null;
 	public static final String			DEFAULT_DATABASE_IDENTIFIER										=	null;
 	public static final Boolean			DEFAULT_ENABLE_DEUTERIUM										=	false;
+	//scores that need all processed candidates for post-processing and therefore can't be streamed
+	public static final String[]			SCORE_NAMES_NOT_TO_STREAM									=	{"AutomatedPeakFingerprintAnnotationScore", "AutomatedLossFingerprintAnnotationScore"};
 	public static final String[]			DEFAULT_SCORE_NAMES_NOT_TO_SCALE								=	{"IndividualMoNAScore", "HDFragmentPairScore", "SimScore", "OfflineIndividualMoNAScore"};
 	public static final Double			DEFAULT_MINIMUM_COSINE_SIMILARITY_LIMIT					= 	0.1;
+	//directory of the spectral library indexes built from the offline spectral database
+	public static final String			DEFAULT_SPECTRAL_LIBRARY_INDEX_PATH						=	OS_TEMP_DIR + OS_SPECIFIC_FILE_SEPARATOR + "MetFragSpectralLibraryIndex";
 	
 	/*
 	 * retention time models
@@ -241,6 +251,10 @@ public class Constants {
 	public static final String 				DEFAULT_LOCAL_DATABASE_USER					=	null;
 	public static final String 				DEFAULT_LOCAL_DATABASE_PASSWORD				=	null;
 	public static final String 				DEFAULT_LOCAL_DATABASE_PORT_NUMBER			=	null;
+	public static final Integer 			DEFAULT_LOCAL_DATABASE_MAXIMUM_CONNECTIONS	=	8;
+	public static final Boolean 			DEFAULT_SHARE_LOCAL_DATABASE				=	false;
+	//seconds a cached online database response is used (one week)
+	public static final Integer 			DEFAULT_ONLINE_DATABASE_CACHE_TIME_TO_LIVE	=	604800;
 
 	public static final Double 				DEFAULT_PEAK_FINGERPRINT_ANNOTATION_ALPHA_POS_VALUE		=	0.0005;
 	public static final Double 				DEFAULT_PEAK_FINGERPRINT_ANNOTATION_BETA_POS_VALUE		=	0.0025;
@@ -48,11 +48,16 @@ public class ParameterDataTypes {
 		parameterDatatypes.put(	VariableNames.METFRAG_CANDIDATE_IMAGE_GENERATOR_NAME,					"String"	);
 		parameterDatatypes.put(	VariableNames.METFRAG_FRAGMENT_IMAGE_GENERATOR_NAME, 					"String"	);
 		parameterDatatypes.put(	VariableNames.METFRAG_UNIQUE_FRAGMENT_MATCHES,		 					"Boolean"	);
+		parameterDatatypes.put(	VariableNames.PARALLEL_FRAGMENTATION_NAME,		 						"Boolean"	);
+		parameterDatatypes.put(	VariableNames.FRAGMENT_TREE_STORE_PATH_NAME,		 					"String"	);
 		
 		parameterDatatypes.put(	VariableNames.SAMPLE_NAME, 												"String"	);
 		parameterDatatypes.put(	VariableNames.STORE_RESULTS_PATH_NAME, 									"String"	);
 		parameterDatatypes.put(	VariableNames.STORE_RESULTS_FILE_NAME, 									"String"	);
-		parameterDatatypes.put(	VariableNames.NUMBER_THREADS_NAME, 										"Byte"		);
+		parameterDatatypes.put(	VariableNames.NUMBER_THREADS_NAME, 										"Integer"	);
+		parameterDatatypes.put(	VariableNames.PROCESS_PRIORITY_NAME, 									"Integer"	);
+		parameterDatatypes.put(	VariableNames.STREAM_CANDIDATES_NAME, 									"Boolean"	);
+		parameterDatatypes.put(	VariableNames.STREAM_CANDIDATES_BUFFER_SIZE_NAME, 						"Integer"	);
 		parameterDatatypes.put(	VariableNames.MAXIMUM_NUMBER_OF_TOPDOWN_FRAGMENT_ADDED_TO_QUEUE, 		"Byte"		);
 		parameterDatatypes.put(	VariableNames.METFRAG_PEAK_LIST_READER_NAME, 							"String"	);
 		parameterDatatypes.put(	VariableNames.BOND_ENERGY_FILE_PATH_NAME, 								"String"	);
@@ -61,6 +66,7 @@ public class ParameterDataTypes {
 		parameterDatatypes.put(	VariableNames.MONA_PRESENT_INCHIKEYS_FILE_NAME, 						"String"	);
 		parameterDatatypes.put(	VariableNames.SMARTS_PEAK_ANNOTATION_FILE_NAME, 						"String"	);
 		parameterDatatypes.put( VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME, 						"String"	);
+		parameterDatatypes.put( VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME, 						"String"	);
 		/*
 		 * candidate filters
 		 */
@@ -115,6 +121,13 @@ public class ParameterDataTypes {
 		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_USER_NAME, 								"String"	);
 		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_PASSWORD_NAME, 							"String"	);
 		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_COMPOUND_NAME_COLUMN_NAME,					"String"	);
+		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_MAXIMUM_CONNECTIONS_NAME,					"Integer"	);
+		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_JDBC_URL_NAME,								"String"	);
+		parameterDatatypes.put(	VariableNames.LOCAL_DATABASE_PROPERTY_COLUMNS_NAME,						"String[]"	);
+		parameterDatatypes.put(	VariableNames.SHARE_LOCAL_DATABASE_NAME,								"Boolean"	);
+		parameterDatatypes.put(	VariableNames.ONLINE_DATABASE_CACHE_PATH_NAME,							"String"	);
+		parameterDatatypes.put(	VariableNames.ONLINE_DATABASE_CACHE_TIME_TO_LIVE_NAME,					"Integer"	);
+		parameterDatatypes.put(	VariableNames.ONLINE_DATABASE_STAND_IN_URL_NAME,						"String"	);
 
 		parameterDatatypes.put(	VariableNames.LOCAL_PUBCHEM_DATABASE_NAME, 								"String"	);
 		parameterDatatypes.put(	VariableNames.LOCAL_PUBCHEM_DATABASE_COMPOUND_TABLE_NAME, 				"String"	);
@@ -182,6 +182,8 @@ public class SettingsChecker {
 		needsLocalDatabaseFile.add("LocalPSV");
 		needsLocalDatabaseFile.add("LocalProperty");
 		needsLocalDatabaseFile.add("LocalSDF");
+		needsLocalDatabaseFile.add("LocalIndexed");
+		needsLocalDatabaseFile.add("LocalColumnar");
 		
 		Object DatabaseTypeName = settings.get(VariableNames.METFRAG_DATABASE_TYPE_NAME);
 		Object PrecursorCompoundIDs = settings.get(VariableNames.PRECURSOR_DATABASE_IDS_NAME);
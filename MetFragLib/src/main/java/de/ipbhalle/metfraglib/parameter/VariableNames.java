@@ -65,6 +65,9 @@ public class VariableNames {
 	public static final String STORE_RESULTS_FILE_NAME 						= 	"ResultsFile";
 	public static final String MINIMUM_FRAGMENT_MASS_LIMIT_NAME 				= 	"MinimumFragmentMassLimit";
 	public static final String NUMBER_THREADS_NAME 							= 	"NumberThreads";
+	public static final String PROCESS_PRIORITY_NAME						=	"ProcessPriority";
+	public static final String STREAM_CANDIDATES_NAME						=	"StreamCandidates";
+	public static final String STREAM_CANDIDATES_BUFFER_SIZE_NAME			=	"StreamCandidatesBufferSize";
 	public static final String MAXIMUM_NUMBER_OF_TOPDOWN_FRAGMENT_ADDED_TO_QUEUE = "MaximumNumberOfAFragmentAddedToQueue";
 	public static final String BOND_ENERGY_FILE_PATH_NAME 					= 	"BondEnergyFilePath"; 	
 	public static final String EXPERIMENTAL_RETENTION_TIME_VALUE_NAME		= 	"ExperimentalRetentionTimeValue"; 	
@@ -172,6 +175,13 @@ public class VariableNames {
 	public static final String LOCAL_DATABASE_USER_NAME					= 	"LocalDatabaseUser";
 	public static final String LOCAL_DATABASE_PASSWORD_NAME						= 	"LocalDatabasePassword";
 	public static final String LOCAL_DATABASE_COMPOUND_NAME_COLUMN_NAME			= 	"LocalDatabaseCompoundNameColumn";
+	public static final String LOCAL_DATABASE_MAXIMUM_CONNECTIONS_NAME			= 	"LocalDatabaseMaximumConnections";
+	public static final String LOCAL_DATABASE_JDBC_URL_NAME						= 	"LocalDatabaseJdbcUrl";
+	public static final String LOCAL_DATABASE_PROPERTY_COLUMNS_NAME				= 	"LocalDatabasePropertyColumns";
+	public static final String SHARE_LOCAL_DATABASE_NAME						= 	"ShareLocalDatabase";
+	public static final String ONLINE_DATABASE_CACHE_PATH_NAME					= 	"OnlineDatabaseCachePath";
+	public static final String ONLINE_DATABASE_CACHE_TIME_TO_LIVE_NAME			= 	"OnlineDatabaseCacheTimeToLive";
+	public static final String ONLINE_DATABASE_STAND_IN_URL_NAME				= 	"OnlineDatabaseStandInUrl";
 	
 
 	public static final String LOCAL_PUBCHEM_DATABASE_NAME						= 	"LocalPubChemDatabase";
@@ -266,11 +276,15 @@ public class VariableNames {
 	public static final String MASSBANK_RECORD_CACHE_DIRECTORY			=	"MassbankRecordCacheDirectory";
 	public static final String MONA_PRESENT_INCHIKEYS_FILE_NAME 			= 	"MoNAPresentInChIKeysFile";
 	public static final String OFFLINE_SPECTRAL_DATABASE_FILE_NAME 		= 	"OfflineSpectralDatabaseFile";
+	public static final String SPECTRAL_LIBRARY_INDEX_PATH_NAME 			= 	"SpectralLibraryIndexPath";
 	
 	public static final String EXACT_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME 			= "ExactMoNASpectralSimilarityCandidates";
+	public static final String EXACT_MONA_SPECTRAL_SIMILARITY_SCORES_NAME 				= "ExactMoNASpectralSimilarityScores";
 	public static final String INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_INCHIKEY_LIST_NAME 	= "IndividualMoNASpectralSimilarityInChIKeyList";
 	public static final String INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_WEB_SERVICE_NAME 		= "IndividualMoNASpectralSimilarityWebService";
+	public static final String INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_SCORES_NAME 			= "IndividualMoNASpectralSimilarityScores";
 	public static final String METFUSION_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME 			= "MetFusionMoNASpectralSimilarityCandidates";
+	public static final String METFUSION_MONA_SPECTRAL_SIMILARITY_FINGERPRINTS_NAME 		= "MetFusionMoNASpectralSimilarityFingerprints";
 	public static final String OFFLINE_METFUSION_MONA_SPECTRAL_SIMILARITY_PEAK_LIST_COLLECTION_NAME = "OfflineMetFusionMonaSpectralSimilarityPeakListCollection";
 	public static final String MINIMUM_COSINE_SIMILARITY_LIMIT_NAME		= "MinimumCosineSimilarityLimit";
 	public static final String MOLECULAR_FINGERPRINT_NAME					= "MolecularFingerPrint";
@@ -299,6 +313,7 @@ public class VariableNames {
 	public static final String SMILES_NAME						=	"SMILES";
 	public static final String SMILES_NAME_2					=	"SMILES_INDIVIDUAL_COMPONENT";
 	public static final String FINGERPRINT_NAME_NAME			=	"FingerPrint";
+	public static final String MOLECULAR_GRAPH_NAME				=	"MolecularGraph";
 	public static final String DEUTERIUM_COUNT_NAME				=	"DeuteriumCount";
 	public static final String VARIABLE_DEUTERIUM_COUNT_NAME	=	"AromaticDeuteriums";
 	public static final String ENABLE_DEUTERIUM_NAME			=	"EnableDeuterium";
@@ -339,6 +354,8 @@ public class VariableNames {
 	public static final String SCORE_SMARTS_EXCLUSION_LIST_NAME			=	"ScoreSmartsExclusionList";
 	public static final String SCORE_SUSPECT_LISTS_NAME					=	"ScoreSuspectLists";
 	public static final String METFRAG_UNIQUE_FRAGMENT_MATCHES 			= 	"MetFragUniqueFragmentMatches";
+	public static final String PARALLEL_FRAGMENTATION_NAME				= 	"ParallelFragmentation";
+	public static final String FRAGMENT_TREE_STORE_PATH_NAME			= 	"FragmentTreeStorePath";
 	public static final String SCORE_NAMES_NOT_TO_SCALE		 			= 	"ScoreNamesNotToScale";
 	
 	/*
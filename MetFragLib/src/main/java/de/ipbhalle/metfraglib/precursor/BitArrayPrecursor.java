@@ -40,6 +40,56 @@ public class BitArrayPrecursor extends DefaultPrecursor {
 		this.initialiseAtomMasses();
 	}
 	
+	/**
+	 * preprocesses the precursor and takes over the graph data from the BitArrayPrecursorCache 
+	 * if a precursor with the same InChIKey and the same structure was preprocessed before
+	 * 
+	 * @param inchiKey
+	 * @throws AtomTypeNotKnownFromInputListException
+	 * @throws Exception
+	 */
+	public void preprocessPrecursor(String inchiKey) throws AtomTypeNotKnownFromInputListException, Exception {
+		BitArrayPrecursorCache cache = BitArrayPrecursorCache.getInstance();
+		if(inchiKey == null || !cache.isEnabled()) {
+			this.preprocessPrecursor();
+			return;
+		}
+		super.preprocessPrecursor();
+		this.initialiseNumberHydrogens();
+		this.initiliseBondIndexToConnectedAtomIndeces();
+		this.initialiseAtomMasses();
+		BitArrayPrecursorCache.CachedPrecursorGraph graph = cache.get(inchiKey, this);
+		if(graph != null) {
+			this.atomIndexToConnectedAtomIndeces = graph.atomIndexToConnectedAtomIndeces;
+			this.ringBondToBelongingRingBondIndeces = graph.ringBondToBelongingRingBondIndeces;
+			this.aromaticBonds = graph.aromaticBonds;
+			this.atomAdjacencyList = graph.atomAdjacencyList;
+			return;
+		}
+		this.initiliseAtomIndexToConnectedAtomIndeces();
+		this.initialiseRingBondsFastBitArray();
+		this.initialiseAtomAdjacencyList();
+		cache.put(inchiKey, new BitArrayPrecursorCache.CachedPrecursorGraph(this));
+	}
+	
+	/**
+	 * preprocesses the precursor built from the atom container of the given graph
+	 * ring bonds and aromatic bonds are taken from the graph, no ring perception is performed
+	 * 
+	 * @param graph
+	 * @throws AtomTypeNotKnownFromInputListException
+	 * @throws Exception
+	 */
+	public void preprocessPrecursor(MolecularGraph graph) throws AtomTypeNotKnownFromInputListException, Exception {
+		super.preprocessPrecursor();
+		this.initiliseAtomIndexToConnectedAtomIndeces();
+		this.initialiseNumberHydrogens();
+		this.initiliseBondIndexToConnectedAtomIndeces();
+		graph.initialiseRingBonds(this);
+		this.initialiseAtomAdjacencyList();
+		this.initialiseAtomMasses();
+	}
+	
 	public double getMeanNodeDegree() {
 		double meanNodeDegree = 0.0;
 		for(int i = 0; i < this.atomIndexToConnectedAtomIndeces.size(); i++) {
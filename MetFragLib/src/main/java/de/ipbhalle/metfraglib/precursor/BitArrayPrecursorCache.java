@@ -0,0 +1,190 @@
+package de.ipbhalle.metfraglib.precursor;
+
+import org.apache.log4j.Logger;
+
+import de.ipbhalle.metfraglib.FastBitArray;
+
+/**
+ * process-wide cache of the preprocessed graph data of BitArrayPrecursor objects keyed by InChIKey
+ *
+ * precursors of structures that were already preprocessed (e.g. the same candidates queried for several spectra)
+ * take over the ring bonds, aromatic bonds and adjacency lists and skip the ring perception
+ * the cached data is never modified and shared between precursors
+ *
+ * a cached entry is only used if atoms, hydrogens, bonds and bond orders of the precursor are the same
+ * as different structure inputs with the same InChIKey (e.g. tautomers) can lead to different atom orders
+ *
+ * the maximum number of entries is taken from the system property metfrag.precursor.cache.size (default 1000)
+ * and can be changed by setMaximumSize, 0 disables the cache
+ * least recently used entries are removed first
+ *
+ * @author cruttkie
+ *
+ */
+public class BitArrayPrecursorCache {
+
+	public static final String MAXIMUM_SIZE_PROPERTY_NAME = "metfrag.precursor.cache.size";
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	private static BitArrayPrecursorCache instance;
+
+	private int maximumSize;
+	//access ordered map -> guarded by this
+	private final java.util.LinkedHashMap<String, CachedPrecursorGraph> cache;
+	private long numberHits;
+	private long numberMisses;
+
+	private BitArrayPrecursorCache(int maximumSize) {
+		this.maximumSize = maximumSize;
+		this.cache = new java.util.LinkedHashMap<String, CachedPrecursorGraph>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(java.util.Map.Entry<String, CachedPrecursorGraph> eldest) {
+				return this.size() > BitArrayPrecursorCache.this.maximumSize;
+			}
+		};
+	}
+
+	/**
+	 * returns the shared cache and creates it on first use
+	 *
+	 * @return
+	 */
+	public static synchronized BitArrayPrecursorCache getInstance() {
+		if(instance == null) instance = new BitArrayPrecursorCache(readDefaultMaximumSize());
+		return instance;
+	}
+
+	private static int readDefaultMaximumSize() {
+		String value = System.getProperty(MAXIMUM_SIZE_PROPERTY_NAME);
+		if(value != null) {
+			try {
+				int maximumSize = Integer.parseInt(value.trim());
+				if(maximumSize >= 0) return maximumSize;
+			} catch(NumberFormatException e) {}
+			Logger.getLogger(BitArrayPrecursorCache.class).warn("Invalid value for " + MAXIMUM_SIZE_PROPERTY_NAME + ": " + value);
+		}
+		return DEFAULT_MAXIMUM_SIZE;
+	}
+
+	/**
+	 * sets the maximum number of cached precursors and removes least recently used entries if needed
+	 *
+	 * @param maximumSize
+	 */
+	public synchronized void setMaximumSize(int maximumSize) {
+		if(maximumSize < 0) throw new IllegalArgumentException("Maximum size must not be negative: " + maximumSize);
+		this.maximumSize = maximumSize;
+		java.util.Iterator<String> it = this.cache.keySet().iterator();
+		while(this.cache.size() > maximumSize && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	public synchronized int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public synchronized boolean isEnabled() {
+		return this.maximumSize > 0;
+	}
+
+	/**
+	 * returns the cached graph data for the given key if it fits the given precursor
+	 * the precursor needs to have initialised bonds, hydrogens and atom masses
+	 *
+	 * @param inchiKey
+	 * @param precursor
+	 * @return
+	 */
+	public synchronized CachedPrecursorGraph get(String inchiKey, BitArrayPrecursor precursor) {
+		CachedPrecursorGraph graph = this.cache.get(inchiKey);
+		if(graph == null || !graph.fits(precursor)) {
+			this.numberMisses++;
+			return null;
+		}
+		this.numberHits++;
+		return graph;
+	}
+
+	public synchronized void put(String inchiKey, CachedPrecursorGraph graph) {
+		if(this.maximumSize == 0) return;
+		this.cache.put(inchiKey, graph);
+	}
+
+	public synchronized int getSize() {
+		return this.cache.size();
+	}
+
+	public synchronized long getNumberHits() {
+		return this.numberHits;
+	}
+
+	public synchronized long getNumberMisses() {
+		return this.numberMisses;
+	}
+
+	/**
+	 * removes all entries and resets the hit and miss counts
+	 */
+	public synchronized void clear() {
+		this.cache.clear();
+		this.numberHits = 0;
+		this.numberMisses = 0;
+	}
+
+	public synchronized String toString() {
+		return "BitArrayPrecursorCache: " + this.cache.size() + "/" + this.maximumSize + " entries, " + this.numberHits + " hits, " + this.numberMisses + " misses";
+	}
+
+	/**
+	 * graph data of a preprocessed precursor
+	 *
+	 * @author cruttkie
+	 *
+	 */
+	public static class CachedPrecursorGraph {
+
+		//used to check whether the graph fits a precursor
+		protected final short[][] bondIndexToConnectedAtomIndeces;
+		protected final byte[] bondOrders;
+		protected final byte[] numberHydrogensConnectedToAtom;
+		protected final double[] massesOfAtoms;
+		//data taken over by the precursor
+		protected final java.util.ArrayList<short[]> atomIndexToConnectedAtomIndeces;
+		protected final FastBitArray[] ringBondToBelongingRingBondIndeces;
+		protected final FastBitArray aromaticBonds;
+		protected final short[] atomAdjacencyList;
+
+		protected CachedPrecursorGraph(BitArrayPrecursor precursor) {
+			this.bondIndexToConnectedAtomIndeces = precursor.bondIndexToConnectedAtomIndeces;
+			this.bondOrders = getBondOrders(precursor);
+			this.numberHydrogensConnectedToAtom = precursor.numberHydrogensConnectedToAtom;
+			this.massesOfAtoms = precursor.massesOfAtoms;
+			this.atomIndexToConnectedAtomIndeces = precursor.atomIndexToConnectedAtomIndeces;
+			this.ringBondToBelongingRingBondIndeces = precursor.ringBondToBelongingRingBondIndeces;
+			this.aromaticBonds = precursor.aromaticBonds;
+			this.atomAdjacencyList = precursor.atomAdjacencyList;
+		}
+
+		protected boolean fits(BitArrayPrecursor precursor) {
+			if(precursor.bondIndexToConnectedAtomIndeces.length != this.bondIndexToConnectedAtomIndeces.length) return false;
+			if(!java.util.Arrays.equals(precursor.numberHydrogensConnectedToAtom, this.numberHydrogensConnectedToAtom)) return false;
+			if(!java.util.Arrays.equals(precursor.massesOfAtoms, this.massesOfAtoms)) return false;
+			for(int i = 0; i < this.bondIndexToConnectedAtomIndeces.length; i++)
+				if(!java.util.Arrays.equals(precursor.bondIndexToConnectedAtomIndeces[i], this.bondIndexToConnectedAtomIndeces[i])) return false;
+			return java.util.Arrays.equals(getBondOrders(precursor), this.bondOrders);
+		}
+
+		private static byte[] getBondOrders(BitArrayPrecursor precursor) {
+			byte[] bondOrders = new byte[precursor.getNonHydrogenBondCount()];
+			for(int i = 0; i < bondOrders.length; i++) {
+				org.openscience.cdk.interfaces.IBond.Order order = precursor.getStructureAsIAtomContainer().getBond(i).getOrder();
+				bondOrders[i] = order == null ? 0 : (byte)order.ordinal();
+			}
+			return bondOrders;
+		}
+	}
+}
@@ -0,0 +1,315 @@
+package de.ipbhalle.metfraglib.precursor;
+
+import java.io.IOException;
+
+import org.openscience.cdk.config.AtomTypeFactory;
+import org.openscience.cdk.exception.NoSuchAtomTypeException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomType;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.AtomTypeManipulator;
+
+import de.ipbhalle.metfraglib.FastBitArray;
+import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.parameter.Constants;
+
+/**
+ * precomputed molecular graph of a candidate with implicit hydrogens
+ *
+ * holds atoms (element, CDK atom type, implicit hydrogens, charge, mass number, aromaticity), bonds (atoms, order, aromaticity)
+ * and the ring bonds of each bond as perceived by BitArrayPrecursor so that a precursor can be built
+ * without InChI or SMILES parsing, atom typing, aromaticity and ring perception
+ * the atom types are configured from the CDK atom type list so that XLogP and SMARTS matching
+ * see the same atoms as for structures read from the InChI
+ *
+ * the graph is created once when the database is built and stored as base64 string in the MolecularGraph
+ * property (column) of the candidates
+ *
+ * binary format: version, number atoms, atoms (element index, implicit hydrogens, charge, mass number, flags, atom type name),
+ * number bonds, bonds (atom indeces, order, flags), ring bond indeces of each bond
+ *
+ * @author cruttkie
+ *
+ */
+public class MolecularGraph {
+
+	private static final byte VERSION = 2;
+	private static final byte AROMATIC_FLAG = 1;
+	//aromatic bond found by the aromaticity perception of BitArrayPrecursor
+	private static final byte PRECURSOR_AROMATIC_FLAG = 2;
+	private static final IBond.Order[] BOND_ORDERS = IBond.Order.values();
+	private static final AtomTypeFactory ATOM_TYPE_FACTORY = AtomTypeFactory.getInstance("org/openscience/cdk/dict/data/cdk-atom-types.owl", SilentChemObjectBuilder.getInstance());
+
+	private final short[] elements;
+	private final byte[] implicitHydrogens;
+	private final byte[] charges;
+	private final short[] massNumbers;
+	private final byte[] atomFlags;
+	//empty if no atom type was perceived
+	private final String[] atomTypes;
+	private final short[][] bondAtoms;
+	private final byte[] bondOrders;
+	private final byte[] bondFlags;
+	private final short[][] ringBonds;
+
+	private MolecularGraph(short[] elements, byte[] implicitHydrogens, byte[] charges, short[] massNumbers, byte[] atomFlags, String[] atomTypes,
+			short[][] bondAtoms, byte[] bondOrders, byte[] bondFlags, short[][] ringBonds) {
+		this.elements = elements;
+		this.implicitHydrogens = implicitHydrogens;
+		this.charges = charges;
+		this.massNumbers = massNumbers;
+		this.atomFlags = atomFlags;
+		this.atomTypes = atomTypes;
+		this.bondAtoms = bondAtoms;
+		this.bondOrders = bondOrders;
+		this.bondFlags = bondFlags;
+		this.ringBonds = ringBonds;
+	}
+
+	/**
+	 * generates the graph of the given candidate from its InChI (or SMILES)
+	 *
+	 * @param candidate
+	 * @return
+	 * @throws Exception
+	 */
+	public static MolecularGraph fromCandidate(ICandidate candidate) throws Exception {
+		BitArrayPrecursor precursor = new BitArrayPrecursor(candidate.getImplicitHydrogenAtomContainer());
+		precursor.preprocessPrecursor();
+		return fromPrecursor(precursor);
+	}
+
+	/**
+	 *
+	 * @param precursor preprocessed precursor
+	 * @return
+	 * @throws AtomTypeNotKnownFromInputListException
+	 */
+	public static MolecularGraph fromPrecursor(BitArrayPrecursor precursor) throws AtomTypeNotKnownFromInputListException {
+		IAtomContainer molecule = precursor.getStructureAsIAtomContainer();
+		int numberAtoms = molecule.getAtomCount();
+		short[] elements = new short[numberAtoms];
+		byte[] implicitHydrogens = new byte[numberAtoms];
+		byte[] charges = new byte[numberAtoms];
+		short[] massNumbers = new short[numberAtoms];
+		byte[] atomFlags = new byte[numberAtoms];
+		String[] atomTypes = new String[numberAtoms];
+		for(int i = 0; i < numberAtoms; i++) {
+			IAtom atom = molecule.getAtom(i);
+			int element = Constants.ELEMENTS.indexOf(atom.getSymbol());
+			if(element == -1) throw new AtomTypeNotKnownFromInputListException("Unknown element " + atom.getSymbol());
+			elements[i] = (short)element;
+			implicitHydrogens[i] = atom.getImplicitHydrogenCount() == null ? 0 : (byte)(int)atom.getImplicitHydrogenCount();
+			charges[i] = atom.getFormalCharge() == null ? 0 : (byte)(int)atom.getFormalCharge();
+			massNumbers[i] = atom.getMassNumber() == null ? 0 : (short)(int)atom.getMassNumber();
+			atomFlags[i] = atom.isAromatic() ? AROMATIC_FLAG : 0;
+			atomTypes[i] = atom.getAtomTypeName() == null ? "" : atom.getAtomTypeName();
+		}
+		int numberBonds = molecule.getBondCount();
+		short[][] bondAtoms = new short[numberBonds][];
+		byte[] bondOrders = new byte[numberBonds];
+		byte[] bondFlags = new byte[numberBonds];
+		for(int i = 0; i < numberBonds; i++) {
+			IBond bond = molecule.getBond(i);
+			bondAtoms[i] = new short[] {(short)molecule.indexOf(bond.getAtom(0)), (short)molecule.indexOf(bond.getAtom(1))};
+			bondOrders[i] = (byte)(bond.getOrder() == null ? IBond.Order.UNSET : bond.getOrder()).ordinal();
+			byte flags = 0;
+			if(bond.isAromatic()) flags |= AROMATIC_FLAG;
+			if(precursor.aromaticBonds.get(i)) flags |= PRECURSOR_AROMATIC_FLAG;
+			bondFlags[i] = flags;
+		}
+		short[][] ringBonds = new short[precursor.ringBondToBelongingRingBondIndeces.length][];
+		for(int i = 0; i < ringBonds.length; i++) {
+			int[] indexes = precursor.ringBondToBelongingRingBondIndeces[i].getSetIndeces();
+			ringBonds[i] = new short[indexes.length];
+			for(int k = 0; k < indexes.length; k++) ringBonds[i][k] = (short)indexes[k];
+		}
+		return new MolecularGraph(elements, implicitHydrogens, charges, massNumbers, atomFlags, atomTypes, bondAtoms, bondOrders, bondFlags, ringBonds);
+	}
+
+	/**
+	 * builds the atom container with implicit hydrogens as read from the InChI and prepared by MoleculeFunctions.prepareAtomContainer
+	 * the stored atom types are configured instead of being perceived
+	 *
+	 * @return
+	 */
+	public IAtomContainer toAtomContainer() {
+		IAtomContainer molecule = SilentChemObjectBuilder.getInstance().newAtomContainer();
+		IAtom[] atoms = new IAtom[this.elements.length];
+		for(int i = 0; i < atoms.length; i++) {
+			IAtom atom = SilentChemObjectBuilder.getInstance().newAtom();
+			atom.setSymbol(Constants.ELEMENTS.get(this.elements[i]));
+			atom.setAtomicNumber(org.openscience.cdk.config.Elements.ofString(atom.getSymbol()).number());
+			//configured first as the atom type overwrites the charge
+			if(this.atomTypes[i].length() != 0) AtomTypeManipulator.configure(atom, getAtomType(this.atomTypes[i]));
+			atom.setImplicitHydrogenCount((int)this.implicitHydrogens[i]);
+			atom.setFormalCharge((int)this.charges[i]);
+			if(this.massNumbers[i] != 0) atom.setMassNumber((int)this.massNumbers[i]);
+			atom.setIsAromatic((this.atomFlags[i] & AROMATIC_FLAG) != 0);
+			atoms[i] = atom;
+		}
+		molecule.setAtoms(atoms);
+		for(int i = 0; i < this.bondAtoms.length; i++) {
+			IBond bond = SilentChemObjectBuilder.getInstance().newInstance(IBond.class, atoms[this.bondAtoms[i][0]], atoms[this.bondAtoms[i][1]], BOND_ORDERS[this.bondOrders[i]]);
+			bond.setIsAromatic((this.bondFlags[i] & AROMATIC_FLAG) != 0);
+			molecule.addBond(bond);
+		}
+		return molecule;
+	}
+
+	/*
+	 * atom types are checked when the graph is read
+	 */
+	private static IAtomType getAtomType(String name) {
+		try {
+			return ATOM_TYPE_FACTORY.getAtomType(name);
+		} catch (NoSuchAtomTypeException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * sets ring bonds and aromatic bonds of the given precursor
+	 *
+	 * @param precursor precursor built from the atom container of this graph
+	 */
+	void initialiseRingBonds(BitArrayPrecursor precursor) {
+		precursor.aromaticBonds = new FastBitArray(this.bondAtoms.length);
+		for(int i = 0; i < this.bondFlags.length; i++)
+			if((this.bondFlags[i] & PRECURSOR_AROMATIC_FLAG) != 0) precursor.aromaticBonds.set(i);
+		precursor.ringBondToBelongingRingBondIndeces = new FastBitArray[this.ringBonds.length];
+		for(int i = 0; i < this.ringBonds.length; i++) {
+			precursor.ringBondToBelongingRingBondIndeces[i] = new FastBitArray(this.ringBonds.length);
+			for(short index : this.ringBonds[i]) precursor.ringBondToBelongingRingBondIndeces[i].set(index);
+		}
+	}
+
+	public int getAtomCount() {
+		return this.elements.length;
+	}
+
+	public int getBondCount() {
+		return this.bondAtoms.length;
+	}
+
+	public byte[] toBytes() {
+		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream(16 + this.elements.length * 12 + this.bondAtoms.length * 10);
+		java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+		try {
+			out.writeByte(VERSION);
+			out.writeShort(this.elements.length);
+			for(int i = 0; i < this.elements.length; i++) {
+				out.writeShort(this.elements[i]);
+				out.writeByte(this.implicitHydrogens[i]);
+				out.writeByte(this.charges[i]);
+				out.writeShort(this.massNumbers[i]);
+				out.writeByte(this.atomFlags[i]);
+				out.writeUTF(this.atomTypes[i]);
+			}
+			out.writeShort(this.bondAtoms.length);
+			for(int i = 0; i < this.bondAtoms.length; i++) {
+				out.writeShort(this.bondAtoms[i][0]);
+				out.writeShort(this.bondAtoms[i][1]);
+				out.writeByte(this.bondOrders[i]);
+				out.writeByte(this.bondFlags[i]);
+			}
+			out.writeShort(this.ringBonds.length);
+			for(int i = 0; i < this.ringBonds.length; i++) {
+				out.writeShort(this.ringBonds[i].length);
+				for(short index : this.ringBonds[i]) out.writeShort(index);
+			}
+			out.flush();
+		} catch (IOException e) {
+			//not thrown by ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 *
+	 * @param data
+	 * @return
+	 * @throws IOException if the data is not a valid graph
+	 */
+	public static MolecularGraph fromBytes(byte[] data) throws IOException {
+		java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(data));
+		try {
+			byte version = in.readByte();
+			if(version != VERSION) throw new IOException("Unknown molecular graph version " + version);
+			int numberAtoms = in.readUnsignedShort();
+			short[] elements = new short[numberAtoms];
+			byte[] implicitHydrogens = new byte[numberAtoms];
+			byte[] charges = new byte[numberAtoms];
+			short[] massNumbers = new short[numberAtoms];
+			byte[] atomFlags = new byte[numberAtoms];
+			String[] atomTypes = new String[numberAtoms];
+			for(int i = 0; i < numberAtoms; i++) {
+				elements[i] = in.readShort();
+				if(elements[i] < 0 || elements[i] >= Constants.ELEMENTS.size()) throw new IOException("Unknown element index " + elements[i]);
+				implicitHydrogens[i] = in.readByte();
+				charges[i] = in.readByte();
+				massNumbers[i] = in.readShort();
+				atomFlags[i] = in.readByte();
+				atomTypes[i] = in.readUTF();
+				if(atomTypes[i].length() != 0) {
+					try {
+						ATOM_TYPE_FACTORY.getAtomType(atomTypes[i]);
+					} catch (NoSuchAtomTypeException e) {
+						throw new IOException("Unknown atom type " + atomTypes[i]);
+					}
+				}
+			}
+			int numberBonds = in.readUnsignedShort();
+			short[][] bondAtoms = new short[numberBonds][2];
+			byte[] bondOrders = new byte[numberBonds];
+			byte[] bondFlags = new byte[numberBonds];
+			for(int i = 0; i < numberBonds; i++) {
+				bondAtoms[i][0] = in.readShort();
+				bondAtoms[i][1] = in.readShort();
+				if(bondAtoms[i][0] < 0 || bondAtoms[i][0] >= numberAtoms || bondAtoms[i][1] < 0 || bondAtoms[i][1] >= numberAtoms)
+					throw new IOException("Invalid bond " + i);
+				bondOrders[i] = in.readByte();
+				if(bondOrders[i] < 0 || bondOrders[i] >= BOND_ORDERS.length) throw new IOException("Invalid bond order " + bondOrders[i]);
+				bondFlags[i] = in.readByte();
+			}
+			short[][] ringBonds = new short[in.readUnsignedShort()][];
+			for(int i = 0; i < ringBonds.length; i++) {
+				ringBonds[i] = new short[in.readUnsignedShort()];
+				for(int k = 0; k < ringBonds[i].length; k++) {
+					ringBonds[i][k] = in.readShort();
+					if(ringBonds[i][k] < 0 || ringBonds[i][k] >= ringBonds.length) throw new IOException("Invalid ring bond " + ringBonds[i][k]);
+				}
+			}
+			if(in.available() != 0) throw new IOException("Unexpected data after molecular graph");
+			return new MolecularGraph(elements, implicitHydrogens, charges, massNumbers, atomFlags, atomTypes, bondAtoms, bondOrders, bondFlags, ringBonds);
+		} catch (java.io.EOFException e) {
+			throw new IOException("Truncated molecular graph", e);
+		}
+	}
+
+	/**
+	 *
+	 * @return base64 string as stored in the MolecularGraph property
+	 */
+	public String encode() {
+		return java.util.Base64.getEncoder().encodeToString(this.toBytes());
+	}
+
+	/**
+	 *
+	 * @param value base64 string as stored in the MolecularGraph property
+	 * @return
+	 * @throws IOException if the value is not a valid graph
+	 */
+	public static MolecularGraph decode(String value) throws IOException {
+		try {
+			return fromBytes(java.util.Base64.getDecoder().decode(value.trim()));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid molecular graph", e);
+		}
+	}
+}
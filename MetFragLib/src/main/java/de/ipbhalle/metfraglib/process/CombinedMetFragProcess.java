@@ -1,8 +1,11 @@
 package de.ipbhalle.metfraglib.process;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -11,19 +14,24 @@ import de.ipbhalle.metfraglib.additionals.BondEnergies;
 import de.ipbhalle.metfraglib.collection.PostProcessingCandidateFilterCollection;
 import de.ipbhalle.metfraglib.collection.PreProcessingCandidateFilterCollection;
 import de.ipbhalle.metfraglib.database.LocalPropertyFileDatabase;
+import de.ipbhalle.metfraglib.database.SharedLocalDatabase;
 import de.ipbhalle.metfraglib.exceptions.ScorePropertyNotDefinedException;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidateCursor;
 import de.ipbhalle.metfraglib.interfaces.IDatabase;
 import de.ipbhalle.metfraglib.interfaces.IPeakListReader;
+import de.ipbhalle.metfraglib.interfaces.IProcessingStatusListener;
 import de.ipbhalle.metfraglib.interfaces.IPostProcessingCandidateFilter;
 import de.ipbhalle.metfraglib.interfaces.IPreProcessingCandidateFilter;
 import de.ipbhalle.metfraglib.interfaces.IScoreInitialiser;
+import de.ipbhalle.metfraglib.interfaces.IStreamingDatabase;
 import de.ipbhalle.metfraglib.list.AbstractPeakList;
 import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.list.DefaultPeakList;
 import de.ipbhalle.metfraglib.list.ScoredCandidateList;
 import de.ipbhalle.metfraglib.list.SortedScoredCandidateList;
 import de.ipbhalle.metfraglib.parameter.ClassNames;
+import de.ipbhalle.metfraglib.parameter.Constants;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
 import de.ipbhalle.metfraglib.settings.MetFragSingleProcessSettings;
@@ -49,7 +57,19 @@ public class CombinedMetFragProcess implements Runnable {
 	//process status object -> stores values about metfrag's processing status
 	private ProcessingStatus processingStatus;
 	
-	private ExecutorService executer;
+	//query registered at the shared process scheduler -> candidates of this process are executed by its workers
+	private ProcessSchedulerQuery schedulerQuery;
+	//futures of the submitted single candidate processes -> used to wait for completion and to cancel
+	private java.util.ArrayList<Future<?>> futures;
+	//listeners registered for push-style status updates
+	private java.util.ArrayList<IProcessingStatusListener> processingStatusListeners = new java.util.ArrayList<IProcessingStatusListener>();
+	//candidate identifiers to be fetched batch-wise during processing (streaming mode only)
+	private java.util.ArrayList<String> streamedCandidateIdentifiers;
+	//cursor reading the candidates while they are processed (streaming mode of streaming databases only)
+	private ICandidateCursor streamedCandidateCursor;
+	//limits the number of streamed candidates held in memory at the same time
+	private Semaphore streamingPermits;
+	private int streamingBufferSize;
 	
 	private Logger logger = Logger.getLogger(CombinedMetFragProcess.class);
 	
@@ -75,14 +95,41 @@ public class CombinedMetFragProcess implements Runnable {
 	 */
 	public boolean retrieveCompounds() throws Exception {
 		this.processes = null;
+		this.streamedCandidateIdentifiers = null;
+		this.closeCandidateCursor();
+		boolean streamingEnabled = this.isStreamingEnabled();
+		boolean candidateLimitSet = this.globalSettings.containsKey(VariableNames.MAXIMUM_CANDIDATE_LIMIT_TO_STOP_NAME) && this.globalSettings.get(VariableNames.MAXIMUM_CANDIDATE_LIMIT_TO_STOP_NAME) != null;
+		/*
+		 * streaming databases hand out candidates while they are read
+		 * not used if the number of candidates needs to be known beforehand
+		 */
+		if(streamingEnabled && !candidateLimitSet && this.database instanceof IStreamingDatabase) {
+			this.streamedCandidateCursor = ((IStreamingDatabase)this.database).getCandidateCursor();
+			if(this.streamedCandidateCursor != null) {
+				this.sortedScoredCandidateList = new CandidateList();
+				numberCandidatesBeforeFilter = 0;
+				this.logger.info("Streaming candidates from the database");
+				return true;
+			}
+		}
 		java.util.ArrayList<String> databaseCandidateIdentifiers = this.database.getCandidateIdentifiers();
-		if(this.globalSettings.containsKey(VariableNames.MAXIMUM_CANDIDATE_LIMIT_TO_STOP_NAME) && this.globalSettings.get(VariableNames.MAXIMUM_CANDIDATE_LIMIT_TO_STOP_NAME) != null) {
+		if(candidateLimitSet) {
 			int limit = (Integer)this.globalSettings.get(VariableNames.MAXIMUM_CANDIDATE_LIMIT_TO_STOP_NAME);
 			if(limit < databaseCandidateIdentifiers.size()) {
 				this.logger.info(databaseCandidateIdentifiers.size() + " candidate(s) exceeds the defined limit (MaxCandidateLimitToStop = " + limit + ")");
 				return false;
 			}
 		}
+		if(streamingEnabled) {
+			/*
+			 * in streaming mode candidates are fetched batch-wise when running the process
+			 */
+			this.streamedCandidateIdentifiers = databaseCandidateIdentifiers;
+			this.sortedScoredCandidateList = new CandidateList();
+			numberCandidatesBeforeFilter = databaseCandidateIdentifiers.size();
+			this.logger.info("Got " + numberCandidatesBeforeFilter + " candidate identifier(s) for streaming");
+			return true;
+		}
 		this.sortedScoredCandidateList = this.database.getCandidateByIdentifier(databaseCandidateIdentifiers);
 		this.database.nullify();
 		numberCandidatesBeforeFilter = this.sortedScoredCandidateList.getNumberElements();
@@ -107,6 +154,8 @@ public class CombinedMetFragProcess implements Runnable {
 	 */
 	public void renewSettings(MetFragGlobalSettings globalSettings) {
 		this.processes = null;
+		this.streamedCandidateIdentifiers = null;
+		this.closeCandidateCursor();
 		this.globalSettings = globalSettings;
 		this.logger.setLevel((Level)this.globalSettings.get(VariableNames.LOG_LEVEL_NAME));
 		this.initialise();
@@ -135,6 +184,11 @@ public class CombinedMetFragProcess implements Runnable {
 		}
 		this.globalSettings.set(VariableNames.MINIMUM_FRAGMENT_MASS_LIMIT_NAME, ((DefaultPeakList)this.globalSettings.get(VariableNames.PEAK_LIST_NAME)).getMinimumMassValue());
 
+		if(this.streamedCandidateIdentifiers != null || this.streamedCandidateCursor != null) {
+			this.runStreaming();
+			return;
+		}
+		
 		this.processes = new CombinedSingleCandidateMetFragProcess[this.sortedScoredCandidateList.getNumberElements()];
 
 		//reset processing status
@@ -165,26 +219,36 @@ public class CombinedMetFragProcess implements Runnable {
 		}
 		
 		/*
-		 * define executer thread to run MetFrag process
+		 * register at the shared scheduler to run MetFrag process
 		 */
-		this.executer = Executors.newFixedThreadPool((Byte)this.globalSettings.get(VariableNames.NUMBER_THREADS_NAME));
+		ProcessSchedulerQuery schedulerQuery = this.registerAtScheduler();
 		/* 
 		 * ###############
 		 * 	run processes
 		 * ###############
 		 */
+		java.util.ArrayList<Future<?>> futures = new java.util.ArrayList<Future<?>>(this.processes.length);
 		for(CombinedSingleCandidateMetFragProcess scmfp : this.processes) {
-			this.executer.execute(scmfp);
+			futures.add(schedulerQuery.submit(scmfp));
 		}
-		this.executer.shutdown(); 
-	    while(!this.executer.isTerminated())
-		{
+		this.futures = futures;
+		/*
+		 * wait for the single candidate processes
+		 * returns as soon as the last candidate has finished
+		 */
+		for(Future<?> future : futures) {
 			try {
-				Thread.sleep(1000);
+				future.get();
+			} catch (CancellationException e) {
+				this.threadStoppedExternally = true;
 			} catch (InterruptedException e) {
+				this.terminate();
+			} catch (ExecutionException e) {
 				e.printStackTrace();
 			}
 		}
+		this.futures = null;
+		schedulerQuery.close();
 		
 	    if(this.threadStoppedExternally) {
 	    	return;
@@ -223,6 +287,117 @@ public class CombinedMetFragProcess implements Runnable {
 				scmfp.getFragmenterAssignerScorer().nullifyScoresCollection();
 			}
 		}
+		this.finishProcessing(scoredCandidateList, numberCandidatesProcessed);
+		this.processes = null;
+	}
+	
+	/*
+	 * streams candidates from the database through a bounded buffer to the worker threads
+	 * each candidate is scored and collected as soon as its processing has finished
+	 * so the number of candidates held in memory depends on the buffer size and not on the number of candidates
+	 */
+	private void runStreaming() {
+		int numberThreads = ((Number)this.globalSettings.get(VariableNames.NUMBER_THREADS_NAME)).intValue();
+		this.streamingBufferSize = Math.max((Integer)this.globalSettings.get(VariableNames.STREAM_CANDIDATES_BUFFER_SIZE_NAME), numberThreads);
+		boolean readFromCursor = this.streamedCandidateCursor != null;
+		
+		//reset processing status
+		this.processingStatus.setProcessStatusString("Processing Candidates");
+		//the number of candidates read by a cursor is unknown beforehand and grows with each batch
+		this.processingStatus.setNumberCandidates(readFromCursor ? 0 : this.streamedCandidateIdentifiers.size());
+		this.processingStatus.setNumberFinishedCandidates(0);
+		this.processingStatus.setNextPercentageValue(1);
+		//initialise all necessary score parameters
+		//these parameters are shared over all single candidate thread instances
+		this.initialiseScoresGlobal(this.globalSettings);
+		
+		ScoredCandidateList scoredCandidateList = new ScoredCandidateList();
+		AtomicInteger numberCandidatesProcessed = new AtomicInteger(0);
+		this.streamingPermits = new Semaphore(this.streamingBufferSize);
+		ProcessSchedulerQuery schedulerQuery = this.registerAtScheduler();
+		/*
+		 * fetch candidates batch-wise and hand them over to the worker threads
+		 * blocks as long as the buffer is filled
+		 */
+		int numberCandidatesRead = 0;
+		try {
+			CandidateList batchCandidates = null;
+			for(int i = 0; !this.threadStoppedExternally && (batchCandidates = this.fetchStreamedCandidates(i)) != null; i += this.streamingBufferSize) {
+				numberCandidatesRead += batchCandidates.getNumberElements();
+				if(this.globalSettings.containsKey("ExternalPropertyPath") && this.globalSettings.get("ExternalPropertyPath") != null) {
+					this.initExternalProperties(
+							(String)this.globalSettings.get("ExternalPropertyPath"),
+							batchCandidates,
+							(String[])this.globalSettings.get(VariableNames.METFRAG_SCORE_TYPES_NAME)
+					);
+				}
+				for(int j = 0; j < batchCandidates.getNumberElements(); j++) {
+					this.streamingPermits.acquire();
+					if(this.threadStoppedExternally) break;
+					ICandidate candidate = batchCandidates.getElement(j);
+					candidate.setUseSmiles((Boolean)this.globalSettings.get(VariableNames.USE_SMILES_NAME));
+					CombinedSingleCandidateMetFragProcess scmfp = new CombinedSingleCandidateMetFragProcess(new MetFragSingleProcessSettings(this.globalSettings), candidate);
+					scmfp.setPreProcessingCandidateFilterCollection(this.preProcessingCandidateFilterCollection);
+					schedulerQuery.submit(new StreamedCandidateProcess(scmfp, scoredCandidateList, numberCandidatesProcessed));
+				}
+				batchCandidates.setList(null);
+			}
+		} catch (InterruptedException e) {
+			this.threadStoppedExternally = true;
+		} catch (Exception e) {
+			this.logger.error("Error when fetching candidates.");
+			e.printStackTrace();
+			this.threadStoppedExternally = true;
+		} finally {
+			this.closeCandidateCursor();
+		}
+		try {
+			schedulerQuery.awaitCompletion();
+		} catch (InterruptedException e) {
+			this.threadStoppedExternally = true;
+		}
+		schedulerQuery.close();
+		this.database.nullify();
+		this.streamedCandidateIdentifiers = null;
+		if(this.threadStoppedExternally) {
+			return;
+		}
+		if(readFromCursor) {
+			numberCandidatesBeforeFilter = numberCandidatesRead;
+			this.logger.info("Got " + numberCandidatesBeforeFilter + " candidate(s) from the database cursor");
+		}
+		this.finishProcessing(scoredCandidateList, numberCandidatesProcessed.get());
+	}
+	
+	/*
+	 * returns the next batch of streamed candidates or null if all candidates have been read
+	 * candidates are read from the cursor if present or else fetched by the next identifiers starting at the given index
+	 */
+	private CandidateList fetchStreamedCandidates(int index) throws Exception {
+		if(this.streamedCandidateCursor != null) {
+			CandidateList batchCandidates = new CandidateList();
+			while(batchCandidates.getNumberElements() < this.streamingBufferSize && this.streamedCandidateCursor.hasNext())
+				batchCandidates.addElement(this.streamedCandidateCursor.next());
+			if(batchCandidates.getNumberElements() == 0) return null;
+			this.processingStatus.getNumberCandidates().addAndGet(batchCandidates.getNumberElements());
+			return batchCandidates;
+		}
+		if(index >= this.streamedCandidateIdentifiers.size()) return null;
+		return this.database.getCandidateByIdentifier(new java.util.ArrayList<String>(this.streamedCandidateIdentifiers.subList(index, Math.min(index + this.streamingBufferSize, this.streamedCandidateIdentifiers.size()))));
+	}
+	
+	/*
+	 * closes the cursor of streamed candidates if present
+	 */
+	private void closeCandidateCursor() {
+		if(this.streamedCandidateCursor != null) this.streamedCandidateCursor.close();
+		this.streamedCandidateCursor = null;
+	}
+	
+	/*
+	 * normalises scores, filters candidates by post-processing filters and sets the final candidate list
+	 */
+	private void finishProcessing(ScoredCandidateList scoredCandidateList, int numberCandidatesProcessed) {
 		/*
 		 * normalise scores of the candidate list 
 		 */
@@ -254,14 +429,28 @@ public class CombinedMetFragProcess implements Runnable {
 		this.logger.info("Stored " + this.sortedScoredCandidateList.getNumberElements() + " candidate(s)");
 		
 		this.processingStatus.setProcessStatusString("Processing Candidates");
-		
-		this.processes = null;
+	}
+	
+	/*
+	 * registers this process at the shared scheduler
+	 * the number of threads limits the candidates processed in parallel for this query
+	 */
+	private ProcessSchedulerQuery registerAtScheduler() {
+		int numberThreads = ((Number)this.globalSettings.get(VariableNames.NUMBER_THREADS_NAME)).intValue();
+		int priority = ((Number)this.globalSettings.get(VariableNames.PROCESS_PRIORITY_NAME)).intValue();
+		this.schedulerQuery = ProcessScheduler.getInstance().register(priority, numberThreads);
+		return this.schedulerQuery;
 	}
 	
 	/**
 	 * terminate processing thread
 	 */
 	public void terminate() {
+		//cancel waiting and running candidate processes
+		java.util.ArrayList<Future<?>> futures = this.futures;
+		if(futures != null) {
+			for(Future<?> future : futures) future.cancel(true);
+		}
 		if(this.processes != null) {
 			for(int i = 0; i < this.processes.length; i++) {
 				if(this.processes[i] != null) {
@@ -271,9 +460,51 @@ public class CombinedMetFragProcess implements Runnable {
 			}
 		}
 		this.processes = null;
-		if(this.executer == null) return;
+		ProcessSchedulerQuery schedulerQuery = this.schedulerQuery;
+		if(schedulerQuery == null) return;
 		this.threadStoppedExternally = true;
-		this.executer.shutdownNow();
+		schedulerQuery.cancel();
+		//unblock candidate streaming
+		if(this.streamingPermits != null) this.streamingPermits.release(this.streamingBufferSize);
+	}
+	
+	/**
+	 * streaming is used if enabled and no score needs all processed candidates for post-processing
+	 * 
+	 * @return
+	 */
+	private boolean isStreamingEnabled() {
+		if(!(Boolean)this.globalSettings.get(VariableNames.STREAM_CANDIDATES_NAME)) return false;
+		String[] score_types = (String[])this.globalSettings.get(VariableNames.METFRAG_SCORE_TYPES_NAME);
+		for(int i = 0; i < score_types.length; i++) {
+			for(int j = 0; j < Constants.SCORE_NAMES_NOT_TO_STREAM.length; j++) {
+				if(score_types[i].equals(Constants.SCORE_NAMES_NOT_TO_STREAM[j])) {
+					this.logger.info(score_types[i] + " needs all candidates for post-processing. Candidates are not streamed.");
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * registers a listener informed about changes of the processing status
+	 * the listener is kept when settings are renewed
+	 * 
+	 * @param listener
+	 */
+	public void addProcessingStatusListener(IProcessingStatusListener listener) {
+		this.processingStatusListeners.add(listener);
+		if(this.processingStatus != null) this.processingStatus.addListener(listener);
+	}
+
+	public void removeProcessingStatusListener(IProcessingStatusListener listener) {
+		this.processingStatusListeners.remove(listener);
+		if(this.processingStatus != null) this.processingStatus.removeListener(listener);
+	}
+	
+	public ProcessingStatus getProcessingStatus() {
+		return this.processingStatus;
 	}
 	
 	public CandidateList getCandidateList() {
@@ -289,6 +520,8 @@ public class CombinedMetFragProcess implements Runnable {
 		 * stores and returns status of metfrag processing
 		 */
 		this.processingStatus = new ProcessingStatus(this.globalSettings);
+		for(IProcessingStatusListener listener : this.processingStatusListeners)
+			this.processingStatus.addListener(listener);
 		this.globalSettings.set(VariableNames.PROCESS_STATUS_OBJECT_NAME, this.processingStatus);
 		if(this.logger.isTraceEnabled())
 			this.logger.trace(this.getClass().getName());
@@ -296,7 +529,11 @@ public class CombinedMetFragProcess implements Runnable {
 			if(this.logger.isTraceEnabled())
 				this.logger.trace("\tinitialising database " + VariableNames.METFRAG_DATABASE_TYPE_NAME);
 			//initialise database
-			this.database = (IDatabase) Class.forName(ClassNames.getClassNameOfDatabase((String)this.globalSettings.get(VariableNames.METFRAG_DATABASE_TYPE_NAME))).getConstructor(Settings.class).newInstance(this.globalSettings);
+			Class<?> databaseClass = Class.forName(ClassNames.getClassNameOfDatabase((String)this.globalSettings.get(VariableNames.METFRAG_DATABASE_TYPE_NAME)));
+			//local file databases read into memory can be read once and shared by all processes
+			if((Boolean)this.globalSettings.get(VariableNames.SHARE_LOCAL_DATABASE_NAME) && SharedLocalDatabase.isShareable(databaseClass))
+				databaseClass = SharedLocalDatabase.class;
+			this.database = (IDatabase) databaseClass.getConstructor(Settings.class).newInstance(this.globalSettings);
 			if(this.logger.isTraceEnabled())
 				this.logger.trace("\tinitialising peakListReader " + VariableNames.METFRAG_PEAK_LIST_READER_NAME);
 			//init peaklist reader
@@ -439,6 +676,7 @@ public class CombinedMetFragProcess implements Runnable {
 	}
 	
 	public void nullify() {
+		this.closeCandidateCursor();
 		if(this.database != null) this.database.nullify();
 		this.database = null;
 		this.globalSettings = null;
@@ -456,6 +694,8 @@ public class CombinedMetFragProcess implements Runnable {
 	}
 	
 	public void setCandidateList(CandidateList candidateList) {
+		this.streamedCandidateIdentifiers = null;
+		this.closeCandidateCursor();
 		this.sortedScoredCandidateList = candidateList;
 		numberCandidatesBeforeFilter = this.sortedScoredCandidateList.getNumberElements();
 	}
@@ -542,4 +782,43 @@ public class CombinedMetFragProcess implements Runnable {
 		}
 		return true;
 	}
+
+	/*
+	 * processes one streamed candidate and adds it to the scored candidate list once finished
+	 */
+	private class StreamedCandidateProcess implements Runnable {
+		
+		private CombinedSingleCandidateMetFragProcess scmfp;
+		private ScoredCandidateList scoredCandidateList;
+		private AtomicInteger numberCandidatesProcessed;
+		
+		public StreamedCandidateProcess(CombinedSingleCandidateMetFragProcess scmfp, ScoredCandidateList scoredCandidateList, AtomicInteger numberCandidatesProcessed) {
+			this.scmfp = scmfp;
+			this.scoredCandidateList = scoredCandidateList;
+			this.numberCandidatesProcessed = numberCandidatesProcessed;
+		}
+		
+		public void run() {
+			try {
+				this.scmfp.run();
+				if(this.scmfp.wasSuccessful()) {
+					this.scmfp.singlePostCalculateScores();
+					this.scmfp.assignScores();
+					ICandidate[] candidates = this.scmfp.getScoredPrecursorCandidates();
+					synchronized(this.scoredCandidateList) {
+						for(int i = 0; i < candidates.length; i++) this.scoredCandidateList.addElement(candidates[i]);
+					}
+					this.numberCandidatesProcessed.incrementAndGet();
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				logger.error("Error when processing candidate ID " + this.scmfp.getScoredPrecursorCandidate().getIdentifier());
+			} finally {
+				//important to eliminate static variables
+				if(this.scmfp.getFragmenterAssignerScorer() != null) this.scmfp.getFragmenterAssignerScorer().nullifyScoresCollection();
+				this.scmfp = null;
+				streamingPermits.release();
+			}
+		}
+	}
 }
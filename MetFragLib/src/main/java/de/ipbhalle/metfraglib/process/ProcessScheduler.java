@@ -0,0 +1,197 @@
+package de.ipbhalle.metfraglib.process;
+
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+/**
+ * process-wide worker pool shared by all MetFrag queries (CombinedMetFragProcess instances)
+ *
+ * each query registers and submits its single candidate processes to its own queue
+ * worker threads pick the next task from the query with the lowest virtual time
+ * virtual time increases by 1 / priority for each started task so queries get a share of the workers
+ * proportional to their priority - as long as they don't exceed their maximum parallelism
+ *
+ * the number of worker threads is taken from the system property metfrag.scheduler.parallelism
+ * or the number of available processors and can be changed by setParallelism
+ *
+ * @author cruttkie
+ *
+ */
+public class ProcessScheduler {
+
+	public static final String PARALLELISM_PROPERTY_NAME = "metfrag.scheduler.parallelism";
+
+	private static ProcessScheduler instance;
+	private static int defaultParallelism = readDefaultParallelism();
+
+	private final int parallelism;
+	private final Thread[] workers;
+	//registered queries -> guarded by this
+	private final java.util.ArrayList<ProcessSchedulerQuery> queries;
+	private boolean shutdown;
+
+	private Logger logger = Logger.getLogger(ProcessScheduler.class);
+
+	private ProcessScheduler(int parallelism) {
+		this.parallelism = parallelism;
+		this.queries = new java.util.ArrayList<ProcessSchedulerQuery>();
+		this.shutdown = false;
+		this.workers = new Thread[parallelism];
+		for(int i = 0; i < parallelism; i++) {
+			this.workers[i] = new Thread(new Worker(), "MetFragWorker-" + (i + 1));
+			//don't keep the JVM alive because of idle workers
+			this.workers[i].setDaemon(true);
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * returns the shared scheduler and creates it on first use
+	 *
+	 * @return
+	 */
+	public static synchronized ProcessScheduler getInstance() {
+		if(instance == null) instance = new ProcessScheduler(defaultParallelism);
+		return instance;
+	}
+
+	/**
+	 * sets the number of worker threads
+	 * if the shared scheduler already runs with a different number of threads it is replaced
+	 * queries registered at the old scheduler are finished by its workers
+	 *
+	 * @param parallelism
+	 */
+	public static synchronized void setParallelism(int parallelism) {
+		if(parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+		defaultParallelism = parallelism;
+		if(instance != null && instance.getParallelism() != parallelism) {
+			instance.shutdown();
+			instance = null;
+		}
+	}
+
+	private static int readDefaultParallelism() {
+		String value = System.getProperty(PARALLELISM_PROPERTY_NAME);
+		if(value != null) {
+			try {
+				int parallelism = Integer.parseInt(value.trim());
+				if(parallelism > 0) return parallelism;
+			} catch(NumberFormatException e) {}
+			Logger.getLogger(ProcessScheduler.class).warn("Invalid value for " + PARALLELISM_PROPERTY_NAME + ": " + value);
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * registers a new query
+	 *
+	 * @param priority weight of the query when sharing workers with other queries (>= 1)
+	 * @param maximumParallelism maximum number of tasks of this query running at the same time
+	 * @return
+	 */
+	public synchronized ProcessSchedulerQuery register(int priority, int maximumParallelism) {
+		if(this.shutdown) throw new IllegalStateException("ProcessScheduler was shut down");
+		ProcessSchedulerQuery query = new ProcessSchedulerQuery(this, Math.max(1, priority), Math.max(1, maximumParallelism));
+		//start with the lowest virtual time of all registered queries so new queries don't starve the others
+		double virtualTime = 0.0;
+		for(int i = 0; i < this.queries.size(); i++) {
+			if(i == 0 || this.queries.get(i).getVirtualTime() < virtualTime) virtualTime = this.queries.get(i).getVirtualTime();
+		}
+		query.setVirtualTime(virtualTime);
+		this.queries.add(query);
+		if(this.logger.isDebugEnabled())
+			this.logger.debug("registered query (priority " + priority + ", parallelism " + maximumParallelism + ") - " + this.queries.size() + " active queries");
+		return query;
+	}
+
+	synchronized void unregister(ProcessSchedulerQuery query) {
+		this.queries.remove(query);
+		this.notifyAll();
+	}
+
+	synchronized void enqueue(ProcessSchedulerQuery query, FutureTask<?> task) {
+		query.addWaitingTask(task);
+		this.notifyAll();
+	}
+
+	synchronized void taskFinished(ProcessSchedulerQuery query, FutureTask<?> task) {
+		query.removeRunningTask(task);
+		this.notifyAll();
+	}
+
+	/**
+	 * waits until all tasks of the given query have been finished
+	 *
+	 * @param query
+	 * @throws InterruptedException
+	 */
+	synchronized void awaitCompletion(ProcessSchedulerQuery query) throws InterruptedException {
+		while(query.hasOutstandingTasks()) this.wait();
+	}
+
+	/*
+	 * picks the next task from the query with the lowest virtual time
+	 * returns null if the scheduler was shut down and no tasks are left
+	 */
+	private synchronized ScheduledTask nextTask() {
+		while(true) {
+			ProcessSchedulerQuery next = null;
+			for(ProcessSchedulerQuery query : this.queries) {
+				if(query.canStartTask() && (next == null || query.getVirtualTime() < next.getVirtualTime()))
+					next = query;
+			}
+			if(next != null) return new ScheduledTask(next, next.startNextTask());
+			if(this.shutdown && this.queries.isEmpty()) return null;
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				//workers are only stopped by shutdown
+			}
+		}
+	}
+
+	/**
+	 * stops the workers once all registered queries are finished
+	 */
+	public synchronized void shutdown() {
+		this.shutdown = true;
+		this.notifyAll();
+	}
+
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	public synchronized int getNumberRegisteredQueries() {
+		return this.queries.size();
+	}
+
+	private static class ScheduledTask {
+
+		private final ProcessSchedulerQuery query;
+		private final FutureTask<?> task;
+
+		private ScheduledTask(ProcessSchedulerQuery query, FutureTask<?> task) {
+			this.query = query;
+			this.task = task;
+		}
+	}
+
+	private class Worker implements Runnable {
+
+		public void run() {
+			ScheduledTask scheduledTask = null;
+			while((scheduledTask = nextTask()) != null) {
+				try {
+					scheduledTask.task.run();
+				} finally {
+					//clear a possible interrupt of a cancelled task
+					Thread.interrupted();
+					taskFinished(scheduledTask.query, scheduledTask.task);
+				}
+			}
+		}
+	}
+}
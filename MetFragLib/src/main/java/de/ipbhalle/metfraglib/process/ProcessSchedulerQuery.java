@@ -0,0 +1,119 @@
+package de.ipbhalle.metfraglib.process;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * handle of one query (e.g. one CombinedMetFragProcess run) registered at the ProcessScheduler
+ * all state is guarded by the lock of the scheduler
+ *
+ * @author cruttkie
+ *
+ */
+public class ProcessSchedulerQuery {
+
+	private final ProcessScheduler scheduler;
+	private final int priority;
+	private final int maximumParallelism;
+	//submitted tasks not yet started
+	private final java.util.LinkedList<FutureTask<?>> waitingTasks;
+	//started tasks not yet finished
+	private final java.util.HashSet<FutureTask<?>> runningTasks;
+	private double virtualTime;
+	private boolean closed;
+
+	ProcessSchedulerQuery(ProcessScheduler scheduler, int priority, int maximumParallelism) {
+		this.scheduler = scheduler;
+		this.priority = priority;
+		this.maximumParallelism = maximumParallelism;
+		this.waitingTasks = new java.util.LinkedList<FutureTask<?>>();
+		this.runningTasks = new java.util.HashSet<FutureTask<?>>();
+		this.virtualTime = 0.0;
+		this.closed = false;
+	}
+
+	/**
+	 * submits a task to the shared workers
+	 *
+	 * @param task
+	 * @return
+	 */
+	public Future<?> submit(Runnable task) {
+		FutureTask<Object> futureTask = new FutureTask<Object>(task, null);
+		this.scheduler.enqueue(this, futureTask);
+		return futureTask;
+	}
+
+	/**
+	 * waits until all submitted tasks have been finished or cancelled
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		this.scheduler.awaitCompletion(this);
+	}
+
+	/**
+	 * cancels all waiting tasks and interrupts the running ones
+	 */
+	public void cancel() {
+		synchronized(this.scheduler) {
+			for(FutureTask<?> task : this.waitingTasks) task.cancel(false);
+			this.waitingTasks.clear();
+			for(FutureTask<?> task : this.runningTasks) task.cancel(true);
+			this.scheduler.notifyAll();
+		}
+	}
+
+	/**
+	 * unregisters the query from the scheduler and cancels remaining tasks
+	 */
+	public void close() {
+		this.cancel();
+		synchronized(this.scheduler) {
+			this.closed = true;
+		}
+		this.scheduler.unregister(this);
+	}
+
+	void addWaitingTask(FutureTask<?> task) {
+		if(this.closed) throw new IllegalStateException("Query was already closed");
+		this.waitingTasks.add(task);
+	}
+
+	boolean canStartTask() {
+		return !this.waitingTasks.isEmpty() && this.runningTasks.size() < this.maximumParallelism;
+	}
+
+	FutureTask<?> startNextTask() {
+		FutureTask<?> task = this.waitingTasks.poll();
+		this.runningTasks.add(task);
+		this.virtualTime += 1.0 / (double)this.priority;
+		return task;
+	}
+
+	void removeRunningTask(FutureTask<?> task) {
+		this.runningTasks.remove(task);
+	}
+
+	boolean hasOutstandingTasks() {
+		return !this.waitingTasks.isEmpty() || !this.runningTasks.isEmpty();
+	}
+
+	double getVirtualTime() {
+		return this.virtualTime;
+	}
+
+	void setVirtualTime(double virtualTime) {
+		this.virtualTime = virtualTime;
+	}
+
+	public int getPriority() {
+		return this.priority;
+	}
+
+	public int getMaximumParallelism() {
+		return this.maximumParallelism;
+	}
+
+}
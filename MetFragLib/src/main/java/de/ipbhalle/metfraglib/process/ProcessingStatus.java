@@ -1,10 +1,12 @@
 package de.ipbhalle.metfraglib.process;
 
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import de.ipbhalle.metfraglib.interfaces.IProcessingStatusListener;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
 
@@ -19,6 +21,8 @@ public class ProcessingStatus {
 	protected AtomicInteger numberPreFilteredCandidates;
 	protected AtomicInteger percentageValue;
 	protected Logger logger = Logger.getLogger(ProcessingStatus.class);
+	//listeners informed about status changes
+	protected CopyOnWriteArrayList<IProcessingStatusListener> listeners;
 	
 	public ProcessingStatus(Settings settings) {
 		this.processStatusString = "Processing Candidates";
@@ -29,20 +33,45 @@ public class ProcessingStatus {
 		this.numberFinishedCandidates = new AtomicInteger(0);
 		this.numberErrorCandidates = new AtomicInteger(0);
 		this.numberPreFilteredCandidates = new AtomicInteger(0);
+		this.listeners = new CopyOnWriteArrayList<IProcessingStatusListener>();
 		this.logger.setLevel((Level)settings.get(VariableNames.LOG_LEVEL_NAME));
 	}
 
-	public synchronized void checkNumberFinishedCandidates() {
-		if(((double)(numberFinishedCandidates.incrementAndGet()) / numberCandidates.get()) * 10.0 >= nextPercentageValue.doubleValue()) {
-			int old = nextPercentageValue.get();
-			this.nextPercentageValue.set((int)Math.ceil((numberFinishedCandidates.doubleValue() / numberCandidates.doubleValue()) * 10.0));
-			if(old == nextPercentageValue.get()) nextPercentageValue.incrementAndGet();
-			this.percentageValue.set((int)Math.round(((numberFinishedCandidates.doubleValue() / numberCandidates.doubleValue()) * 10.0)) * 10);
-			//this.processStatusString = "Processing Candidates - " + percentageValue + " %";
-			this.processStatusString = "Processing Candidates";
-			this.logger.info(this.percentageValue + " %");
-			// run garage collector after clearing fragments
-		//	System.gc();
+	public void checkNumberFinishedCandidates() {
+		boolean changed = false;
+		synchronized(this) {
+			if(((double)(numberFinishedCandidates.incrementAndGet()) / numberCandidates.get()) * 10.0 >= nextPercentageValue.doubleValue()) {
+				int old = nextPercentageValue.get();
+				this.nextPercentageValue.set((int)Math.ceil((numberFinishedCandidates.doubleValue() / numberCandidates.doubleValue()) * 10.0));
+				if(old == nextPercentageValue.get()) nextPercentageValue.incrementAndGet();
+				this.percentageValue.set((int)Math.round(((numberFinishedCandidates.doubleValue() / numberCandidates.doubleValue()) * 10.0)) * 10);
+				//this.processStatusString = "Processing Candidates - " + percentageValue + " %";
+				this.processStatusString = "Processing Candidates";
+				this.logger.info(this.percentageValue + " %");
+				changed = true;
+				// run garage collector after clearing fragments
+			//	System.gc();
+			}
+		}
+		//inform listeners outside the lock so slow listeners don't block the worker threads 
+		if(changed) this.notifyListeners();
+	}
+	
+	public void addListener(IProcessingStatusListener listener) {
+		if(!this.listeners.contains(listener)) this.listeners.add(listener);
+	}
+	
+	public void removeListener(IProcessingStatusListener listener) {
+		this.listeners.remove(listener);
+	}
+	
+	protected void notifyListeners() {
+		for(IProcessingStatusListener listener : this.listeners) {
+			try {
+				listener.processingStatusChanged(this);
+			} catch(Exception e) {
+				this.logger.warn("Processing status listener failed: " + e.getMessage());
+			}
 		}
 	}
 	
@@ -68,6 +97,7 @@ public class ProcessingStatus {
 
 	public void setProcessStatusString(String processStatusString) {
 		this.processStatusString = processStatusString;
+		this.notifyListeners();
 	}
 
 	public AtomicInteger getNumberCandidates() {
@@ -108,6 +138,7 @@ public class ProcessingStatus {
 
 	public void setRetrievingStatusString(String retrievingStatusString) {
 		this.retrievingStatusString = retrievingStatusString;
+		this.notifyListeners();
 	}
 	
 	public AtomicInteger getPercentageValue() {
@@ -1,8 +1,8 @@
 package de.ipbhalle.metfraglib.score;
 
+import de.ipbhalle.metfraglib.collection.InChIKey1ScoreMap;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
-import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.list.SortedTandemMassPeakList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.peak.TandemMassPeak;
@@ -30,18 +30,12 @@ public class ExactMoNASpectralSimilarity extends AbstractScore {
 		/*
 		 * previously calculated by ExactMoNASpectralSimilarityInitialiser
 		 */
-		CandidateList candidatesFromMoNA = (CandidateList)this.settings.get(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME);
+		InChIKey1ScoreMap scoresFromMoNA = (InChIKey1ScoreMap)this.settings.get(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_SCORES_NAME);
 		//beta = -9, gamma = 0.6
 		try {
-			String candidateInchikey = (String)this.candidate.getProperty(VariableNames.INCHI_KEY_1_NAME);
-			for(int i = 0; i < candidatesFromMoNA.getNumberElements(); i++) {
-				String currentInChIKey = (String)candidatesFromMoNA.getElement(i).getProperty(VariableNames.INCHI_KEY_1_NAME);
-				if(candidateInchikey.equals(currentInChIKey)) {
-					double score = (Double)candidatesFromMoNA.getElement(i).getProperty("score");
-					if(score > this.value) 
-						this.value = score;
-				}
-			}
+			Double score = scoresFromMoNA.getScore((String)this.candidate.getProperty(VariableNames.INCHI_KEY_1_NAME));
+			if(score != null && score > this.value) 
+				this.value = score;
 		} catch(Exception e) {
 			System.err.println("calculate ExactMoNASpectralSimilarity error");
 			this.value = 0.0;
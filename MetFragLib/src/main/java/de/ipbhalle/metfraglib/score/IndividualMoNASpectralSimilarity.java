@@ -1,6 +1,7 @@
 package de.ipbhalle.metfraglib.score;
 
 import de.ipbhalle.metfraglib.candidatefilter.PreProcessingCandidateSuspectListFilter;
+import de.ipbhalle.metfraglib.collection.InChIKey1ScoreMap;
 import de.ipbhalle.metfraglib.functions.MoNARestWebService;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
@@ -14,6 +15,7 @@ import de.ipbhalle.metfraglib.settings.Settings;
  * search is performed offline by inchikey list
  * 
  * the fetched spectra are used for cosine similarity
+ * the similarity is calculated once per InChIKey part and shared by all candidates
  * 
  * @author cruttkie
  *
@@ -33,24 +35,26 @@ public class IndividualMoNASpectralSimilarity extends AbstractScore {
 	public void calculate() throws Exception {
 		final PreProcessingCandidateSuspectListFilter MoNAPresentInChIKeys = (PreProcessingCandidateSuspectListFilter)this.settings.get(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_INCHIKEY_LIST_NAME);
 		final MoNARestWebService webService = (MoNARestWebService)this.settings.get(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_WEB_SERVICE_NAME);
+		final InChIKey1ScoreMap scoresFromMoNA = (InChIKey1ScoreMap)this.settings.get(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_SCORES_NAME);
 		
-		if(MoNAPresentInChIKeys == null || MoNAPresentInChIKeys.passesFilter(this.candidate, false)) {
-			SortedTandemMassPeakList peakList = (SortedTandemMassPeakList)settings.get(VariableNames.PEAK_LIST_NAME);
-			String inchikey1 = (String)this.candidate.getProperty(VariableNames.INCHI_KEY_1_NAME);
-			DefaultPeakList[] monaPeakList = webService.retrievePeakListByInChIKey(inchikey1, peakList.getMeasuredPrecursorMass());
-			if(monaPeakList == null || monaPeakList.length == 0) {
-				this.value = 0.0;
-			}
-			else {
-				double max = 0.0;
-				for(int i = 0; i < monaPeakList.length; i++) {
-					double cs = ((SortedTandemMassPeakList)monaPeakList[i]).cosineSimilarity(
-							peakList, (Double)this.settings.get(VariableNames.RELATIVE_MASS_DEVIATION_NAME), 
-							(Double)this.settings.get(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME));
-					if(cs > max) max = cs;
+		String inchikey1 = (String)this.candidate.getProperty(VariableNames.INCHI_KEY_1_NAME);
+		//candidates without InChIKey part cannot be found in MoNA
+		if(inchikey1 != null && (MoNAPresentInChIKeys == null || MoNAPresentInChIKeys.passesFilter(this.candidate, false))) {
+			final SortedTandemMassPeakList peakList = (SortedTandemMassPeakList)settings.get(VariableNames.PEAK_LIST_NAME);
+			this.value = scoresFromMoNA.getScore(inchikey1, new InChIKey1ScoreMap.ScoreCalculation() {
+				public double calculate(String inchikey1) throws Exception {
+					DefaultPeakList[] monaPeakList = webService.retrievePeakListByInChIKey(inchikey1, peakList.getMeasuredPrecursorMass());
+					if(monaPeakList == null || monaPeakList.length == 0) return 0.0;
+					double max = 0.0;
+					for(int i = 0; i < monaPeakList.length; i++) {
+						double cs = ((SortedTandemMassPeakList)monaPeakList[i]).cosineSimilarity(
+								peakList, (Double)settings.get(VariableNames.RELATIVE_MASS_DEVIATION_NAME), 
+								(Double)settings.get(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME));
+						if(cs > max) max = cs;
+					}
+					return max;
 				}
-				this.value = max;
-			}
+			});
 		}
 		else this.value = 0.0;
 		this.calculationFinished = true;
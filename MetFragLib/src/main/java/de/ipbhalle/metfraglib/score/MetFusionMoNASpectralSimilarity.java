@@ -1,11 +1,9 @@
 package de.ipbhalle.metfraglib.score;
 
-import org.openscience.cdk.fingerprint.IBitFingerprint;
-
+import de.ipbhalle.metfraglib.fingerprint.PackedFingerprintMatrix;
 import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
-import de.ipbhalle.metfraglib.list.CandidateList;
 import de.ipbhalle.metfraglib.list.SortedTandemMassPeakList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.peak.TandemMassPeak;
@@ -36,13 +34,14 @@ public class MetFusionMoNASpectralSimilarity extends AbstractScore {
 		this.value = 0.0;
 		//beta = -9, gamma = 0.6
 		try {
-			CandidateList candidatesFromMoNA = (CandidateList)settings.get(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME);
+			PackedFingerprintMatrix fingerprintsFromMoNA = (PackedFingerprintMatrix)settings.get(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_FINGERPRINTS_NAME);
 			//fingerprint of the current candidate
-			IBitFingerprint f2 = TanimotoSimilarity.calculateFingerPrint(this.candidate.getAtomContainer());
+			long[] f2 = TanimotoSimilarity.toPackedFingerprint(TanimotoSimilarity.calculateFingerPrint(this.candidate.getAtomContainer()));
 			//calculate similarity score
-			for(int i = 0; i < candidatesFromMoNA.getNumberElements(); i++) {
-				IBitFingerprint f1 = (IBitFingerprint)candidatesFromMoNA.getElement(i).getProperty("Fingerprint");
-				double val = TanimotoSimilarity.calculateSimilarity(f1, f2) * (Double)candidatesFromMoNA.getElement(i).getProperty("score");
+			double[] similarities = fingerprintsFromMoNA.calculateSimilarities(f2);
+			double[] scores = fingerprintsFromMoNA.getScores();
+			for(int i = 0; i < similarities.length; i++) {
+				double val = similarities[i] * scores[i];
 				this.value += this.signum(-9.0, 0.6, val);
 			}
 		} catch(Exception e) {
@@ -1,14 +1,11 @@
 package de.ipbhalle.metfraglib.score;
 
-import org.openscience.cdk.fingerprint.IBitFingerprint;
-
 import de.ipbhalle.metfraglib.candidate.PrecursorCandidate;
 import de.ipbhalle.metfraglib.collection.SpectralPeakListCollection;
 import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
 import de.ipbhalle.metfraglib.list.DefaultPeakList;
-import de.ipbhalle.metfraglib.list.SortedSimilarityTandemMassPeakList;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.peaklistreader.FilteredStringTandemMassPeakListReader;
 import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
@@ -39,15 +36,12 @@ public class OfflineMetFusionSpectralSimilarityScore extends AbstractScore {
 		try {
 			SpectralPeakListCollection spectralPeakLists = (SpectralPeakListCollection)settings.get(VariableNames.OFFLINE_METFUSION_MONA_SPECTRAL_SIMILARITY_PEAK_LIST_COLLECTION_NAME);
 			//fingerprint of the current candidate
-			IBitFingerprint f2 = TanimotoSimilarity.calculateFingerPrint(this.candidate.getAtomContainer());
-			//calculate similarity score
-			java.util.Hashtable<String, java.util.ArrayList<SortedSimilarityTandemMassPeakList>> inchikey1ToPeakList = spectralPeakLists.getInchikey1ToPeakList();
-			java.util.Hashtable<String, Double> inchikey1ToSimScore = spectralPeakLists.getInchikey1ToSimScore();
-			java.util.Enumeration<?> it = inchikey1ToPeakList.keys();
-			while(it.hasMoreElements()) {
-				String inchikey1 = (String)it.nextElement();
-				double tanimoto_sim = TanimotoSimilarity.calculateSimilarity(inchikey1ToPeakList.get(inchikey1).get(0).getFingerprint(), f2);
-				double val = tanimoto_sim * inchikey1ToSimScore.get(inchikey1);
+			long[] f2 = TanimotoSimilarity.toPackedFingerprint(TanimotoSimilarity.calculateFingerPrint(this.candidate.getAtomContainer()));
+			//calculate similarity score against the packed fingerprints of all InChIKey groups
+			double[] tanimotoSimilarities = spectralPeakLists.calculateReferenceSimilarities(f2);
+			double[] similarityScores = spectralPeakLists.getReferenceSimilarityScores();
+			for(int i = 0; i < similarityScores.length; i++) {
+				double val = tanimotoSimilarities[i] * similarityScores[i];
 				this.value += this.signum(-9.0, 0.6, val);
 			}
 		} catch(Exception e) {
@@ -70,7 +70,7 @@ public class RetentionTimeScore extends AbstractScore {
 			}
 			else {
 				this.logValue = linearModel.calculateLogPValue(this.scoredCandidate);
-				if(this.logValue.isNaN()) {
+				if(this.logValue != null && this.logValue.isNaN()) {
 					this.logValue = null;
 				}
 			}
@@ -1,12 +1,12 @@
 package de.ipbhalle.metfraglib.score;
 
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
 
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
+import de.ipbhalle.metfraglib.substructure.SmartsQueryToolPool;
 
 public class SmartsSubstructureExclusionScore extends AbstractScore {
 
@@ -22,12 +22,12 @@ public class SmartsSubstructureExclusionScore extends AbstractScore {
 	
 	public void calculate() {
 		this.value = 0.0;
-		SMARTSQueryTool[] smartsQuerytools = (SMARTSQueryTool[])this.settings.get(VariableNames.SMARTS_SUBSTRUCTURE_EXCLUSION_SCORE_LIST_NAME);
+		SmartsQueryToolPool smartsQuerytools = (SmartsQueryToolPool)this.settings.get(VariableNames.SMARTS_SUBSTRUCTURE_EXCLUSION_SCORE_LIST_NAME);
 		if(smartsQuerytools == null) return;
 
- 		for(int i = 0; i < smartsQuerytools.length; i++) {
+ 		for(int i = 0; i < smartsQuerytools.getNumberSmarts(); i++) {
 			try {
-				if(smartsQuerytools[i].matches(candidate.getPrecursorMolecule().getStructureAsIAtomContainer())) {
+				if(smartsQuerytools.matches(i, candidate.getPrecursorMolecule().getStructureAsIAtomContainer())) {
 					this.value++;
 				}
 			} catch (CDKException e) {
@@ -51,9 +51,9 @@ public class SmartsSubstructureExclusionScore extends AbstractScore {
 	}
 
 	public Double getValue() {
-		Object[] obj = (SMARTSQueryTool[])settings.get(VariableNames.SMARTS_SUBSTRUCTURE_EXCLUSION_SCORE_LIST_NAME);
-		if(obj == null) return this.value;
-		return obj.length - this.value;
+		SmartsQueryToolPool smartsQuerytools = (SmartsQueryToolPool)settings.get(VariableNames.SMARTS_SUBSTRUCTURE_EXCLUSION_SCORE_LIST_NAME);
+		if(smartsQuerytools == null) return this.value;
+		return smartsQuerytools.getNumberSmarts() - this.value;
 	}
 	
 	public boolean isBetterValue(double value) {
@@ -1,12 +1,12 @@
 package de.ipbhalle.metfraglib.score;
 
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
 
 import de.ipbhalle.metfraglib.interfaces.ICandidate;
 import de.ipbhalle.metfraglib.interfaces.IMatch;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
+import de.ipbhalle.metfraglib.substructure.SmartsQueryToolPool;
 
 public class SmartsSubstructureInclusionScore extends AbstractScore {
 
@@ -22,12 +22,12 @@ public class SmartsSubstructureInclusionScore extends AbstractScore {
 	
 	public void calculate() {
 		this.value = 0.0;
-		SMARTSQueryTool[] smartsQuerytools = (SMARTSQueryTool[])this.settings.get(VariableNames.SMARTS_SUBSTRUCTURE_INCLUSION_SCORE_LIST_NAME);
+		SmartsQueryToolPool smartsQuerytools = (SmartsQueryToolPool)this.settings.get(VariableNames.SMARTS_SUBSTRUCTURE_INCLUSION_SCORE_LIST_NAME);
 		if(smartsQuerytools == null) return;
 
- 		for(int i = 0; i < smartsQuerytools.length; i++) {
+ 		for(int i = 0; i < smartsQuerytools.getNumberSmarts(); i++) {
 			try {
-				if(smartsQuerytools[i].matches(candidate.getPrecursorMolecule().getStructureAsIAtomContainer())) {
+				if(smartsQuerytools.matches(i, candidate.getPrecursorMolecule().getStructureAsIAtomContainer())) {
 					this.value++;
 				}
 			} catch (CDKException e) {
@@ -1,5 +1,6 @@
 package de.ipbhalle.metfraglib.scoreinitialisation;
 
+import de.ipbhalle.metfraglib.collection.InChIKey1ScoreMap;
 import de.ipbhalle.metfraglib.functions.MoNARestWebService;
 import de.ipbhalle.metfraglib.interfaces.IScoreInitialiser;
 import de.ipbhalle.metfraglib.list.CandidateList;
@@ -15,14 +16,17 @@ public class ExactMoNASpectralSimilarityInitialiser implements IScoreInitialiser
 		 * similarity. The candidates retrieved from the MoNA database are stored 
 		 * in the settings object and can be used within the ExactMoNASpectralSimilarity
 		 * class.
+		 * The maximum score of each InChIKey part is indexed once for all candidates.
 		 */
 		MoNARestWebService webService = new MoNARestWebService(settings);
 		try {
 			CandidateList candidateList = webService.performSpectrumSimilaritySearch();
 			settings.set(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME, candidateList);
+			settings.set(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_SCORES_NAME, new InChIKey1ScoreMap(candidateList, "score"));
 		}
 		catch(Exception e) {
 			settings.set(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME, new CandidateList());
+			settings.set(VariableNames.EXACT_MONA_SPECTRAL_SIMILARITY_SCORES_NAME, new InChIKey1ScoreMap());
 			e.printStackTrace();
 			return;
 		}
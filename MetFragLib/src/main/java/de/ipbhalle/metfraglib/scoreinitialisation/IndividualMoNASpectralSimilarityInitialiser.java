@@ -1,6 +1,7 @@
 package de.ipbhalle.metfraglib.scoreinitialisation;
 
 import de.ipbhalle.metfraglib.candidatefilter.PreProcessingCandidateSuspectListFilter;
+import de.ipbhalle.metfraglib.collection.InChIKey1ScoreMap;
 import de.ipbhalle.metfraglib.functions.MoNARestWebService;
 import de.ipbhalle.metfraglib.interfaces.IScoreInitialiser;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
@@ -32,6 +33,8 @@ public class IndividualMoNASpectralSimilarityInitialiser implements IScoreInitia
 		
 		settings.set(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_INCHIKEY_LIST_NAME, MoNAPresentInChIKeys);
 		settings.set(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_WEB_SERVICE_NAME, webService);
+		//spectra of each InChIKey part are retrieved and compared once for all candidates
+		settings.set(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_SCORES_NAME, new InChIKey1ScoreMap());
 	}
 
 	public void postProcessScoreParameters(Settings settings) {
@@ -2,6 +2,7 @@ package de.ipbhalle.metfraglib.scoreinitialisation;
 
 import org.openscience.cdk.fingerprint.IBitFingerprint;
 
+import de.ipbhalle.metfraglib.fingerprint.PackedFingerprintMatrix;
 import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
 import de.ipbhalle.metfraglib.functions.MoNARestWebService;
 import de.ipbhalle.metfraglib.interfaces.IScoreInitialiser;
@@ -26,14 +27,20 @@ public class MetFusionMoNASpectralSimilarityInitialiser implements IScoreInitial
 		}
 		catch(Exception e) {
 			settings.set(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME, new CandidateList());
+			settings.set(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_FINGERPRINTS_NAME, new PackedFingerprintMatrix(0));
 			e.printStackTrace();
 			return;
 		}
+		//fingerprints and scores of all hits are packed once for all candidates
+		PackedFingerprintMatrix fingerprintsFromMoNA = new PackedFingerprintMatrix(candidatesFromMoNA.getNumberElements());
 		for(int i = 0; i < candidatesFromMoNA.getNumberElements(); i++) {
 			IBitFingerprint fingerprint = TanimotoSimilarity.calculateFingerPrint(candidatesFromMoNA.getElement(i).getAtomContainer());
 			candidatesFromMoNA.getElement(i).setProperty("Fingerprint", fingerprint);
+			Object score = candidatesFromMoNA.getElement(i).getProperty("score");
+			fingerprintsFromMoNA.setRow(i, fingerprint, score instanceof Number ? ((Number)score).doubleValue() : 0.0);
 		}
 		settings.set(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_CANDIDATES_NAME, candidatesFromMoNA);
+		settings.set(VariableNames.METFUSION_MONA_SPECTRAL_SIMILARITY_FINGERPRINTS_NAME, fingerprintsFromMoNA);
 			
 	}
 
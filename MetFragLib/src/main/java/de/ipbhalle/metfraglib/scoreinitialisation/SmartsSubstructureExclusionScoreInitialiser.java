@@ -1,11 +1,9 @@
 package de.ipbhalle.metfraglib.scoreinitialisation;
 
-import org.openscience.cdk.DefaultChemObjectBuilder;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
-
 import de.ipbhalle.metfraglib.interfaces.IScoreInitialiser;
 import de.ipbhalle.metfraglib.parameter.VariableNames;
 import de.ipbhalle.metfraglib.settings.Settings;
+import de.ipbhalle.metfraglib.substructure.SmartsQueryToolPool;
 
 /*
  * 
@@ -17,12 +15,9 @@ public class SmartsSubstructureExclusionScoreInitialiser implements IScoreInitia
 	@Override
 	public void initScoreParameters(Settings settings) {
 		String[] excludedSmarts = (String[])settings.get(VariableNames.SCORE_SMARTS_EXCLUSION_LIST_NAME);
-		SMARTSQueryTool[] smartsQuerytools = null;
 		if(excludedSmarts != null && excludedSmarts.length != 0) {
-			smartsQuerytools = new SMARTSQueryTool[excludedSmarts.length];
-			for(int i = 0; i < excludedSmarts.length; i++) {
-				smartsQuerytools[i] = new SMARTSQueryTool(excludedSmarts[i], DefaultChemObjectBuilder.getInstance());
-			}
+			//query tools are created per worker thread
+			SmartsQueryToolPool smartsQuerytools = new SmartsQueryToolPool(excludedSmarts);
 			settings.set(VariableNames.SMARTS_SUBSTRUCTURE_EXCLUSION_SCORE_LIST_NAME, smartsQuerytools);
 		}
 	}
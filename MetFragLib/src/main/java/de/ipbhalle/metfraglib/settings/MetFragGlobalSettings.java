@@ -24,6 +24,9 @@ public class MetFragGlobalSettings extends Settings {
 		this.defaults.put(VariableNames.CONSIDER_HYDROGEN_SHIFTS_NAME, Constants.DEFAULT_CONSIDER_HYDROGEN_MASS_DIFFERENCE);
 		this.defaults.put(VariableNames.PRECURSOR_ION_MODE_NAME, Constants.DEFAULT_PRECURSOR_ION_TYPE);
 		this.defaults.put(VariableNames.NUMBER_THREADS_NAME, Constants.DEFAULT_NUMBER_THREADS);
+		this.defaults.put(VariableNames.PROCESS_PRIORITY_NAME, Constants.DEFAULT_PROCESS_PRIORITY);
+		this.defaults.put(VariableNames.STREAM_CANDIDATES_NAME, Constants.DEFAULT_STREAM_CANDIDATES);
+		this.defaults.put(VariableNames.STREAM_CANDIDATES_BUFFER_SIZE_NAME, Constants.DEFAULT_STREAM_CANDIDATES_BUFFER_SIZE);
 		this.defaults.put(VariableNames.NUMBER_OF_DIGITS_AFTER_ROUNDING_NAME, Constants.DEFAULT_NUMBER_OF_DIGITS_AFTER_ROUNDING);
 		this.defaults.put(VariableNames.SCORE_NAMES_NOT_TO_SCALE, Constants.DEFAULT_SCORE_NAMES_NOT_TO_SCALE);
 		this.defaults.put(VariableNames.PROCESS_CANDIDATES, Constants.DEFAULT_PROCESS_CANDIDATES);
@@ -57,9 +60,11 @@ public class MetFragGlobalSettings extends Settings {
 		this.defaults.put(VariableNames.LOG_LEVEL_NAME, Constants.DEFAULT_LOG_LEVEL);
 		this.defaults.put(VariableNames.MAXIMUM_NUMBER_OF_TOPDOWN_FRAGMENT_ADDED_TO_QUEUE, Constants.DEFAULT_MAXIMUM_NUMBER_OF_TOPDOWN_FRAGMENT_ADDED_TO_QUEUE);
 		this.defaults.put(VariableNames.METFRAG_UNIQUE_FRAGMENT_MATCHES, Constants.DEFAULT_METFRAG_UNIQUE_FRAGMENT_MATCHES);
+		this.defaults.put(VariableNames.PARALLEL_FRAGMENTATION_NAME, Constants.DEFAULT_PARALLEL_FRAGMENTATION);
 
 		this.defaults.put(VariableNames.USER_LOG_P_VALUE_NAME, Constants.DEFAULT_LOG_P_VALUE_NAME);
 		this.defaults.put(VariableNames.MINIMUM_COSINE_SIMILARITY_LIMIT_NAME, Constants.DEFAULT_MINIMUM_COSINE_SIMILARITY_LIMIT);
+		this.defaults.put(VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME, Constants.DEFAULT_SPECTRAL_LIBRARY_INDEX_PATH);
 
 		/*
 		 * candidate filters
@@ -91,6 +96,9 @@ public class MetFragGlobalSettings extends Settings {
 		this.defaults.put(VariableNames.LOCAL_DATABASE_SMILES_COLUMN_NAME, Constants.DEFAULT_LOCAL_DATABASE_SMILES_COLUMN);
 		this.defaults.put(VariableNames.LOCAL_DATABASE_USER_NAME, Constants.DEFAULT_LOCAL_DATABASE_USER);
 		this.defaults.put(VariableNames.LOCAL_DATABASE_PASSWORD_NAME, Constants.DEFAULT_LOCAL_DATABASE_PASSWORD);
+		this.defaults.put(VariableNames.LOCAL_DATABASE_MAXIMUM_CONNECTIONS_NAME, Constants.DEFAULT_LOCAL_DATABASE_MAXIMUM_CONNECTIONS);
+		this.defaults.put(VariableNames.SHARE_LOCAL_DATABASE_NAME, Constants.DEFAULT_SHARE_LOCAL_DATABASE);
+		this.defaults.put(VariableNames.ONLINE_DATABASE_CACHE_TIME_TO_LIVE_NAME, Constants.DEFAULT_ONLINE_DATABASE_CACHE_TIME_TO_LIVE);
 		
 		this.defaults.put(VariableNames.LOCAL_METCHEM_DATABASE_LIBRARY_NAME, Constants.DEFAULT_LOCAL_METCHEM_DATABASE_LIBRARY_NAME);
 		
@@ -0,0 +1,233 @@
+package de.ipbhalle.metfraglib.substructure;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+
+/**
+ * logical expression of SMARTS patterns like "not (( CCC or c1ccccc1 ) and S(=O)=O )"
+ * operators, brackets and SMARTS are separated by whitespace
+ *
+ * the expression is parsed once into a tree with the precedence not > xor > and > or
+ * and evaluated with short-circuiting, so SMARTS are only matched if the result depends on them
+ * each distinct SMARTS is matched at most once per candidate and the candidate structure is read only once
+ *
+ * @author cruttkie
+ *
+ */
+public class SmartsFormula {
+
+	protected final SmartsQueryToolPool smartsQuerytools;
+	protected final Node root;
+
+	/**
+	 *
+	 * @param formula
+	 * @throws IllegalArgumentException if the formula or one of its SMARTS is not valid
+	 */
+	public SmartsFormula(String formula) {
+		java.util.ArrayList<String> smarts = new java.util.ArrayList<String>();
+		Parser parser = new Parser(formula.trim().split("\\s+"), smarts);
+		this.root = parser.parseOr();
+		if(parser.hasNext()) throw new IllegalArgumentException("Unexpected '" + parser.next() + "' in SMARTS formula: " + formula);
+		this.smartsQuerytools = new SmartsQueryToolPool(smarts);
+	}
+
+	/**
+	 *
+	 * @param candidate
+	 * @return true if the structure of the candidate fulfills the formula
+	 * @throws Exception if the structure could not be read or matched
+	 */
+	public boolean matches(ICandidate candidate) throws Exception {
+		return this.root.evaluate(new Evaluation(candidate));
+	}
+
+	public int getNumberSmarts() {
+		return this.smartsQuerytools.getNumberSmarts();
+	}
+
+	/**
+	 * matches of one candidate, calculated on first request
+	 */
+	protected class Evaluation {
+
+		private final ICandidate candidate;
+		private IAtomContainer molecule;
+		//0 = not matched yet, 1 = match, -1 = no match
+		private final byte[] matches;
+
+		public Evaluation(ICandidate candidate) {
+			this.candidate = candidate;
+			this.matches = new byte[smartsQuerytools.getNumberSmarts()];
+		}
+
+		public boolean matches(int index) throws Exception {
+			if(this.matches[index] == 0) {
+				if(this.molecule == null) this.molecule = this.candidate.getAtomContainer();
+				this.matches[index] = smartsQuerytools.matches(index, this.molecule) ? (byte)1 : (byte)-1;
+			}
+			return this.matches[index] == 1;
+		}
+	}
+
+	protected static abstract class Node {
+		public abstract boolean evaluate(Evaluation evaluation) throws Exception;
+	}
+
+	protected static class SmartsNode extends Node {
+		private final int index;
+
+		public SmartsNode(int index) {
+			this.index = index;
+		}
+
+		public boolean evaluate(Evaluation evaluation) throws Exception {
+			return evaluation.matches(this.index);
+		}
+	}
+
+	protected static class NotNode extends Node {
+		private final Node operand;
+
+		public NotNode(Node operand) {
+			this.operand = operand;
+		}
+
+		public boolean evaluate(Evaluation evaluation) throws Exception {
+			return !this.operand.evaluate(evaluation);
+		}
+	}
+
+	protected static class AndNode extends Node {
+		private final Node left;
+		private final Node right;
+
+		public AndNode(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean evaluate(Evaluation evaluation) throws Exception {
+			return this.left.evaluate(evaluation) && this.right.evaluate(evaluation);
+		}
+	}
+
+	protected static class OrNode extends Node {
+		private final Node left;
+		private final Node right;
+
+		public OrNode(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean evaluate(Evaluation evaluation) throws Exception {
+			return this.left.evaluate(evaluation) || this.right.evaluate(evaluation);
+		}
+	}
+
+	protected static class XorNode extends Node {
+		private final Node left;
+		private final Node right;
+
+		public XorNode(Node left, Node right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		public boolean evaluate(Evaluation evaluation) throws Exception {
+			return this.left.evaluate(evaluation) ^ this.right.evaluate(evaluation);
+		}
+	}
+
+	/**
+	 * recursive descent parser over the whitespace separated tokens
+	 * bracket tokens like "((" are split into single brackets
+	 */
+	protected static class Parser {
+
+		private final java.util.ArrayList<String> tokens;
+		private final java.util.ArrayList<String> smarts;
+		private int position;
+
+		public Parser(String[] tokens, java.util.ArrayList<String> smarts) {
+			this.tokens = new java.util.ArrayList<String>();
+			for(int i = 0; i < tokens.length; i++) {
+				if(tokens[i].matches("\\(+") || tokens[i].matches("\\)+")) {
+					for(int k = 0; k < tokens[i].length(); k++) this.tokens.add(tokens[i].substring(k, k + 1));
+				}
+				else if(tokens[i].length() != 0) this.tokens.add(tokens[i]);
+			}
+			this.smarts = smarts;
+			this.position = 0;
+		}
+
+		public boolean hasNext() {
+			return this.position < this.tokens.size();
+		}
+
+		public String next() {
+			return this.tokens.get(this.position++);
+		}
+
+		private boolean nextIs(String operator) {
+			return this.hasNext() && this.tokens.get(this.position).equalsIgnoreCase(operator);
+		}
+
+		public Node parseOr() {
+			Node node = this.parseAnd();
+			while(this.nextIs("or")) {
+				this.position++;
+				node = new OrNode(node, this.parseAnd());
+			}
+			return node;
+		}
+
+		private Node parseAnd() {
+			Node node = this.parseXor();
+			while(this.nextIs("and")) {
+				this.position++;
+				node = new AndNode(node, this.parseXor());
+			}
+			return node;
+		}
+
+		private Node parseXor() {
+			Node node = this.parseNot();
+			while(this.nextIs("xor")) {
+				this.position++;
+				node = new XorNode(node, this.parseNot());
+			}
+			return node;
+		}
+
+		private Node parseNot() {
+			if(this.nextIs("not")) {
+				this.position++;
+				return new NotNode(this.parseNot());
+			}
+			return this.parseOperand();
+		}
+
+		private Node parseOperand() {
+			if(!this.hasNext()) throw new IllegalArgumentException("Missing SMARTS at the end of the SMARTS formula");
+			String token = this.next();
+			if(token.equals("(")) {
+				Node node = this.parseOr();
+				if(!this.hasNext() || !this.next().equals(")")) throw new IllegalArgumentException("Missing ')' in SMARTS formula");
+				return node;
+			}
+			if(token.equals(")") || token.equalsIgnoreCase("and") || token.equalsIgnoreCase("or") || token.equalsIgnoreCase("xor"))
+				throw new IllegalArgumentException("Unexpected '" + token + "' in SMARTS formula");
+			//SMARTS occurring several times are matched once
+			int index = this.smarts.indexOf(token);
+			if(index == -1) {
+				index = this.smarts.size();
+				this.smarts.add(token);
+			}
+			return new SmartsNode(index);
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.ipbhalle.metfraglib.substructure;
+
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+
+/**
+ * SMARTS query tools of a list of SMARTS patterns shared by all worker threads
+ * SMARTSQueryTool keeps the state of the last match, so each thread gets its own tools
+ * created on first use and reused for all candidates processed by this thread
+ *
+ * the tools are kept per thread by pattern independently of the pool so that long-lived worker threads
+ * hold at most MAXIMUM_NUMBER_CACHED_TOOLS tools however many pools were used
+ *
+ * the tools of the creating thread are built in the constructor so invalid patterns fail there
+ *
+ * @author cruttkie
+ *
+ */
+public class SmartsQueryToolPool {
+
+	public static final int MAXIMUM_NUMBER_CACHED_TOOLS = 256;
+
+	/*
+	 * query tools of the current thread by SMARTS pattern, access ordered
+	 */
+	private static final ThreadLocal<java.util.LinkedHashMap<String, SMARTSQueryTool>> queryTools = new ThreadLocal<java.util.LinkedHashMap<String, SMARTSQueryTool>>() {
+		@Override
+		protected java.util.LinkedHashMap<String, SMARTSQueryTool> initialValue() {
+			return new java.util.LinkedHashMap<String, SMARTSQueryTool>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(java.util.Map.Entry<String, SMARTSQueryTool> eldest) {
+					return this.size() > MAXIMUM_NUMBER_CACHED_TOOLS;
+				}
+			};
+		}
+	};
+
+	protected final String[] smarts;
+
+	public SmartsQueryToolPool(String[] smarts) {
+		this.smarts = smarts.clone();
+		for(int i = 0; i < this.smarts.length; i++) getQueryTool(this.smarts[i]);
+	}
+
+	public SmartsQueryToolPool(java.util.List<String> smarts) {
+		this(smarts.toArray(new String[smarts.size()]));
+	}
+
+	/**
+	 *
+	 * @param index
+	 * @param molecule
+	 * @return true if the molecule contains the SMARTS pattern at the given index
+	 * @throws CDKException
+	 */
+	public boolean matches(int index, IAtomContainer molecule) throws CDKException {
+		return getQueryTool(this.smarts[index]).matches(molecule);
+	}
+
+	public int getNumberSmarts() {
+		return this.smarts.length;
+	}
+
+	public String getSmarts(int index) {
+		return this.smarts[index];
+	}
+
+	protected static SMARTSQueryTool getQueryTool(String smarts) {
+		java.util.LinkedHashMap<String, SMARTSQueryTool> threadQueryTools = queryTools.get();
+		SMARTSQueryTool queryTool = threadQueryTools.get(smarts);
+		if(queryTool == null) {
+			queryTool = new SMARTSQueryTool(smarts, DefaultChemObjectBuilder.getInstance());
+			threadQueryTools.put(smarts, queryTool);
+		}
+		return queryTool;
+	}
+
+}
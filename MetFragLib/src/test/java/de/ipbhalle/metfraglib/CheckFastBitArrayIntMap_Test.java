@@ -0,0 +1,77 @@
+package de.ipbhalle.metfraglib;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CheckFastBitArrayIntMap_Test {
+
+	private final int NUMBER_FRAGMENTS = 200000;
+
+	/*
+	 * fragment dedup as done before by TopDownFragmenterAssignerScorer
+	 */
+	private boolean wasAlreadyGeneratedByString(java.util.Hashtable<String, Integer> bitArrayToFragment, FastBitArray atoms, int treeDepth) {
+		String currentHash = atoms.toString();
+		Integer minimalTreeDepth = bitArrayToFragment.get(currentHash);
+		if(minimalTreeDepth == null) {
+			bitArrayToFragment.put(currentHash, treeDepth);
+			return false;
+		}
+		return minimalTreeDepth < treeDepth;
+	}
+
+	private boolean wasAlreadyGeneratedByIntMap(FastBitArrayIntMap bitArrayToFragment, FastBitArray atoms, int treeDepth) {
+		int minimalTreeDepth = bitArrayToFragment.putIfAbsent(atoms, treeDepth);
+		if(minimalTreeDepth == FastBitArrayIntMap.NO_VALUE) return false;
+		return minimalTreeDepth < treeDepth;
+	}
+
+	/*
+	 * random atom sets with many duplicates as generated by the fragmenter
+	 */
+	private FastBitArray[] generateAtomArrays(int size, java.util.Random random) {
+		FastBitArray[] distinct = new FastBitArray[NUMBER_FRAGMENTS / 10];
+		for(int i = 0; i < distinct.length; i++) {
+			distinct[i] = new FastBitArray(size);
+			for(int k = 0; k < size; k++) if(random.nextInt(3) != 0) distinct[i].set(k);
+		}
+		FastBitArray[] atoms = new FastBitArray[NUMBER_FRAGMENTS];
+		for(int i = 0; i < atoms.length; i++) atoms[i] = distinct[random.nextInt(distinct.length)];
+		return atoms;
+	}
+
+	@Test
+	public void testSameDecisions() {
+		java.util.Random random = new java.util.Random(42);
+		//sizes within one word, at the word boundary and over several words
+		int[] sizes = {17, 64, 65, 230};
+		for(int size : sizes) {
+			FastBitArray[] atoms = this.generateAtomArrays(size, random);
+			int[] treeDepths = new int[atoms.length];
+			for(int i = 0; i < treeDepths.length; i++) treeDepths[i] = 1 + random.nextInt(3);
+
+			java.util.Hashtable<String, Integer> stringTable = new java.util.Hashtable<String, Integer>();
+			FastBitArrayIntMap intMap = new FastBitArrayIntMap();
+			for(int i = 0; i < atoms.length; i++) {
+				assertEquals("Different decision for " + atoms[i] + " at index " + i,
+					this.wasAlreadyGeneratedByString(stringTable, atoms[i], treeDepths[i]),
+					this.wasAlreadyGeneratedByIntMap(intMap, atoms[i], treeDepths[i]));
+			}
+			assertEquals(stringTable.size(), intMap.size());
+		}
+	}
+
+	@Test
+	public void testKeySize() {
+		FastBitArrayIntMap intMap = new FastBitArrayIntMap();
+		//same bits set but different sizes are different keys like their string representations
+		intMap.put(new FastBitArray("1010"), 1);
+		assertEquals(FastBitArrayIntMap.NO_VALUE, intMap.get(new FastBitArray("10100")));
+		assertEquals(1, intMap.get(new FastBitArray("1010")));
+		assertEquals(1, intMap.put(new FastBitArray("1010"), 2));
+		assertEquals(2, intMap.get(new FastBitArray("1010")));
+		assertEquals(1, intMap.size());
+	}
+
+}
@@ -0,0 +1,118 @@
+package de.ipbhalle.metfraglib;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class CheckFastBitArray_Test {
+
+	//sizes within one word, at the word boundaries and beyond the former short limit
+	private final int[] SIZES = {1, 17, 63, 64, 65, 128, 230, 40000};
+
+	private FastBitArray[] generateRandomPair(int size, java.util.Random random, BitSet[] bitSets) {
+		FastBitArray[] bitArrays = {new FastBitArray(size), new FastBitArray(size)};
+		for(int k = 0; k < bitArrays.length; k++) {
+			bitSets[k] = new BitSet(size);
+			for(int i = 0; i < size; i++) {
+				if(random.nextInt(3) == 0) {
+					bitArrays[k].set(i);
+					bitSets[k].set(i);
+				}
+			}
+		}
+		return bitArrays;
+	}
+
+	private void assertSameBits(String message, BitSet expected, FastBitArray bitArray, int size) {
+		assertEquals(message, size, bitArray.getSize());
+		for(int i = 0; i < size; i++) assertEquals(message + " at index " + i, expected.get(i), bitArray.get(i));
+		assertEquals(message, expected.cardinality(), bitArray.cardinality());
+	}
+
+	@Test
+	public void testWordOperations() {
+		java.util.Random random = new java.util.Random(42);
+		for(int size : SIZES) {
+			BitSet[] bitSets = new BitSet[2];
+			FastBitArray[] bitArrays = this.generateRandomPair(size, random, bitSets);
+
+			BitSet expected = (BitSet)bitSets[0].clone();
+			expected.andNot(bitSets[1]);
+			this.assertSameBits("getDiff", expected, bitArrays[0].getDiff(bitArrays[1]), size);
+
+			expected = (BitSet)bitSets[0].clone();
+			expected.or(bitSets[1]);
+			this.assertSameBits("merge", expected, bitArrays[0].merge(bitArrays[1]), size);
+			FastBitArray result = bitArrays[0].clone();
+			result.or(bitArrays[1]);
+			this.assertSameBits("or", expected, result, size);
+
+			expected = (BitSet)bitSets[0].clone();
+			expected.and(bitSets[1]);
+			this.assertSameBits("and", expected, bitArrays[0].and(bitArrays[1]), size);
+			result = bitArrays[0].clone();
+			result.retain(bitArrays[1]);
+			this.assertSameBits("retain", expected, result, size);
+			assertEquals(bitSets[0].intersects(bitSets[1]), bitArrays[0].intersects(bitArrays[1]));
+
+			//the original arrays stay untouched
+			this.assertSameBits("original", bitSets[0], bitArrays[0], size);
+			this.assertSameBits("original", bitSets[1], bitArrays[1], size);
+		}
+	}
+
+	@Test
+	public void testSetIndeces() {
+		java.util.Random random = new java.util.Random(7);
+		for(int size : SIZES) {
+			BitSet[] bitSets = new BitSet[2];
+			FastBitArray bitArray = this.generateRandomPair(size, random, bitSets)[0];
+			int[] setIndeces = bitArray.getSetIndeces();
+			assertEquals(bitSets[0].cardinality(), setIndeces.length);
+			int index = 0;
+			for(int i = bitArray.nextSetIndex(0); i >= 0; i = bitArray.nextSetIndex(i + 1)) {
+				assertEquals(bitSets[0].nextSetBit(index == 0 ? 0 : setIndeces[index - 1] + 1), i);
+				assertEquals(setIndeces[index++], i);
+			}
+			assertEquals(setIndeces.length, index);
+			assertEquals(bitSets[0].nextSetBit(0), bitArray.getFirstSetBit());
+			assertEquals(bitSets[0].length() - 1, bitArray.getLastSetBit());
+			assertEquals(bitSets[0].hashCode(), bitArray.hashCode());
+			assertEquals(bitSets[0], bitArray.getArray());
+		}
+	}
+
+	@Test
+	public void testEqualsAndSubsets() {
+		FastBitArray bitArray = new FastBitArray("0110100001");
+		assertEquals("0110100001", bitArray.toString());
+		assertEquals("2-3-5-10", bitArray.toStringIDs());
+		assertTrue(bitArray.equals("0110100001"));
+		assertTrue(bitArray.equals(new FastBitArray("0110100001")));
+		assertFalse(bitArray.equals(new FastBitArray("01101000010")));
+		assertTrue(bitArray.isSubset(new FastBitArray("0100100001")));
+		assertTrue(bitArray.isRealSubset(new FastBitArray("0100100001")));
+		assertFalse(bitArray.isRealSubset(new FastBitArray("0110100001")));
+		assertFalse(bitArray.isSubset(new FastBitArray("1100100001")));
+		assertEquals(0, bitArray.compareTo(new FastBitArray("0110100001")));
+		assertEquals(-1, bitArray.compareTo(new FastBitArray("0111100001")));
+		assertEquals(1, bitArray.compareTo(new FastBitArray("0100100001")));
+
+		FastBitArray allSet = new FastBitArray(70, true);
+		assertEquals(70, allSet.cardinality());
+		assertEquals(69, allSet.getLastSetBit());
+		allSet.setAll(false);
+		assertEquals(0, allSet.cardinality());
+		assertEquals(-1, allSet.nextSetIndex(0));
+
+		//more bonds than a short can address
+		FastBitArray large = new FastBitArray(70000);
+		large.set(69999);
+		large.set(33000);
+		assertEquals(70000, large.getSize());
+		assertArrayEquals(new int[] {33000, 69999}, large.getSetIndeces());
+		assertTrue(large.equals(large.clone()));
+	}
+}
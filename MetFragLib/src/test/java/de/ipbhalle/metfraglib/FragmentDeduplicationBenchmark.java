@@ -0,0 +1,151 @@
+package de.ipbhalle.metfraglib;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.fragment.AbstractTopDownBitArrayFragment;
+import de.ipbhalle.metfraglib.fragmenter.TopDownFragmenter;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.precursor.AbstractTopDownBitArrayPrecursor;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+/**
+ * standalone benchmark of the fragment dedup of TopDownFragmenterAssignerScorer.wasAlreadyGeneratedByHashtable
+ * comparing the former String keyed Hashtable with the FastBitArrayIntMap
+ *
+ * the fragments of all candidates of candidate_file_example_1.txt are generated once without dedup
+ * and then deduplicated per candidate by both implementations in alternating passes
+ * not run by the unit tests, start it after mvn test-compile with
+ *
+ * mvn -B dependency:build-classpath -Dmdep.outputFile=classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat classpath.txt) de.ipbhalle.metfraglib.FragmentDeduplicationBenchmark [tree_depth [passes]]
+ *
+ * @author cruttkie
+ *
+ */
+public class FragmentDeduplicationBenchmark {
+
+	private static final int WARMUP_PASSES = 5;
+
+	/*
+	 * dedup as done before by TopDownFragmenterAssignerScorer
+	 */
+	private static boolean wasAlreadyGeneratedByString(java.util.Hashtable<String, Integer> bitArrayToFragment, FastBitArray atoms, int treeDepth) {
+		String currentHash = atoms.toString();
+		Integer minimalTreeDepth = bitArrayToFragment.get(currentHash);
+		if(minimalTreeDepth == null) {
+			bitArrayToFragment.put(currentHash, treeDepth);
+			return false;
+		}
+		return minimalTreeDepth < treeDepth;
+	}
+
+	/*
+	 * dedup as done by TopDownFragmenterAssignerScorer
+	 */
+	private static boolean wasAlreadyGeneratedByIntMap(FastBitArrayIntMap bitArrayToFragment, FastBitArray atoms, int treeDepth) {
+		int minimalTreeDepth = bitArrayToFragment.putIfAbsent(atoms, treeDepth);
+		if(minimalTreeDepth == FastBitArrayIntMap.NO_VALUE) return false;
+		return minimalTreeDepth < treeDepth;
+	}
+
+	private static int runString(FastBitArray[][] atoms, int[][] treeDepths) {
+		int duplicates = 0;
+		for(int i = 0; i < atoms.length; i++) {
+			java.util.Hashtable<String, Integer> bitArrayToFragment = new java.util.Hashtable<String, Integer>();
+			for(int k = 0; k < atoms[i].length; k++)
+				if(wasAlreadyGeneratedByString(bitArrayToFragment, atoms[i][k], treeDepths[i][k])) duplicates++;
+		}
+		return duplicates;
+	}
+
+	private static int runIntMap(FastBitArray[][] atoms, int[][] treeDepths) {
+		int duplicates = 0;
+		for(int i = 0; i < atoms.length; i++) {
+			FastBitArrayIntMap bitArrayToFragment = new FastBitArrayIntMap();
+			for(int k = 0; k < atoms[i].length; k++)
+				if(wasAlreadyGeneratedByIntMap(bitArrayToFragment, atoms[i][k], treeDepths[i][k])) duplicates++;
+		}
+		return duplicates;
+	}
+
+	/*
+	 * InChIs of the candidate file
+	 */
+	private static java.util.ArrayList<String> readInChIs() throws Exception {
+		java.util.ArrayList<String> inchis = new java.util.ArrayList<String>();
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(FragmentDeduplicationBenchmark.class.getResourceAsStream("/candidate_file_example_1.txt"), StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			while((line = reader.readLine()) != null) {
+				if(line.startsWith("\"InChI=")) inchis.add(line.substring(1, line.indexOf('"', 1)));
+			}
+		}
+		return inchis;
+	}
+
+	/*
+	 * all fragments generated up to the given tree depth in the order of the fragmenter
+	 */
+	private static java.util.ArrayList<AbstractTopDownBitArrayFragment> generateFragments(String inchi, byte maximumTreeDepth) throws Exception {
+		TopDownPrecursorCandidate candidate = new TopDownPrecursorCandidate(inchi, "1");
+		candidate.initialisePrecursorCandidate();
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.CANDIDATE_NAME, candidate);
+		settings.set(VariableNames.MAXIMUM_TREE_DEPTH_NAME, maximumTreeDepth);
+		TopDownFragmenter fragmenter = new TopDownFragmenter(settings);
+		java.util.ArrayList<AbstractTopDownBitArrayFragment> fragments = new java.util.ArrayList<AbstractTopDownBitArrayFragment>();
+		java.util.ArrayList<AbstractTopDownBitArrayFragment> toProcess = new java.util.ArrayList<AbstractTopDownBitArrayFragment>();
+		toProcess.add(((AbstractTopDownBitArrayPrecursor)candidate.getPrecursorMolecule()).toFragment());
+		for(int depth = 1; depth <= maximumTreeDepth; depth++) {
+			java.util.ArrayList<AbstractTopDownBitArrayFragment> next = new java.util.ArrayList<AbstractTopDownBitArrayFragment>();
+			for(AbstractTopDownBitArrayFragment fragment : toProcess) next.addAll(fragmenter.getFragmentsOfNextTreeDepth(fragment));
+			fragments.addAll(next);
+			toProcess = next;
+		}
+		return fragments;
+	}
+
+	public static void main(String[] args) throws Exception {
+		byte maximumTreeDepth = args.length > 0 ? Byte.parseByte(args[0]) : 2;
+		int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		java.util.ArrayList<String> inchis = readInChIs();
+		FastBitArray[][] atoms = new FastBitArray[inchis.size()][];
+		int[][] treeDepths = new int[inchis.size()][];
+		int numberFragments = 0;
+		for(int i = 0; i < inchis.size(); i++) {
+			java.util.ArrayList<AbstractTopDownBitArrayFragment> fragments = generateFragments(inchis.get(i), maximumTreeDepth);
+			atoms[i] = new FastBitArray[fragments.size()];
+			treeDepths[i] = new int[fragments.size()];
+			for(int k = 0; k < fragments.size(); k++) {
+				atoms[i][k] = fragments.get(k).getAtomsFastBitArray();
+				treeDepths[i][k] = fragments.get(k).getTreeDepth();
+			}
+			numberFragments += fragments.size();
+		}
+		System.out.println(inchis.size() + " candidates, " + numberFragments + " fragments up to tree depth " + maximumTreeDepth);
+
+		int duplicates = runString(atoms, treeDepths);
+		if(duplicates != runIntMap(atoms, treeDepths)) throw new IllegalStateException("Both implementations find different duplicates");
+		System.out.println(duplicates + " duplicates");
+		long[] stringTimes = new long[passes];
+		long[] intMapTimes = new long[passes];
+		for(int pass = -WARMUP_PASSES; pass < passes; pass++) {
+			long start = System.nanoTime();
+			runString(atoms, treeDepths);
+			long stringTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			runIntMap(atoms, treeDepths);
+			long intMapTime = System.nanoTime() - start;
+			if(pass < 0) continue;
+			stringTimes[pass] = stringTime;
+			intMapTimes[pass] = intMapTime;
+		}
+		java.util.Arrays.sort(stringTimes);
+		java.util.Arrays.sort(intMapTimes);
+		System.out.println(String.format("String Hashtable:   median %.1f ns/fragment, min %.1f ns/fragment", (double)stringTimes[passes / 2] / numberFragments, (double)stringTimes[0] / numberFragments));
+		System.out.println(String.format("FastBitArrayIntMap: median %.1f ns/fragment, min %.1f ns/fragment", (double)intMapTimes[passes / 2] / numberFragments, (double)intMapTimes[0] / numberFragments));
+	}
+
+}
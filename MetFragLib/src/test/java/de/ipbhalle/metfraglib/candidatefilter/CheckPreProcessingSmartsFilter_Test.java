@@ -64,6 +64,41 @@ public class CheckPreProcessingSmartsFilter_Test {
 		assertTrue("FTVWIRXFELQLPI does not match 'not (( CCC or c1ccccc1 ) and S(=O)=O)'", this.candidateFilter.passesFilter(this.toTestCandidates[3]));
 	}
 
+	@Test
+	public void test4() {
+		this.settings.set(VariableNames.PRE_CANDIDATE_FILTER_SMARTS_FORMULA_NAME, "CCC xor c1ccccc1");
+		this.candidateFilter = new PreProcessingCandidateSmartsFilter(this.settings);
+
+		assertTrue("LGXPPQPBQCFQPU does not match 'CCC xor c1ccccc1'", this.candidateFilter.passesFilter(this.toTestCandidates[0]));
+		assertFalse("CNMCSJSREOGBCU matches 'CCC xor c1ccccc1'", this.candidateFilter.passesFilter(this.toTestCandidates[1]));
+		assertFalse("YTBWCCSOEYFHGQ matches 'CCC xor c1ccccc1'", this.candidateFilter.passesFilter(this.toTestCandidates[2]));
+		assertFalse("FTVWIRXFELQLPI matches 'CCC xor c1ccccc1'", this.candidateFilter.passesFilter(this.toTestCandidates[3]));
+	}
+
+	@Test
+	public void test5() {
+		//not binds stronger than or, repeated SMARTS are allowed
+		this.settings.set(VariableNames.PRE_CANDIDATE_FILTER_SMARTS_FORMULA_NAME, "NOT CCC OR S(=O)=O AND NOT c1ccccc1 OR (( CCC AND S(=O)=O ))");
+		this.candidateFilter = new PreProcessingCandidateSmartsFilter(this.settings);
+
+		assertTrue("LGXPPQPBQCFQPU does not match 'NOT CCC OR S(=O)=O AND NOT c1ccccc1 OR (( CCC AND S(=O)=O ))'", this.candidateFilter.passesFilter(this.toTestCandidates[0]));
+		assertTrue("CNMCSJSREOGBCU does not match 'NOT CCC OR S(=O)=O AND NOT c1ccccc1 OR (( CCC AND S(=O)=O ))'", this.candidateFilter.passesFilter(this.toTestCandidates[1]));
+		assertFalse("FTVWIRXFELQLPI matches 'NOT CCC OR S(=O)=O AND NOT c1ccccc1 OR (( CCC AND S(=O)=O ))'", this.candidateFilter.passesFilter(this.toTestCandidates[3]));
+	}
+
+	@Test
+	public void testIllegalArgumentException_Formula() {
+		//check correct formulas
+		String[] formulas = {"( CCC and c1ccccc1", "CCC and c1ccccc1 )", "CCC and", "CCC c1ccccc1", "or CCC", "not", "( )"};
+		for(String formula : formulas) {
+			this.settings.set(VariableNames.PRE_CANDIDATE_FILTER_SMARTS_FORMULA_NAME, formula);
+			try {
+				this.candidateFilter = new PreProcessingCandidateSmartsFilter(this.settings);
+				fail("Invalid formula accepted: " + formula);
+			} catch(IllegalArgumentException e) {}
+		}
+	}
+
 	@Test (expected=IllegalArgumentException.class)
 	public void testIllegalArgumentException_Brackets() {
 		//check correct brackets
@@ -0,0 +1,128 @@
+package de.ipbhalle.metfraglib.collection;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.fingerprint.PackedFingerprintMatrix;
+import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.score.IndividualMoNASpectralSimilarity;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+public class CheckInChIKey1ScoreMap_Test {
+
+	private ICandidate getCandidate(String inchikey1, Double score) {
+		ICandidate candidate = new TopDownPrecursorCandidate("", "MoNA");
+		if(inchikey1 != null) candidate.setProperty(VariableNames.INCHI_KEY_1_NAME, inchikey1);
+		if(score != null) candidate.setProperty("score", score);
+		return candidate;
+	}
+
+	@Test
+	public void testMaximumScores() {
+		CandidateList candidates = new CandidateList();
+		candidates.addElement(this.getCandidate("ISWSIDIOOBJBQZ", 0.4));
+		candidates.addElement(this.getCandidate("WPYMKLBDIGXBTP", 0.2));
+		candidates.addElement(this.getCandidate("ISWSIDIOOBJBQZ", 0.7));
+		candidates.addElement(this.getCandidate("ISWSIDIOOBJBQZ", 0.5));
+		candidates.addElement(this.getCandidate("LFQSCWFLJHTTHZ", null));
+		candidates.addElement(this.getCandidate(null, 0.9));
+		InChIKey1ScoreMap scores = new InChIKey1ScoreMap(candidates, "score");
+		assertEquals(2, scores.getSize());
+		assertEquals(0.7, scores.getScore("ISWSIDIOOBJBQZ"), 0.0);
+		assertEquals(0.2, scores.getScore("WPYMKLBDIGXBTP"), 0.0);
+		assertNull(scores.getScore("LFQSCWFLJHTTHZ"));
+		assertNull(scores.getScore((String)null));
+	}
+
+	@Test
+	public void testCalculatedOnce() throws Exception {
+		final InChIKey1ScoreMap scores = new InChIKey1ScoreMap();
+		final AtomicInteger numberCalculations = new AtomicInteger();
+		final InChIKey1ScoreMap.ScoreCalculation calculation = new InChIKey1ScoreMap.ScoreCalculation() {
+			public double calculate(String inchikey1) throws Exception {
+				numberCalculations.incrementAndGet();
+				Thread.sleep(50);
+				return inchikey1.length() / 100.0;
+			}
+		};
+		java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
+		java.util.List<java.util.concurrent.Future<Double>> results = new java.util.ArrayList<java.util.concurrent.Future<Double>>();
+		for(int i = 0; i < 32; i++) {
+			final String inchikey1 = i % 2 == 0 ? "ISWSIDIOOBJBQZ" : "CCO";
+			results.add(executor.submit(new java.util.concurrent.Callable<Double>() {
+				public Double call() throws Exception {
+					return scores.getScore(inchikey1, calculation);
+				}
+			}));
+		}
+		for(int i = 0; i < results.size(); i++)
+			assertEquals(i % 2 == 0 ? 0.14 : 0.03, results.get(i).get(), 0.0);
+		executor.shutdown();
+		assertEquals(2, numberCalculations.get());
+		assertEquals(0.14, scores.getScore("ISWSIDIOOBJBQZ"), 0.0);
+	}
+
+	@Test
+	public void testCandidateWithoutInChIKey1() throws Exception {
+		final AtomicInteger numberCalculations = new AtomicInteger();
+		InChIKey1ScoreMap scores = new InChIKey1ScoreMap() {
+			@Override
+			public double getScore(String inchikey1, ScoreCalculation calculation) throws Exception {
+				numberCalculations.incrementAndGet();
+				return super.getScore(inchikey1, calculation);
+			}
+		};
+		Settings settings = new Settings();
+		settings.set(VariableNames.INDIVIDUAL_MONA_SPECTRAL_SIMILARITY_SCORES_NAME, scores);
+		settings.set(VariableNames.CANDIDATE_NAME, this.getCandidate(null, null));
+		IndividualMoNASpectralSimilarity score = new IndividualMoNASpectralSimilarity(settings);
+		//scored with the default value without looking up the score
+		score.calculate();
+		assertEquals(0.0, score.getValue(), 0.0);
+		assertEquals(0, numberCalculations.get());
+		assertEquals(0, scores.getSize());
+	}
+
+	@Test
+	public void testFailedCalculation() throws Exception {
+		InChIKey1ScoreMap scores = new InChIKey1ScoreMap();
+		final AtomicInteger numberCalculations = new AtomicInteger();
+		InChIKey1ScoreMap.ScoreCalculation calculation = new InChIKey1ScoreMap.ScoreCalculation() {
+			public double calculate(String inchikey1) throws Exception {
+				if(numberCalculations.incrementAndGet() == 1) throw new java.io.IOException("not reachable");
+				return 0.5;
+			}
+		};
+		try {
+			scores.getScore("ISWSIDIOOBJBQZ", calculation);
+			fail("Failed calculation not thrown");
+		} catch(java.io.IOException e) {}
+		assertNull(scores.getScore("ISWSIDIOOBJBQZ"));
+		//failures are not stored
+		assertEquals(0.5, scores.getScore("ISWSIDIOOBJBQZ", calculation), 0.0);
+		assertEquals(0.5, scores.getScore("ISWSIDIOOBJBQZ", calculation), 0.0);
+		assertEquals(2, numberCalculations.get());
+	}
+
+	@Test
+	public void testFingerprintMatrix() {
+		PackedFingerprintMatrix matrix = new PackedFingerprintMatrix(3);
+		long[] fingerprint = new long[] {0x0fl, 0l, 0x01l};
+		matrix.setRow(0, fingerprint, 0.4);
+		matrix.setRow(1, (long[])null, 0.8);
+		matrix.setRow(2, new long[] {0x03l, 0l, 0l}, 0.2);
+		double[] similarities = matrix.calculateSimilarities(fingerprint);
+		//rows without fingerprint are not similar
+		assertArrayEquals(new double[] {1.0, 0.0, 0.4}, similarities, 0.0);
+		assertArrayEquals(new double[] {0.4, 0.8, 0.2}, matrix.getScores(), 0.0);
+		assertArrayEquals(new double[3], matrix.calculateSimilarities(TanimotoSimilarity.toPackedFingerprint(null)), 0.0);
+	}
+
+}
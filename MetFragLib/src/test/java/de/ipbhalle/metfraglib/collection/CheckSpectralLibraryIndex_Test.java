@@ -0,0 +1,206 @@
+package de.ipbhalle.metfraglib.collection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
+import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
+import de.ipbhalle.metfraglib.list.SortedSimilarityTandemMassPeakList;
+import de.ipbhalle.metfraglib.list.SortedTandemMassPeakList;
+import de.ipbhalle.metfraglib.parameter.Constants;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.peak.TandemMassPeak;
+import de.ipbhalle.metfraglib.peaklistreader.MultipleTandemMassPeakListReader;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+public class CheckSpectralLibraryIndex_Test {
+
+	private static final String PHENOL = "# InChI = InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H\n# InChIKey = ISWSIDIOOBJBQZ-UHFFFAOYSA-N\n";
+	private static final String ETHANOL = "# InChI = InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3\n# InChIKey = LFQSCWFLJHTTHZ-UHFFFAOYSA-N\n";
+	private static final String BENZOIC_ACID = "# InChI = InChI=1S/C7H6O2/c8-7(9)6-4-2-1-3-5-6/h1-5H,(H,8,9)\n# InChIKey = WPYMKLBDIGXBTP-UHFFFAOYSA-N\n";
+
+	private static final String LIBRARY =
+		"# SampleName = phenol_1\n# IonizedPrecursorMass = 95.0491\n# PrecursorIonMode = 1\n# IsPositiveIonMode = true\n" + PHENOL +
+		"39.0229 10\n51.0229 20\n65.0386 100\n77.0386 60\n\n" +
+		"# SampleName = ethanol_1\n# IonizedPrecursorMass = 47.0491\n# PrecursorIonMode = 1\n# IsPositiveIonMode = true\n" + ETHANOL +
+		"27.0229 100\n29.0386 40\n31.0178 80\n\n" +
+		"# SampleName = phenol_2\n# IonizedPrecursorMass = 95.0491\n# PrecursorIonMode = 1\n# IsPositiveIonMode = true\n" + PHENOL +
+		"65.0386 100\n65.0386 50\n67.0542 30\n\n" +
+		"# SampleName = phenol_negative\n# IonizedPrecursorMass = 93.0346\n# PrecursorIonMode = -1\n# IsPositiveIonMode = false\n" + PHENOL +
+		"65.0386 100\n\n" +
+		"# SampleName = benzoic_acid_1\n# IonizedPrecursorMass = 123.0441\n# PrecursorIonMode = 1\n# IsPositiveIonMode = true\n" + BENZOIC_ACID +
+		"77.0386 100\n105.0335 50\n\n";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Settings getSettings(double minimumCosineSimilarity) {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		settings.set(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME, 0.001);
+		settings.set(VariableNames.MINIMUM_COSINE_SIMILARITY_LIMIT_NAME, minimumCosineSimilarity);
+		return settings;
+	}
+
+	private SortedTandemMassPeakList getQuery() {
+		SortedTandemMassPeakList peakList = new SortedTandemMassPeakList(122.0368);
+		peakList.addElement(new TandemMassPeak(65.0388, 100));
+		peakList.addElement(new TandemMassPeak(77.0383, 50));
+		peakList.addElement(new TandemMassPeak(105.0335, 20));
+		peakList.addElement(new TandemMassPeak(200.0, 10));
+		peakList.calculateRelativeIntensities(Constants.DEFAULT_MAXIMUM_RELATIVE_INTENSITY);
+		return peakList;
+	}
+
+	private java.util.Hashtable<String, java.util.ArrayList<String>> getSampleNames(SpectralPeakListCollection spectralPeakLists) {
+		java.util.Hashtable<String, java.util.ArrayList<String>> sampleNames = new java.util.Hashtable<String, java.util.ArrayList<String>>();
+		for(String inchikey1 : spectralPeakLists.getInchikey1ToPeakList().keySet()) {
+			sampleNames.put(inchikey1, new java.util.ArrayList<String>());
+			for(SortedSimilarityTandemMassPeakList peakList : spectralPeakLists.getInchikey1ToPeakList().get(inchikey1))
+				sampleNames.get(inchikey1).add(peakList.getSampleName());
+		}
+		return sampleNames;
+	}
+
+	@Test
+	public void testSameSimilarities() throws Exception {
+		for(double minimumCosineSimilarity : new double[] {0.1, 0.0, -1.0}) {
+			Settings settings = this.getSettings(minimumCosineSimilarity);
+			SpectralPeakListCollection expected = new MultipleTandemMassPeakListReader(settings).readMultiple(new java.io.ByteArrayInputStream(LIBRARY.getBytes(StandardCharsets.UTF_8)));
+			SpectralLibraryIndex index = SpectralLibraryIndex.build(expected, "test");
+			assertEquals(5, index.getNumberSpectra());
+			expected.calculateSimilarities(this.getQuery());
+
+			SpectralPeakListCollection spectralPeakLists = new SpectralPeakListCollection(index, true, 0.001, 5.0, minimumCosineSimilarity);
+			spectralPeakLists.calculateSimilarities(this.getQuery());
+			assertEquals(expected.getInchikey1ToSimScore(), spectralPeakLists.getInchikey1ToSimScore());
+			assertEquals(this.getSampleNames(expected), this.getSampleNames(spectralPeakLists));
+			//both positive phenol spectra
+			assertEquals(2, this.getSampleNames(spectralPeakLists).get("ISWSIDIOOBJBQZ").size());
+			for(int i = 0; i < index.getNumberSpectra(); i++) {
+				assertEquals(expected.getPeakList(i).cosineSimilarity(this.getQuery(), 5.0, 0.001), index.cosineSimilarity(i, this.getQuery(), 5.0, 0.001), 0.0);
+				assertEquals(expected.getPeakList(i).toString(), index.getPeakList(i).toString());
+				//peak lists are created for each query and not kept by the shared index
+				assertNotSame(index.getPeakList(i), index.getPeakList(i));
+			}
+		}
+	}
+
+	@Test
+	public void testReferenceFingerprints() throws Exception {
+		Settings settings = this.getSettings(0.0);
+		SpectralPeakListCollection expected = new MultipleTandemMassPeakListReader(settings).readMultiple(new java.io.ByteArrayInputStream(LIBRARY.getBytes(StandardCharsets.UTF_8)));
+		SpectralLibraryIndex index = SpectralLibraryIndex.build(expected, "test");
+		expected.calculateSimilarities(this.getQuery());
+		SpectralPeakListCollection spectralPeakLists = new SpectralPeakListCollection(index, true, 0.001, 5.0, 0.0);
+		spectralPeakLists.calculateSimilarities(this.getQuery());
+		//fingerprints are stored with the library
+		for(int i = 0; i < index.getNumberSpectra(); i++) assertNotNull(index.getFingerprint(i));
+		for(String inchikey1 : spectralPeakLists.getInchikey1ToPeakList().keySet())
+			assertEquals(expected.getInchikey1ToPeakList().get(inchikey1).get(0).getFingerprint(), spectralPeakLists.getInchikey1ToPeakList().get(inchikey1).get(0).getFingerprint());
+		IAtomContainer candidate = MoleculeFunctions.getAtomContainerFromSMILES("OC1=CC=C(O)C=C1");
+		IBitFingerprint fingerprint = TanimotoSimilarity.calculateFingerPrint(candidate);
+		double[] similarities = spectralPeakLists.calculateReferenceSimilarities(TanimotoSimilarity.toPackedFingerprint(fingerprint));
+		double[] similarityScores = spectralPeakLists.getReferenceSimilarityScores();
+		//phenol and benzoic acid
+		assertEquals(2, similarities.length);
+		java.util.Enumeration<String> it = spectralPeakLists.getInchikey1ToPeakList().keys();
+		for(int i = 0; it.hasMoreElements(); i++) {
+			String inchikey1 = it.nextElement();
+			assertEquals(TanimotoSimilarity.calculateSimilarity(expected.getInchikey1ToPeakList().get(inchikey1).get(0).getFingerprint(), fingerprint), similarities[i], 0.0);
+			assertEquals(expected.getInchikey1ToSimScore().get(inchikey1), similarityScores[i], 0.0);
+		}
+	}
+
+	@Test
+	public void testCandidateSpectra() throws Exception {
+		SpectralPeakListCollection spectralPeakLists = new MultipleTandemMassPeakListReader(this.getSettings(0.1)).readMultiple(new java.io.ByteArrayInputStream(LIBRARY.getBytes(StandardCharsets.UTF_8)));
+		SpectralLibraryIndex index = SpectralLibraryIndex.build(spectralPeakLists, "test");
+		java.util.BitSet spectra = index.getCandidateSpectra(this.getQuery(), 5.0, 0.001);
+		//ethanol shares no peak with the query
+		assertEquals("{0, 2, 3, 4}", spectra.toString());
+	}
+
+	@Test
+	public void testStoredIndex() throws Exception {
+		File library = this.temporaryFolder.newFolder("library");
+		File libraryFile = new File(library, "library.mb");
+		java.nio.file.Files.write(libraryFile.toPath(), LIBRARY.getBytes(StandardCharsets.UTF_8));
+		File indexDirectory = new File(this.temporaryFolder.getRoot(), "index");
+		Settings settings = this.getSettings(0.1);
+		settings.set(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME, libraryFile.getAbsolutePath());
+		settings.set(VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME, indexDirectory.getAbsolutePath());
+		SpectralLibraryIndex index = SpectralLibraryIndex.getIndex(settings);
+		assertEquals(5, index.getNumberSpectra());
+		assertSame(index, SpectralLibraryIndex.getIndex(settings));
+		File[] indexFiles = indexDirectory.listFiles();
+		assertEquals(1, indexFiles.length);
+		assertEquals(index.getSignature(), SpectralLibraryIndex.open(indexFiles[0]).getSignature());
+		//changed libraries are indexed again
+		java.nio.file.Files.write(libraryFile.toPath(), (LIBRARY + LIBRARY).getBytes(StandardCharsets.UTF_8));
+		libraryFile.setLastModified(libraryFile.lastModified() + 10000);
+		SpectralLibraryIndex changedIndex = SpectralLibraryIndex.getIndex(settings);
+		assertEquals(10, changedIndex.getNumberSpectra());
+		assertNotEquals(index.getSignature(), changedIndex.getSignature());
+		//written to a new file, the outdated file is removed
+		assertEquals(1, indexDirectory.listFiles().length);
+		assertNotEquals(indexFiles[0].getName(), indexDirectory.listFiles()[0].getName());
+		//directories of .mb files
+		java.nio.file.Files.write(new File(library, "other.txt").toPath(), LIBRARY.getBytes(StandardCharsets.UTF_8));
+		settings.set(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME, library.getAbsolutePath());
+		assertEquals(10, SpectralLibraryIndex.getIndex(settings).getNumberSpectra());
+		assertEquals(2, indexDirectory.listFiles().length);
+	}
+
+	@Test
+	public void testCachedIndexes() throws Exception {
+		int maximumNumberCachedIndexes = SpectralLibraryIndex.getMaximumNumberCachedIndexes();
+		try {
+			SpectralLibraryIndex.setMaximumNumberCachedIndexes(1);
+			assertTrue(SpectralLibraryIndex.getNumberCachedIndexes() <= 1);
+			File indexDirectory = new File(this.temporaryFolder.getRoot(), "index");
+			Settings settings = this.getSettings(0.1);
+			settings.set(VariableNames.SPECTRAL_LIBRARY_INDEX_PATH_NAME, indexDirectory.getAbsolutePath());
+			File[] libraryFiles = new File[2];
+			SpectralLibraryIndex[] indexes = new SpectralLibraryIndex[2];
+			for(int i = 0; i < libraryFiles.length; i++) {
+				libraryFiles[i] = this.temporaryFolder.newFile("library_" + i + ".mb");
+				java.nio.file.Files.write(libraryFiles[i].toPath(), LIBRARY.getBytes(StandardCharsets.UTF_8));
+				settings.set(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME, libraryFiles[i].getAbsolutePath());
+				indexes[i] = SpectralLibraryIndex.getIndex(settings);
+				assertEquals(1, SpectralLibraryIndex.getNumberCachedIndexes());
+			}
+			assertSame(indexes[1], SpectralLibraryIndex.getIndex(settings));
+			//the first index was removed from the cache and is mapped again from its file
+			settings.set(VariableNames.OFFLINE_SPECTRAL_DATABASE_FILE_NAME, libraryFiles[0].getAbsolutePath());
+			SpectralLibraryIndex index = SpectralLibraryIndex.getIndex(settings);
+			assertNotSame(indexes[0], index);
+			assertEquals(indexes[0].getSignature(), index.getSignature());
+			assertEquals(2, indexDirectory.listFiles().length);
+			SpectralLibraryIndex.setMaximumNumberCachedIndexes(0);
+			assertEquals(0, SpectralLibraryIndex.getNumberCachedIndexes());
+		} finally {
+			SpectralLibraryIndex.setMaximumNumberCachedIndexes(maximumNumberCachedIndexes);
+		}
+	}
+
+	@Test
+	public void testInvalidIndex() throws Exception {
+		File file = this.temporaryFolder.newFile("invalid.msi");
+		java.nio.file.Files.write(file.toPath(), "no index".getBytes(StandardCharsets.UTF_8));
+		try {
+			SpectralLibraryIndex.open(file);
+			fail("Invalid index read");
+		} catch(java.io.IOException e) {}
+	}
+
+}
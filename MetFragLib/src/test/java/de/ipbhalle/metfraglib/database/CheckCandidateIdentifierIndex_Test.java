@@ -0,0 +1,55 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.exceptions.DatabaseIdentifierNotFoundException;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class CheckCandidateIdentifierIndex_Test {
+
+	@Test
+	public void testIndex() {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		candidates.add(new TopDownPrecursorCandidate("", "A"));
+		candidates.add(new TopDownPrecursorCandidate("", "B"));
+		candidates.add(new TopDownPrecursorCandidate("", "A"));
+		CandidateIdentifierIndex index = new CandidateIdentifierIndex();
+		//first occurrence is found like by a linear scan
+		assertEquals(0, index.indexOf(candidates, "A"));
+		assertEquals(1, index.indexOf(candidates, "B"));
+		assertEquals(-1, index.indexOf(candidates, "C"));
+		//index is rebuilt after the list changed
+		candidates.add(new TopDownPrecursorCandidate("", "C"));
+		assertEquals(3, index.indexOf(candidates, "C"));
+		java.util.ArrayList<ICandidate> reloadedCandidates = new java.util.ArrayList<ICandidate>();
+		reloadedCandidates.add(new TopDownPrecursorCandidate("", "B"));
+		assertEquals(0, index.indexOf(reloadedCandidates, "B"));
+		assertEquals(-1, index.indexOf(reloadedCandidates, "A"));
+		assertEquals(-1, index.indexOf(null, "A"));
+	}
+
+	@Test
+	public void testCandidateByIdentifier() throws Exception {
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile());
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 253.966126);
+		LocalCSVDatabase database = new LocalCSVDatabase(settings);
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers();
+		assertTrue(identifiers.size() > 0);
+		CandidateList candidateList = database.getCandidateByIdentifier(identifiers);
+		assertEquals(identifiers.size(), candidateList.getNumberElements());
+		for(int i = 0; i < identifiers.size(); i++)
+			assertEquals(identifiers.get(i), candidateList.getElement(i).getIdentifier());
+		try {
+			database.getCandidateByIdentifier("unknown|0");
+			fail();
+		} catch(DatabaseIdentifierNotFoundException e) {}
+	}
+
+}
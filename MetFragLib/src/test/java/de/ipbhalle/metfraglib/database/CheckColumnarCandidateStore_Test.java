@@ -0,0 +1,198 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+public class CheckColumnarCandidateStore_Test {
+
+	private static final int NUMBER_CANDIDATES = 300;
+	private static final int BLOCK_SIZE = 16;
+	private static final String[] FORMULAS = {"C6H6O", "C2H6O", "C10H22", "CH4O", "C7H6O2"};
+	private static final String[] INCHIS = {
+		"InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H",
+		"InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3",
+		"InChI=1S/C10H22/c1-3-5-7-9-10-8-6-4-2/h3-10H2,1-2H3",
+		"InChI=1S/CH4O/c1-2/h2H,1H3",
+		"InChI=1S/C7H6O2/c8-7(9)6-4-2-1-3-5-6/h1-5H,(H,8,9)"
+	};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File psvFile;
+
+	/*
+	 * writes a candidate file with random masses so the candidates spread over many blocks
+	 */
+	@Before
+	public void createCandidateFile() throws Exception {
+		this.psvFile = this.temporaryFolder.newFile("candidates.psv");
+		java.util.Random random = new java.util.Random(42);
+		java.io.PrintWriter writer = new java.io.PrintWriter(this.psvFile, "UTF-8");
+		writer.println("Identifier|InChI|MolecularFormula|MonoisotopicMass|CompoundName");
+		for(int i = 0; i < NUMBER_CANDIDATES; i++) {
+			int structure = random.nextInt(FORMULAS.length);
+			writer.println("C" + i + "|" + INCHIS[structure] + "|" + FORMULAS[structure] + "|" + (100.0 + random.nextInt(30000) / 100.0) + "|compound " + i);
+		}
+		writer.close();
+	}
+
+	private Settings getSettings(String databasePath) {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, databasePath);
+		return settings;
+	}
+
+	private java.util.ArrayList<ICandidate> getCandidates(IDatabase database) throws Exception {
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers();
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(String identifier : identifiers) candidates.add(database.getCandidateByIdentifier(identifier));
+		return candidates;
+	}
+
+	private void assertSameCandidates(String message, java.util.List<ICandidate> expected, java.util.List<ICandidate> candidates) {
+		assertEquals(message, expected.size(), candidates.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.get(i).getIdentifier(), candidates.get(i).getIdentifier());
+			assertEquals(message, expected.get(i).getInChI(), candidates.get(i).getInChI());
+			assertEquals(message, expected.get(i).getProperties(), candidates.get(i).getProperties());
+		}
+	}
+
+	private File convert(String databaseType, String inputPath) throws Exception {
+		File storeFile = new File(this.temporaryFolder.getRoot(), databaseType + ".mfc");
+		assertEquals(NUMBER_CANDIDATES, ColumnarCandidateStore.convert(databaseType, inputPath, storeFile.getAbsolutePath(), BLOCK_SIZE));
+		return storeFile;
+	}
+
+	@Test
+	public void testPSVConversion() throws Exception {
+		File storeFile = this.convert("LocalPSV", this.psvFile.getAbsolutePath());
+		ColumnarCandidateStore store = ColumnarCandidateStore.open(storeFile);
+		assertEquals(NUMBER_CANDIDATES, store.getNumberCandidates());
+		assertEquals((NUMBER_CANDIDATES + BLOCK_SIZE - 1) / BLOCK_SIZE, store.getNumberBlocks());
+		//blocks are sorted by mass
+		for(int i = 0; i < store.getNumberBlocks(); i++) {
+			assertTrue(store.getMinimumMass(i) <= store.getMaximumMass(i));
+			if(i != 0) assertTrue(store.getMaximumMass(i - 1) <= store.getMinimumMass(i));
+		}
+		store.close();
+
+		//all candidates
+		Settings settings = this.getSettings(this.psvFile.getAbsolutePath());
+		Settings storeSettings = this.getSettings(storeFile.getAbsolutePath());
+		storeSettings.set(VariableNames.LOCAL_DATABASE_PROPERTY_COLUMNS_NAME, new String[] {VariableNames.COMPOUND_NAME_NAME});
+		this.assertSameCandidates("all", this.getCandidates(new LocalPSVDatabase(settings)), this.getCandidates(new LocalColumnarDatabase(storeSettings)));
+
+		//mass search
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 250.0);
+		settings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 20000.0);
+		storeSettings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 250.0);
+		storeSettings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 20000.0);
+		java.util.ArrayList<ICandidate> expected = this.getCandidates(new LocalPSVDatabase(settings));
+		assertTrue(expected.size() > 0);
+		assertTrue(expected.size() < NUMBER_CANDIDATES);
+		this.assertSameCandidates("mass", expected, this.getCandidates(new LocalColumnarDatabase(storeSettings)));
+
+		//formula search
+		settings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C7H6O2");
+		storeSettings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C7H6O2");
+		expected = this.getCandidates(new LocalPSVDatabase(settings));
+		assertTrue(expected.size() > 0);
+		this.assertSameCandidates("formula", expected, this.getCandidates(new LocalColumnarDatabase(storeSettings)));
+		storeSettings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C99H2");
+		assertEquals(0, this.getCandidates(new LocalColumnarDatabase(storeSettings)).size());
+
+		//identifier search
+		storeSettings.set(VariableNames.PRECURSOR_DATABASE_IDS_NAME, new String[] {"C17", "unknown", "C5"});
+		java.util.ArrayList<ICandidate> candidates = this.getCandidates(new LocalColumnarDatabase(storeSettings));
+		assertEquals(2, candidates.size());
+		//psv identifiers carry a suffix separated by |
+		assertTrue(candidates.get(0).getIdentifier().startsWith("C5|"));
+		assertEquals("compound 5", candidates.get(0).getProperty(VariableNames.COMPOUND_NAME_NAME));
+		assertTrue(candidates.get(1).getIdentifier().startsWith("C17|"));
+	}
+
+	@Test
+	public void testMassSearchReadsOverlappingBlocks() throws Exception {
+		ColumnarCandidateStore store = ColumnarCandidateStore.open(this.convert("LocalPSV", this.psvFile.getAbsolutePath()));
+		//outside of the stored masses no block is read
+		assertEquals(0, store.getCandidatesByMass(1000.0, 1001.0).size());
+		assertEquals(0, store.getNumberInflatedColumns());
+		//a narrow window only reads the mass column of the overlapping blocks and all columns of blocks with hits
+		int numberColumns = store.getColumnNames().length;
+		double mass = store.getMinimumMass(store.getNumberBlocks() / 2);
+		java.util.ArrayList<ICandidate> candidates = store.getCandidatesByMass(mass - 0.001, mass + 0.001);
+		assertTrue(candidates.size() > 0);
+		for(ICandidate candidate : candidates)
+			assertEquals(mass, (Double)candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME), 0.001);
+		assertTrue(store.getNumberInflatedColumns() <= 2 * numberColumns);
+		//property columns besides the structure columns are only read on request
+		for(ICandidate candidate : candidates) assertNull(candidate.getProperty(VariableNames.COMPOUND_NAME_NAME));
+		int numberInflatedColumns = store.getNumberInflatedColumns();
+		assertEquals(NUMBER_CANDIDATES, store.getAllCandidates().size());
+		java.util.List<String> structureColumns = java.util.Arrays.asList(VariableNames.IDENTIFIER_NAME, VariableNames.INCHI_NAME, VariableNames.SMILES_NAME,
+				VariableNames.MOLECULAR_FORMULA_NAME, VariableNames.MONOISOTOPIC_MASS_NAME, "#InputIndex");
+		int numberStructureColumns = 0;
+		for(String name : store.getColumnNames()) if(structureColumns.contains(name)) numberStructureColumns++;
+		assertTrue(numberStructureColumns < numberColumns);
+		assertEquals(numberInflatedColumns + store.getNumberBlocks() * numberStructureColumns, store.getNumberInflatedColumns());
+		store.setPropertyColumns(new String[] {VariableNames.COMPOUND_NAME_NAME});
+		numberInflatedColumns = store.getNumberInflatedColumns();
+		candidates = store.getCandidatesByMass(mass - 0.001, mass + 0.001);
+		for(ICandidate candidate : candidates) assertNotNull(candidate.getProperty(VariableNames.COMPOUND_NAME_NAME));
+		assertTrue(store.getNumberInflatedColumns() <= numberInflatedColumns + 2 * numberColumns);
+		store.close();
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testZippedPSVConversion() throws Exception {
+		File zipFile = this.temporaryFolder.newFile("candidates.psv.zip");
+		java.util.zip.ZipOutputStream zip = new java.util.zip.ZipOutputStream(new java.io.FileOutputStream(zipFile));
+		zip.putNextEntry(new java.util.zip.ZipEntry("candidates.psv"));
+		java.nio.file.Files.copy(this.psvFile.toPath(), zip);
+		zip.closeEntry();
+		zip.close();
+		File storeFile = this.convert("LocalZippedPSV", zipFile.getAbsolutePath());
+		Settings settings = this.getSettings(zipFile.getAbsolutePath());
+		settings.remove(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME);
+		java.util.ArrayList<ICandidate> expected = this.getCandidates(new LocalZippedPSVDatabase(settings));
+		assertEquals(NUMBER_CANDIDATES, expected.size());
+		ColumnarCandidateStore store = ColumnarCandidateStore.open(storeFile);
+		store.setAllPropertyColumns();
+		this.assertSameCandidates("zipped", expected, store.getAllCandidates());
+		store.close();
+	}
+
+	@Test
+	public void testCandidatesWithoutMass() throws Exception {
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		ICandidate candidate = new TopDownPrecursorCandidate(INCHIS[0], "C0");
+		candidate.setProperty(VariableNames.MONOISOTOPIC_MASS_NAME, 94.041865);
+		candidates.add(candidate);
+		candidates.add(new TopDownPrecursorCandidate(INCHIS[1], "C1"));
+		File storeFile = new File(this.temporaryFolder.getRoot(), "candidates.mfc");
+		try {
+			ColumnarCandidateStore.write(candidates, storeFile, BLOCK_SIZE);
+			fail();
+		} catch(IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("C1"));
+		}
+		assertFalse(storeFile.exists());
+	}
+
+}
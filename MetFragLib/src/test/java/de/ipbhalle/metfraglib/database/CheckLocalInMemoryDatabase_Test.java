@@ -0,0 +1,44 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class CheckLocalInMemoryDatabase_Test {
+
+	private LocalInMemoryDatabase getDatabase() throws Exception {
+		SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+		//ethanol, benzoic acid, dimethyl ether, phenol
+		String[] smiles = {"CCO", "OC(=O)c1ccccc1", "COC", "Oc1ccccc1"};
+		IAtomContainer[] molecules = new IAtomContainer[smiles.length];
+		for(int i = 0; i < smiles.length; i++) molecules[i] = parser.parseSmiles(smiles[i]);
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.MOLECULES_IN_MEMORY, molecules);
+		return new LocalInMemoryDatabase(settings);
+	}
+
+	@Test
+	public void testMassSearch() throws Exception {
+		LocalInMemoryDatabase database = this.getDatabase();
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers(46.041865, 5.0);
+		assertEquals(java.util.Arrays.asList("1", "3"), identifiers);
+		assertEquals(java.util.Arrays.asList("2"), database.getCandidateIdentifiers(122.036779, 5.0));
+		assertEquals(java.util.Arrays.asList("4"), database.getCandidateIdentifiers(94.041865, 5.0));
+		assertEquals(0, database.getCandidateIdentifiers(200.0, 5.0).size());
+	}
+
+	@Test
+	public void testFormulaSearch() throws Exception {
+		LocalInMemoryDatabase database = this.getDatabase();
+		assertEquals(java.util.Arrays.asList("1", "3"), database.getCandidateIdentifiers("C2H6O"));
+		assertEquals(java.util.Arrays.asList("4"), database.getCandidateIdentifiers("C6H6O"));
+		assertEquals(0, database.getCandidateIdentifiers("C6H6").size());
+	}
+
+}
@@ -0,0 +1,101 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+public class CheckLocalIndexedDatabase_Test {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Settings getSettings(String databasePath) {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, databasePath);
+		//no search parameters so all candidates are read
+		settings.remove(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME);
+		return settings;
+	}
+
+	private java.util.ArrayList<ICandidate> getCandidates(IDatabase database) throws Exception {
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers();
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(String identifier : identifiers) candidates.add(database.getCandidateByIdentifier(identifier));
+		return candidates;
+	}
+
+	private void assertSameCandidates(String message, java.util.ArrayList<ICandidate> expected, java.util.ArrayList<ICandidate> candidates) {
+		assertEquals(message, expected.size(), candidates.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.get(i).getIdentifier(), candidates.get(i).getIdentifier());
+			assertEquals(message, expected.get(i).getInChI(), candidates.get(i).getInChI());
+			assertEquals(message, expected.get(i).getProperties(), candidates.get(i).getProperties());
+		}
+	}
+
+	private void checkConversion(String databaseType, String inputPath, double mass, String formula) throws Exception {
+		File indexFile = new File(this.temporaryFolder.getRoot(), databaseType + ".mfi");
+		int numberCandidates = MassSortedCandidateIndex.convert(databaseType, inputPath, indexFile.getAbsolutePath());
+		assertTrue(numberCandidates > 0);
+		assertEquals(numberCandidates, MassSortedCandidateIndex.open(indexFile).getNumberRecords());
+
+		//all candidates
+		Settings settings = this.getSettings(inputPath);
+		Settings indexSettings = this.getSettings(indexFile.getAbsolutePath());
+		this.assertSameCandidates("all", this.getCandidates(this.createDatabase(databaseType, settings)),
+				this.getCandidates(new LocalIndexedDatabase(indexSettings)));
+		assertEquals(numberCandidates, this.getCandidates(new LocalIndexedDatabase(indexSettings)).size());
+
+		//mass search
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, mass);
+		settings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		indexSettings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, mass);
+		indexSettings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		java.util.ArrayList<ICandidate> expected = this.getCandidates(this.createDatabase(databaseType, settings));
+		assertTrue(expected.size() > 0);
+		this.assertSameCandidates("mass", expected, this.getCandidates(new LocalIndexedDatabase(indexSettings)));
+
+		//formula search
+		settings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, formula);
+		indexSettings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, formula);
+		expected = this.getCandidates(this.createDatabase(databaseType, settings));
+		assertTrue(expected.size() > 0);
+		this.assertSameCandidates("formula", expected, this.getCandidates(new LocalIndexedDatabase(indexSettings)));
+		settings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C99H2");
+		indexSettings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C99H2");
+		assertEquals(0, this.getCandidates(new LocalIndexedDatabase(indexSettings)).size());
+	}
+
+	private IDatabase createDatabase(String databaseType, Settings settings) {
+		if(databaseType.equals("LocalCSV")) return new LocalCSVDatabase(settings);
+		return new LocalPSVDatabase(settings);
+	}
+
+	@Test
+	public void testCSVConversion() throws Exception {
+		this.checkConversion("LocalCSV", ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile(), 253.966126, "C9H9Cl3O2");
+	}
+
+	@Test
+	public void testPSVConversion() throws Exception {
+		String inputPath = ClassLoader.getSystemResource("candidate_file_example_2.psv").getFile();
+		File indexFile = new File(this.temporaryFolder.getRoot(), "example_2.mfi");
+		MassSortedCandidateIndex.convert("LocalPSV", inputPath, indexFile.getAbsolutePath());
+		MassSortedCandidateIndex index = MassSortedCandidateIndex.open(indexFile);
+		//records are sorted by mass
+		for(int i = 1; i < index.getNumberRecords(); i++) assertTrue(index.getMass(i - 1) <= index.getMass(i));
+		ICandidate candidate = index.getCandidate(index.getNumberRecords() / 2);
+		this.checkConversion("LocalPSV", inputPath, (Double)candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME), (String)candidate.getProperty(VariableNames.MOLECULAR_FORMULA_NAME));
+	}
+
+}
@@ -0,0 +1,249 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.exceptions.DatabaseIdentifierNotFoundException;
+import de.ipbhalle.metfraglib.interfaces.ICandidateCursor;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class CheckLocalPostgresDatabase_Test {
+
+	private static final String JDBC_URL = "jdbc:h2:mem:metfrag_compounds;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+	private static final int NUMBER_GENERATED_COMPOUNDS = 1500;
+
+	private static Connection connection;
+
+	/**
+	 * postgres database reading from an embedded h2 database and counting the queries
+	 */
+	private static class H2PostgresDatabase extends LocalPostgresDatabase {
+
+		private int numberQueries = 0;
+
+		public H2PostgresDatabase(MetFragGlobalSettings settings) {
+			super(settings);
+		}
+
+		protected String getJdbcUrl() {
+			return JDBC_URL;
+		}
+
+		protected void executeQuery(String query, Object[] parameters, ResultSetReader reader) throws SQLException {
+			this.numberQueries++;
+			super.executeQuery(query, parameters, reader);
+		}
+
+	}
+
+	@BeforeClass
+	public static void createDatabase() throws SQLException {
+		connection = DriverManager.getConnection(JDBC_URL, "sa", "");
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE compounds (cid VARCHAR(20), inchi VARCHAR(200), inchikey1 VARCHAR(14), inchikey2 VARCHAR(10), "
+				+ "smiles VARCHAR(100), formula VARCHAR(50), monoisotopicmass DOUBLE PRECISION)");
+		statement.execute("INSERT INTO compounds VALUES ('702', 'InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3', 'LFQSCWFLJHTTHZ', 'UHFFFAOYSA', 'CCO', 'C2H6O', 46.041865)");
+		statement.execute("INSERT INTO compounds VALUES ('8254', 'InChI=1S/C2H6O/c1-3-2/h1-2H3', 'LCGLNKUTAGEVQW', 'UHFFFAOYSA', 'COC', 'C2H6O', 46.041865)");
+		statement.execute("INSERT INTO compounds VALUES ('996', 'InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H', 'ISWSIDIOOBJBQZ', 'UHFFFAOYSA', 'Oc1ccccc1', 'C6H6O', 94.041865)");
+		statement.execute("INSERT INTO compounds VALUES ('it''s', 'InChI=1S/CH4O/c1-2/h2H,1H3', 'OKKJLVBELUTLKV', 'UHFFFAOYSA', 'CO', 'CH4O', 32.026215)");
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO compounds VALUES (?, 'InChI=1S/C10H22/c1-3-5-7-9-10-8-6-4-2/h3-10H2,1-2H3', 'DIOQZVSQGTUSAI', 'UHFFFAOYSA', 'CCCCCCCCCC', 'C10H22', ?)");
+		for(int i = 0; i < NUMBER_GENERATED_COMPOUNDS; i++) {
+			insert.setString(1, "G" + i);
+			insert.setDouble(2, 1000.0 + i);
+			insert.addBatch();
+		}
+		insert.executeBatch();
+		insert.close();
+		statement.close();
+	}
+
+	@AfterClass
+	public static void closeDatabase() throws SQLException {
+		JdbcConnectionPool.closeAll();
+		connection.close();
+	}
+
+	private H2PostgresDatabase getDatabase() {
+		return new H2PostgresDatabase(this.getSettings());
+	}
+
+	private MetFragGlobalSettings getSettings() {
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_USER_NAME, "sa");
+		settings.set(VariableNames.LOCAL_DATABASE_PASSWORD_NAME, "");
+		settings.set(VariableNames.LOCAL_DATABASE_INCHI_COLUMN_NAME, "inchi");
+		settings.set(VariableNames.LOCAL_DATABASE_MAXIMUM_CONNECTIONS_NAME, 2);
+		settings.set(VariableNames.STREAM_CANDIDATES_BUFFER_SIZE_NAME, 10);
+		return settings;
+	}
+
+	private java.util.ArrayList<String> readIdentifiers(ICandidateCursor cursor) {
+		java.util.ArrayList<String> identifiers = new java.util.ArrayList<String>();
+		while(cursor.hasNext()) identifiers.add(cursor.next().getIdentifier());
+		assertFalse(cursor.hasNext());
+		return identifiers;
+	}
+
+	@Test
+	public void testMassSearch() throws Exception {
+		H2PostgresDatabase database = this.getDatabase();
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers(46.041865, 5.0);
+		java.util.Collections.sort(identifiers);
+		assertEquals(java.util.Arrays.asList("702", "8254"), identifiers);
+		//only identifiers are fetched first, candidates are queried when requested
+		CandidateList candidates = database.getCandidateByIdentifier(identifiers);
+		assertEquals(2, database.numberQueries);
+		assertEquals(2, candidates.getNumberElements());
+		assertEquals("702", candidates.getElement(0).getIdentifier());
+		assertEquals("InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3", candidates.getElement(0).getInChI());
+		assertEquals("LFQSCWFLJHTTHZ", candidates.getElement(0).getProperty(VariableNames.INCHI_KEY_1_NAME));
+		assertEquals("C2H6O", candidates.getElement(0).getProperty(VariableNames.MOLECULAR_FORMULA_NAME));
+		assertEquals(46.041865, (Double)candidates.getElement(0).getProperty(VariableNames.MONOISOTOPIC_MASS_NAME), 0.0);
+		assertEquals("CCO", candidates.getElement(0).getProperty(VariableNames.SMILES_NAME));
+		assertEquals("NA", candidates.getElement(0).getProperty(VariableNames.COMPOUND_NAME_NAME));
+		assertEquals("8254", database.getCandidateByIdentifier("8254").getIdentifier());
+		assertEquals(3, database.numberQueries);
+		assertEquals(0, database.getCandidateIdentifiers(500.0, 5.0).size());
+	}
+
+	@Test
+	public void testFormulaSearch() throws Exception {
+		H2PostgresDatabase database = this.getDatabase();
+		assertEquals(java.util.Arrays.asList("996"), database.getCandidateIdentifiers("C6H6O"));
+		assertEquals(0, database.getCandidateIdentifiers("C6H6O' OR '1'='1").size());
+	}
+
+	@Test
+	public void testIdentifierSearch() throws Exception {
+		H2PostgresDatabase database = this.getDatabase();
+		java.util.ArrayList<String> identifiers = new java.util.ArrayList<String>();
+		for(int i = NUMBER_GENERATED_COMPOUNDS - 1; i >= 0; i--) identifiers.add("G" + i);
+		identifiers.add("it's");
+		identifiers.add("unknown");
+		CandidateList candidates = database.getCandidateByIdentifier(identifiers);
+		//identifiers are queried in chunks and returned in the given order
+		assertEquals(NUMBER_GENERATED_COMPOUNDS + 1, candidates.getNumberElements());
+		assertEquals(2, database.numberQueries);
+		for(int i = 0; i < candidates.getNumberElements(); i++)
+			assertEquals(identifiers.get(i), candidates.getElement(i).getIdentifier());
+		try {
+			database.getCandidateByIdentifier("unknown");
+			fail();
+		} catch(DatabaseIdentifierNotFoundException e) {}
+	}
+
+	@Test
+	public void testCandidateCursor() throws Exception {
+		//mass search over the generated compounds from 1000 to 1500
+		MetFragGlobalSettings settings = this.getSettings();
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 1250.0);
+		settings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 200000.0);
+		H2PostgresDatabase database = new H2PostgresDatabase(settings);
+		java.util.ArrayList<String> identifiers = this.readIdentifiers(database.getCandidateCursor());
+		assertEquals(501, identifiers.size());
+		assertEquals(database.getCandidateIdentifiers(1250.0, 200000.0), identifiers);
+		//formula search takes precedence over the mass
+		settings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C2H6O");
+		ICandidateCursor cursor = new H2PostgresDatabase(settings).getCandidateCursor();
+		assertTrue(cursor.hasNext());
+		assertEquals("InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3", cursor.next().getInChI());
+		assertEquals("C2H6O", cursor.next().getProperty(VariableNames.MOLECULAR_FORMULA_NAME));
+		assertFalse(cursor.hasNext());
+		//identifiers take precedence over the formula and are queried in chunks
+		String[] queriedIdentifiers = new String[NUMBER_GENERATED_COMPOUNDS + 2];
+		for(int i = 0; i < NUMBER_GENERATED_COMPOUNDS; i++) queriedIdentifiers[i] = "G" + i;
+		queriedIdentifiers[NUMBER_GENERATED_COMPOUNDS] = "it's";
+		queriedIdentifiers[NUMBER_GENERATED_COMPOUNDS + 1] = "unknown";
+		settings.set(VariableNames.PRECURSOR_DATABASE_IDS_NAME, queriedIdentifiers);
+		identifiers = this.readIdentifiers(new H2PostgresDatabase(settings).getCandidateCursor());
+		assertEquals(NUMBER_GENERATED_COMPOUNDS + 1, identifiers.size());
+		assertEquals(new java.util.HashSet<String>(java.util.Arrays.asList(queriedIdentifiers).subList(0, NUMBER_GENERATED_COMPOUNDS + 1)),
+				new java.util.HashSet<String>(identifiers));
+		//no search parameters
+		settings = this.getSettings();
+		settings.remove(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME);
+		assertFalse(new H2PostgresDatabase(settings).getCandidateCursor().hasNext());
+	}
+
+	@Test(timeout = 60000)
+	public void testCandidateCursorReleasesConnection() throws Exception {
+		MetFragGlobalSettings settings = this.getSettings();
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 1250.0);
+		settings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 200000.0);
+		H2PostgresDatabase database = new H2PostgresDatabase(settings);
+		//cursors read to the end and closed early both hand back their connection
+		for(int i = 0; i < 3; i++) {
+			this.readIdentifiers(database.getCandidateCursor());
+			ICandidateCursor first = database.getCandidateCursor();
+			ICandidateCursor second = database.getCandidateCursor();
+			assertNotNull(first.next());
+			assertNotNull(second.next());
+			first.close();
+			second.close();
+			assertFalse(first.hasNext());
+			first.close();
+		}
+		//blocks if a cursor kept its connection
+		JdbcConnectionPool pool = database.getConnectionPool();
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		assertTrue(first.getAutoCommit());
+		pool.releaseConnection(first);
+		pool.releaseConnection(second);
+	}
+
+	@Test
+	public void testConnectionPool() throws Exception {
+		JdbcConnectionPool pool = this.getDatabase().getConnectionPool();
+		assertSame(pool, this.getDatabase().getConnectionPool());
+		assertEquals(2, pool.getMaximumConnections());
+		final H2PostgresDatabase database = this.getDatabase();
+		Thread[] threads = new Thread[8];
+		final java.util.concurrent.atomic.AtomicInteger numberFound = new java.util.concurrent.atomic.AtomicInteger();
+		for(int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for(int k = 0; k < 20; k++) {
+						java.util.ArrayList<String> identifiers = new java.util.ArrayList<String>();
+						identifiers.add("996");
+						numberFound.addAndGet(database.queryCandidatesByIdentifiers(identifiers).getNumberElements());
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for(int i = 0; i < threads.length; i++) threads[i].join();
+		assertEquals(threads.length * 20, numberFound.get());
+		assertTrue(pool.getNumberIdleConnections() <= 2);
+		//rows of a plain query are read while the result is open and the connection is released afterwards
+		final java.util.ArrayList<String> cids = new java.util.ArrayList<String>();
+		assertTrue(database.submitQuery("SELECT cid FROM compounds WHERE cid = '996'", new AbstractLocalDatabase.ResultSetReader() {
+			public void read(ResultSet resultSet) throws SQLException {
+				cids.add(resultSet.getString("cid"));
+			}
+		}));
+		assertEquals(1, cids.size());
+		assertEquals("996", cids.get(0));
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+		assertNotSame(first, second);
+		ResultSet resultSet = first.createStatement().executeQuery("SELECT 1");
+		assertTrue(resultSet.next());
+		resultSet.close();
+		pool.releaseConnection(first);
+		pool.releaseConnection(second);
+	}
+
+}
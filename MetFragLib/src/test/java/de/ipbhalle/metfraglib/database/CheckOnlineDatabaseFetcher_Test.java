@@ -0,0 +1,193 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.ipbhalle.metfraglib.additionals.MathTools;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.CandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+/**
+ * runs the PubChem database against a local stand-in server
+ */
+public class CheckOnlineDatabaseFetcher_Test {
+
+	private static final String[] CSV_LINES = {
+		"996,\"InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H\",1.5,\"ISWSIDIOOBJBQZ-UHFFFAOYSA-N\",\"C6H6O\",0,\"C1=CC=C(C=C1)O\",94.041865,\"phenol\"",
+		"702,\"InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3\",-0.1,\"LFQSCWFLJHTTHZ-UHFFFAOYSA-N\",\"C2H6O\",0,\"CCO\",46.041865,\"ethanol\""
+	};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer server;
+	private java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger> hits;
+
+	@Before
+	public void setUp() throws Exception {
+		this.hits = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger>();
+		this.server = HttpServer.create(new java.net.InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws java.io.IOException {
+				String path = exchange.getRequestURI().getPath();
+				hits.putIfAbsent(path, new java.util.concurrent.atomic.AtomicInteger());
+				int hit = hits.get(path).incrementAndGet();
+				String body = null;
+				if(path.equals("/entrez/eutils/esearch.fcgi"))
+					body = "{\"esearchresult\": {\"idlist\": [\"996\", \"702\"]}}";
+				else if(path.equals("/rest/pug/compound/formula/C6H6O/TXT"))
+					body = "Status: 202\nListKey: 4711\n";
+				//first poll is still running
+				else if(path.equals("/rest/pug/compound/listkey/4711/cids/TXT"))
+					body = hit == 1 ? "Your request is running\n" : "996\n";
+				else if(path.startsWith("/rest/pug/compound/cid/") && path.endsWith("/CSV")) {
+					StringBuilder csv = new StringBuilder("\"CID\",\"InChI\",\"XLogP\",\"InChIKey\",\"MolecularFormula\",\"IsotopeAtomCount\",\"IsomericSMILES\",\"MonoisotopicMass\",\"IUPACName\"\n");
+					for(String cid : path.split("/")[5].split(","))
+						for(String line : CSV_LINES)
+							if(line.startsWith(cid + ",")) csv.append(line).append("\n");
+					body = csv.toString();
+				}
+				byte[] response = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(body == null ? 404 : 200, response.length == 0 ? -1 : response.length);
+				exchange.getResponseBody().write(response);
+				exchange.close();
+			}
+		});
+		this.server.start();
+	}
+
+	@After
+	public void tearDown() {
+		this.server.stop(0);
+	}
+
+	private Settings getSettings(File cacheDirectory) {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.ONLINE_DATABASE_CACHE_PATH_NAME, cacheDirectory.getAbsolutePath());
+		settings.set(VariableNames.ONLINE_DATABASE_STAND_IN_URL_NAME, "http://localhost:" + this.server.getAddress().getPort());
+		return settings;
+	}
+
+	private int getNumberHits() {
+		int numberHits = 0;
+		for(java.util.concurrent.atomic.AtomicInteger hit : this.hits.values()) numberHits += hit.get();
+		return numberHits;
+	}
+
+	@Test
+	public void testRepeatedMassSearch() throws Exception {
+		File cacheDirectory = this.temporaryFolder.newFolder("cache");
+		for(int run = 0; run < 2; run++) {
+			OnlinePubChemDatabase database = new OnlinePubChemDatabase(this.getSettings(cacheDirectory));
+			java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers(94.0419, 5.0);
+			assertEquals(java.util.Arrays.asList("996", "702"), identifiers);
+			CandidateList candidates = database.getCandidateByIdentifier(identifiers);
+			assertEquals(2, candidates.getNumberElements());
+			ICandidate candidate = candidates.getElement(0);
+			assertEquals("996", candidate.getIdentifier());
+			assertEquals("ISWSIDIOOBJBQZ", candidate.getProperty(VariableNames.INCHI_KEY_1_NAME));
+			assertEquals(94.041865, (Double)candidate.getProperty(VariableNames.MONOISOTOPIC_MASS_NAME), 1e-9);
+			assertEquals("C2H6O", candidates.getElement(1).getProperty(VariableNames.MOLECULAR_FORMULA_NAME));
+			//one request for the mass and one for both records
+			assertEquals(2, this.getNumberHits());
+		}
+		//responses persist for a new fetcher on the same directory
+		OnlineDatabaseFetcher fetcher = new OnlineDatabaseFetcher(new FileResponseCache(cacheDirectory, 60000), "http://localhost:" + this.server.getAddress().getPort());
+		double mzabs = MathTools.calculateAbsoluteDeviation(94.0419, 5.0);
+		assertNotNull(fetcher.get("https://EUTILS.ncbi.nlm.nih.gov/entrez/eutils/esearch.fcgi?term=" + (94.0419 - mzabs) + "[MIMass]:" + (94.0419 + mzabs) + "[MIMass]&retmode=json&db=pccompound&retmax=100000", null));
+		assertEquals(0, fetcher.getNumberRequests());
+	}
+
+	@Test
+	public void testRepeatedFormulaSearch() throws Exception {
+		File cacheDirectory = this.temporaryFolder.newFolder("cache");
+		for(int run = 0; run < 2; run++) {
+			OnlinePubChemDatabase database = new OnlinePubChemDatabase(this.getSettings(cacheDirectory));
+			assertEquals(java.util.Arrays.asList("996"), database.getCandidateIdentifiers("C6H6O"));
+			//list key and two polls
+			assertEquals(3, this.getNumberHits());
+		}
+		//a cid not found is cached as well
+		OnlinePubChemDatabase database = new OnlinePubChemDatabase(this.getSettings(cacheDirectory));
+		assertEquals(1, database.getCandidateIdentifiers(new String[] {"996", "123"}).size());
+		assertTrue(database.getCandidateIdentifiers(new String[] {"123"}).isEmpty());
+		assertEquals(4, this.getNumberHits());
+	}
+
+	@Test
+	public void testConcurrentBatches() throws Exception {
+		final OnlineDatabaseFetcher fetcher = new OnlineDatabaseFetcher(new FileResponseCache(this.temporaryFolder.newFolder("cache"), 60000), null);
+		final java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger> requests = new java.util.concurrent.ConcurrentHashMap<String, java.util.concurrent.atomic.AtomicInteger>();
+		final OnlineDatabaseFetcher.BatchRequest request = new OnlineDatabaseFetcher.BatchRequest() {
+			public java.util.Map<String, String> run(java.util.List<String> identifiers) throws java.io.IOException {
+				assertTrue(identifiers.size() <= 3);
+				java.util.HashMap<String, String> values = new java.util.HashMap<String, String>();
+				for(String identifier : identifiers) {
+					requests.putIfAbsent(identifier, new java.util.concurrent.atomic.AtomicInteger());
+					requests.get(identifier).incrementAndGet();
+					//odd identifiers are not found
+					if(Integer.parseInt(identifier) % 2 == 0) values.put(identifier, "value" + identifier);
+				}
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {}
+				return values;
+			}
+		};
+		java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(4);
+		java.util.ArrayList<java.util.concurrent.Future<java.util.HashMap<String, String>>> results = new java.util.ArrayList<java.util.concurrent.Future<java.util.HashMap<String, String>>>();
+		for(int i = 0; i < 8; i++) {
+			final java.util.ArrayList<String> identifiers = new java.util.ArrayList<String>();
+			for(int k = i; k < i + 10; k++) identifiers.add(String.valueOf(k));
+			results.add(executor.submit(new java.util.concurrent.Callable<java.util.HashMap<String, String>>() {
+				public java.util.HashMap<String, String> call() throws Exception {
+					return fetcher.getBatch("endpoint", identifiers, 3, request);
+				}
+			}));
+		}
+		for(int i = 0; i < results.size(); i++) {
+			java.util.HashMap<String, String> values = results.get(i).get();
+			assertEquals(5, values.size());
+			for(int k = i; k < i + 10; k++)
+				assertEquals(k % 2 == 0 ? "value" + k : null, values.get(String.valueOf(k)));
+		}
+		executor.shutdown();
+		assertEquals(17, requests.size());
+		for(java.util.concurrent.atomic.AtomicInteger count : requests.values()) assertEquals(1, count.get());
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		File cacheDirectory = this.temporaryFolder.newFolder("cache");
+		byte[] response = "response".getBytes(StandardCharsets.UTF_8);
+		new FileResponseCache(cacheDirectory, 60000).put("key", response);
+		assertArrayEquals(response, new FileResponseCache(cacheDirectory, 60000).get("key"));
+		assertNull(new FileResponseCache(cacheDirectory, 60000).get("other key"));
+		//expired responses are removed
+		assertNull(new FileResponseCache(cacheDirectory, -1).get("key"));
+		assertNull(new FileResponseCache(cacheDirectory, 60000).get("key"));
+		assertEquals(0, cacheDirectory.listFiles().length);
+	}
+
+	@Test
+	public void testNormalizeUrl() {
+		assertEquals("https://pubchem.ncbi.nlm.nih.gov/rest/pug/compound/cid/CSV?a=1&b=2", OnlineDatabaseFetcher.normalizeUrl("HTTPS://PubChem.ncbi.nlm.nih.gov/rest/pug/compound/cid/CSV?b=2&a=1"));
+		assertEquals("http://localhost:8080/Path", new OnlineDatabaseFetcher(null, "http://localhost:8080/").resolve("https://example.org/Path"));
+	}
+
+}
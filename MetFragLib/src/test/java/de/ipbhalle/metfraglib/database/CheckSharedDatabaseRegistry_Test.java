@@ -0,0 +1,160 @@
+package de.ipbhalle.metfraglib.database;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.interfaces.IDatabase;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+import de.ipbhalle.metfraglib.settings.Settings;
+
+public class CheckSharedDatabaseRegistry_Test {
+
+	private static final int NUMBER_CANDIDATES = 50;
+	private static final String[] FORMULAS = {"C6H6O", "C2H6O", "C10H22"};
+	private static final String[] INCHIS = {
+		"InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H",
+		"InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3",
+		"InChI=1S/C10H22/c1-3-5-7-9-10-8-6-4-2/h3-10H2,1-2H3"
+	};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File psvFile;
+	private SharedDatabaseRegistry registry;
+	private long memoryBudget;
+
+	@Before
+	public void setUp() throws Exception {
+		this.psvFile = this.temporaryFolder.newFile("candidates.psv");
+		java.io.PrintWriter writer = new java.io.PrintWriter(this.psvFile, "UTF-8");
+		writer.println("Identifier|InChI|MolecularFormula|MonoisotopicMass");
+		for(int i = 0; i < NUMBER_CANDIDATES; i++)
+			writer.println("C" + i + "|" + INCHIS[i % 3] + "|" + FORMULAS[i % 3] + "|" + (100.0 + i));
+		writer.close();
+		this.registry = SharedDatabaseRegistry.getInstance();
+		this.memoryBudget = this.registry.getMemoryBudget();
+		this.registry.clear();
+	}
+
+	@After
+	public void tearDown() {
+		this.registry.setMemoryBudget(this.memoryBudget);
+		this.registry.clear();
+	}
+
+	private Settings getSettings() {
+		Settings settings = new MetFragGlobalSettings();
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, this.psvFile.getAbsolutePath());
+		settings.set(VariableNames.METFRAG_DATABASE_TYPE_NAME, "LocalPSV");
+		return settings;
+	}
+
+	private java.util.ArrayList<ICandidate> getCandidates(IDatabase database) throws Exception {
+		java.util.ArrayList<String> identifiers = database.getCandidateIdentifiers();
+		java.util.ArrayList<ICandidate> candidates = new java.util.ArrayList<ICandidate>();
+		for(String identifier : identifiers) candidates.add(database.getCandidateByIdentifier(identifier));
+		return candidates;
+	}
+
+	private void assertSameCandidates(String message, java.util.List<ICandidate> expected, java.util.List<ICandidate> candidates) {
+		assertEquals(message, expected.size(), candidates.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(message, expected.get(i).getIdentifier(), candidates.get(i).getIdentifier());
+			assertEquals(message, expected.get(i).getProperties(), candidates.get(i).getProperties());
+		}
+	}
+
+	@Test
+	public void testSearchesEqualFileDatabase() throws Exception {
+		Settings settings = this.getSettings();
+		this.assertSameCandidates("all", this.getCandidates(new LocalPSVDatabase(settings)), this.getCandidates(new SharedLocalDatabase(settings)));
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 120.0);
+		settings.set(VariableNames.DATABASE_RELATIVE_MASS_DEVIATION_NAME, 50000.0);
+		java.util.ArrayList<ICandidate> expected = this.getCandidates(new LocalPSVDatabase(settings));
+		assertTrue(expected.size() > 0 && expected.size() < NUMBER_CANDIDATES);
+		this.assertSameCandidates("mass", expected, this.getCandidates(new SharedLocalDatabase(settings)));
+		settings.set(VariableNames.PRECURSOR_MOLECULAR_FORMULA_NAME, "C2H6O");
+		expected = this.getCandidates(new LocalPSVDatabase(settings));
+		assertTrue(expected.size() > 0);
+		this.assertSameCandidates("formula", expected, this.getCandidates(new SharedLocalDatabase(settings)));
+		settings.set(VariableNames.PRECURSOR_DATABASE_IDS_NAME, new String[] {"C7", "C3"});
+		expected = this.getCandidates(new LocalPSVDatabase(settings));
+		assertEquals(2, expected.size());
+		this.assertSameCandidates("identifier", expected, this.getCandidates(new SharedLocalDatabase(settings)));
+		//the file was read only once
+		assertEquals(1, this.registry.getNumberLoads());
+	}
+
+	@Test
+	public void testQueriesGetOwnCandidates() throws Exception {
+		Settings settings = this.getSettings();
+		ICandidate first = this.getCandidates(new SharedLocalDatabase(settings)).get(0);
+		first.setProperty(VariableNames.FINAL_SCORE_COLUMN_NAME, 1.0);
+		ICandidate second = this.getCandidates(new SharedLocalDatabase(settings)).get(0);
+		assertNotSame(first, second);
+		assertFalse(second.hasDefinedProperty(VariableNames.FINAL_SCORE_COLUMN_NAME));
+	}
+
+	@Test
+	public void testModifiedFileIsReadAgain() throws Exception {
+		SharedCandidateIndex index = this.registry.acquire("LocalPSV", this.psvFile.getAbsolutePath());
+		assertSame(index, this.registry.acquire("LocalPSV", this.psvFile.getAbsolutePath()));
+		this.registry.release(index);
+		this.registry.release(index);
+		assertTrue(this.psvFile.setLastModified(this.psvFile.lastModified() - 10000));
+		SharedCandidateIndex changedIndex = this.registry.acquire("LocalPSV", this.psvFile.getAbsolutePath());
+		assertNotSame(index, changedIndex);
+		this.registry.release(changedIndex);
+		assertEquals(2, this.registry.getNumberLoads());
+	}
+
+	@Test
+	public void testEvictionKeepsUsedEntries() throws Exception {
+		this.registry.setMemoryBudget(0);
+		SharedCandidateIndex index = this.registry.acquire("LocalPSV", this.psvFile.getAbsolutePath());
+		//used entries exceed the budget but stay loaded
+		assertEquals(1, this.registry.getNumberEntries());
+		assertSame(index, this.registry.acquire("LocalPSV", this.psvFile.getAbsolutePath()));
+		this.registry.release(index);
+		assertEquals(1, this.registry.getNumberEntries());
+		this.registry.release(index);
+		assertEquals(0, this.registry.getNumberEntries());
+		assertEquals(0, this.registry.getSize());
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentAcquireLoadsOnce() throws Exception {
+		final int numberThreads = 8;
+		final java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+		java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(numberThreads);
+		java.util.ArrayList<java.util.concurrent.Future<SharedCandidateIndex>> futures = new java.util.ArrayList<java.util.concurrent.Future<SharedCandidateIndex>>();
+		for(int i = 0; i < numberThreads; i++) {
+			futures.add(executor.submit(new java.util.concurrent.Callable<SharedCandidateIndex>() {
+				public SharedCandidateIndex call() throws Exception {
+					start.await();
+					return registry.acquire("LocalPSV", psvFile.getAbsolutePath());
+				}
+			}));
+		}
+		start.countDown();
+		SharedCandidateIndex index = futures.get(0).get();
+		for(java.util.concurrent.Future<SharedCandidateIndex> future : futures) {
+			assertSame(index, future.get());
+			this.registry.release(future.get());
+		}
+		executor.shutdown();
+		assertEquals(1, this.registry.getNumberLoads());
+		assertEquals(NUMBER_CANDIDATES, index.getNumberCandidates());
+	}
+
+}
@@ -26,6 +26,31 @@ public class TanimotoSimilarityTest {
 		assertThat(bitStringOfFingerprint, is(this.oldFingerprintString));
 	}
 	
+	@Test
+	public void testPackedSimilarities() throws Exception {
+		final String[] smiles = {"CN(C(=O)NC1=CC=C(C=C1)Cl)OC", "OC1=CC=CC=C1", "CCO", "OC(=O)C1=CC=CC=C1", "CN1C=NC2=C1C(=O)N(C(=O)N2C)C"};
+		final IBitFingerprint[] fingerprints = new IBitFingerprint[smiles.length];
+		final long[] packedFingerprints = new long[smiles.length * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH];
+		final int[] cardinalities = new int[smiles.length];
+		for(int i = 0; i < smiles.length; i++) {
+			final IAtomContainer molecule = MoleculeFunctions.getAtomContainerFromSMILES(smiles[i]);
+			MoleculeFunctions.prepareAtomContainer(molecule, true);
+			fingerprints[i] = TanimotoSimilarity.calculateFingerPrint(molecule);
+			final long[] packedFingerprint = TanimotoSimilarity.toPackedFingerprint(fingerprints[i]);
+			assertThat(this.toBitString(TanimotoSimilarity.fromPackedFingerprint(packedFingerprint)), is(this.toBitString(fingerprints[i])));
+			System.arraycopy(packedFingerprint, 0, packedFingerprints, i * TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH, TanimotoSimilarity.PACKED_FINGERPRINT_LENGTH);
+			cardinalities[i] = TanimotoSimilarity.getCardinality(packedFingerprint);
+		}
+		final double[] similarities = new double[smiles.length];
+		for(int i = 0; i < smiles.length; i++) {
+			TanimotoSimilarity.calculateSimilarities(TanimotoSimilarity.toPackedFingerprint(fingerprints[i]), packedFingerprints, cardinalities, similarities);
+			for(int k = 0; k < smiles.length; k++)
+				assertThat(similarities[k], is(TanimotoSimilarity.calculateSimilarity(fingerprints[k], fingerprints[i])));
+		}
+		TanimotoSimilarity.calculateSimilarities(null, packedFingerprints, cardinalities, similarities);
+		assertThat(similarities, is(new double[smiles.length]));
+	}
+	
 	private String toBitString(IBitFingerprint fp) {
 		final StringBuilder bitStringBuilder = new StringBuilder();
 		final BitSet bitSet = fp.asBitSet();
@@ -0,0 +1,63 @@
+package de.ipbhalle.metfraglib.fragment;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.precursor.BitArrayPrecursor;
+
+public class CheckFragmentMass_Test {
+
+	private BitArrayPrecursor precursor;
+
+	@Before
+	public void setUp() throws Exception {
+		TopDownPrecursorCandidate candidate = new TopDownPrecursorCandidate("InChI=1S/C12H19NO5S2/c1-12(2,3)18-11(14)13-9(8-17-20(4,15)16)10-6-5-7-19-10/h5-7,9H,8H2,1-4H3,(H,13,14)/t9-/m0/s1", "13877939");
+		candidate.initialisePrecursorCandidate();
+		this.precursor = (BitArrayPrecursor)candidate.getPrecursorMolecule();
+	}
+
+	/*
+	 * mass and hydrogens summed up over all atoms of the fragment
+	 */
+	private void checkFragment(AbstractTopDownBitArrayFragment fragment) {
+		DefaultBitArrayFragment recalculated = new DefaultBitArrayFragment(this.precursor, fragment.getAtomsFastBitArray().clone());
+		recalculated.initialiseNumberHydrogens(this.precursor);
+		assertEquals(recalculated.getMonoisotopicMass(this.precursor), fragment.getMonoisotopicMass(this.precursor), 1e-9);
+		assertEquals(recalculated.getNumberHydrogens(), fragment.getNumberHydrogens());
+	}
+
+	@Test
+	public void testIncrementalMass() {
+		AbstractTopDownBitArrayFragment root = ((de.ipbhalle.metfraglib.precursor.AbstractTopDownBitArrayPrecursor)this.precursor).toFragment();
+		int numberFragments = 0;
+		for(short i = 0; i < this.precursor.getNonHydrogenBondCount(); i++) {
+			AbstractTopDownBitArrayFragment[] fragments = root.traverseMolecule(this.precursor, i, this.precursor.getConnectedAtomIndecesOfBondIndex(i));
+			for(int k = 0; k < fragments.length; k++) {
+				this.checkFragment(fragments[k]);
+				fragments[k].setID(numberFragments + k);
+				this.checkFragment((AbstractTopDownBitArrayFragment)fragments[k].clone(this.precursor));
+				//second tree depth
+				de.ipbhalle.metfraglib.FastBitArray bonds = fragments[k].getBondsFastBitArray();
+				for(int j = bonds.nextSetIndex(0); j >= 0; j = bonds.nextSetIndex(j + 1)) {
+					AbstractTopDownBitArrayFragment[] children = fragments[k].traverseMolecule(this.precursor, (short)j, this.precursor.getConnectedAtomIndecesOfBondIndex((short)j));
+					for(int l = 0; l < children.length; l++) this.checkFragment(children[l]);
+					numberFragments += children.length;
+				}
+			}
+			numberFragments += fragments.length;
+		}
+		assertTrue(numberFragments > 0);
+	}
+
+	@Test
+	public void testMassResetOnAtomChange() {
+		DefaultBitArrayFragment fragment = this.precursor.toFragment();
+		double mass = fragment.getMonoisotopicMass(this.precursor);
+		int firstAtom = fragment.getAtomsFastBitArray().getFirstSetBit();
+		fragment.setAtomBit(firstAtom, false);
+		assertEquals(mass - this.precursor.getMassOfAtom(firstAtom), fragment.getMonoisotopicMass(this.precursor), 1e-9);
+	}
+}
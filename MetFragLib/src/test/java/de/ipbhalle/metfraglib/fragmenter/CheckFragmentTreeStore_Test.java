@@ -0,0 +1,21 @@
+package de.ipbhalle.metfraglib.fragmenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class CheckFragmentTreeStore_Test {
+
+	@Test
+	public void testFileNames() {
+		FragmentTreeStore fragmentTreeStore = new FragmentTreeStore("trees");
+		//parameters with the same hash code are stored in different files
+		String parameters1 = "de.ipbhalle.metfraglib.fragmenter.TopDownFragmenter;2;Aa";
+		String parameters2 = "de.ipbhalle.metfraglib.fragmenter.TopDownFragmenter;2;BB";
+		assertEquals(parameters1.hashCode(), parameters2.hashCode());
+		assertNotEquals(fragmentTreeStore.getFile("BSYNRYMUTXBXSQ-UHFFFAOYSA-N", parameters1), fragmentTreeStore.getFile("BSYNRYMUTXBXSQ-UHFFFAOYSA-N", parameters2));
+		assertEquals(fragmentTreeStore.getFile("BSYNRYMUTXBXSQ-UHFFFAOYSA-N", parameters1), fragmentTreeStore.getFile("BSYNRYMUTXBXSQ-UHFFFAOYSA-N", parameters1));
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.ipbhalle.metfraglib.list;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.peak.TandemMassPeak;
+
+public class CheckSortedTandemMassPeakList_Test {
+
+	private SortedTandemMassPeakList peakList;
+
+	@Before
+	public void setUp() {
+		this.peakList = new SortedTandemMassPeakList(300.0);
+		java.util.Random random = new java.util.Random(1);
+		for(int i = 0; i < 500; i++) this.peakList.addElement(new TandemMassPeak(50.0 + random.nextDouble() * 250.0, 100.0));
+		this.peakList.initialiseMassLimits(5.0, 0.001);
+	}
+
+	/*
+	 * linear search as done by walking down the peak list
+	 */
+	private int getLastIndexOfPeakByLowerMassLimitLinear(double mass, int maximumIndex) {
+		int index = maximumIndex;
+		while(index >= 0 && this.peakList.getElement(index).getLowerMassLimit() > mass) index--;
+		return index;
+	}
+
+	@Test
+	public void testLastIndexOfPeakByLowerMassLimit() {
+		java.util.Random random = new java.util.Random(2);
+		for(int i = 0; i < 10000; i++) {
+			double mass = 40.0 + random.nextDouble() * 270.0;
+			int maximumIndex = random.nextInt(this.peakList.getNumberElements());
+			assertEquals(this.getLastIndexOfPeakByLowerMassLimitLinear(mass, maximumIndex), this.peakList.getLastIndexOfPeakByLowerMassLimit(mass, maximumIndex));
+		}
+		//exact limits
+		for(int i = 0; i < this.peakList.getNumberElements(); i++) {
+			double lowerMassLimit = this.peakList.getElement(i).getLowerMassLimit();
+			assertEquals(this.getLastIndexOfPeakByLowerMassLimitLinear(lowerMassLimit, this.peakList.getNumberElements() - 1), 
+					this.peakList.getLastIndexOfPeakByLowerMassLimit(lowerMassLimit, this.peakList.getNumberElements() - 1));
+		}
+		assertEquals(-1, this.peakList.getLastIndexOfPeakByLowerMassLimit(10.0, this.peakList.getNumberElements() - 1));
+	}
+
+	@Test
+	public void testChangedMassDeviations() {
+		double mass = this.peakList.getElement(250).getMass();
+		this.peakList.initialiseMassLimits(5.0, 1.0);
+		assertEquals(this.getLastIndexOfPeakByLowerMassLimitLinear(mass - 0.5, 499), this.peakList.getLastIndexOfPeakByLowerMassLimit(mass - 0.5, 499));
+		assertEquals(mass - 1.0, this.peakList.getElement(250).getLowerMassLimit(), 0.01);
+	}
+
+	@Test
+	public void testModifiedList() {
+		java.util.Random random = new java.util.Random(3);
+		//cached limits of removed or replaced peaks must not be used
+		for(int i = 0; i < 100; i++) this.peakList.removeElement(random.nextInt(this.peakList.getNumberElements()));
+		this.peakList.setElement(0, new TandemMassPeak(10.0, 100.0));
+		java.util.ArrayList<Object> removed = new java.util.ArrayList<Object>();
+		for(int i = 0; i < 50; i++) removed.add(this.peakList.getElement(this.peakList.getNumberElements() - 1 - i));
+		this.peakList.removeAll(removed);
+		assertEquals(350, this.peakList.getNumberElements());
+		for(int i = 0; i < 1000; i++) {
+			double mass = 5.0 + random.nextDouble() * 300.0;
+			int maximumIndex = this.peakList.getNumberElements() - 1;
+			assertEquals(this.getLastIndexOfPeakByLowerMassLimitLinear(mass, maximumIndex), this.peakList.getLastIndexOfPeakByLowerMassLimit(mass, maximumIndex));
+		}
+		assertEquals(10.0, this.peakList.getElement(0).getLowerMassLimit(), 0.01);
+	}
+
+	@Test (expected=IllegalStateException.class)
+	public void testNotInitialised() {
+		SortedTandemMassPeakList peakList = new SortedTandemMassPeakList(300.0);
+		peakList.addElement(new TandemMassPeak(100.0, 100.0));
+		peakList.getLastIndexOfPeakByLowerMassLimit(100.0, 0);
+	}
+}
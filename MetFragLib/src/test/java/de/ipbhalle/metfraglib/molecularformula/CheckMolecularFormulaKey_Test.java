@@ -0,0 +1,54 @@
+package de.ipbhalle.metfraglib.molecularformula;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.exceptions.AtomTypeNotKnownFromInputListException;
+
+public class CheckMolecularFormulaKey_Test {
+
+	@Test
+	public void testEqualFormulas() throws AtomTypeNotKnownFromInputListException {
+		MolecularFormulaKey key = MolecularFormulaKey.parse("C9H11Cl3NO3PS");
+		assertEquals(key, MolecularFormulaKey.parse(" Cl3C9H11NO3PS "));
+		assertEquals(key.hashCode(), MolecularFormulaKey.parse("SPO3NCl3H11C9").hashCode());
+		assertEquals(key, MolecularFormulaKey.valueOf(new ByteMolecularFormula("C9H11Cl3NO3PS")));
+		assertEquals(3, key.getNumberOfElement("Cl"));
+		assertEquals(1, key.getNumberOfElement("N"));
+		assertEquals(0, key.getNumberOfElement("Br"));
+		//canonical string parses to the same key
+		assertEquals(key, MolecularFormulaKey.parse(key.toString()));
+	}
+
+	@Test
+	public void testDifferentFormulas() throws AtomTypeNotKnownFromInputListException {
+		MolecularFormulaKey key = MolecularFormulaKey.parse("C6H6O");
+		assertNotEquals(key, MolecularFormulaKey.parse("C6H6"));
+		assertNotEquals(key, MolecularFormulaKey.parse("C6H6O2"));
+		assertNotEquals(key, MolecularFormulaKey.parse("C6H5O"));
+		//isotopes are own elements
+		assertNotEquals(key, MolecularFormulaKey.parse("[13C]C5H6O"));
+		assertEquals(MolecularFormulaKey.parse("[13C]C5H6O"), MolecularFormulaKey.parse("C5H6O[13C]"));
+	}
+
+	@Test
+	public void testCounts() throws AtomTypeNotKnownFromInputListException {
+		//repeated elements are summed up and deuterium is counted as hydrogen
+		assertEquals(MolecularFormulaKey.parse("C2H4O2"), MolecularFormulaKey.parse("CH3COOH"));
+		assertEquals(MolecularFormulaKey.parse("C2H6O"), MolecularFormulaKey.parse("C2D6O"));
+		assertEquals(MolecularFormulaKey.parse("C60"), MolecularFormulaKey.parse("C60H0"));
+	}
+
+	@Test
+	public void testUnknownFormulas() {
+		assertNull(MolecularFormulaKey.parseOrNull("C6H6Xx"));
+		assertNull(MolecularFormulaKey.parseOrNull("C6H6+"));
+		assertNull(MolecularFormulaKey.parseOrNull(null));
+		try {
+			MolecularFormulaKey.parse("c6h6");
+			fail("Lower case formula parsed");
+		} catch (AtomTypeNotKnownFromInputListException e) {}
+	}
+
+}
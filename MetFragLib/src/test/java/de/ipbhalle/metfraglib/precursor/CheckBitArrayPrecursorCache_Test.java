@@ -0,0 +1,89 @@
+package de.ipbhalle.metfraglib.precursor;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+
+public class CheckBitArrayPrecursorCache_Test {
+
+	private final String INCHI_1 = "InChI=1S/C7H5Cl2FN2O3/c8-3-5(11)4(9)7(12-6(3)10)15-1-2(13)14/h1H2,(H2,11,12)(H,13,14)";
+	private final String INCHI_2 = "InChI=1S/C7H5Cl2FN2O3/c8-3-5(11)4(9)7(12-6(3)10)15-2(14)1-13/h13H,1H2,(H2,11,12)";
+
+	private BitArrayPrecursorCache cache;
+
+	@Before
+	public void setUp() {
+		this.cache = BitArrayPrecursorCache.getInstance();
+		this.cache.clear();
+		this.cache.setMaximumSize(BitArrayPrecursorCache.DEFAULT_MAXIMUM_SIZE);
+	}
+
+	@After
+	public void tearDown() {
+		this.cache.clear();
+		this.cache.setMaximumSize(BitArrayPrecursorCache.DEFAULT_MAXIMUM_SIZE);
+	}
+
+	private BitArrayPrecursor initialise(String inchi, String inchiKey1, String inchiKey2) throws Exception {
+		TopDownPrecursorCandidate candidate = new TopDownPrecursorCandidate(inchi, "1");
+		if(inchiKey1 != null) candidate.setProperty(VariableNames.INCHI_KEY_1_NAME, inchiKey1);
+		if(inchiKey2 != null) candidate.setProperty(VariableNames.INCHI_KEY_2_NAME, inchiKey2);
+		candidate.initialisePrecursorCandidate();
+		return (BitArrayPrecursor)candidate.getPrecursorMolecule();
+	}
+
+	private void assertSameGraph(BitArrayPrecursor expected, BitArrayPrecursor precursor) {
+		assertEquals(expected.getNonHydrogenBondCount(), precursor.getNonHydrogenBondCount());
+		assertArrayEquals(expected.atomAdjacencyList, precursor.atomAdjacencyList);
+		assertEquals(expected.aromaticBonds.toString(), precursor.aromaticBonds.toString());
+		assertEquals(expected.ringBondToBelongingRingBondIndeces.length, precursor.ringBondToBelongingRingBondIndeces.length);
+		for(int i = 0; i < expected.ringBondToBelongingRingBondIndeces.length; i++)
+			assertTrue(expected.ringBondToBelongingRingBondIndeces[i].equals(precursor.ringBondToBelongingRingBondIndeces[i]));
+		for(short i = 0; i < expected.getNonHydrogenAtomCount(); i++)
+			assertArrayEquals(expected.getConnectedAtomIndecesOfAtomIndex(i), precursor.getConnectedAtomIndecesOfAtomIndex(i));
+		assertEquals(expected.getNeutralMonoisotopicMass(), precursor.getNeutralMonoisotopicMass(), 0.0);
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		BitArrayPrecursor uncached = this.initialise(INCHI_1, null, null);
+		assertEquals(0, this.cache.getSize());
+		BitArrayPrecursor first = this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		assertEquals(1, this.cache.getNumberMisses());
+		BitArrayPrecursor second = this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		assertEquals(1, this.cache.getNumberHits());
+		assertSame(first.atomAdjacencyList, second.atomAdjacencyList);
+		this.assertSameGraph(uncached, first);
+		this.assertSameGraph(uncached, second);
+	}
+
+	@Test
+	public void testDifferentStructureSameKey() throws Exception {
+		this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		//a different structure under the same key must not take over the cached graph
+		BitArrayPrecursor precursor = this.initialise(INCHI_2, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		assertEquals(0, this.cache.getNumberHits());
+		assertEquals(2, this.cache.getNumberMisses());
+		this.assertSameGraph(this.initialise(INCHI_2, null, null), precursor);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		this.cache.setMaximumSize(1);
+		this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		this.initialise(INCHI_2, "YIKYXZCEJLSXGO", "UHFFFAOYSA");
+		assertEquals(1, this.cache.getSize());
+		this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		assertEquals(0, this.cache.getNumberHits());
+		this.initialise(INCHI_1, "MEFQWPUMEMWTJP", "UHFFFAOYSA");
+		assertEquals(1, this.cache.getNumberHits());
+		this.cache.setMaximumSize(0);
+		assertFalse(this.cache.isEnabled());
+		assertEquals(0, this.cache.getSize());
+	}
+}
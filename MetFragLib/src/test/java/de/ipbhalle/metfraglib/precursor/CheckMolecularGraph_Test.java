@@ -0,0 +1,123 @@
+package de.ipbhalle.metfraglib.precursor;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.ipbhalle.metfraglib.candidate.TopDownPrecursorCandidate;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+
+public class CheckMolecularGraph_Test {
+
+	private final String[] INCHIS = {
+		//aromatic ring with substituents
+		"InChI=1S/C7H5Cl2FN2O3/c8-3-5(11)4(9)7(12-6(3)10)15-1-2(13)14/h1H2,(H2,11,12)(H,13,14)",
+		//fused rings
+		"InChI=1S/C14H10/c1-2-6-12-10-14-8-4-3-7-13(14)9-11(12)5-1/h1-10H",
+		//charge
+		"InChI=1S/C4H12N/c1-5(2,3)4/h1-4H3/q+1",
+		//isotope
+		"InChI=1S/CH4O/c1-2/h2H,1H3/i1+1"
+	};
+
+	private int cacheSize;
+
+	@Before
+	public void setUp() {
+		//precursors must be built without the precursor cache
+		this.cacheSize = BitArrayPrecursorCache.getInstance().getMaximumSize();
+		BitArrayPrecursorCache.getInstance().setMaximumSize(0);
+	}
+
+	@After
+	public void tearDown() {
+		BitArrayPrecursorCache.getInstance().setMaximumSize(this.cacheSize);
+	}
+
+	private TopDownBitArrayPrecursor initialise(TopDownPrecursorCandidate candidate) throws Exception {
+		candidate.initialisePrecursorCandidate();
+		return (TopDownBitArrayPrecursor)candidate.getPrecursorMolecule();
+	}
+
+	@Test
+	public void testSameGraph() throws Exception {
+		for(String inchi : INCHIS) {
+			BitArrayPrecursor expected = this.initialise(new TopDownPrecursorCandidate(inchi, "1"));
+			String encoded = MolecularGraph.fromCandidate(new TopDownPrecursorCandidate(inchi, "1")).encode();
+			//no InChI needed
+			TopDownPrecursorCandidate candidate = new TopDownPrecursorCandidate("not an InChI", "1");
+			candidate.setProperty(VariableNames.MOLECULAR_GRAPH_NAME, encoded);
+			BitArrayPrecursor precursor = this.initialise(candidate);
+			//not written to the results
+			assertFalse(candidate.hasDefinedProperty(VariableNames.MOLECULAR_GRAPH_NAME));
+
+			IAtomContainer expectedMolecule = expected.getStructureAsIAtomContainer();
+			IAtomContainer molecule = precursor.getStructureAsIAtomContainer();
+			assertEquals(inchi, expected.getNonHydrogenAtomCount(), precursor.getNonHydrogenAtomCount());
+			for(int i = 0; i < expected.getNonHydrogenAtomCount(); i++) {
+				IAtom expectedAtom = expectedMolecule.getAtom(i);
+				IAtom atom = molecule.getAtom(i);
+				assertEquals(expectedAtom.getSymbol(), atom.getSymbol());
+				assertEquals(expectedAtom.getImplicitHydrogenCount(), atom.getImplicitHydrogenCount());
+				assertEquals(expectedAtom.getFormalCharge(), atom.getFormalCharge());
+				assertEquals(expectedAtom.getMassNumber(), atom.getMassNumber());
+				assertEquals(expectedAtom.isAromatic(), atom.isAromatic());
+				//atom types are configured without perception
+				assertNotNull(atom.getAtomTypeName());
+				assertEquals(expectedAtom.getAtomTypeName(), atom.getAtomTypeName());
+				assertEquals(expectedAtom.getHybridization(), atom.getHybridization());
+				assertEquals(expectedAtom.getFormalNeighbourCount(), atom.getFormalNeighbourCount());
+				assertEquals(expected.getMassOfAtom(i), precursor.getMassOfAtom(i), 0.0);
+				assertArrayEquals(expected.getConnectedAtomIndecesOfAtomIndex((short)i), precursor.getConnectedAtomIndecesOfAtomIndex((short)i));
+			}
+			assertEquals(expected.getNonHydrogenBondCount(), precursor.getNonHydrogenBondCount());
+			for(short i = 0; i < expected.getNonHydrogenBondCount(); i++) {
+				assertArrayEquals(expected.getConnectedAtomIndecesOfBondIndex(i), precursor.getConnectedAtomIndecesOfBondIndex(i));
+				assertEquals(expected.getBondAsString(i), precursor.getBondAsString(i));
+			}
+			assertArrayEquals(expected.atomAdjacencyList, precursor.atomAdjacencyList);
+			assertEquals(expected.aromaticBonds.toString(), precursor.aromaticBonds.toString());
+			assertEquals(expected.ringBondToBelongingRingBondIndeces.length, precursor.ringBondToBelongingRingBondIndeces.length);
+			for(int i = 0; i < expected.ringBondToBelongingRingBondIndeces.length; i++)
+				assertTrue(expected.ringBondToBelongingRingBondIndeces[i].equals(precursor.ringBondToBelongingRingBondIndeces[i]));
+			assertEquals(expected.getNeutralMonoisotopicMass(), precursor.getNeutralMonoisotopicMass(), 0.0);
+			assertEquals(expected.getMolecularFormula().toString(), precursor.getMolecularFormula().toString());
+			//the atom container is rebuilt from the graph after a reset
+			candidate.resetPrecursorMolecule();
+			candidate.setPrecursorMolecule();
+			assertEquals(expected.getNonHydrogenBondCount(), candidate.getPrecursorMolecule().getStructureAsIAtomContainer().getBondCount());
+			//clones keep the graph
+			assertEquals(expected.getNonHydrogenAtomCount(), this.initialise(candidate.clone()).getNonHydrogenAtomCount());
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		MolecularGraph graph = MolecularGraph.fromCandidate(new TopDownPrecursorCandidate(INCHIS[1], "1"));
+		assertEquals(14, graph.getAtomCount());
+		assertEquals(16, graph.getBondCount());
+		assertArrayEquals(graph.toBytes(), MolecularGraph.fromBytes(graph.toBytes()).toBytes());
+		assertEquals(graph.encode(), MolecularGraph.decode(graph.encode()).encode());
+	}
+
+	@Test
+	public void testInvalidGraph() throws Exception {
+		byte[] data = MolecularGraph.fromCandidate(new TopDownPrecursorCandidate(INCHIS[0], "1")).toBytes();
+		try {
+			MolecularGraph.fromBytes(java.util.Arrays.copyOf(data, data.length - 1));
+			fail("Truncated graph read");
+		} catch(java.io.IOException e) {}
+		try {
+			MolecularGraph.decode("no graph");
+			fail("Invalid graph read");
+		} catch(java.io.IOException e) {}
+		//falls back to the InChI
+		TopDownPrecursorCandidate candidate = new TopDownPrecursorCandidate(INCHIS[0], "1");
+		candidate.setProperty(VariableNames.MOLECULAR_GRAPH_NAME, "no graph");
+		assertEquals(15, this.initialise(candidate).getNonHydrogenAtomCount());
+	}
+}
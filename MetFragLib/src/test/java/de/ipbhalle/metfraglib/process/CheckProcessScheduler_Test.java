@@ -0,0 +1,120 @@
+package de.ipbhalle.metfraglib.process;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CheckProcessScheduler_Test {
+
+	@BeforeClass
+	public static void setUp() {
+		ProcessScheduler.setParallelism(4);
+	}
+
+	@Test
+	public void testMaximumParallelism() throws Exception {
+		ProcessSchedulerQuery query = ProcessScheduler.getInstance().register(1, 2);
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maximumRunning = new AtomicInteger(0);
+		final AtomicInteger finished = new AtomicInteger(0);
+		for(int i = 0; i < 20; i++) {
+			query.submit(new Runnable() {
+				public void run() {
+					int current = running.incrementAndGet();
+					synchronized(maximumRunning) {
+						if(current > maximumRunning.get()) maximumRunning.set(current);
+					}
+					try {
+						Thread.sleep(5);
+					} catch (InterruptedException e) {}
+					running.decrementAndGet();
+					finished.incrementAndGet();
+				}
+			});
+		}
+		query.awaitCompletion();
+		query.close();
+		assertEquals(20, finished.get());
+		assertTrue("Query used " + maximumRunning.get() + " threads", maximumRunning.get() <= 2);
+	}
+
+	@Test
+	public void testPriority() throws Exception {
+		ProcessScheduler scheduler = ProcessScheduler.getInstance();
+		//block all workers until both queries are filled
+		final CountDownLatch start = new CountDownLatch(1);
+		ProcessSchedulerQuery blocker = scheduler.register(1, scheduler.getParallelism());
+		for(int i = 0; i < scheduler.getParallelism(); i++) {
+			blocker.submit(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {}
+				}
+			});
+		}
+		final StringBuffer order = new StringBuffer();
+		ProcessSchedulerQuery low = scheduler.register(1, scheduler.getParallelism());
+		ProcessSchedulerQuery high = scheduler.register(3, scheduler.getParallelism());
+		for(int i = 0; i < 10; i++) {
+			low.submit(new Appender(order, 'l'));
+			high.submit(new Appender(order, 'h'));
+		}
+		blocker.close();
+		start.countDown();
+		low.awaitCompletion();
+		high.awaitCompletion();
+		low.close();
+		high.close();
+		//the high priority query gets about three times the share of the low priority one
+		String firstTasks = order.substring(0, 8);
+		int numberHigh = firstTasks.length() - firstTasks.replace("h", "").length();
+		assertTrue("Unexpected order " + order, numberHigh >= 5);
+		assertEquals(20, order.length());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		ProcessSchedulerQuery query = ProcessScheduler.getInstance().register(1, 1);
+		final CountDownLatch started = new CountDownLatch(1);
+		Future<?> running = query.submit(new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+				} catch (InterruptedException e) {}
+			}
+		});
+		Future<?> waiting = query.submit(new Appender(new StringBuffer(), 'w'));
+		started.await();
+		query.cancel();
+		query.awaitCompletion();
+		query.close();
+		assertTrue(running.isCancelled());
+		assertTrue(waiting.isCancelled());
+	}
+
+	private static class Appender implements Runnable {
+
+		private final StringBuffer order;
+		private final char character;
+
+		private Appender(StringBuffer order, char character) {
+			this.order = order;
+			this.character = character;
+		}
+
+		public void run() {
+			this.order.append(this.character);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {}
+		}
+	}
+}
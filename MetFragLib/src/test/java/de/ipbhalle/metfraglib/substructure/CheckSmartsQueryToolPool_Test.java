@@ -0,0 +1,44 @@
+package de.ipbhalle.metfraglib.substructure;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+
+import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
+
+public class CheckSmartsQueryToolPool_Test {
+
+	@Test
+	public void testMatches() throws Exception {
+		SmartsQueryToolPool pool = new SmartsQueryToolPool(new String[] {"c1ccccc1", "[OX2H]", "C#N"});
+		org.openscience.cdk.interfaces.IAtomContainer phenol = MoleculeFunctions.getAtomContainerFromInChI("InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H");
+		MoleculeFunctions.prepareAtomContainer(phenol, true);
+		assertTrue(pool.matches(0, phenol));
+		assertTrue(pool.matches(1, phenol));
+		assertFalse(pool.matches(2, phenol));
+	}
+
+	@Test
+	public void testToolsKeptByThreadAndPattern() throws Exception {
+		new SmartsQueryToolPool(new String[] {"c1ccccc1"});
+		new SmartsQueryToolPool(new String[] {"c1ccccc1"});
+		//pools of the same pattern use the same tool of a thread
+		final SMARTSQueryTool queryTool = SmartsQueryToolPool.getQueryTool("c1ccccc1");
+		assertSame(queryTool, SmartsQueryToolPool.getQueryTool("c1ccccc1"));
+		final SMARTSQueryTool[] otherThreadQueryTool = new SMARTSQueryTool[1];
+		Thread thread = new Thread() {
+			public void run() {
+				otherThreadQueryTool[0] = SmartsQueryToolPool.getQueryTool("c1ccccc1");
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNotNull(otherThreadQueryTool[0]);
+		assertNotSame(queryTool, otherThreadQueryTool[0]);
+		//least recently used tools are dropped
+		for(int i = 1; i <= SmartsQueryToolPool.MAXIMUM_NUMBER_CACHED_TOOLS; i++) SmartsQueryToolPool.getQueryTool("[#6]~[#" + i + "]");
+		assertNotSame(queryTool, SmartsQueryToolPool.getQueryTool("c1ccccc1"));
+	}
+
+}
@@ -0,0 +1,83 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+/**
+ * settings of example 1 with the fragmenter, SMARTS substructure and retention time scores
+ * shared by the workflow tests comparing these scores between runs
+ * 
+ * @author cruttkie
+ *
+ */
+public class RetentionTimeScoresFixture {
+
+	public static final int EXPECTED_NUMBER_CANDIDATES = 167;
+	public static final String[] SCORE_NAMES = {VariableNames.METFRAG_FRAGMENTER_SCORE_NAME, "SmartsSubstructureInclusionScore", "SmartsSubstructureExclusionScore", "RetentionTimeScore"};
+
+	private static final String TRAINING_FILE =
+		"Identifier,InChI,RetentionTime\n" +
+		"phenol,\"InChI=1S/C6H6O/c7-6-4-2-1-3-5-6/h1-5,7H\",5.1\n" +
+		"benzoic_acid,\"InChI=1S/C7H6O2/c8-7(9)6-4-2-1-3-5-6/h1-5H,(H,8,9)\",6.3\n" +
+		"toluene,\"InChI=1S/C7H8/c1-7-5-3-2-4-6-7/h2-6H,1H3\",9.8\n" +
+		"caffeine,\"InChI=1S/C8H10N4O2/c1-10-4-9-6-5(10)7(13)12(3)8(14)11(6)2/h4H,1-3H3\",3.2\n" +
+		"ethanol,\"InChI=1S/C2H6O/c1-2-3/h3H,2H2,1H3\",1.4\n";
+
+	/**
+	 * writes the retention time training file into the given folder
+	 * 
+	 * @param temporaryFolder
+	 * @return
+	 * @throws Exception
+	 */
+	public static File writeTrainingFile(TemporaryFolder temporaryFolder) throws Exception {
+		File trainingFile = temporaryFolder.newFile("rt_training.csv");
+		java.nio.file.Files.write(trainingFile.toPath(), TRAINING_FILE.getBytes(StandardCharsets.UTF_8));
+		return trainingFile;
+	}
+
+	public static MetFragGlobalSettings getSettings(String databaseType, String databasePath, File trainingFile) {
+		String peakListFilePath = ClassLoader.getSystemResource("peaklist_file_example_1.txt").getFile();
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		//set peaklist path and candidate list path
+		settings.set(VariableNames.PEAK_LIST_PATH_NAME, peakListFilePath);
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, databasePath);
+		//set needed parameters
+		settings.set(VariableNames.RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		settings.set(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME, 0.001);
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 253.966126);
+		settings.set(VariableNames.METFRAG_DATABASE_TYPE_NAME, databaseType);
+		//scores reading the precursor structure
+		settings.set(VariableNames.METFRAG_SCORE_TYPES_NAME, SCORE_NAMES);
+		settings.set(VariableNames.METFRAG_SCORE_WEIGHTS_NAME, new Double[] {1.0, 1.0, 1.0, 1.0});
+		settings.set(VariableNames.SCORE_SMARTS_INCLUSION_LIST_NAME, new String[] {"c1ccncc1", "[OX2H]", "C(=O)O", "[nH]"});
+		settings.set(VariableNames.SCORE_SMARTS_EXCLUSION_LIST_NAME, new String[] {"[Cl]", "[NX3H2]", "F", "[CH3]"});
+		settings.set(VariableNames.RETENTION_TIME_TRAINING_FILE_NAME, trainingFile.getAbsolutePath());
+		settings.set(VariableNames.EXPERIMENTAL_RETENTION_TIME_VALUE_NAME, 4.5);
+		return settings;
+	}
+
+	/**
+	 * score values of each candidate by identifier
+	 * 
+	 * @param scoredCandidateList
+	 * @return
+	 */
+	public static java.util.HashMap<String, String> getScores(ScoredCandidateList scoredCandidateList) {
+		java.util.HashMap<String, String> scores = new java.util.HashMap<String, String>();
+		for(int i = 0; i < scoredCandidateList.getNumberElements(); i++) {
+			StringBuilder values = new StringBuilder();
+			for(String scoreName : SCORE_NAMES)
+				values.append(scoredCandidateList.getElement(i).getProperty(scoreName)).append(" ");
+			scores.put(scoredCandidateList.getElement(i).getIdentifier(), values.toString());
+		}
+		return scores;
+	}
+
+}
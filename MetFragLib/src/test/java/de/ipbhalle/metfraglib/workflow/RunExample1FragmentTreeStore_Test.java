@@ -0,0 +1,96 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.interfaces.IMatch;
+import de.ipbhalle.metfraglib.list.MatchList;
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.process.CombinedMetFragProcess;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class RunExample1FragmentTreeStore_Test {
+
+	private final int EXPECTED_NUMBER_CANDIDATES = 167;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ScoredCandidateList runMetFrag(String fragmentTreeStorePath, boolean parallelFragmentation) throws Exception {
+		String peakListFilePath = ClassLoader.getSystemResource("peaklist_file_example_1.txt").getFile();
+		String candidateListFilePath = ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile();
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		//set peaklist path and candidate list path
+		settings.set(VariableNames.PEAK_LIST_PATH_NAME, peakListFilePath);
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, candidateListFilePath);
+		//set needed parameters
+		settings.set(VariableNames.RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		settings.set(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME, 0.001);
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 253.966126);
+		settings.set(VariableNames.METFRAG_DATABASE_TYPE_NAME, "LocalCSV");
+		settings.set(VariableNames.MAXIMUM_TREE_DEPTH_NAME, (byte)3);
+		settings.set(VariableNames.PARALLEL_FRAGMENTATION_NAME, parallelFragmentation);
+		if(fragmentTreeStorePath != null) settings.set(VariableNames.FRAGMENT_TREE_STORE_PATH_NAME, fragmentTreeStorePath);
+
+		CombinedMetFragProcess metfragProcess = new CombinedMetFragProcess(settings);
+		metfragProcess.retrieveCompounds();
+		metfragProcess.run();
+		return (ScoredCandidateList)metfragProcess.getCandidateList();
+	}
+
+	private String getMatchesAsString(MatchList matchList) {
+		StringBuilder matches = new StringBuilder();
+		for(int i = 0; i < matchList.getNumberElements(); i++) {
+			IMatch match = matchList.getElement(i);
+			matches.append(match.getMatchedPeak().getMass()).append(":").append(match.getBestMatchedFragment().getID()).append(" ");
+		}
+		return matches.toString();
+	}
+
+	private void assertSameResults(ScoredCandidateList expectedCandidateList, ScoredCandidateList candidateList) {
+		assertEquals(EXPECTED_NUMBER_CANDIDATES, candidateList.getNumberElements());
+		java.util.HashMap<String, Integer> identifierToIndex = new java.util.HashMap<String, Integer>();
+		for(int i = 0; i < expectedCandidateList.getNumberElements(); i++)
+			identifierToIndex.put(expectedCandidateList.getElement(i).getIdentifier(), i);
+		for(int i = 0; i < candidateList.getNumberElements(); i++) {
+			String identifier = candidateList.getElement(i).getIdentifier();
+			Integer index = identifierToIndex.get(identifier);
+			assertNotNull("Error: Candidate " + identifier + " not found", index);
+			assertEquals("Error: Different FragmenterScore for " + identifier,
+					(Double)expectedCandidateList.getElement(index).getProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME),
+					(Double)candidateList.getElement(i).getProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME), 0.0);
+			assertEquals("Error: Different explained peaks for " + identifier,
+					this.getMatchesAsString(expectedCandidateList.getElement(index).getMatchList()),
+					this.getMatchesAsString(candidateList.getElement(i).getMatchList()));
+		}
+	}
+
+	@Test
+	public void test() throws Exception {
+		File storeDirectory = this.temporaryFolder.newFolder("fragmenttrees");
+		ScoredCandidateList referenceCandidateList = this.runMetFrag(null, false);
+		assertEquals(EXPECTED_NUMBER_CANDIDATES, referenceCandidateList.getNumberElements());
+		//first run generates and stores the fragment trees
+		this.assertSameResults(referenceCandidateList, this.runMetFrag(storeDirectory.getAbsolutePath(), false));
+		File[] storedTrees = storeDirectory.listFiles();
+		assertTrue(storedTrees.length > 0);
+		java.util.HashMap<String, Long> fileToLastModified = new java.util.HashMap<String, Long>();
+		for(File storedTree : storedTrees) fileToLastModified.put(storedTree.getName(), storedTree.lastModified());
+		//second runs replay the stored fragment trees
+		this.assertSameResults(referenceCandidateList, this.runMetFrag(storeDirectory.getAbsolutePath(), false));
+		this.assertSameResults(referenceCandidateList, this.runMetFrag(storeDirectory.getAbsolutePath(), true));
+		storedTrees = storeDirectory.listFiles();
+		assertEquals(fileToLastModified.size(), storedTrees.length);
+		for(File storedTree : storedTrees)
+			assertEquals("Error: Fragment tree " + storedTree.getName() + " was written again", fileToLastModified.get(storedTree.getName()), (Long)storedTree.lastModified());
+	}
+
+}
@@ -0,0 +1,71 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.ipbhalle.metfraglib.database.ColumnarCandidateStore;
+import de.ipbhalle.metfraglib.interfaces.ICandidate;
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.process.CombinedMetFragProcess;
+
+public class RunExample1MolecularGraph_Test {
+
+	private final int EXPECTED_NUMBER_PEAKS_EXPLAINED = 18;
+	private final double EXPECTED_FRAGMENTER_SCORE_CORRECT = 1197.32678016043;
+	private final String INCHIKEY1_CORRECT = "MEFQWPUMEMWTJP";
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void test() throws Exception {
+		String candidateListFilePath = ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile();
+		File store = this.temporaryFolder.newFile("candidates.mfc");
+		File graphStore = this.temporaryFolder.newFile("candidates_graph.mfc");
+		ColumnarCandidateStore.convert("LocalCSV", candidateListFilePath, store.getAbsolutePath(), ColumnarCandidateStore.DEFAULT_BLOCK_SIZE);
+		ColumnarCandidateStore.convert("LocalCSV", candidateListFilePath, graphStore.getAbsolutePath(), ColumnarCandidateStore.DEFAULT_BLOCK_SIZE, true);
+		ColumnarCandidateStore columnarStore = ColumnarCandidateStore.open(graphStore);
+		int numberGraphs = 0;
+		for(ICandidate candidate : columnarStore.getAllCandidates())
+			if(candidate.hasDefinedProperty(VariableNames.MOLECULAR_GRAPH_NAME)) numberGraphs++;
+		columnarStore.close();
+		assertEquals(RetentionTimeScoresFixture.EXPECTED_NUMBER_CANDIDATES, numberGraphs);
+		File trainingFile = RetentionTimeScoresFixture.writeTrainingFile(this.temporaryFolder);
+		java.util.HashMap<String, String> expectedScores = RetentionTimeScoresFixture.getScores(this.run(store, trainingFile));
+		java.util.HashSet<String> distinctScores = new java.util.HashSet<String>(expectedScores.values());
+		assertTrue(distinctScores.size() > 1);
+		for(String scores : distinctScores) assertFalse(scores, scores.contains("null"));
+		ScoredCandidateList scoredCandidateList = this.run(graphStore, trainingFile);
+		//candidates built from the stored graphs are scored like candidates read from their InChIs
+		assertEquals(expectedScores, RetentionTimeScoresFixture.getScores(scoredCandidateList));
+
+		ICandidate correctCandidate = null;
+		for(int i = 0; i < scoredCandidateList.getNumberElements(); i++) {
+			assertFalse(scoredCandidateList.getElement(i).hasDefinedProperty(VariableNames.MOLECULAR_GRAPH_NAME));
+			String inchikey1 = (String)scoredCandidateList.getElement(i).getProperty(VariableNames.INCHI_KEY_1_NAME);
+			if(inchikey1.equals(INCHIKEY1_CORRECT)) correctCandidate = scoredCandidateList.getElement(i);
+		}
+		assertNotNull("Error: No candidate found with InChIKey part one equals " + INCHIKEY1_CORRECT, correctCandidate);
+		assertEquals(EXPECTED_NUMBER_PEAKS_EXPLAINED, correctCandidate.getMatchList().getNumberElements());
+		assertEquals(EXPECTED_FRAGMENTER_SCORE_CORRECT, (Double)correctCandidate.getProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME), 0.0001);
+	}
+
+	private ScoredCandidateList run(File store, File trainingFile) throws Exception {
+		CombinedMetFragProcess metfragProcess = new CombinedMetFragProcess(RetentionTimeScoresFixture.getSettings("LocalColumnar", store.getAbsolutePath(), trainingFile));
+		metfragProcess.retrieveCompounds();
+		metfragProcess.run();
+		ScoredCandidateList scoredCandidateList = (ScoredCandidateList)metfragProcess.getCandidateList();
+		assertEquals(RetentionTimeScoresFixture.EXPECTED_NUMBER_CANDIDATES, scoredCandidateList.getNumberElements());
+		return scoredCandidateList;
+	}
+
+}
@@ -0,0 +1,77 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.interfaces.IMatch;
+import de.ipbhalle.metfraglib.list.MatchList;
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.process.CombinedMetFragProcess;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class RunExample1ParallelFragmentation_Test {
+
+	private final int EXPECTED_NUMBER_CANDIDATES = 167;
+
+	private ScoredCandidateList runMetFrag(boolean parallelFragmentation) throws Exception {
+		String peakListFilePath = ClassLoader.getSystemResource("peaklist_file_example_1.txt").getFile();
+		String candidateListFilePath = ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile();
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		//set peaklist path and candidate list path
+		settings.set(VariableNames.PEAK_LIST_PATH_NAME, peakListFilePath);
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, candidateListFilePath);
+		//set needed parameters
+		settings.set(VariableNames.RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		settings.set(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME, 0.001);
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 253.966126);
+		settings.set(VariableNames.METFRAG_DATABASE_TYPE_NAME, "LocalCSV");
+		settings.set(VariableNames.MAXIMUM_TREE_DEPTH_NAME, (byte)3);
+		settings.set(VariableNames.PARALLEL_FRAGMENTATION_NAME, parallelFragmentation);
+
+		CombinedMetFragProcess metfragProcess = new CombinedMetFragProcess(settings);
+		metfragProcess.retrieveCompounds();
+		metfragProcess.run();
+		return (ScoredCandidateList)metfragProcess.getCandidateList();
+	}
+
+	private String getMatchesAsString(MatchList matchList) {
+		StringBuilder matches = new StringBuilder();
+		for(int i = 0; i < matchList.getNumberElements(); i++) {
+			IMatch match = matchList.getElement(i);
+			matches.append(match.getMatchedPeak().getMass()).append(":").append(match.getBestMatchedFragment().getID()).append(" ");
+		}
+		return matches.toString();
+	}
+
+	@Test
+	public void test() throws Exception {
+		ScoredCandidateList sequentialCandidateList = this.runMetFrag(false);
+		ScoredCandidateList parallelCandidateList = this.runMetFrag(true);
+
+		assertEquals(EXPECTED_NUMBER_CANDIDATES, sequentialCandidateList.getNumberElements());
+		assertEquals(EXPECTED_NUMBER_CANDIDATES, parallelCandidateList.getNumberElements());
+
+		java.util.HashMap<String, Integer> identifierToIndex = new java.util.HashMap<String, Integer>();
+		for(int i = 0; i < sequentialCandidateList.getNumberElements(); i++)
+			identifierToIndex.put(sequentialCandidateList.getElement(i).getIdentifier(), i);
+		//parallel fragmentation must give exactly the same results
+		for(int i = 0; i < parallelCandidateList.getNumberElements(); i++) {
+			String identifier = parallelCandidateList.getElement(i).getIdentifier();
+			Integer index = identifierToIndex.get(identifier);
+			assertNotNull("Error: Candidate " + identifier + " not found in sequential run", index);
+			assertEquals("Error: Different FragmenterScore for " + identifier,
+					(Double)sequentialCandidateList.getElement(index).getProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME),
+					(Double)parallelCandidateList.getElement(i).getProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME), 0.0);
+			assertEquals("Error: Different number of explained peaks for " + identifier,
+					sequentialCandidateList.getElement(index).getMatchList().getNumberElements(),
+					parallelCandidateList.getElement(i).getMatchList().getNumberElements());
+			assertEquals("Error: Different explained peaks for " + identifier,
+					this.getMatchesAsString(sequentialCandidateList.getElement(index).getMatchList()),
+					this.getMatchesAsString(parallelCandidateList.getElement(i).getMatchList()));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.ipbhalle.metfraglib.interfaces.IProcessingStatusListener;
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.parameter.VariableNames;
+import de.ipbhalle.metfraglib.process.CombinedMetFragProcess;
+import de.ipbhalle.metfraglib.process.ProcessingStatus;
+import de.ipbhalle.metfraglib.settings.MetFragGlobalSettings;
+
+public class RunExample1ProcessingStatus_Test {
+
+	private final int EXPECTED_NUMBER_CANDIDATES = 167; 
+	
+	private CombinedMetFragProcess metfragProcess;
+	
+	@Before
+	public void setUp() throws Exception {
+		String peakListFilePath = ClassLoader.getSystemResource("peaklist_file_example_1.txt").getFile();
+		String candidateListFilePath = ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile();
+		MetFragGlobalSettings settings = new MetFragGlobalSettings();
+		//set peaklist path and candidate list path
+		settings.set(VariableNames.PEAK_LIST_PATH_NAME, peakListFilePath);
+		settings.set(VariableNames.LOCAL_DATABASE_PATH_NAME, candidateListFilePath);
+		//set needed parameters
+		settings.set(VariableNames.RELATIVE_MASS_DEVIATION_NAME, 5.0);
+		settings.set(VariableNames.ABSOLUTE_MASS_DEVIATION_NAME, 0.001);
+		settings.set(VariableNames.PRECURSOR_NEUTRAL_MASS_NAME, 253.966126);
+		settings.set(VariableNames.METFRAG_DATABASE_TYPE_NAME, "LocalCSV");
+		
+		this.metfragProcess = new CombinedMetFragProcess(settings);
+	}
+
+	@Test
+	public void test() throws Exception {
+		//track progress pushed by the processing status
+		final AtomicInteger lastPercentageValue = new AtomicInteger(0);
+		final AtomicInteger numberUpdates = new AtomicInteger(0);
+		this.metfragProcess.addProcessingStatusListener(new IProcessingStatusListener() {
+			public void processingStatusChanged(ProcessingStatus processingStatus) {
+				lastPercentageValue.set(processingStatus.getPercentageValue().get());
+				numberUpdates.incrementAndGet();
+			}
+		});
+		this.metfragProcess.retrieveCompounds();
+		this.metfragProcess.run();
+		
+		//run returns after all candidate processes have finished
+		ScoredCandidateList scoredCandidateList = (ScoredCandidateList)this.metfragProcess.getCandidateList();
+		assertEquals("Error: Expected " + EXPECTED_NUMBER_CANDIDATES + " candidates. Found " + scoredCandidateList.getNumberElements(), EXPECTED_NUMBER_CANDIDATES, scoredCandidateList.getNumberElements());
+		for(int i = 0; i < scoredCandidateList.getNumberElements(); i++)
+			assertTrue(scoredCandidateList.getElement(i).hasDefinedProperty(VariableNames.METFRAG_FRAGMENTER_SCORE_NAME));
+		assertTrue("Error: Expected progress updates. Found none", numberUpdates.get() > 0);
+		assertEquals("Error: Expected progress of 100 %. Found " + lastPercentageValue.get(), 100, lastPercentageValue.get());
+	}
+
+}
@@ -0,0 +1,85 @@
+package de.ipbhalle.metfraglib.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.ipbhalle.metfraglib.additionals.MoleculeFunctions;
+import de.ipbhalle.metfraglib.fingerprint.TanimotoSimilarity;
+import de.ipbhalle.metfraglib.list.ScoredCandidateList;
+import de.ipbhalle.metfraglib.process.CombinedMetFragProcess;
+import de.ipbhalle.metfraglib.process.ProcessScheduler;
+
+public class RunExample1ThreadConfinedScores_Test {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@AfterClass
+	public static void tearDown() {
+		ProcessScheduler.setParallelism(Runtime.getRuntime().availableProcessors());
+	}
+
+	private ScoredCandidateList runMetFrag(int parallelism, File trainingFile) throws Exception {
+		ProcessScheduler.setParallelism(parallelism);
+		String candidateListFilePath = ClassLoader.getSystemResource("candidate_file_example_1.txt").getFile();
+		//scores using thread-confined SMARTS query tools and XLogP descriptors
+		CombinedMetFragProcess metfragProcess = new CombinedMetFragProcess(RetentionTimeScoresFixture.getSettings("LocalCSV", candidateListFilePath, trainingFile));
+		metfragProcess.retrieveCompounds();
+		metfragProcess.run();
+		ScoredCandidateList scoredCandidateList = (ScoredCandidateList)metfragProcess.getCandidateList();
+		assertEquals(RetentionTimeScoresFixture.EXPECTED_NUMBER_CANDIDATES, scoredCandidateList.getNumberElements());
+		return scoredCandidateList;
+	}
+
+	@Test
+	public void testScores() throws Exception {
+		File trainingFile = RetentionTimeScoresFixture.writeTrainingFile(this.temporaryFolder);
+		java.util.HashMap<String, String> expectedScores = RetentionTimeScoresFixture.getScores(this.runMetFrag(1, trainingFile));
+		//all candidates match some of the SMARTS patterns and get a logP value
+		java.util.HashSet<String> distinctScores = new java.util.HashSet<String>(expectedScores.values());
+		assertTrue(distinctScores.size() > 1);
+		for(String scores : distinctScores) assertTrue(scores, !scores.contains("null"));
+		//repeated parallel runs give the scores of the single-threaded run
+		for(int run = 0; run < 3; run++)
+			assertEquals(expectedScores, RetentionTimeScoresFixture.getScores(this.runMetFrag(8, trainingFile)));
+	}
+
+	@Test
+	public void testFingerprints() throws Exception {
+		final String[] smiles = {"CN(C(=O)NC1=CC=C(C=C1)Cl)OC", "OC1=CC=CC=C1", "CCO", "OC(=O)C1=CC=CC=C1", "CN1C=NC2=C1C(=O)N(C(=O)N2C)C"};
+		final IAtomContainer[] molecules = new IAtomContainer[smiles.length];
+		final IBitFingerprint[] expectedFingerprints = new IBitFingerprint[smiles.length];
+		for(int i = 0; i < smiles.length; i++) {
+			molecules[i] = MoleculeFunctions.getAtomContainerFromSMILES(smiles[i]);
+			MoleculeFunctions.prepareAtomContainer(molecules[i], true);
+			expectedFingerprints[i] = TanimotoSimilarity.calculateFingerPrint(molecules[i]);
+			assertNotNull(expectedFingerprints[i]);
+		}
+		java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
+		java.util.List<java.util.concurrent.Future<IBitFingerprint>> fingerprints = new java.util.ArrayList<java.util.concurrent.Future<IBitFingerprint>>();
+		for(int i = 0; i < 400; i++) {
+			final int index = i % smiles.length;
+			fingerprints.add(executor.submit(new java.util.concurrent.Callable<IBitFingerprint>() {
+				public IBitFingerprint call() throws Exception {
+					IAtomContainer molecule = MoleculeFunctions.getAtomContainerFromSMILES(smiles[index]);
+					MoleculeFunctions.prepareAtomContainer(molecule, true);
+					return TanimotoSimilarity.calculateFingerPrint(molecule);
+				}
+			}));
+		}
+		for(int i = 0; i < fingerprints.size(); i++)
+			assertEquals(expectedFingerprints[i % smiles.length], fingerprints.get(i).get());
+		executor.shutdown();
+	}
+
+}
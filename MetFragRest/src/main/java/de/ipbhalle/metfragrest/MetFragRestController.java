@@ -85,6 +85,8 @@ public class MetFragRestController {
 			processid = resFolder.getName();
 			try {
 				MetFragGlobalSettings settings = args.getSettingsObject(resFolder);
+				// local file databases read into memory are read once for all queries
+				settings.set(VariableNames.SHARE_LOCAL_DATABASE_NAME, true);
 				// check settings
 				SettingsChecker settingsChecker = new SettingsChecker();
 				if (!settingsChecker.check(settings)) throw new CouldNotCreateProcessException( "Error: Corrupt parameters" );
@@ -5,12 +5,8 @@ import javax.faces.component.UIComponent;
 import javax.faces.context.FacesContext;
 import javax.faces.validator.Validator;
 import javax.faces.validator.ValidatorException;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
 
-import org.openscience.cdk.DefaultChemObjectBuilder;
-import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import de.ipbhalle.metfraglib.substructure.SmartsFormula;
 
 public class SmartsExpressionValidator implements Validator {
 
@@ -88,47 +84,14 @@ public class SmartsExpressionValidator implements Validator {
 				this.worked = false;
 				return;
 			}
-			java.util.Vector<String> smarts_vec = new java.util.Vector<String>();
-			String modified_formula = ((String)this.value).trim();
-			String formula = "";
-			String[] tmp = modified_formula.trim().split("\\s+");
-			for(int i = 0; i < tmp.length; i++) {
-				if(tmp[i].matches("\\(+") || tmp[i].matches("\\)+")) formula += tmp[i];
-				else if(tmp[i].equals("not") || tmp[i].equals("Not") || tmp[i].equals("NOT")) formula += "!";
-				else if(tmp[i].equals("and") || tmp[i].equals("And") || tmp[i].equals("AND")) formula += "&&";
-				else if(tmp[i].equals("or") || tmp[i].equals("Or") || tmp[i].equals("OR")) formula += "||";
-				else if(tmp[i].equals("xor") || tmp[i].equals("Xor") || tmp[i].equals("XOR")) formula += "^";
-				else {
-					formula += " true ";
-					smarts_vec.add(tmp[i]);
-				}
-			}
-
+			//same parser as used by the SMARTS filter
 			try {
-				new ScriptEngineManager().getEngineByName("javascript").eval(formula);
-			} catch (ScriptException e) {
+				if(((String)this.value).trim().length() == 0) this.worked = false;
+				else new SmartsFormula((String)this.value);
+			} catch (IllegalArgumentException e) {
 				this.worked = false;
 				return;
 			}
-			
-			SMARTSQueryTool smartsQuerytools = new SMARTSQueryTool("CC", DefaultChemObjectBuilder.getInstance());
-			for(int i = 0; i < smarts_vec.size(); i++) {
-				if(smarts_vec.get(i) == null) {
-					this.worked = false;
-					return;
-				}
-				String current_smarts = smarts_vec.get(i).trim();
-				if(current_smarts.equals("")) {
-					this.worked = false;
-					return;
-				}
-				try {
-					smartsQuerytools.setSmarts(current_smarts);
-				} catch (CDKException e) {
-					this.worked = false;
-					return;
-				}
-			}
 		}
 	}
 }